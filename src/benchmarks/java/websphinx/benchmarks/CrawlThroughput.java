@@ -0,0 +1,321 @@
+/*
+ * WebSphinx web-crawling toolkit
+ *
+ * Copyright (c) 1998-2002 Carnegie Mellon University.  All rights
+ * reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in
+ *    the documentation and/or other materials provided with the
+ *    distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY CARNEGIE MELLON UNIVERSITY ``AS IS'' AND
+ * ANY EXPRESSED OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ * THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED.  IN NO EVENT SHALL CARNEGIE MELLON UNIVERSITY
+ * NOR ITS EMPLOYEES BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+
+package websphinx.benchmarks;
+
+import java.io.File;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import org.apache.lenya.search.crawler.DumpingCrawler;
+import org.apache.lenya.search.crawler.IterativeHTMLCrawler;
+import websphinx.Crawler;
+import websphinx.Link;
+import websphinx.LinkEvent;
+import websphinx.LinkListener;
+import websphinx.Page;
+
+/**
+ * End-to-end crawl throughput.  Starts a SyntheticWeb and crawls it 
+ * with websphinx.Crawler, DumpingCrawler and IterativeHTMLCrawler in
+ * turn, reporting for each crawl the pages and bytes downloaded per
+ * second, the median and 99th percentile fetch latency, the time 
+ * spent in garbage collection, and the peak heap.  Runs offline on 
+ * the loopback interface.
+ * <P>
+ * Fetch latency is measured by the crawler (from its RETRIEVING
+ * link event to DOWNLOADED or ERROR) for the crawlers that send link
+ * events; for IterativeHTMLCrawler, it's the server's time to answer.
+ * <PRE>
+ * usage: CrawlThroughput [-pages 1000] [-degree 8] [-size 8192] 
+ *            [-sigma 0.5] [-latency 0,5,10,20] [-errors 0.01]
+ *            [-threads 4] [-mode worm|task|async|pipeline]
+ *            [-crawlers crawler,dumping,iterative] [-runs 1]
+ * </PRE>
+ */
+public class CrawlThroughput {
+
+    SyntheticWeb web;
+    int pages;
+    int threads = 4;
+    int mode = Crawler.WORM_THREADS;
+
+    static final String[] MODES = { "worm", "task", "async", "pipeline" };
+
+    public static void main (String[] args) throws Exception {
+        CrawlThroughput bench = new CrawlThroughput ();
+        SyntheticWeb web = new SyntheticWeb ()
+            .setHostLatency (new int[] { 0, 5, 10, 20 })
+            .setErrorRate (0.01);
+        int size = 8192;
+        double sigma = 0.5;
+        String[] crawlers = { "crawler", "dumping", "iterative" };
+        int runs = 1;
+
+        for (int i=0; i+1<args.length; i+=2) {
+            String name = args[i], value = args[i+1];
+            if (name.equals ("-pages"))
+                web.setPages (Integer.parseInt (value));
+            else if (name.equals ("-degree"))
+                web.setOutDegree (Integer.parseInt (value));
+            else if (name.equals ("-size"))
+                size = Integer.parseInt (value);
+            else if (name.equals ("-sigma"))
+                sigma = Double.parseDouble (value);
+            else if (name.equals ("-latency")) {
+                String[] ms = value.split (",");
+                int[] latency = new int[ms.length];
+                for (int h=0; h<ms.length; ++h)
+                    latency[h] = Integer.parseInt (ms[h].trim ());
+                web.setHostLatency (latency);
+            }
+            else if (name.equals ("-errors"))
+                web.setErrorRate (Double.parseDouble (value));
+            else if (name.equals ("-threads"))
+                bench.threads = Integer.parseInt (value);
+            else if (name.equals ("-mode"))
+                bench.mode = Arrays.asList (MODES).indexOf (value);
+            else if (name.equals ("-crawlers"))
+                crawlers = value.split (",");
+            else if (name.equals ("-runs"))
+                runs = Integer.parseInt (value);
+            else
+                throw new IllegalArgumentException ("unknown option " + name);
+        }
+        if (bench.mode < 0)
+            throw new IllegalArgumentException ("unknown mode");
+        web.setPageSize (size, sigma);
+
+        bench.web = web;
+        bench.pages = web.pages;
+        web.start ();
+        try {
+            System.out.println ("# pages=" + web.pages + " degree=" + web.outDegree 
+                                + " size=" + size + " sigma=" + sigma 
+                                + " latency=" + Arrays.toString (web.latency) 
+                                + " errors=" + web.errorRate 
+                                + " (" + web.countErrorPages () + " pages)"
+                                + " threads=" + bench.threads 
+                                + " mode=" + MODES[bench.mode]);
+            System.out.println (Result.HEADER);
+            for (int r=0; r<runs; ++r)
+                for (int c=0; c<crawlers.length; ++c)
+                    System.out.println (bench.run (crawlers[c]));
+        } finally {
+            web.stop ();
+        }
+    }
+
+    /**
+     * Crawl the site once with the named crawler.
+     */
+    Result run (String crawler) throws Exception {
+        File dir = File.createTempFile ("crawl", ".bench");
+        dir.delete ();
+        dir.mkdirs ();
+
+        LatencyMonitor monitor = new LatencyMonitor ();
+        web.reset ();
+        System.gc ();
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans ())
+            if (pool.getType () == MemoryType.HEAP)
+                pool.resetPeakUsage ();
+        long gc = gcTime ();
+        long start = System.nanoTime ();
+
+        long visited;
+        if (crawler.equals ("crawler"))
+            visited = runCrawler (monitor);
+        else if (crawler.equals ("dumping"))
+            visited = runDumpingCrawler (dir, monitor);
+        else if (crawler.equals ("iterative"))
+            visited = runIterativeCrawler (dir);
+        else
+            throw new IllegalArgumentException ("unknown crawler " + crawler);
+
+        Result result = new Result ();
+        result.crawler = crawler;
+        result.seconds = (System.nanoTime () - start) / 1e9;
+        result.gcMillis = gcTime () - gc;
+        result.peakHeap = peakHeap ();
+        result.visited = visited;
+        result.pages = web.getPagesServed ();
+        result.errors = web.getErrors ();
+        result.bytes = web.getBytes ();
+        long[] latency = monitor.getLatencies ();
+        result.serverLatency = (latency.length == 0);
+        if (result.serverLatency)
+            latency = web.getServiceTimes ();
+        result.p50 = percentile (latency, 0.50);
+        result.p99 = percentile (latency, 0.99);
+
+        delete (dir);
+        return result;
+    }
+
+    long runCrawler (LatencyMonitor monitor) throws Exception {
+        final AtomicLong visited = new AtomicLong ();
+        Crawler crawler = new Crawler () {
+            public void visit (Page page) {
+                visited.incrementAndGet ();
+            }
+        };
+        crawler.setRoot (new Link (web.getURL (0)));
+        crawler.setDomain (Crawler.WEB);
+        crawler.setDepthFirst (false);
+        crawler.setMaxDepth (pages);
+        crawler.setThreadMode (mode);
+        crawler.setDownloadParameters (crawler.getDownloadParameters ()
+                                       .changeMaxThreads (threads)
+                                       .changeMaxPageSize (-1));
+        crawler.addLinkListener (monitor);
+        crawler.run ();
+        return visited.get ();
+    }
+
+    long runDumpingCrawler (File dir, LatencyMonitor monitor) throws Exception {
+        DumpingCrawler crawler = new DumpingCrawler (web.getURL (0), web.getRoots (), 
+                                                     dir.getPath ());
+        crawler.setMaxDepth (pages);
+        crawler.setMaxPages (2 * pages);
+        crawler.setThreadMode (mode);
+        crawler.setDownloadParameters (crawler.getDownloadParameters ()
+                                       .changeMaxThreads (threads)
+                                       .changeMaxPageSize (-1));
+        crawler.addLinkListener (monitor);
+        crawler.run ();
+        crawler.close ();
+        return crawler.getPagesVisited ();
+    }
+
+    long runIterativeCrawler (File dir) throws Exception {
+        IterativeHTMLCrawler crawler = new IterativeHTMLCrawler (
+            new File (dir, "urls.txt").getPath (), 
+            new File (dir, "dump").getPath (), "websphinx-benchmark");
+        // every host is http://127.0.0.1:<port>/
+        crawler.crawl (new URL (web.getURL (0)), "http://127.0.0.1:");
+        return web.getPagesServed ();
+    }
+
+    /*
+     * Fetch latency, from a crawler's link events.
+     */
+    static class LatencyMonitor implements LinkListener {
+        Map<Link,Long> started = new ConcurrentHashMap<Link,Long> ();
+        List<Long> latencies = new ArrayList<Long> ();
+
+        public void crawled (LinkEvent event) {
+            Link link = event.getLink ();
+            switch (event.getID ()) {
+              case LinkEvent.RETRIEVING:
+                started.put (link, Long.valueOf (System.nanoTime ()));
+                break;
+              case LinkEvent.DOWNLOADED:
+              case LinkEvent.ERROR:
+                Long start = started.remove (link);
+                if (start != null)
+                    synchronized (latencies) {
+                        latencies.add (Long.valueOf (System.nanoTime () - start.longValue ()));
+                    }
+                break;
+            }
+        }
+
+        long[] getLatencies () {
+            synchronized (latencies) {
+                long[] times = new long[latencies.size ()];
+                for (int i=0; i<times.length; ++i)
+                    times[i] = latencies.get (i).longValue ();
+                Arrays.sort (times);
+                return times;
+            }
+        }
+    }
+
+    static class Result {
+        static final String HEADER = String.format (
+            "%-10s %7s %7s %7s %8s %9s %9s %8s %8s %8s %8s",
+            "crawler", "visited", "pages", "errors", "seconds", "pages/s", 
+            "KB/s", "p50 ms", "p99 ms", "gc ms", "peak MB");
+
+        String crawler;
+        long visited, pages, errors, bytes, gcMillis, peakHeap, p50, p99;
+        double seconds;
+        boolean serverLatency;
+
+        public String toString () {
+            return String.format (
+                "%-10s %7d %7d %7d %8.2f %9.1f %9.1f %8.2f %8.2f %8d %8.1f%s",
+                crawler, visited, pages, errors, seconds, pages / seconds, 
+                bytes / 1024.0 / seconds, p50 / 1e6, p99 / 1e6, gcMillis, 
+                peakHeap / 1048576.0, serverLatency ? "  (server latency)" : "");
+        }
+    }
+
+    static long percentile (long[] sorted, double p) {
+        if (sorted.length == 0)
+            return 0;
+        int i = (int)Math.ceil (p * sorted.length) - 1;
+        return sorted[Math.max (0, Math.min (i, sorted.length - 1))];
+    }
+
+    static long gcTime () {
+        long total = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans ())
+            total += Math.max (0, gc.getCollectionTime ());
+        return total;
+    }
+
+    static long peakHeap () {
+        long total = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans ())
+            if (pool.getType () == MemoryType.HEAP)
+                total += pool.getPeakUsage ().getUsed ();
+        return total;
+    }
+
+    static void delete (File file) {
+        File[] files = file.listFiles ();
+        if (files != null)
+            for (int i=0; i<files.length; ++i)
+                delete (files[i]);
+        file.delete ();
+    }
+}
@@ -0,0 +1,120 @@
+/*
+ * WebSphinx web-crawling toolkit
+ *
+ * Copyright (c) 1998-2002 Carnegie Mellon University.  All rights
+ * reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in
+ *    the documentation and/or other materials provided with the
+ *    distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY CARNEGIE MELLON UNIVERSITY ``AS IS'' AND
+ * ANY EXPRESSED OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ * THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED.  IN NO EVENT SHALL CARNEGIE MELLON UNIVERSITY
+ * NOR ITS EMPLOYEES BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+
+package websphinx.benchmarks;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import websphinx.DownloadParameters;
+import websphinx.FetchResult;
+import websphinx.HTMLParser;
+import websphinx.Link;
+import websphinx.Page;
+import websphinx.Tag;
+
+/**
+ * HTML corpus shared by the benchmarks.  The fixtures are checked in
+ * under resources/fixtures and loaded from the classpath.
+ */
+public class Fixtures {
+
+    /**
+     * Names of the HTML fixtures: a text-heavy article, a link-heavy 
+     * index, a page of nested tables, and a page of malformed markup,
+     * scripts and comments.
+     */
+    public static final String[] PAGES = {
+        "article.html", "index.html", "tables.html", "messy.html"
+    };
+
+    /**
+     * Base URL the fixtures pretend to come from.
+     */
+    public static final String BASE = "http://www.example.com/docs/";
+
+    /**
+     * Read a fixture.
+     * @param name name of the fixture, e.g. "index.html"
+     * @return contents of the fixture
+     */
+    public static byte[] read (String name) throws IOException {
+        InputStream in = Fixtures.class.getResourceAsStream ("/fixtures/" + name);
+        if (in == null)
+            throw new IOException ("no such fixture: " + name);
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream ();
+            byte[] buf = new byte[8192];
+            for (int n; (n = in.read (buf)) > 0; )
+                out.write (buf, 0, n);
+            return out.toByteArray ();
+        } finally {
+            in.close ();
+        }
+    }
+
+    /**
+     * Make a page from a fixture, as if it had been downloaded.
+     * @param name name of the fixture
+     * @param parser parser for the page, or null to leave it unparsed
+     * @return page whose URL is BASE + name
+     */
+    public static Page page (String name, HTMLParser parser) throws IOException {
+        URL url = new URL (BASE + name);
+        FetchResult result = new FetchResult (url, 200, "OK");
+        result.addHeaderField ("Content-Type", "text/html; charset=iso-8859-1");
+        result.setContent (read (name));
+        return new Page (new Link (url), result, DownloadParameters.DEFAULT, 
+                         parser);
+    }
+
+    /**
+     * Collect the HREF attributes found in all the fixtures.
+     * @return HREF of every tag in the corpus that has one, as written
+     * in the page (i.e., usually relative)
+     */
+    public static String[] hrefs () throws IOException {
+        List<String> hrefs = new ArrayList<String> ();
+        for (String name : PAGES) {
+            Tag[] tags = page (name, new HTMLParser ()).getTags ();
+            for (Tag tag : tags) {
+                String href = tag.getHTMLAttribute ("href");
+                if (href != null)
+                    hrefs.add (href);
+            }
+        }
+        return hrefs.toArray (new String[hrefs.size ()]);
+    }
+}
@@ -0,0 +1,118 @@
+/*
+ * WebSphinx web-crawling toolkit
+ *
+ * Copyright (c) 1998-2002 Carnegie Mellon University.  All rights
+ * reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in
+ *    the documentation and/or other materials provided with the
+ *    distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY CARNEGIE MELLON UNIVERSITY ``AS IS'' AND
+ * ANY EXPRESSED OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ * THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED.  IN NO EVENT SHALL CARNEGIE MELLON UNIVERSITY
+ * NOR ITS EMPLOYEES BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+
+package websphinx.benchmarks;
+
+import java.net.URL;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import websphinx.Link;
+
+/**
+ * Link construction and URL parsing, over the HREFs found in the 
+ * fixture corpus.  Each invocation handles the next HREF in turn.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class LinkBenchmark {
+
+    URL base;
+    String[] hrefs;     // as written in the pages
+    String[] absolute;  // resolved against base
+    URL[] urls;
+    int next;
+
+    @Setup
+    public void setup () throws Exception {
+        base = new URL (Fixtures.BASE);
+        hrefs = Fixtures.hrefs ();
+        absolute = new String[hrefs.length];
+        urls = new URL[hrefs.length];
+        for (int i=0; i<hrefs.length; ++i) {
+            urls[i] = new URL (base, hrefs[i]);
+            absolute[i] = urls[i].toExternalForm ();
+        }
+    }
+
+    private int next () {
+        int i = next;
+        next = (i + 1) % hrefs.length;
+        return i;
+    }
+
+    /**
+     * Resolve an HREF against the page's base URL, as the parser 
+     * does for every link it finds.
+     */
+    @Benchmark
+    public Object resolveHref () throws Exception {
+        return new URL (base, hrefs[next ()]);
+    }
+
+    /**
+     * Make a Link from an absolute URL string.
+     */
+    @Benchmark
+    public Object linkFromString () throws Exception {
+        return new Link (absolute[next ()]);
+    }
+
+    /**
+     * Make a Link from a parsed URL.
+     */
+    @Benchmark
+    public Object linkFromURL () {
+        return new Link (urls[next ()]);
+    }
+
+    /**
+     * Compute the directory URL of a link's URL, as Mirror and the
+     * crawler's domain checks do.
+     */
+    @Benchmark
+    public Object directoryURL () {
+        return Link.getDirectoryURL (urls[next ()]);
+    }
+}
@@ -0,0 +1,108 @@
+/*
+ * WebSphinx web-crawling toolkit
+ *
+ * Copyright (c) 1998-2002 Carnegie Mellon University.  All rights
+ * reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in
+ *    the documentation and/or other materials provided with the
+ *    distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY CARNEGIE MELLON UNIVERSITY ``AS IS'' AND
+ * ANY EXPRESSED OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ * THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED.  IN NO EVENT SHALL CARNEGIE MELLON UNIVERSITY
+ * NOR ITS EMPLOYEES BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+
+package websphinx.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import websphinx.HTMLParser;
+import websphinx.Mirror;
+import websphinx.Page;
+
+/**
+ * Mirror.writePage() of a fixture page to a temporary directory.
+ * A Mirror writes each page only once, so every invocation gets
+ * a fresh Mirror over the same directory.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class MirrorBenchmark {
+
+    @Param({ "article.html", "index.html", "tables.html", "messy.html" })
+    public String fixture;
+
+    File dir;
+    Page page;
+    Mirror mirror;
+
+    @Setup(Level.Trial)
+    public void setupTrial () throws Exception {
+        dir = File.createTempFile ("mirror", ".bench");
+        dir.delete ();
+        dir.mkdirs ();
+        page = Fixtures.page (fixture, new HTMLParser ());
+    }
+
+    @Setup(Level.Invocation)
+    public void setupInvocation () throws Exception {
+        mirror = new Mirror (dir.getPath (), "");
+        mirror.mapDir (new URL (Fixtures.BASE), dir.getPath ());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown () {
+        delete (dir);
+    }
+
+    static void delete (File file) {
+        File[] files = file.listFiles ();
+        if (files != null)
+            for (int i=0; i<files.length; ++i)
+                delete (files[i]);
+        file.delete ();
+    }
+
+    @Benchmark
+    public Object writePage () throws IOException {
+        mirror.writePage (page);
+        return mirror;
+    }
+}
@@ -0,0 +1,189 @@
+/*
+ * WebSphinx web-crawling toolkit
+ *
+ * Copyright (c) 1998-2002 Carnegie Mellon University.  All rights
+ * reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in
+ *    the documentation and/or other materials provided with the
+ *    distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY CARNEGIE MELLON UNIVERSITY ``AS IS'' AND
+ * ANY EXPRESSED OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ * THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED.  IN NO EVENT SHALL CARNEGIE MELLON UNIVERSITY
+ * NOR ITS EMPLOYEES BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+
+package websphinx.benchmarks;
+
+import java.net.URL;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import websphinx.HTMLParser;
+import websphinx.JavaRegexp;
+import websphinx.Page;
+import websphinx.Pattern;
+import websphinx.Regexp;
+import websphinx.Region;
+import websphinx.Tagexp;
+import websphinx.Wildcard;
+
+/**
+ * Regexp, JavaRegexp and Tagexp matching over fixture pages, and 
+ * Wildcard matching over the URLs of the corpus's links.  Pattern 
+ * compilation is measured separately from matching.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class PatternBenchmark {
+
+    static final String REGEXP = "[Cc]rawler\\s+(\\w+)";
+    static final String TAGEXP = "<tr>(<td>.*?</td>)+</tr>";
+    static final String LINK_TAGEXP = "<a>.*?</a>";
+    static final String WILDCARD = "http://*.example.{com,org}/*.html";
+
+    @Param({ "article.html", "index.html", "tables.html", "messy.html" })
+    public String fixture;
+
+    Page page;
+    Pattern regexp;
+    Pattern javaRegexp;
+    Pattern tagexp;
+    Pattern linkTagexp;
+    Pattern wildcard;
+    Region[] elements;
+    String[] urls;
+
+    @Setup
+    public void setup () throws Exception {
+        page = Fixtures.page (fixture, new HTMLParser ());
+        page.substringCanonicalTags (page.getStart (), page.getEnd ());
+            // cached by the page; made here, outside the measurement
+        regexp = new Regexp (REGEXP);
+        javaRegexp = new JavaRegexp (REGEXP);
+        tagexp = new Tagexp (TAGEXP);
+        linkTagexp = new Tagexp (LINK_TAGEXP);
+        wildcard = new Wildcard (WILDCARD);
+        elements = page.getElements ();
+
+        URL base = new URL (Fixtures.BASE);
+        String[] hrefs = Fixtures.hrefs ();
+        urls = new String[hrefs.length];
+        for (int i=0; i<hrefs.length; ++i)
+            urls[i] = new URL (base, hrefs[i]).toExternalForm ();
+    }
+
+    @Benchmark
+    public Object regexpAllMatches () {
+        return regexp.allMatches (page);
+    }
+
+    @Benchmark
+    public Object javaRegexpAllMatches () {
+        return javaRegexp.allMatches (page);
+    }
+
+    /**
+     * Match and read every field of every match, which makes 
+     * JavaRegexp create the fields' Regions.
+     */
+    @Benchmark
+    public void javaRegexpFields (Blackhole bh) {
+        Region[] matches = javaRegexp.allMatches (page);
+        for (int i=0; i<matches.length; ++i)
+            bh.consume (matches[i].getField ("0"));
+    }
+
+    @Benchmark
+    public Object tagexpAllMatches () {
+        return tagexp.allMatches (page);
+    }
+
+    @Benchmark
+    public Object linkTagexpAllMatches () {
+        return linkTagexp.allMatches (page);
+    }
+
+    /**
+     * Match a Tagexp in every element of the page, which searches 
+     * part of the page's canonical tags each time.
+     */
+    @Benchmark
+    public void linkTagexpInElements (Blackhole bh) {
+        for (int i=0; i<elements.length; ++i)
+            bh.consume (linkTagexp.allMatches (elements[i]));
+    }
+
+    /**
+     * Match every URL in the corpus against a Wildcard.  Doesn't 
+     * depend on the fixture parameter.
+     */
+    @Benchmark
+    public void wildcardFound (Blackhole bh) {
+        for (int i=0; i<urls.length; ++i)
+            bh.consume (wildcard.found (urls[i]));
+    }
+
+    @Benchmark
+    public Object compileRegexp () {
+        return new Regexp (REGEXP);
+    }
+
+    /**
+     * Make a JavaRegexp, which finds its compiled pattern in the cache.
+     */
+    @Benchmark
+    public Object compileJavaRegexp () {
+        return new JavaRegexp (REGEXP);
+    }
+
+    /**
+     * Make a Tagexp, which is also found in a cache.  Translating a
+     * tagexp to a regular expression is measured by tagexpToRegexp.
+     */
+    @Benchmark
+    public Object compileTagexp () {
+        return new Tagexp (TAGEXP);
+    }
+
+    @Benchmark
+    public Object tagexpToRegexp () {
+        return Tagexp.toRegexp (TAGEXP);
+    }
+
+    @Benchmark
+    public Object compileWildcard () {
+        return new Wildcard (WILDCARD);
+    }
+}
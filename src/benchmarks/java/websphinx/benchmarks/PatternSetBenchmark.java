@@ -0,0 +1,130 @@
+/*
+ * WebSphinx web-crawling toolkit
+ *
+ * Copyright (c) 1998-2002 Carnegie Mellon University.  All rights
+ * reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in
+ *    the documentation and/or other materials provided with the
+ *    distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY CARNEGIE MELLON UNIVERSITY ``AS IS'' AND
+ * ANY EXPRESSED OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ * THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED.  IN NO EVENT SHALL CARNEGIE MELLON UNIVERSITY
+ * NOR ITS EMPLOYEES BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+
+package websphinx.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import websphinx.HTMLParser;
+import websphinx.JavaRegexp;
+import websphinx.Page;
+import websphinx.Pattern;
+import websphinx.PatternSet;
+import websphinx.Regexp;
+
+/**
+ * Testing a fixture page against many patterns, one at a time and
+ * with a PatternSet.  The patterns are typical page classifiers, 
+ * most of which don't match any fixture.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class PatternSetBenchmark {
+
+    static final String[] PATTERNS = {
+        "robots\\.txt", "Disallow:", "<iframe", "javascript:", 
+        "casino", "lorem ipsum", "copyright \\d{4}", "href=\"mailto:([^\"]+)\"",
+        "http://ads\\.", "\\.exe\"", "<form", "password", 
+        "cart\\.php", "utm_source=", "sessionid=\\w+", "\\.pdf\"",
+        "<meta name=\"robots\" content=\"[^\"]*noindex", "application/rss", "onclick=", "document\\.write",
+        "eval\\(", "<object", "<embed", "\\.swf",
+        "404 not found", "access denied", "atom\\+xml", "<base href",
+        "rel=\"canonical\"", "rel=\"next\"", "hreflang", "og:title",
+    };
+
+    @Param({ "article.html", "index.html", "tables.html", "messy.html" })
+    public String fixture;
+
+    @Param({ "8", "32" })
+    public int count;
+
+    @Param({ "JavaRegexp", "Regexp" })
+    public String engine;
+
+    Page page;
+    Pattern[] patterns;
+    PatternSet set;
+
+    @Setup
+    public void setup () throws Exception {
+        page = Fixtures.page (fixture, new HTMLParser ());
+        patterns = new Pattern[count];
+        for (int i=0; i<count; ++i)
+            patterns[i] = engine.equals ("Regexp")
+                ? (Pattern)new Regexp (PATTERNS[i])
+                : (Pattern)new JavaRegexp (PATTERNS[i]);
+        set = new PatternSet (patterns);
+        set.found (page);   // compiles the set's automaton
+    }
+
+    @Benchmark
+    public void eachFound (Blackhole bh) {
+        for (int i=0; i<patterns.length; ++i)
+            bh.consume (patterns[i].found (page));
+    }
+
+    @Benchmark
+    public Object setFound () {
+        return set.found (page);
+    }
+
+    @Benchmark
+    public Object setFoundAny () {
+        return set.foundAny (page);
+    }
+
+    @Benchmark
+    public void eachAllMatches (Blackhole bh) {
+        for (int i=0; i<patterns.length; ++i)
+            bh.consume (patterns[i].allMatches (page));
+    }
+
+    @Benchmark
+    public Object setAllMatches () {
+        return set.allMatches (page);
+    }
+}
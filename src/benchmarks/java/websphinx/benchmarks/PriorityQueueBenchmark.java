@@ -0,0 +1,134 @@
+/*
+ * WebSphinx web-crawling toolkit
+ *
+ * Copyright (c) 1998-2002 Carnegie Mellon University.  All rights
+ * reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in
+ *    the documentation and/or other materials provided with the
+ *    distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY CARNEGIE MELLON UNIVERSITY ``AS IS'' AND
+ * ANY EXPRESSED OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ * THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED.  IN NO EVENT SHALL CARNEGIE MELLON UNIVERSITY
+ * NOR ITS EMPLOYEES BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+
+package websphinx.benchmarks;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import rcm.util.PriorityQueue;
+import rcm.util.Prioritized;
+
+/**
+ * rcm.util.PriorityQueue operations on a queue of a given size.
+ * Each benchmark keeps the queue at its size, so the per-operation
+ * cost can be compared across sizes.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class PriorityQueueBenchmark {
+
+    static final int BATCH = 1000;
+
+    @Param({ "100", "10000", "100000" })
+    public int size;
+
+    PriorityQueue queue;
+    Item[] items;       // items in the queue
+    Item[] spares;      // items out of the queue, ready to put
+    Random random;
+
+    static class Item implements Prioritized {
+        float priority;
+
+        Item (float priority) {
+            this.priority = priority;
+        }
+
+        public float getPriority () {
+            return priority;
+        }
+    }
+
+    @Setup(Level.Iteration)
+    public void setup () {
+        random = new Random (42);
+        queue = new PriorityQueue ();
+        items = new Item[size];
+        for (int i=0; i<size; ++i) {
+            items[i] = new Item (random.nextFloat ());
+            queue.put (items[i]);
+        }
+        spares = new Item[BATCH];
+        for (int i=0; i<BATCH; ++i)
+            spares[i] = new Item (random.nextFloat ());
+    }
+
+    /**
+     * A put followed by a deleteMin, as when a crawler queues a 
+     * link and takes the next one.
+     */
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public Object putDeleteMin () {
+        Object last = null;
+        for (int i=0; i<BATCH; ++i) {
+            Item item = spares[i];
+            item.priority = random.nextFloat ();
+            queue.put (item);
+            spares[i] = (Item)(last = queue.deleteMin ());
+        }
+        return last;
+    }
+
+    /**
+     * Deleting an arbitrary item and putting it back, as when a 
+     * crawler drops a link from its queue.
+     */
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public boolean deletePut () {
+        boolean found = true;
+        for (int i=0; i<BATCH; ++i) {
+            Item item = items[random.nextInt (size)];
+            found &= queue.delete (item);
+            queue.put (item);
+        }
+        return found;
+    }
+}
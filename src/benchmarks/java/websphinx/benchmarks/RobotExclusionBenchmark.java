@@ -0,0 +1,138 @@
+/*
+ * WebSphinx web-crawling toolkit
+ *
+ * Copyright (c) 1998-2002 Carnegie Mellon University.  All rights
+ * reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in
+ *    the documentation and/or other materials provided with the
+ *    distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY CARNEGIE MELLON UNIVERSITY ``AS IS'' AND
+ * ANY EXPRESSED OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ * THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED.  IN NO EVENT SHALL CARNEGIE MELLON UNIVERSITY
+ * NOR ITS EMPLOYEES BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+
+package websphinx.benchmarks;
+
+import java.io.IOException;
+import java.net.URL;
+import java.net.URLConnection;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import websphinx.Access;
+import websphinx.Link;
+import websphinx.RobotExclusion;
+
+/**
+ * RobotExclusion.disallowed() on URLs spread over several Web sites.
+ * Every site's robots.txt is the robots.txt fixture, served without 
+ * touching the network by an Access that answers robots.txt requests
+ * from the classpath.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class RobotExclusionBenchmark {
+
+    static final int SITES = 16;
+
+    static final String[] PATHS = {
+        "/", "/index.html", "/docs/guide/intro.html", "/private/notes.txt",
+        "/cgi-bin/search?q=crawler", "/archive/2001/01/item.html",
+        "/archive/2004/10/item.html", "/tmp/scratch.html", "/~user/home.html",
+        "/search?q=robots", "/images/logo.gif", "/docs/api/websphinx/Crawler.html"
+    };
+
+    RobotExclusion robots;
+    URL[] urls;
+    int next;
+    Access oldAccess;
+
+    static class FixtureAccess extends Access {
+        public URLConnection openConnection (URL url) throws IOException {
+            if (url.getFile ().equals ("/robots.txt")) {
+                URLConnection conn = Fixtures.class.getResource ("/fixtures/robots.txt")
+                    .openConnection ();
+                conn.connect ();
+                return conn;
+            }
+            throw new IOException ("benchmark is offline: " + url);
+        }
+
+        public URLConnection openConnection (Link link) throws IOException {
+            return openConnection (link.getURL ());
+        }
+    }
+
+    @Setup
+    public void setup () throws Exception {
+        oldAccess = Access.getAccess ();
+        Access.setAccess (new FixtureAccess ());
+
+        urls = new URL[SITES * PATHS.length];
+        for (int i=0; i<urls.length; ++i)
+            urls[i] = new URL ("http://host" + (i % SITES) + ".example.com" 
+                               + PATHS[i / SITES]);
+
+        robots = new RobotExclusion ("websphinx-benchmark");
+        for (int i=0; i<urls.length; ++i)
+            robots.disallowed (urls[i]);  // fill the cache
+    }
+
+    @TearDown
+    public void tearDown () {
+        Access.setAccess (oldAccess);
+    }
+
+    /**
+     * Lookup with the site's robots.txt already cached.
+     */
+    @Benchmark
+    public boolean cached () {
+        URL url = urls[next];
+        next = (next + 1) % urls.length;
+        return robots.disallowed (url);
+    }
+
+    /**
+     * Lookup that has to fetch and parse the site's robots.txt.
+     */
+    @Benchmark
+    public boolean uncached () {
+        URL url = urls[next];
+        next = (next + 1) % urls.length;
+        robots.clear ();
+        return robots.disallowed (url);
+    }
+}
@@ -0,0 +1,358 @@
+/*
+ * WebSphinx web-crawling toolkit
+ *
+ * Copyright (c) 1998-2002 Carnegie Mellon University.  All rights
+ * reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in
+ *    the documentation and/or other materials provided with the
+ *    distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY CARNEGIE MELLON UNIVERSITY ``AS IS'' AND
+ * ANY EXPRESSED OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ * THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED.  IN NO EVENT SHALL CARNEGIE MELLON UNIVERSITY
+ * NOR ITS EMPLOYEES BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+
+package websphinx.benchmarks;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Synthetic Web site for crawl benchmarks, served in-process by 
+ * com.sun.net.httpserver on the loopback interface.  The site has 
+ * a fixed number of pages spread round-robin over several hosts
+ * (one server per host, each on its own port).  Every page links to
+ * the next page, so the whole site is reachable from the first 
+ * page, and to a number of other pages chosen at random.  Page 
+ * sizes follow a log-normal distribution; each host answers after
+ * its own latency; and a fraction of the pages fail with 500.
+ * <P>
+ * Pages, links and sizes depend only on the configuration and the
+ * page number, so every run sees the same site.
+ */
+public class SyntheticWeb {
+
+    int pages = 1000;           // number of pages
+    int outDegree = 8;          // links on each page, besides the next page
+    int medianSize = 8192;      // median page size in bytes
+    double sizeSigma = 0.5;     // sigma of log-normal page size (0 for fixed)
+    int[] latency = { 0 };      // per-host latency in ms, round-robin
+    double errorRate = 0.0;     // fraction of pages that fail
+    long seed = 1;
+
+    HttpServer[] servers;
+    ExecutorService executor;
+    String[] roots;             // "http://127.0.0.1:port/" of each host
+
+    // Statistics since the last reset()
+    final AtomicLong requests = new AtomicLong ();
+    final AtomicLong pagesServed = new AtomicLong ();
+    final AtomicLong errors = new AtomicLong ();
+    final AtomicLong bytes = new AtomicLong ();
+    final List<Long> serviceTimes = new ArrayList<Long> ();  // ns
+
+    static final String[] WORDS = (
+        "crawler page link anchor index search robot server host query "
+        + "archive document section table figure caption summary release "
+        + "notes download mirror element attribute entity parser token "
+        + "frontier queue priority depth").split (" ");
+
+    public SyntheticWeb setPages (int pages) {
+        this.pages = pages;
+        return this;
+    }
+
+    public SyntheticWeb setOutDegree (int outDegree) {
+        this.outDegree = outDegree;
+        return this;
+    }
+
+    /**
+     * Set the page size distribution.
+     * @param medianSize median page size in bytes
+     * @param sigma sigma of the log-normal distribution of sizes, or
+     * 0 to make every page the median size
+     */
+    public SyntheticWeb setPageSize (int medianSize, double sigma) {
+        this.medianSize = medianSize;
+        this.sizeSigma = sigma;
+        return this;
+    }
+
+    /**
+     * Set the hosts and their latencies.
+     * @param latency latency of each host in milliseconds; there
+     * are as many hosts as latencies
+     */
+    public SyntheticWeb setHostLatency (int[] latency) {
+        this.latency = (int[])latency.clone ();
+        return this;
+    }
+
+    public SyntheticWeb setErrorRate (double errorRate) {
+        this.errorRate = errorRate;
+        return this;
+    }
+
+    public SyntheticWeb setSeed (long seed) {
+        this.seed = seed;
+        return this;
+    }
+
+    /**
+     * Start the servers.
+     */
+    public void start () throws IOException {
+        // answer without waiting for the client's delayed ACKs
+        System.setProperty ("sun.net.httpserver.nodelay", "true");
+        executor = Executors.newCachedThreadPool ();
+        servers = new HttpServer[latency.length];
+        roots = new String[latency.length];
+        for (int h=0; h<servers.length; ++h) {
+            servers[h] = HttpServer.create (new InetSocketAddress ("127.0.0.1", 0), 256);
+            servers[h].createContext ("/", new Host (h));
+            servers[h].setExecutor (executor);
+            servers[h].start ();
+            roots[h] = "http://127.0.0.1:" + servers[h].getAddress ().getPort () + "/";
+        }
+    }
+
+    /**
+     * Stop the servers.
+     */
+    public void stop () {
+        for (int h=0; h<servers.length; ++h)
+            servers[h].stop (0);
+        executor.shutdownNow ();
+    }
+
+    /**
+     * Get the root URLs of the hosts.
+     */
+    public String[] getRoots () {
+        return (String[])roots.clone ();
+    }
+
+    /**
+     * Get the URL of a page.
+     * @param i page number
+     */
+    public String getURL (int i) {
+        return roots[i % roots.length] + "p/" + i + ".html";
+    }
+
+    /**
+     * Count the pages that fail.
+     */
+    public int countErrorPages () {
+        int n = 0;
+        for (int i=0; i<pages; ++i)
+            if (isError (i))
+                ++n;
+        return n;
+    }
+
+    /**
+     * Clear the statistics.
+     */
+    public void reset () {
+        requests.set (0);
+        pagesServed.set (0);
+        errors.set (0);
+        bytes.set (0);
+        synchronized (serviceTimes) {
+            serviceTimes.clear ();
+        }
+    }
+
+    public long getRequests () {
+        return requests.get ();
+    }
+
+    /**
+     * Get the number of site pages served in full (not counting 
+     * robots.txt, the root page, and failures).
+     */
+    public long getPagesServed () {
+        return pagesServed.get ();
+    }
+
+    public long getErrors () {
+        return errors.get ();
+    }
+
+    public long getBytes () {
+        return bytes.get ();
+    }
+
+    /**
+     * Get the times taken to answer requests since the last reset(),
+     * latency included.
+     * @return service times in nanoseconds, sorted
+     */
+    public long[] getServiceTimes () {
+        long[] times;
+        synchronized (serviceTimes) {
+            times = new long[serviceTimes.size ()];
+            for (int i=0; i<times.length; ++i)
+                times[i] = serviceTimes.get (i).longValue ();
+        }
+        Arrays.sort (times);
+        return times;
+    }
+
+    /*
+     * Site generation
+     */
+
+    /*
+     * Seed for the random choices of one kind about page i.  Seeds
+     * are scrambled, since java.util.Random's first values for nearby
+     * seeds are correlated.
+     */
+    long mix (int kind, int i) {
+        long x = (seed * 1000003 + kind) * 0x9E3779B97F4A7C15L + i;
+        x = (x ^ (x >>> 30)) * 0xBF58476D1CE4E5B9L;
+        x = (x ^ (x >>> 27)) * 0x94D049BB133111EBL;
+        return x ^ (x >>> 31);
+    }
+
+    boolean isError (int i) {
+        return i != 0 && new Random (mix (31, i)).nextDouble () < errorRate;
+    }
+
+    int pageSize (int i) {
+        if (sizeSigma <= 0)
+            return medianSize;
+        double g = new Random (mix (17, i)).nextGaussian ();
+        return (int)Math.max (256, Math.min (medianSize * Math.exp (sizeSigma * g), 
+                                             64 * medianSize));
+    }
+
+    byte[] makePage (int i) {
+        Random random = new Random (mix (13, i));
+        int size = pageSize (i);
+        StringBuilder out = new StringBuilder (size + 256);
+        out.append ("<html><head><title>Page ").append (i)
+           .append ("</title></head>\n<body>\n<h1>Page ").append (i).append ("</h1>\n");
+
+        int[] links = new int[outDegree + 1];
+        links[0] = (i + 1) % pages;
+        for (int k=1; k<links.length; ++k)
+            links[k] = random.nextInt (pages);
+
+        int k = 0;
+        while (out.length () < size - 32 || k < links.length) {
+            out.append ("<p>");
+            for (int w = 8 + random.nextInt (24); w > 0; --w)
+                out.append (WORDS[random.nextInt (WORDS.length)]).append (' ');
+            if (k < links.length) {
+                out.append ("<a href=\"").append (getURL (links[k]))
+                   .append ("\">page ").append (links[k]).append ("</a>");
+                ++k;
+            }
+            out.append ("</p>\n");
+        }
+        out.append ("</body></html>\n");
+
+        byte[] page = new byte[out.length ()];
+        for (int j=0; j<page.length; ++j)
+            page[j] = (byte)out.charAt (j);
+        return page;
+    }
+
+    class Host implements HttpHandler {
+        int host;
+
+        Host (int host) {
+            this.host = host;
+        }
+
+        public void handle (HttpExchange exchange) throws IOException {
+            long start = System.nanoTime ();
+            requests.incrementAndGet ();
+            try {
+                if (latency[host] > 0)
+                    Thread.sleep (latency[host]);
+            } catch (InterruptedException e) {
+                Thread.currentThread ().interrupt ();
+            }
+
+            String path = exchange.getRequestURI ().getPath ();
+            int code = 200;
+            byte[] body;
+            int page = -1;
+            if (path.startsWith ("/p/") && path.endsWith (".html")) {
+                try {
+                    page = Integer.parseInt (path.substring (3, path.length () - 5));
+                } catch (NumberFormatException e) {
+                }
+            }
+
+            if (path.equals ("/robots.txt")) {
+                exchange.getResponseHeaders ().set ("Content-Type", "text/plain");
+                body = "User-agent: *\nDisallow: /private/\n".getBytes ("ISO-8859-1");
+            }
+            else if (path.equals ("/")) {
+                exchange.getResponseHeaders ().set ("Content-Type", "text/html");
+                body = ("<html><body><a href=\"" + getURL (0) 
+                        + "\">start</a></body></html>\n").getBytes ("ISO-8859-1");
+            }
+            else if (page < 0 || page >= pages || page % roots.length != host) {
+                code = 404;
+                body = "not found\n".getBytes ("ISO-8859-1");
+            }
+            else if (isError (page)) {
+                code = 500;
+                body = "synthetic error\n".getBytes ("ISO-8859-1");
+            }
+            else {
+                exchange.getResponseHeaders ().set ("Content-Type", "text/html; charset=iso-8859-1");
+                body = makePage (page);
+                pagesServed.incrementAndGet ();
+            }
+
+            if (code != 200)
+                errors.incrementAndGet ();
+            exchange.sendResponseHeaders (code, body.length);
+            OutputStream out = exchange.getResponseBody ();
+            out.write (body);
+            out.close ();
+            bytes.addAndGet (body.length);
+
+            long elapsed = System.nanoTime () - start;
+            synchronized (serviceTimes) {
+                serviceTimes.add (Long.valueOf (elapsed));
+            }
+        }
+    }
+}
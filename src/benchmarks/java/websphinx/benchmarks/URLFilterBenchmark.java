@@ -0,0 +1,139 @@
+/*
+ * WebSphinx web-crawling toolkit
+ *
+ * Copyright (c) 1998-2002 Carnegie Mellon University.  All rights
+ * reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in
+ *    the documentation and/or other materials provided with the
+ *    distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY CARNEGIE MELLON UNIVERSITY ``AS IS'' AND
+ * ANY EXPRESSED OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ * THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED.  IN NO EVENT SHALL CARNEGIE MELLON UNIVERSITY
+ * NOR ITS EMPLOYEES BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+
+package websphinx.benchmarks;
+import java.net.URL;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import websphinx.URLFilter;
+import websphinx.Wildcard;
+
+/**
+ * Testing the fixtures' links against a crawl scope of many rules, 
+ * with a URLFilter and with a loop over the rules like the crawlers
+ * used to do.  A third of the rules are URL prefixes, a third 
+ * excluded hosts and a third wildcards.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class URLFilterBenchmark {
+
+    @Param({ "3", "30", "300", "3000" })
+    public int rules;
+
+    URL[] urls;
+    String[] absolute;
+    int next;
+
+    URLFilter filter;
+    String[] prefixes;
+    String[] hosts;
+    Wildcard[] wildcards;
+
+    @Setup
+    public void setup () throws Exception {
+        URL base = new URL (Fixtures.BASE);
+        String[] hrefs = Fixtures.hrefs ();
+        urls = new URL[hrefs.length];
+        absolute = new String[hrefs.length];
+        for (int i=0; i<hrefs.length; ++i) {
+            urls[i] = new URL (base, hrefs[i]);
+            absolute[i] = urls[i].toExternalForm ();
+        }
+
+        int n = rules / 3;
+        prefixes = new String[n];
+        hosts = new String[n];
+        wildcards = new Wildcard[n];
+        filter = new URLFilter ();
+        for (int i=0; i<n; ++i) {
+            prefixes[i] = (i == 0) ? Fixtures.BASE : "http://site" + i + ".example.com/docs/";
+            hosts[i] = "tracker" + i + ".example.net";
+            String w = (i == 0) ? "*.pdf" : "http://site" + i + ".example.com/*/print/*";
+            wildcards[i] = new Wildcard (w);
+            filter.includePrefix (prefixes[i]);
+            filter.excludeHost (hosts[i]);
+            filter.excludeWildcard (w);
+        }
+        filter.matches (urls[0]);   // compiles the filter
+    }
+
+    private int next () {
+        int i = next;
+        next = (i + 1) % urls.length;
+        return i;
+    }
+
+    @Benchmark
+    public boolean filterURL () {
+        return filter.matches (urls[next ()]);
+    }
+
+    @Benchmark
+    public boolean filterString () {
+        return filter.matches (absolute[next ()]);
+    }
+
+    /**
+     * Test each rule in turn.
+     */
+    @Benchmark
+    public boolean eachRule () {
+        int i = next ();
+        String url = urls[i].toExternalForm ();
+        String host = urls[i].getHost ().toLowerCase ();
+        for (int j=0; j<hosts.length; ++j)
+            if (host.equals (hosts[j]) || host.endsWith ("." + hosts[j]))
+                return false;
+        for (int j=0; j<wildcards.length; ++j)
+            if (wildcards[j].found (url))
+                return false;
+        for (int j=0; j<prefixes.length; ++j)
+            if (url.startsWith (prefixes[j]))
+                return true;
+        return false;
+    }
+}
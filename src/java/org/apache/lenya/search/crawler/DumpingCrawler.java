@@ -15,13 +15,16 @@
  */
 package org.apache.lenya.search.crawler;
 
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.File;
-import java.io.FileNotFoundException;
+import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.PrintWriter;
 import java.net.MalformedURLException;
 
+import websphinx.Checkpointable;
 import websphinx.Crawler;
 import websphinx.DownloadParameters;
 import websphinx.EventLog;
@@ -29,21 +32,34 @@ import websphinx.Link;
 import websphinx.LinkTransformer;
 import websphinx.Mirror;
 import websphinx.Page;
+import websphinx.URLFilter;
+import websphinx.ValidatorStore;
 
 /**
  * Crawler which creates a dump of a website.
  * In addition to the actual dump, it creates a .meta file which contains the mimetype 
  * and the encoding of the downloaded files.
+ * The mirror and the page count are saved with the crawler's checkpoints, so a 
+ * dump interrupted by a restart can be continued with resume().
+ * With setIncremental(true), the validators of the dumped pages are kept in the 
+ * dump directory, so dumping into the same directory again only downloads and 
+ * rewrites the pages that changed.
  */
-public class DumpingCrawler extends Crawler {
+public class DumpingCrawler extends Crawler implements Checkpointable {
 
     private String[] crawlScopeURLs;
+    private URLFilter scope = new URLFilter();
 
     private String dumpDir;
     private Mirror mirror;
     private int nofPages = 0;
     private int maxPages = 100;
     private PrintWriter meta;
+    private boolean appendMeta = false;
+    
+    private static final String CHECKPOINT_FILE = "dumper";
+    
+    private static final String VALIDATORS_FILE = ".validators";
     
     /**
      * Specify types of links which should be followed.
@@ -55,9 +71,8 @@ public class DumpingCrawler extends Crawler {
      * @param crawlStartURL
      * @param crawlScopeURL
      * @param dumpDir
-     * @throws FileNotFoundException
      */
-    public DumpingCrawler(String crawlStartURL, String crawlScopeURL, String dumpDir) throws FileNotFoundException {
+    public DumpingCrawler(String crawlStartURL, String crawlScopeURL, String dumpDir) {
         this(crawlStartURL, makeArray(crawlScopeURL), dumpDir);
     }
     
@@ -85,9 +100,8 @@ public class DumpingCrawler extends Crawler {
      * @param dumpDir  
      *          The directory in the filesystem where the dumped files will be stored.
      *          Does not have to exist yet, it will be created by the crawler.
-     * @throws FileNotFoundException 
      */
-    public DumpingCrawler(String crawlStartURL, String[] crawlScopeURLs, String dumpDir) throws FileNotFoundException {
+    public DumpingCrawler(String crawlStartURL, String[] crawlScopeURLs, String dumpDir) {
         try {
             this.setRoot(new Link(crawlStartURL));
         } catch (MalformedURLException e) {
@@ -102,6 +116,7 @@ public class DumpingCrawler extends Crawler {
             if (!this.crawlScopeURLs[i].endsWith("/")) {
                 this.crawlScopeURLs[i] = this.crawlScopeURLs[i] + "/";
             }
+            this.scope.includePrefix(this.crawlScopeURLs[i]);
         }
         this.dumpDir = dumpDir;
         this.setSynchronous(true);
@@ -118,7 +133,90 @@ public class DumpingCrawler extends Crawler {
                     + ": " + e, e);
         }
         new File(dumpDir).mkdirs();
-        this.meta = new PrintWriter(new FileOutputStream(this.dumpDir + File.separator + ".meta"));
+        addCheckpointable(this.mirror);
+        addCheckpointable(this);
+    }
+
+    /**
+     * Opens the .meta file on first use, so that a resumed crawl appends to it 
+     * instead of overwriting it.
+     */
+    private synchronized PrintWriter getMeta() throws IOException {
+        if (this.meta == null) {
+            this.meta = new PrintWriter(new FileOutputStream(this.dumpDir + File.separator + ".meta", 
+                    this.appendMeta));
+        }
+        return this.meta;
+    }
+
+    /**
+     * Tells whether the dump is incremental.
+     * @return true if the validators of the dumped pages are kept in the dump directory
+     */
+    public boolean isIncremental() {
+        return getValidatorStore() != null;
+    }
+
+    /**
+     * Sets whether the dump is incremental: if so, the validators of the dumped pages
+     * are kept in the dump directory (in the file .validators), and a dump into a 
+     * directory holding an earlier dump only downloads and rewrites the pages that 
+     * changed. Default is false.
+     * @param incremental
+     * @throws IOException if the validators saved by an earlier dump can't be read
+     */
+    public void setIncremental(boolean incremental) throws IOException {
+        if (incremental == isIncremental()) {
+            return;
+        }
+        if (incremental) {
+            this.setValidatorStore(new ValidatorStore(new File(this.dumpDir, VALIDATORS_FILE)));
+        } else {
+            this.setValidatorStore(null);
+        }
+    }
+
+    /**
+     * Saves the page count and the validators, and flushes the .meta file.
+     * @see websphinx.Checkpointable#checkpoint(java.io.File, boolean)
+     */
+    public void checkpoint(File dir, boolean append) throws IOException {
+        synchronized (this) {
+            if (this.meta != null) {
+                this.meta.flush();
+            }
+        }
+        // the validators go with the dump, not the checkpoint, but are saved 
+        // now so that they match the mirror if the crawl is interrupted
+        ValidatorStore validators = getValidatorStore();
+        if (validators != null) {
+            validators.save();
+        }
+        DataOutputStream out = new DataOutputStream(new FileOutputStream(new File(dir, CHECKPOINT_FILE)));
+        try {
+            out.writeInt(this.nofPages);
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * Restores the page count; the .meta file will be appended to.
+     * @see websphinx.Checkpointable#restore(java.io.File)
+     */
+    public void restore(File dir) throws IOException {
+        synchronized (this) {
+            this.appendMeta = true;
+        }
+        File file = new File(dir, CHECKPOINT_FILE);
+        if (file.exists()) {
+            DataInputStream in = new DataInputStream(new FileInputStream(file));
+            try {
+                this.nofPages = in.readInt();
+            } finally {
+                in.close();
+            }
+        }
     }
 
     /**
@@ -127,25 +225,53 @@ public class DumpingCrawler extends Crawler {
     public void visit(Page page) {
         try {
             mirror.writePage(page);
-            
-            // write mimetype and encoding into meta file:
-            File file = page.getLocalFile();
-            if (file != null) {
-                String path = file.getCanonicalPath();
-                String rootPath = new File(this.dumpDir).getCanonicalPath();
-                String relPath = path.substring(rootPath.length()+1);
-                String output = relPath + "," + page.getMimeType();
-                if (page.getContentEncoding() != null) {
-                    output += "," + page.getContentEncoding();
-                }
-                if (page.getMimeType() != null) {
-                    this.meta.println(output);
+            writeMeta(page);
+            page.discardContent();
+
+        } catch (IOException e) {
+            throw new RuntimeException("Could not save page: url=" + page.getURL() + ": " + e, e);
+        }
+    }
+    
+    /**
+     * Keeps the file dumped by an earlier crawl, if it is still there.
+     * @see websphinx.Crawler#unchanged(websphinx.Page)
+     */
+    public void unchanged(Page page) {
+        try {
+            if (!this.mirror.keepPage(page)) {
+                if (page.isNotModified()) {
+                    // the dumped file is gone and there is no content to write it again, 
+                    // so download the page in full next time
+                    getValidatorStore().remove(page.getURL());
+                    return;
                 }
+                this.mirror.writePage(page);
             }
+            writeMeta(page);
             page.discardContent();
 
         } catch (IOException e) {
-            throw new RuntimeException("Could not save page: url=" + page.getURL() + ": " + e, e);
+            throw new RuntimeException("Could not keep page: url=" + page.getURL() + ": " + e, e);
+        }
+    }
+    
+    /**
+     * Writes mimetype and encoding of a dumped page into the meta file.
+     */
+    private void writeMeta(Page page) throws IOException {
+        File file = page.getLocalFile();
+        if (file != null) {
+            String path = file.getCanonicalPath();
+            String rootPath = new File(this.dumpDir).getCanonicalPath();
+            String relPath = path.substring(rootPath.length()+1);
+            String output = relPath + "," + page.getMimeType();
+            if (page.getContentEncoding() != null) {
+                output += "," + page.getContentEncoding();
+            }
+            if (page.getMimeType() != null) {
+                getMeta().println(output);
+            }
         }
     }
     
@@ -175,11 +301,9 @@ public class DumpingCrawler extends Crawler {
      * @see websphinx.Crawler#shouldVisit(websphinx.Link)
      */
     public boolean shouldVisit(Link link) {
-        for (int i=0; i<this.crawlScopeURLs.length; i++) {
-            if (link.getURL().toString().startsWith(this.crawlScopeURLs[i]) && this.nofPages < this.maxPages) {
-                this.nofPages ++;
-                return super.shouldVisit(link);
-            }
+        if (this.scope.shouldVisit(link) && this.nofPages < this.maxPages) {
+            this.nofPages ++;
+            return super.shouldVisit(link);
         }
         return false;
     }
@@ -190,8 +314,10 @@ public class DumpingCrawler extends Crawler {
         } catch (IOException e) {
             throw new RuntimeException("Could not close mirror: " + e, e);
         }
-        this.meta.flush();
-        this.meta.close();
+        if (this.meta != null) {
+            this.meta.flush();
+            this.meta.close();
+        }
     }
     
     public static void main(String[] args) throws Exception {
@@ -210,7 +336,18 @@ public class DumpingCrawler extends Crawler {
         crawler.addCrawlListener(eventLog);
         crawler.addLinkListener(eventLog);
         
-        crawler.run();
+        if (args.length > 5) {
+            // optional checkpoint directory: continue the crawl saved there, if any
+            File checkpointDir = new File(args[5]);
+            if (Crawler.hasCheckpoint(checkpointDir)) {
+                crawler.resume(checkpointDir);
+            } else {
+                crawler.setCheckpointDirectory(checkpointDir);
+                crawler.run();
+            }
+        } else {
+            crawler.run();
+        }
         crawler.close();
     }
 
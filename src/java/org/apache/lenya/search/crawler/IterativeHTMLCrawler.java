@@ -20,9 +20,11 @@
 
 package org.apache.lenya.search.crawler;
 
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.net.HttpURLConnection;
 import java.net.MalformedURLException;
 import java.net.URL;
@@ -30,7 +32,12 @@ import java.net.UnknownHostException;
 import java.util.List;
 import java.util.StringTokenizer;
 
+import websphinx.AsyncAccess;
+import websphinx.DownloadParameters;
+import websphinx.FetchResult;
+import websphinx.Link;
 import websphinx.RobotExclusion;
+import websphinx.URLFilter;
 
 import org.apache.log4j.Logger;
 
@@ -46,8 +53,11 @@ public class IterativeHTMLCrawler {
     String url_list_file = "url_file.txt";
     String html_dump_directory = "html_dump";
     private String rootURL;
-    private String[] scopeURL;
+    private URLFilter scopeFilter;
     private RobotExclusion robot;
+    private AsyncAccess access = new AsyncAccess();
+    private DownloadParameters downloadParameters =
+        DownloadParameters.NO_LIMITS.changeUserAgent("Lenya Lucene Crawler");
 
     /**
      * Command line interface
@@ -119,63 +129,72 @@ public class IterativeHTMLCrawler {
      * @param scope Limit crawling to this scope
      */
     public void crawl(URL start, String scope) {
-        scopeURL = new String[1];
-        scopeURL[0] = scope;
+        scopeFilter = new URLFilter();
+        scopeFilter.includePrefix(scope);
 
-        String seedURL = start.toString();
-        this.rootURL = seedURL.substring(0, seedURL.indexOf("/", 8));
+        try {
+            String seedURL = start.toString();
+            this.rootURL = seedURL.substring(0, seedURL.indexOf("/", 8));
 
-        urlsToCrawl = new java.util.Vector();
-        urlsToCrawlLowerCase = new java.util.TreeSet();
+            urlsToCrawl = new java.util.Vector();
+            urlsToCrawlLowerCase = new java.util.TreeSet();
 
-        String currentURLPath = start.toString().substring(0, start.toString().lastIndexOf("/"));
+            String currentURLPath = start.toString().substring(0, start.toString().lastIndexOf("/"));
 
-        try {
-            log.info("Start crawling at: " + start);
+            try {
+                log.info("Start crawling at: " + start);
 
-            if (addURL(start.getFile(), currentURLPath) != null) {
-                dumpHTDoc(start);
-            } else {
-                log.warn("Start URL has not been dumped: " + start);
+                if (addURL(start.getFile(), currentURLPath) != null) {
+                    if (start.getQuery() != null) {
+                        // dumped, but not crawled
+                        dumpHTDoc(start);
+                    }
+                } else {
+                    log.warn("Start URL has not been dumped: " + start);
+                }
+            } catch (MalformedURLException e) {
+                log.error("Malformed URL: ", e);
             }
-        } catch (MalformedURLException e) {
-            log.error("Malformed URL: ", e);
-        }
 
-        int currentPosition = 0;
+            int currentPosition = 0;
 
-        while (currentPosition < urlsToCrawl.size()) {
-            URL currentURL = (URL) urlsToCrawl.elementAt(currentPosition);
-            currentURLPath = currentURL.toString().substring(0, currentURL.toString().lastIndexOf("/"));
+            while (currentPosition < urlsToCrawl.size()) {
+                URL currentURL = (URL) urlsToCrawl.elementAt(currentPosition);
+                currentURLPath = currentURL.toString().substring(0, currentURL.toString().lastIndexOf("/"));
 
-            log.info("INFO: Current Array Size: " + urlsToCrawl.size() + ", Current Position: " + currentPosition + ", Current URL: " + currentURL.toString());
+                log.info("INFO: Current Array Size: " + urlsToCrawl.size() + ", Current Position: " + currentPosition + ", Current URL: " + currentURL.toString());
 
 
-            java.util.List urlsWithinPage = parsePage(currentURL.toString());
+                java.util.List urlsWithinPage = crawlPage(currentURL);
 
-            if (urlsWithinPage != null) {
-                java.util.Iterator iterator = urlsWithinPage.iterator();
+                if (urlsWithinPage != null) {
+                    java.util.Iterator iterator = urlsWithinPage.iterator();
 
-                while (iterator.hasNext()) {
-                    String urlCandidate = (String) iterator.next();
+                    while (iterator.hasNext()) {
+                        String urlCandidate = (String) iterator.next();
 
-                    try {
-                        URL urlToCrawl = null;
+                        try {
+                            URL urlToCrawl = null;
 
-                        if ((urlToCrawl = addURL(urlCandidate, currentURLPath)) != null) {
-                            dumpHTDoc(urlToCrawl);
+                            if ((urlToCrawl = addURL(urlCandidate, currentURLPath)) != null && urlToCrawl.getQuery() != null) {
+                                // dumped, but not crawled
+                                dumpHTDoc(urlToCrawl);
+                            }
+                        } catch (MalformedURLException e) {
+                            log.warn(e + " " + urlCandidate);
                         }
-                    } catch (MalformedURLException e) {
-                        log.warn(e + " " + urlCandidate);
                     }
                 }
+
+                currentPosition = currentPosition + 1;
             }
 
-            currentPosition = currentPosition + 1;
+            log.info("Stop crawling at: " + urlsToCrawl.elementAt(urlsToCrawl.size()-1));
+            log.info("Connection pool: " + this.access.getConnectionPool());
+        } finally {
+            this.access.close();
         }
 
-        log.info("Stop crawling at: " + urlsToCrawl.elementAt(urlsToCrawl.size()-1));
-
 
 
         // Write all crawled URLs into file
@@ -243,30 +262,7 @@ public class IterativeHTMLCrawler {
 
         try {
             URL currentURL = new java.net.URL(urlString);
-            //String currentURLPath = urlString.substring(0, urlString.lastIndexOf("/"));
-            HttpURLConnection httpCon = (HttpURLConnection) currentURL.openConnection();
-
-            httpCon.setRequestProperty("User-Agent", "Lenya Lucene Crawler");
-
-            httpCon.connect();
-
-            //long lastModified = httpCon.getLastModified();
-
-            if (httpCon.getResponseCode() == HttpURLConnection.HTTP_OK) {
-                String contentType = httpCon.getContentType();
-
-                if (contentType.indexOf("text/html") != -1) {
-                    return handleHTML(httpCon);
-                } else if (contentType.indexOf("application/pdf") != -1) {
-                    handlePDF(httpCon);
-                } else {
-                    //status = "Not an excepted content type : " + contentType;
-                }
-            } else {
-                //status = "bad";
-            }
-
-            httpCon.disconnect();
+            return parsePage(fetch(currentURL));
         } catch (MalformedURLException mue) {
             log.debug("status=" + mue);
         } catch (UnknownHostException uh) {
@@ -279,6 +275,82 @@ public class IterativeHTMLCrawler {
         return null;
     }
 
+    /**
+     * Parse a downloaded page for links
+     *
+     * @param result Response to the download
+     *
+     * @return Links, or null if the page is not HTML or may not be followed
+     */
+    private List parsePage(FetchResult result) {
+        if (result.getResponseCode() == HttpURLConnection.HTTP_OK) {
+            String contentType = result.getContentType();
+
+            if (contentType.indexOf("text/html") != -1) {
+                return handleHTML(new ByteArrayInputStream(result.getContent()));
+            } else if (contentType.indexOf("application/pdf") != -1) {
+                log.debug(".parsePage(): PDF not handled yet!");
+            } else {
+                //status = "Not an excepted content type : " + contentType;
+            }
+        } else {
+            //status = "bad";
+        }
+        return null;
+    }
+
+    /**
+     * Download a page once, then dump it and parse it for links
+     *
+     * @param url URL of the page
+     *
+     * @return Links, or null if the page could not be downloaded or parsed
+     */
+    private List crawlPage(URL url) {
+        FetchResult result;
+        try {
+            result = fetch(url);
+        } catch (IOException e) {
+            log.error("" + e);
+            log.error("URL not dumped: " + url);
+            return null;
+        }
+
+        File file = getDumpFile(url);
+        if (file != null) {
+            try {
+                dumpHTDoc(url, file, result);
+            } catch (Exception e) {
+                log.error("" + e);
+                log.error("URL not dumped: " + url);
+            }
+        } else {
+            log.info("URL not dumped: " + url);
+        }
+
+        try {
+            return parsePage(result);
+        } catch (Exception e) {
+            log.debug("status=" + e); // Mark as a bad URL
+            return null;
+        }
+    }
+
+    /**
+     * Download a URL, reusing a pooled connection to its server if possible
+     *
+     * @param url URL to download
+     *
+     * @return Response
+     *
+     * @throws IOException if the download fails
+     */
+    private FetchResult fetch(URL url) throws IOException {
+        Link link = new Link(url);
+        link.setDownloadParameters(this.downloadParameters);
+        return this.access.fetch(link).get();
+    }
+
     /**
      * DOCUMENT ME!
      *
@@ -290,8 +362,19 @@ public class IterativeHTMLCrawler {
      */
     public static java.util.List handleHTML(HttpURLConnection httpCon)
         throws java.io.IOException {
+        return handleHTML(httpCon.getInputStream());
+    }
+
+    /**
+     * Parse HTML for links
+     *
+     * @param in HTML content
+     *
+     * @return Links, or null if the page may not be followed
+     */
+    public static java.util.List handleHTML(InputStream in) {
         ContentHandler handler = new HTMLHandler();
-        handler.parse(httpCon.getInputStream());
+        handler.parse(in);
 
         if (handler.getRobotFollow()) {
             java.util.List links = handler.getLinks();
@@ -426,13 +509,7 @@ public class IterativeHTMLCrawler {
      * @return DOCUMENT ME!
      */
     public boolean inScope(String url) {
-        for (int i = 0; i < scopeURL.length; i++) {
-            if (url.startsWith(scopeURL[i])) {
-                return true;
-            }
-        }
-
-        return false;
+        return scopeFilter.matches(url);
     }
 
     /**
@@ -455,6 +532,28 @@ public class IterativeHTMLCrawler {
      * @param url DOCUMENT ME!
      */
     public void dumpHTDoc(URL url) {
+        File file = getDumpFile(url);
+
+        if (file != null) {
+            try {
+                dumpHTDoc(url, file, fetch(url));
+            } catch (Exception e) {
+                log.error("" + e);
+                log.error("URL not dumped: " + url);
+            }
+        } else {
+            log.info("URL not dumped: " + url);
+        }
+    }
+
+    /**
+     * Get the file a URL is dumped to
+     *
+     * @param url URL to dump
+     *
+     * @return File, or null if URLs of this type are not dumped
+     */
+    private File getDumpFile(URL url) {
         String ext = getExtension(url);
 
         String filename = html_dump_directory + url.getFile();
@@ -466,50 +565,36 @@ public class IterativeHTMLCrawler {
         }
 
         if (ext != null && (ext.equals("html") || ext.equals("htm") || ext.equals("txt") || ext.equals("pdf"))) {
-            try {
-                File parent = new File(file.getParent());
-
-                if (!parent.exists()) {
-                    parent.mkdirs();
-                }
-
-                HttpURLConnection httpConnection = (HttpURLConnection) url.openConnection();
-                java.io.InputStream in = httpConnection.getInputStream();
-
-		FileOutputStream out = new FileOutputStream(file);
-                byte[] buffer = new byte[1024];
-                int bytesRead = -1;
-                while ((bytesRead = in.read(buffer)) >= 0) {
-                    out.write(buffer, 0, bytesRead);
-                }
-                out.close();
-
-/*
-                BufferedInputStream bin = new BufferedInputStream(in);
-                BufferedReader reader = new BufferedReader(new InputStreamReader(bin));
+            return file;
+        }
+        return null;
+    }
 
-                java.io.FileWriter fw = new java.io.FileWriter(file);
-                int i;
+    /**
+     * Write a downloaded page to its dump file
+     *
+     * @param url URL of the page
+     * @param file Dump file
+     * @param result Response to the download
+     *
+     * @throws IOException if the download failed or the file cannot be written
+     */
+    private void dumpHTDoc(URL url, File file, FetchResult result) throws IOException {
+        if (result.getResponseCode() >= 400) {
+            throw new IOException(result.getResponseCode() + " " + result.getResponseMessage());
+        }
 
-                while ((i = reader.read()) != -1) {
-                    fw.write(i);
-                }
+        File parent = new File(file.getParent());
 
-                fw.close();
+        if (!parent.exists()) {
+            parent.mkdirs();
+        }
 
-                bin.close();
-*/
-                in.close();
-                httpConnection.disconnect();
+        FileOutputStream out = new FileOutputStream(file);
+        out.write(result.getContent());
+        out.close();
 
-                log.info("URL dumped: " + url + " (" + file + ")");
-            } catch (Exception e) {
-                log.error("" + e);
-                log.error("URL not dumped: " + url);
-            }
-        } else {
-            log.info("URL not dumped: " + url);
-        }
+        log.info("URL dumped: " + url + " (" + file + ")");
     }
 
     /**
@@ -0,0 +1,163 @@
+/*
+ * Copyright (c) 1998-2002 Carnegie Mellon University.  All rights
+ * reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in
+ *    the documentation and/or other materials provided with the
+ *    distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY CARNEGIE MELLON UNIVERSITY ``AS IS'' AND
+ * ANY EXPRESSED OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ * THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED.  IN NO EVENT SHALL CARNEGIE MELLON UNIVERSITY
+ * NOR ITS EMPLOYEES BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+
+
+package rcm.util;
+
+/**
+ * First-in, first-out queue with a limited capacity.  put() waits
+ * while the queue is full and take() waits while it is empty, so a
+ * producer that outruns its consumer is held back.  Once the queue
+ * is closed, put() and take() stop waiting, and every item is either
+ * returned by close() or refused by put().
+ */
+public class BoundedQueue {
+
+    Object[] items;
+    int head = 0;       // index of oldest item
+    int count = 0;      // number of items in queue
+    int capacity;
+    boolean closed = false;
+
+    /**
+     * Make a BoundedQueue.
+     * @param capacity maximum number of items in the queue (at least 1)
+     */
+    public BoundedQueue (int capacity) {
+        if (capacity < 1)
+            throw new IllegalArgumentException ("capacity must be at least 1");
+        this.capacity = capacity;
+        items = new Object[capacity];
+    }
+
+    /**
+     * Add an item to the tail of the queue, waiting until there is room.
+     * @param item item to add
+     * @return true if the item was added, false if the queue is closed
+     * @exception InterruptedException if the calling thread is
+     * interrupted while waiting; the item is not added
+     */
+    public synchronized boolean put (Object item) throws InterruptedException {
+        while (count >= capacity && !closed)
+            wait ();
+        if (closed)
+            return false;
+        if (count == items.length)
+            grow ();
+        items[(head + count) % items.length] = item;
+        ++count;
+        notifyAll ();
+        return true;
+    }
+
+    /**
+     * Remove the item at the head of the queue, waiting until there
+     * is one.
+     * @return oldest item in the queue, or null if the queue is closed
+     * @exception InterruptedException if the calling thread is
+     * interrupted while waiting; no item is removed
+     */
+    public synchronized Object take () throws InterruptedException {
+        while (count == 0 && !closed)
+            wait ();
+        if (closed)
+            return null;
+        Object item = items[head];
+        items[head] = null;
+        head = (head + 1) % items.length;
+        --count;
+        notifyAll ();
+        return item;
+    }
+
+    /**
+     * Close the queue, removing all its items.  Threads waiting in
+     * put() or take() are woken up.
+     * @return items that were in the queue, oldest first
+     */
+    public synchronized Object[] close () {
+        closed = true;
+        Object[] result = new Object[count];
+        for (int i=0; i<count; ++i) {
+            int j = (head + i) % items.length;
+            result[i] = items[j];
+            items[j] = null;
+        }
+        head = 0;
+        count = 0;
+        notifyAll ();
+        return result;
+    }
+
+    /**
+     * Test whether the queue is closed.
+     * @return true if close() has been called
+     */
+    public synchronized boolean isClosed () {
+        return closed;
+    }
+
+    /**
+     * Get number of items in the queue.
+     * @return number of items that take() could remove without waiting
+     */
+    public synchronized int size () {
+        return count;
+    }
+
+    /**
+     * Get capacity of the queue.
+     * @return maximum number of items in the queue
+     */
+    public synchronized int getCapacity () {
+        return capacity;
+    }
+
+    /**
+     * Set capacity of the queue.  Items already in the queue are kept
+     * even if there are more of them than the new capacity; put()
+     * waits until the queue has drained below it.
+     * @param capacity maximum number of items in the queue (at least 1)
+     */
+    public synchronized void setCapacity (int capacity) {
+        if (capacity < 1)
+            throw new IllegalArgumentException ("capacity must be at least 1");
+        this.capacity = capacity;
+        notifyAll ();
+    }
+
+    void grow () {
+        Object[] newItems = new Object[Math.max (capacity, items.length * 2)];
+        for (int i=0; i<count; ++i)
+            newItems[i] = items[(head + i) % items.length];
+        items = newItems;
+        head = 0;
+    }
+}
@@ -0,0 +1,424 @@
+/*
+ * Copyright (c) 1998-2002 Carnegie Mellon University.  All rights
+ * reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in
+ *    the documentation and/or other materials provided with the
+ *    distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY CARNEGIE MELLON UNIVERSITY ``AS IS'' AND
+ * ANY EXPRESSED OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ * THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED.  IN NO EVENT SHALL CARNEGIE MELLON UNIVERSITY
+ * NOR ITS EMPLOYEES BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+
+package rcm.util;
+
+import java.util.Enumeration;
+import java.util.NoSuchElementException;
+
+/**
+ * Indexed priority queue.  Like PriorityQueue, objects stored in the
+ * queue must implement the Prioritized interface, and the object with
+ * the lowest priority comes out first.  Unlike PriorityQueue, the queue
+ * keeps an index from each object to its position in the heap, so
+ * delete() and update() run in O(log n) time instead of scanning the
+ * whole queue.
+ * <P>
+ * Objects are indexed by identity (==), not by equals().  An object can
+ * be stored in the queue at most once; putting an object that is already
+ * in the queue just moves it to the position its current priority
+ * calls for.
+ */
+public class IndexedPriorityQueue {
+
+    private Object[] heap;     // heap of elements, heap[0] has lowest priority
+    private float[] priority;  // priority of heap[i] when it was last placed
+    private int size;
+
+    // open-addressing identity map from element to its index in heap[]
+    private Object[] keys;
+    private int[] slots;
+    private int mask;
+
+    static final int DEFAULT_CAPACITY = 16;
+
+    /**
+     * Make an empty IndexedPriorityQueue.
+     */
+    public IndexedPriorityQueue () {
+        this (DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Make an empty IndexedPriorityQueue with an initial capacity.
+     * @param initialCapacity number of elements initially allocated in queue
+     */
+    public IndexedPriorityQueue (int initialCapacity) {
+        int n = Math.max (initialCapacity, 1);
+        heap = new Object[n];
+        priority = new float[n];
+        allocateIndex (n);
+    }
+
+    /**
+     * Put an object on the queue.  If the object is already in the
+     * queue, it is repositioned according to its current priority.
+     * @param x object to put on the queue 
+     */
+    public synchronized void put (Prioritized x) {
+        int i = indexOf (x);
+        if (i != -1) {
+            reposition (i, x.getPriority ());
+            return;
+        }
+
+        if (size == heap.length)
+            grow ();
+        i = size++;
+        heap[i] = x;
+        priority[i] = x.getPriority ();
+        indexPut (x, i);
+        siftUp (i);
+    }
+
+    /**
+     * Get object with lowest priority from queue.
+     * @return object with lowest priority, or null if queue is empty
+     */
+    public synchronized Object getMin () {
+        return size > 0 ? heap[0] : null;
+    }
+
+    /**
+     * Get and delete the object with lowest priority.
+     * @return object with lowest priority, or null if queue is empty
+     */
+    public synchronized Object deleteMin () {
+        if (size == 0)
+            return null;
+        Object obj = heap[0];
+        deleteElement (0);
+        return obj;
+    }
+
+    /**
+     * Delete an object from queue.
+     * @param x object to delete
+     * @return true if x was found and deleted, false if x not found in queue
+     */
+    public synchronized boolean delete (Prioritized x) {
+        int i = indexOf (x);
+        if (i == -1)
+            return false;
+        deleteElement (i);
+        return true;
+    }
+
+    /**
+     * Test whether an object is in the queue.
+     * @param x object to look for
+     * @return true iff x is in the queue
+     */
+    public synchronized boolean contains (Prioritized x) {
+        return indexOf (x) != -1;
+    }
+
+    /**
+     * Reposition an object whose priority has changed since it was
+     * put on the queue.  Handles both decreases and increases of the
+     * priority.
+     * @param x object whose priority changed
+     * @return true if x was found in the queue, false if not
+     */
+    public synchronized boolean update (Prioritized x) {
+        int i = indexOf (x);
+        if (i == -1)
+            return false;
+        reposition (i, x.getPriority ());
+        return true;
+    }
+
+    /**
+     * Rebuild the queue in case the priorities of many of its elements
+     * have changed since they were inserted.  For a single element,
+     * update(Prioritized) is cheaper.
+     */
+    public synchronized void update () {
+        for (int i=0; i<size; ++i)
+            priority[i] = ((Prioritized)heap[i]).getPriority ();
+        for (int i = (size/2) - 1; i >= 0; --i)
+            siftDown (i);
+    }
+
+    /**
+     * Remove all objects from queue.
+     */
+    public synchronized void clear () {
+        for (int i=0; i<size; ++i)
+            heap[i] = null;
+        size = 0;
+        for (int i=0; i<keys.length; ++i)
+            keys[i] = null;
+    }
+
+    /**
+     * Enumerate the objects in the queue, in no particular order.
+     * The enumeration works on a snapshot of the queue, so the queue
+     * may be modified while it is being enumerated.
+     * @return enumeration of objects in queue
+     */
+    public synchronized Enumeration elements () {
+        final Object[] snapshot = new Object[size];
+        System.arraycopy (heap, 0, snapshot, 0, size);
+        return new Enumeration () {
+            int i = 0;
+
+            public boolean hasMoreElements () {
+                return i < snapshot.length;
+            }
+
+            public Object nextElement () {
+                if (i >= snapshot.length)
+                    throw new NoSuchElementException ();
+                return snapshot[i++];
+            }
+        };
+    }
+
+    /**
+     * Get number of objects in queue.
+     * @return number of objects
+     */
+    public synchronized int size () {
+        return size;
+    }
+
+    /**
+     * Test whether queue is empty.
+     * @return true iff queue is empty.
+     */
+    public synchronized boolean empty () {
+        return size == 0;
+    }
+
+    /*
+     * Heap maintenance
+     */
+
+    final void deleteElement (int i) {
+        Object x = heap[i];
+        indexRemove (x);
+
+        int last = --size;
+        if (i != last) {
+            heap[i] = heap[last];
+            priority[i] = priority[last];
+            indexPut (heap[i], i);
+        }
+        heap[last] = null;    // avoid holding extra reference
+
+        if (i != last) {
+            if (i > 0 && priority[i] < priority[(i-1)/2])
+                siftUp (i);
+            else
+                siftDown (i);
+        }
+    }
+
+    final void reposition (int i, float newPriority) {
+        float oldPriority = priority[i];
+        priority[i] = newPriority;
+        if (newPriority < oldPriority)
+            siftUp (i);
+        else if (newPriority > oldPriority)
+            siftDown (i);
+    }
+
+    // Moves heap[i] up toward the root until its parent has lower priority.
+    final void siftUp (int i) {
+        Object x = heap[i];
+        float px = priority[i];
+        while (i > 0) {
+            int p = (i-1)/2;
+            if (priority[p] <= px)
+                break;
+            heap[i] = heap[p];
+            priority[i] = priority[p];
+            indexPut (heap[i], i);
+            i = p;
+        }
+        heap[i] = x;
+        priority[i] = px;
+        indexPut (x, i);
+    }
+
+    // Establishes the heap property at i's descendents.
+    final void siftDown (int i) {
+        Object x = heap[i];
+        float px = priority[i];
+        int half = size/2;
+        while (i < half) {
+            int c = 2*i + 1;  // left child of i
+            int r = c + 1;    // right child of i
+            if (r < size && priority[r] < priority[c])
+                c = r;
+            if (px <= priority[c])
+                break;
+            heap[i] = heap[c];
+            priority[i] = priority[c];
+            indexPut (heap[i], i);
+            i = c;
+        }
+        heap[i] = x;
+        priority[i] = px;
+        indexPut (x, i);
+    }
+
+    final void grow () {
+        int n = heap.length * 2;
+        Object[] newheap = new Object[n];
+        System.arraycopy (heap, 0, newheap, 0, size);
+        heap = newheap;
+        float[] newpriority = new float[n];
+        System.arraycopy (priority, 0, newpriority, 0, size);
+        priority = newpriority;
+
+        // rebuild the index at the new capacity
+        allocateIndex (n);
+        for (int i=0; i<size; ++i)
+            indexPut (heap[i], i);
+    }
+
+    /*
+     * Identity index (linear probing, kept at most half full)
+     */
+
+    final void allocateIndex (int capacity) {
+        int n = 2;
+        while (n < capacity * 2)
+            n <<= 1;
+        keys = new Object[n];
+        slots = new int[n];
+        mask = n - 1;
+    }
+
+    final int hash (Object x) {
+        int h = System.identityHashCode (x);
+        h ^= (h >>> 16);
+        h *= 0x85ebca6b;
+        h ^= (h >>> 13);
+        return h & mask;
+    }
+
+    final int indexOf (Object x) {
+        for (int k = hash (x); keys[k] != null; k = (k+1) & mask)
+            if (keys[k] == x)
+                return slots[k];
+        return -1;
+    }
+
+    final void indexPut (Object x, int i) {
+        int k = hash (x);
+        while (keys[k] != null && keys[k] != x)
+            k = (k+1) & mask;
+        keys[k] = x;
+        slots[k] = i;
+    }
+
+    final void indexRemove (Object x) {
+        int k = hash (x);
+        while (keys[k] != x) {
+            if (keys[k] == null)
+                return;
+            k = (k+1) & mask;
+        }
+
+        // delete by shifting later entries of the probe run backward,
+        // so lookups never need tombstones
+        int hole = k;
+        for (k = (k+1) & mask; keys[k] != null; k = (k+1) & mask) {
+            int home = hash (keys[k]);
+            boolean movable = (hole <= k)
+                ? (home <= hole || home > k)
+                : (home <= hole && home > k);
+            if (movable) {
+                keys[hole] = keys[k];
+                slots[hole] = slots[k];
+                hole = k;
+            }
+        }
+        keys[hole] = null;
+    }
+
+    // item for testing with main()
+    static class TestItem implements Prioritized {
+        float priority;
+
+        TestItem (float priority) {
+            this.priority = priority;
+        }
+
+        public float getPriority () {
+            return priority;
+        }
+
+        public String toString () {
+            return String.valueOf (priority);
+        }
+    }
+
+    public static void main (String[] args) {
+        IndexedPriorityQueue q = new IndexedPriorityQueue (2);
+
+        TestItem[] items = new TestItem[args.length];
+        for (int i=0; i<args.length; ++i) {
+            float f = Float.valueOf (args[i]).floatValue();
+            items[i] = new TestItem (f);
+            q.put (items[i]);
+            System.out.println ("put (" + f + ")");
+        }
+
+        System.out.println ("getMin() = " + q.getMin());
+        System.out.println ("empty() = " + q.empty());
+
+        if (items.length > 0) {
+            TestItem deletable = items[items.length/2];
+            q.delete (deletable);
+            System.out.println ("delete (" + deletable + ")");
+        }
+        if (items.length > 1) {
+            TestItem changed = items[items.length-1];
+            if (changed.priority != Float.NEGATIVE_INFINITY) {
+                changed.priority = -changed.priority - 1;
+                q.update (changed);
+                System.out.println ("update (" + changed + ")");
+            }
+        }
+
+        float last = Float.NEGATIVE_INFINITY;
+        TestItem item;
+        while ((item = (TestItem)q.deleteMin()) != null) {
+            System.out.println ("deleteMin() = " + item);
+            if (item.getPriority() < last)
+                System.out.println ("ERROR! greater than last == " + last);
+            last = item.getPriority ();
+        }
+    }
+}
@@ -0,0 +1,87 @@
+/*
+ * Copyright (c) 1998-2002 Carnegie Mellon University.  All rights
+ * reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in
+ *    the documentation and/or other materials provided with the
+ *    distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY CARNEGIE MELLON UNIVERSITY ``AS IS'' AND
+ * ANY EXPRESSED OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ * THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED.  IN NO EVENT SHALL CARNEGIE MELLON UNIVERSITY
+ * NOR ITS EMPLOYEES BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+
+package rcm.util;
+
+/**
+ * Counting semaphore.  A semaphore holds a number of permits;
+ * acquire() takes one, waiting until one is available, and
+ * release() gives one back.
+ */
+public class Semaphore {
+
+    int permits;
+
+    /**
+     * Make a Semaphore.
+     * @param permits initial number of permits
+     */
+    public Semaphore (int permits) {
+        this.permits = permits;
+    }
+
+    /**
+     * Take a permit, waiting until one is available.
+     * @exception InterruptedException if the calling thread is
+     * interrupted while waiting; no permit is taken
+     */
+    public synchronized void acquire () throws InterruptedException {
+        while (permits <= 0)
+            wait ();
+        --permits;
+    }
+
+    /**
+     * Take a permit if one is available right now.
+     * @return true if a permit was taken
+     */
+    public synchronized boolean tryAcquire () {
+        if (permits <= 0)
+            return false;
+        --permits;
+        return true;
+    }
+
+    /**
+     * Give back a permit, waking up a thread waiting for one.
+     */
+    public synchronized void release () {
+        ++permits;
+        notify ();
+    }
+
+    /**
+     * Get number of permits available.
+     * @return number of permits that acquire() could take without waiting
+     */
+    public synchronized int availablePermits () {
+        return permits;
+    }
+}
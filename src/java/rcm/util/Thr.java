@@ -47,4 +47,51 @@ public abstract class Thr {
         if (Thread.currentThread ().isInterrupted ())
             throw new ThreadDeath ();
     }
+
+    /**
+      * Test whether the running JVM supports virtual threads
+      * (Thread.ofVirtual(), Java 21 and later).
+      */
+    public static boolean hasVirtualThreads () {
+        return getVirtualBuilder () != null;
+    }
+
+    /**
+      * Make an unstarted lightweight thread.  On a JVM with virtual
+      * threads, the thread is virtual; otherwise it is an ordinary
+      * daemon thread.  Virtual threads are reached by reflection so that
+      * this class still compiles and runs on older JVMs.
+      *
+      * @param r code for the thread to run
+      * @param name thread name
+      * @return unstarted thread
+      */
+    public static Thread makeLightweight (Runnable r, String name) {
+        Object builder = getVirtualBuilder ();
+        if (builder != null) {
+            try {
+                Class c = Class.forName ("java.lang.Thread$Builder");
+                builder = c.getMethod ("name", new Class[] { String.class })
+                    .invoke (builder, new Object[] { name });
+                return (Thread)c.getMethod ("unstarted",
+                                            new Class[] { Runnable.class })
+                    .invoke (builder, new Object[] { r });
+            } catch (Exception e) {
+                // fall through to a platform thread
+            }
+        }
+
+        Thread t = new Thread (r, name);
+        t.setDaemon (true);
+        return t;
+    }
+
+    static Object getVirtualBuilder () {
+        try {
+            return Thread.class.getMethod ("ofVirtual", new Class[0])
+                .invoke (null, new Object[0]);
+        } catch (Exception e) {
+            return null;
+        }
+    }
 }
@@ -93,6 +93,10 @@ public class Access {
             conn.setAllowUserInteraction (dp.getInteractive ());
             conn.setUseCaches (dp.getUseCaches ());
 
+            int timeout = dp.getDownloadTimeout ();
+            if (timeout > 0)
+                setTimeouts (conn, timeout * 1000);
+
             String userAgent = dp.getUserAgent ();
             if (userAgent != null)
                 conn.setRequestProperty ("User-Agent", userAgent);
@@ -102,6 +106,16 @@ public class Access {
                 conn.setRequestProperty ("accept", types);
         }
 
+        // make it a conditional request if an earlier crawl saw the page
+        Validator v = link.getValidator ();
+        if (v != null && method == Link.GET) {
+            if (v.getETag () != null)
+                conn.setRequestProperty ("If-None-Match", v.getETag ());
+            if (v.getLastModified () > 0)
+                conn.setRequestProperty ("If-Modified-Since", 
+                                         Validator.formatDate (v.getLastModified ()));
+        }
+
         // submit the query if it's a POST (GET queries are encoded in the URL)
         if (method == Link.POST) {
 //#ifdef JDK1.1 
@@ -133,6 +147,25 @@ public class Access {
         return conn;
     }
 
+    /*
+     * Set connect and read timeouts on a connection, so that a stalled
+     * download fails instead of blocking its thread forever.  
+     * URLConnection only has these methods in JDK 1.5 and later, 
+     * so they're called by reflection.
+     */
+    private static void setTimeouts (URLConnection conn, int ms) {
+        Object[] args = new Object[] { new Integer (ms) };
+        Class[] types = new Class[] { Integer.TYPE };
+        try {
+            URLConnection.class.getMethod ("setConnectTimeout", types)
+                .invoke (conn, args);
+            URLConnection.class.getMethod ("setReadTimeout", types)
+                .invoke (conn, args);
+        } catch (Exception e) {
+            // older JDK; rely on the crawler's download timer
+        }
+    }
+
   public InputStream readFile (File file) throws IOException {
     return new FileInputStream (file);
   }
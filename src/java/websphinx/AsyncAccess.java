@@ -0,0 +1,812 @@
+/*
+ * WebSphinx web-crawling toolkit
+ *
+ * Copyright (c) 1998-2002 Carnegie Mellon University.  All rights
+ * reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in
+ *    the documentation and/or other materials provided with the
+ *    distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY CARNEGIE MELLON UNIVERSITY ``AS IS'' AND
+ * ANY EXPRESSED OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ * THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED.  IN NO EVENT SHALL CARNEGIE MELLON UNIVERSITY
+ * NOR ITS EMPLOYEES BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+
+package websphinx;
+
+import java.net.*;
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.CancelledKeyException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.Vector;
+import rcm.util.Thr;
+
+/**
+ * Access that downloads pages without tying up a thread per download.
+ * fetch() starts a download and returns a Fetch at once; a single
+ * network thread drives all open connections with a 
+ * java.nio Selector, so thousands of downloads can be in flight
+ * at the same time.  
+ * <P>
+ * Requests are sent as HTTP/1.1, and connections that the server
+ * keeps open are reused through a ConnectionPool, which also limits 
+ * the number of connections open to each server.  Redirects are
+ * followed up to MAX_REDIRECTS times.  Download timeouts and page 
+ * size limits are taken from the link's DownloadParameters.  URLs other than http: (such as https: and 
+ * file:) are downloaded with the ordinary blocking URLConnection, 
+ * on a lightweight thread of their own.
+ * <P>
+ * To make Page (and hence Crawler) download through an AsyncAccess,
+ * install it with Access.setAccess().  openConnection() then waits
+ * for the fetch to finish, so each download still blocks its caller; 
+ * a crawler in ASYNC_FETCH thread mode calls fetch() instead, and 
+ * only uses a thread to parse and process each page once it has 
+ * arrived.
+ */
+public class AsyncAccess extends Access implements Runnable {
+
+    /**
+     * Maximum number of redirects followed for one fetch.
+     */
+    public static final int MAX_REDIRECTS = 5;
+
+    static final int TICK = 100;  // interval between timeout checks (ms)
+    static final int BUFFER_SIZE = 16384; // size of network read buffer
+
+    Selector selector;    // null until the first fetch
+    Thread thread;        // network thread
+    Vector pending = new Vector ();
+        // Exchanges waiting to be given a connection
+    Vector cancelled = new Vector ();
+        // Exchanges whose fetches were cancelled by other threads
+    ConnectionPool pool = new ConnectionPool ();
+        // persistent connections
+    ByteBuffer readBuffer;
+        // shared by all connections, since only the network thread reads
+    long nextSweep = 0;
+        // time of next check for timed-out connections
+    boolean closing = false;
+        // true once close() has asked the network thread to stop
+
+    /**
+     * Make an AsyncAccess.  The network thread is started by
+     * the first fetch.
+     */
+    public AsyncAccess () {
+        super ();
+    }
+
+    /**
+     * Start downloading a link.
+     * @param link Link to download
+     * @return Fetch that finishes when the download does
+     */
+    public Fetch fetch (Link link) {
+        return fetch (link, null, null);
+    }
+
+    /**
+     * Start downloading a link.
+     * @param link Link to download
+     * @param dp Download parameters to use, or null to use the link's
+     * own parameters (or the defaults, if it has none)
+     * @param listener Listener called back when the fetch finishes, 
+     * or null for none
+     * @return Fetch that finishes when the download does
+     */
+    public Fetch fetch (Link link, DownloadParameters dp, 
+                        FetchListener listener) {
+        Fetch f = new Fetch (this, link, listener);
+
+        if (dp == null)
+            dp = link.getDownloadParameters ();
+        if (dp == null)
+            dp = DownloadParameters.DEFAULT;
+
+        try {
+            URL url;
+            String query = null;
+            switch (link.getMethod ()) {
+                case Link.GET:
+                    url = link.getPageURL ();
+                    break;
+                case Link.POST:
+                    url = link.getServiceURL ();
+                    query = link.getQuery ();
+                    if (query.startsWith ("?"))
+                        query = query.substring (1);
+                    break;
+                default:
+                    throw new IOException ("Unknown HTTP method " + link.getMethod());
+            }
+
+            if (url.getProtocol ().equals ("http"))
+                start (new Exchange (f, url, query, dp, 0));
+            else
+                fetchBlocking (f, null, dp);
+        } catch (IOException e) {
+            f.finish (null, e);
+        }
+        return f;
+    }
+
+    /**
+     * Open a connection to a link.  For http: links, the connection
+     * is backed by a Fetch, and its methods wait until the fetch finishes.
+     */
+    public URLConnection openConnection (Link link) throws IOException {
+        if (!link.getProtocol ().equals ("http"))
+            return super.openConnection (link);
+        return new FetchConnection (fetch (link));
+    }
+
+    /*
+     * Start an HTTP exchange: resolve the host, and hand the exchange
+     * to the network thread, which finds it a connection.  The host
+     * is always resolved on a lightweight thread, so that a slow DNS 
+     * lookup stalls neither the caller (such as the Crawler's 
+     * dispatcher thread) nor the network thread, when it follows
+     * a redirect.
+     */
+    void start (final Exchange ex) {
+        int p = ex.url.getPort ();
+        final int port = (p != -1) ? p : 80;
+        ex.server = ex.url.getHost ().toLowerCase () + ":" + port;
+        ex.fetch.exchange = ex;
+
+        Runnable r = new Runnable () {
+            public void run () {
+                try {
+                    resolve (ex, port);
+                    queue (ex);
+                } catch (IOException e) {
+                    ex.fetch.finish (null, e);
+                } catch (RuntimeException e) {
+                    ex.fetch.finish (null, new IOException (e.toString ()));
+                }
+            }
+        };
+        Thr.makeLightweight (r, "websphinx resolve " + ex.url.getHost ())
+            .start ();
+    }
+
+    /*
+     * Look up the address of an exchange's host.
+     */
+    static void resolve (Exchange ex, int port) throws IOException {
+        ex.address = new InetSocketAddress (ex.url.getHost (), port);
+        if (ex.address.isUnresolved ())
+            throw new UnknownHostException (ex.url.getHost ());
+    }
+
+    /*
+     * Hand a resolved exchange to the network thread, starting
+     * the thread if necessary.
+     */
+    void queue (Exchange ex) throws IOException {
+        synchronized (this) {
+            if (thread == null) {
+                selector = Selector.open ();
+                readBuffer = ByteBuffer.allocateDirect (BUFFER_SIZE);
+                thread = new Thread (this, "websphinx async access");
+                thread.setDaemon (true);
+                thread.start ();
+            }
+            pending.addElement (ex);
+        }
+        selector.wakeup ();
+    }
+
+    /*
+     * Download a URL with a blocking URLConnection on a thread of 
+     * its own, for protocols the network thread doesn't handle.
+     * If url is null, download the fetch's link.
+     */
+    void fetchBlocking (final Fetch f, final URL url, 
+                        final DownloadParameters dp) {
+        Runnable r = new Runnable () {
+            public void run () {
+                try {
+                    URLConnection conn = (url != null)
+                        ? AsyncAccess.this.openConnection (url)
+                        : AsyncAccess.super.openConnection (f.getLink ());
+                    f.finish (readResponse (conn, dp), null);
+                } catch (IOException e) {
+                    f.finish (null, e);
+                } catch (RuntimeException e) {
+                    f.finish (null, new IOException (e.toString ()));
+                }
+            }
+        };
+        Thr.makeLightweight (r, "websphinx fetch " + f.getLink ().getURL ())
+            .start ();
+    }
+
+    static FetchResult readResponse (URLConnection conn, DownloadParameters dp) 
+            throws IOException {
+        int code = 200;
+        String message = "OK";
+        if (conn instanceof HttpURLConnection) {
+            code = ((HttpURLConnection)conn).getResponseCode ();
+            message = ((HttpURLConnection)conn).getResponseMessage ();
+        }
+
+        FetchResult result = new FetchResult (conn.getURL (), code, message);
+        for (int i=1; conn.getHeaderFieldKey (i) != null; ++i)
+            result.addHeaderField (conn.getHeaderFieldKey (i), 
+                                   conn.getHeaderField (i));
+
+        if (code < 300) {
+            int maxKB = dp.getMaxPageSize ();
+            int maxBytes = (maxKB > 0) ? maxKB * 1024 : Integer.MAX_VALUE;
+            InputStream in = conn.getInputStream ();
+            ByteArrayOutputStream out = new ByteArrayOutputStream ();
+            byte[] buf = new byte[BUFFER_SIZE];
+            try {
+                int n;
+                while ((n = in.read (buf)) != -1) {
+                    out.write (buf, 0, n);
+                    if (out.size () > maxBytes)
+                        throw new IOException ("Page greater than " 
+                                               + maxBytes + " bytes");
+                }
+            } finally {
+                in.close ();
+            }
+            result.setContent (out.toByteArray ());
+        }
+        return result;
+    }
+
+    /*
+     * Called by Fetch.finish() when a fetch finishes for any reason.
+     * If its exchange is still using a connection (e.g., because the 
+     * fetch was cancelled), the network thread closes the connection.
+     */
+    void finished (Fetch f) {
+        Exchange ex = f.exchange;
+        if (ex == null)
+            return;
+        if (Thread.currentThread () == thread)
+            abandon (ex);
+        else {
+            synchronized (this) {
+                if (thread == null)
+                    return;  // failed before reaching the network thread
+                cancelled.addElement (ex);
+            }
+            selector.wakeup ();
+        }
+    }
+
+    /**
+     * Stop the network thread, closing every connection.  Fetches 
+     * still in progress fail with an IOException.  Waits for the 
+     * network thread to exit, unless called on that thread (from a
+     * FetchListener).  A later fetch starts a new network thread.
+     */
+    public void close () {
+        Thread t;
+        synchronized (this) {
+            t = thread;
+            if (t == null)
+                return;
+            closing = true;
+        }
+        selector.wakeup ();
+        if (t != Thread.currentThread ()) {
+            try {
+                t.join ();
+            } catch (InterruptedException e) {}
+        }
+    }
+
+    /**
+     * Get the pool of persistent connections.  Use it to change the
+     * pool's limits or read its statistics.
+     */
+    public ConnectionPool getConnectionPool () {
+        return pool;
+    }
+
+    /*
+     * Network thread
+     *
+     */
+
+    public void run () {
+        for (;;) {
+            try {
+                selector.select (selector.keys ().isEmpty () ? 0 : TICK);
+            } catch (IOException e) {
+                continue;
+            }
+
+            Vector started, stopped;
+            boolean closed;
+            synchronized (this) {
+                started = pending;
+                pending = new Vector ();
+                stopped = cancelled;
+                cancelled = new Vector ();
+                closed = closing;
+            }
+            if (closed) {
+                shutdown (started);
+                return;
+            }
+            for (int i=0; i<stopped.size (); ++i) {
+                Exchange ex = (Exchange)stopped.elementAt (i);
+                try {
+                    abandon (ex);
+                } catch (RuntimeException e) {
+                    crashed (ex, e);
+                }
+            }
+            for (int i=0; i<started.size (); ++i) {
+                Exchange ex = (Exchange)started.elementAt (i);
+                try {
+                    dispatch (ex);
+                } catch (RuntimeException e) {
+                    crashed (ex, e);
+                }
+            }
+
+            Iterator it = selector.selectedKeys ().iterator ();
+            while (it.hasNext ()) {
+                SelectionKey key = (SelectionKey)it.next ();
+                it.remove ();
+                PooledConnection c = (PooledConnection)key.attachment ();
+                Exchange ex = c.exchange;
+                try {
+                    service (c);
+                } catch (CancelledKeyException e) {
+                    // connection was closed earlier in this round
+                } catch (IOException e) {
+                    try {
+                        broken (c, e);
+                    } catch (RuntimeException e2) {
+                        if (ex != null)
+                            crashed (ex, e2);
+                    }
+                } catch (RuntimeException e) {
+                    if (ex != null)
+                        crashed (ex, e);
+                    else if (c.channel.isOpen ())
+                        close (c);
+                }
+            }
+
+            try {
+                sweep ();
+            } catch (RuntimeException e) {
+                // a fetch listener failed; whatever is left over
+                // is swept on the next tick
+            }
+        }
+    }
+
+    /*
+     * Fail every exchange, close every connection and the selector,
+     * and let a later fetch start a new network thread (see close()).
+     */
+    void shutdown (Vector started) {
+        Vector doomed = new Vector ();
+        for (int i=0; i<started.size (); ++i)
+            doomed.addElement (started.elementAt (i));
+        Vector waiting = pool.takeWaiting ();
+        for (int i=0; i<waiting.size (); ++i)
+            doomed.addElement (waiting.elementAt (i));
+
+        Iterator it = selector.keys ().iterator ();
+        while (it.hasNext ()) {
+            PooledConnection c = (PooledConnection)((SelectionKey)it.next ()).attachment ();
+            Exchange ex = c.exchange;
+            if (ex != null) {
+                ex.connection = null;
+                c.exchange = null;
+                doomed.addElement (ex);
+            }
+            close (c);
+        }
+        try {
+            selector.close ();
+        } catch (IOException e) {}
+
+        synchronized (this) {
+            // exchanges queued while the thread was stopping
+            for (int i=0; i<pending.size (); ++i)
+                doomed.addElement (pending.elementAt (i));
+            pending = new Vector ();
+            cancelled = new Vector ();
+            thread = null;
+            closing = false;
+        }
+
+        for (int i=0; i<doomed.size (); ++i) {
+            Exchange ex = (Exchange)doomed.elementAt (i);
+            try {
+                ex.fetch.finish (null, new IOException ("AsyncAccess closed"));
+            } catch (RuntimeException e) {
+                // a fetch listener failed; the fetch is finished anyway
+            }
+        }
+    }
+
+    /*
+     * Fail an exchange whose handling threw a RuntimeException 
+     * (usually from a fetch listener), so that only its own fetch
+     * is affected and the network thread keeps running.
+     */
+    void crashed (Exchange ex, RuntimeException e) {
+        try {
+            fail (ex, new IOException (e.toString ()));
+        } catch (RuntimeException e2) {
+            // the fetch is finished, even if its listener failed again
+        }
+    }
+
+    /*
+     * Find a connection for an exchange: an idle one to the same
+     * server, or else a new one, or else a place in line.
+     */
+    void dispatch (Exchange ex) {
+        if (ex.fetch.isDone ())
+            return;  // cancelled before it started
+
+        PooledConnection c = pool.reuse (ex);
+        if (c != null) {
+            ex.reused = true;
+            send (c, ex);
+        }
+        else if (pool.canOpen (ex.server))
+            open (ex);
+        else
+            pool.enqueue (ex);
+    }
+
+    /*
+     * Open a new connection for an exchange.
+     */
+    void open (Exchange ex) {
+        SocketChannel channel = null;
+        try {
+            channel = SocketChannel.open ();
+            channel.configureBlocking (false);
+            boolean connected = channel.connect (ex.address);
+            PooledConnection c = new PooledConnection (ex.server, channel);
+            c.key = channel.register (selector, 0, c);
+            pool.opened (c, ex);
+            ex.reused = false;
+            if (connected)
+                send (c, ex);
+            else {
+                c.exchange = ex;
+                ex.connection = c;
+                c.key.interestOps (SelectionKey.OP_CONNECT);
+            }
+        } catch (IOException e) {
+            if (channel != null) {
+                try {
+                    channel.close ();
+                } catch (IOException e2) {}
+            }
+            ex.fetch.finish (null, e);
+        }
+    }
+
+    /*
+     * Start sending an exchange's request on a connected connection.
+     */
+    void send (PooledConnection c, Exchange ex) {
+        c.exchange = ex;
+        ex.connection = c;
+        ex.request.rewind ();
+        c.key.interestOps (SelectionKey.OP_WRITE);
+    }
+
+    /*
+     * Advance the exchange on a connection that is ready.
+     */
+    void service (PooledConnection c) throws IOException {
+        SelectionKey key = c.key;
+        Exchange ex = c.exchange;
+
+        if (ex == null) {
+            // idle connection became readable: the server closed it
+            discard (c);
+        }
+        else if (key.isConnectable ()) {
+            c.channel.finishConnect ();
+            key.interestOps (SelectionKey.OP_WRITE);
+        }
+        else if (key.isWritable ()) {
+            c.channel.write (ex.request);
+            if (!ex.request.hasRemaining ())
+                key.interestOps (SelectionKey.OP_READ);
+        }
+        else if (key.isReadable ()) {
+            readBuffer.clear ();
+            int n = c.channel.read (readBuffer);
+            if (n > 0) {
+                readBuffer.flip ();
+                ex.append (readBuffer);
+                if (ex.isComplete ())
+                    complete (c);
+            }
+            else if (n < 0) {
+                if (ex.len == 0)
+                    throw new EOFException ("connection closed by " + ex.server);
+                ex.eof = true;
+                complete (c);
+            }
+        }
+    }
+
+    /*
+     * Finish the exchange on a connection whose response has been
+     * read, and recycle the connection if the server allows it.
+     */
+    void complete (PooledConnection c) {
+        Exchange ex = c.exchange;
+        c.exchange = null;
+        ex.connection = null;
+
+        if (!ex.eof && ex.isPersistent ())
+            recycle (c);
+        else
+            discard (c);
+        deliver (ex);
+    }
+
+    /*
+     * Handle an I/O error on a connection.
+     */
+    void broken (PooledConnection c, IOException e) {
+        Exchange ex = c.exchange;
+        c.exchange = null;
+        close (c);
+        if (ex == null) {
+            serveNext (c.server);
+            return;
+        }
+        ex.connection = null;
+
+        if (ex.reused && ex.len == 0 && !ex.retried && ex.query == null) {
+            // The server closed an idle connection just as we reused it.
+            // Retry once on a new connection, in the slot just freed.
+            ex.retried = true;
+            ex.reset ();
+            open (ex);
+        }
+        else {
+            serveNext (c.server);
+            ex.fetch.finish (null, e);
+        }
+    }
+
+    /*
+     * Give a connection that finished its exchange to the next
+     * exchange waiting for its server, or else make it idle.
+     */
+    void recycle (PooledConnection c) {
+        Exchange next = pool.nextWaiting (c.server);
+        if (next != null) {
+            pool.handOff (next);
+            next.reused = true;
+            send (c, next);
+        }
+        else if (pool.getIdleTimeout () > 0) {
+            pool.release (c);
+            c.key.interestOps (SelectionKey.OP_READ); // to notice when server closes it
+        }
+        else
+            discard (c);
+    }
+
+    /*
+     * Close a connection, and open a new one for the next exchange
+     * waiting for its server.
+     */
+    void discard (PooledConnection c) {
+        close (c);
+        serveNext (c.server);
+    }
+
+    void serveNext (String server) {
+        Exchange next = pool.nextWaiting (server);
+        if (next != null)
+            open (next);
+    }
+
+    void close (PooledConnection c) {
+        try {
+            c.channel.close ();
+        } catch (IOException e) {}
+        pool.closed (c);
+    }
+
+    /*
+     * Stop an exchange that is in progress or waiting for a connection.
+     */
+    void abandon (Exchange ex) {
+        PooledConnection c = ex.connection;
+        if (c != null) {
+            c.exchange = null;
+            ex.connection = null;
+            discard (c);  // in mid-response, so it can't be reused
+        }
+        else
+            pool.dequeue (ex);
+    }
+
+    void fail (Exchange ex, IOException e) {
+        abandon (ex);
+        ex.fetch.finish (null, e);
+    }
+
+    /*
+     * Fail exchanges that have run past their download timeout, and
+     * close connections that have been idle too long.
+     */
+    void sweep () {
+        long now = System.currentTimeMillis ();
+        if (now < nextSweep)
+            return;
+        nextSweep = now + TICK;
+
+        Vector late = pool.expiredWaiting (now);
+        for (Iterator it = selector.keys ().iterator (); it.hasNext (); ) {
+            SelectionKey key = (SelectionKey)it.next ();
+            Exchange ex = ((PooledConnection)key.attachment ()).exchange;
+            if (ex != null && ex.deadline > 0 && now >= ex.deadline)
+                late.addElement (ex);
+        }
+        for (int i=0; i<late.size (); ++i) {
+            Exchange ex = (Exchange)late.elementAt (i);
+            fail (ex, new IOException ("Timeout after " + ex.timeout 
+                                       + " seconds"));
+        }
+
+        Vector idle = pool.expired (now);
+        for (int i=0; i<idle.size (); ++i)
+            close ((PooledConnection)idle.elementAt (i));
+    }
+
+    /*
+     * Deliver a finished exchange's response to its fetch, following
+     * redirects.
+     */
+    void deliver (Exchange ex) {
+        FetchResult result;
+        try {
+            result = ex.getResult ();
+        } catch (IOException e) {
+            ex.fetch.finish (null, e);
+            return;
+        }
+
+        int code = result.getResponseCode ();
+        String location = result.getHeaderField ("Location");
+        if (code >= 300 && code < 400 && code != 304 
+            && location != null && ex.redirects < MAX_REDIRECTS) {
+            try {
+                URL next = new URL (ex.url, location);
+                String query = (code == 307) ? ex.query : null;
+                if (next.getProtocol ().equals ("http"))
+                    start (new Exchange (ex.fetch, next, query, ex.dp, 
+                                         ex.redirects + 1));
+                else
+                    fetchBlocking (ex.fetch, next, ex.dp);
+            } catch (IOException e) {
+                ex.fetch.finish (null, e);
+            }
+            return;
+        }
+
+        ex.fetch.finish (result, null);
+    }
+}
+
+/*
+ * URLConnection whose response comes from a Fetch.
+ */
+class FetchConnection extends HttpURLConnection {
+    Fetch fetch;
+    FetchResult result;
+
+    FetchConnection (Fetch fetch) {
+        super (fetch.getLink ().getURL ());
+        this.fetch = fetch;
+    }
+
+    public void connect () throws IOException {
+        if (result != null)
+            return;
+        FetchResult r = fetch.get ();
+        if (r == null)
+            throw new IOException ("no response from " + url);
+        result = r;
+        url = result.getURL ();
+        responseCode = result.getResponseCode ();
+        responseMessage = result.getResponseMessage ();
+        connected = true;
+    }
+
+    public void disconnect () {
+        fetch.cancel ();
+    }
+
+    public boolean usingProxy () {
+        return false;
+    }
+
+    public InputStream getInputStream () throws IOException {
+        connect ();
+        byte[] content = result.getContent ();
+        // a response without a body (like 304 Not Modified) reads
+        // as empty, as it does from an HttpURLConnection
+        return new ByteArrayInputStream ((content != null) ? content : new byte[0]);
+    }
+
+    public int getResponseCode () throws IOException {
+        connect ();
+        return responseCode;
+    }
+
+    public String getResponseMessage () throws IOException {
+        connect ();
+        return responseMessage;
+    }
+
+    public String getHeaderField (String name) {
+        try {
+            connect ();
+        } catch (IOException e) {
+            return null;
+        }
+        return result.getHeaderField (name);
+    }
+
+    public String getHeaderFieldKey (int n) {
+        try {
+            connect ();
+        } catch (IOException e) {
+            return null;
+        }
+        return (n == 0) ? null : result.getHeaderFieldKey (n-1);
+    }
+
+    public String getHeaderField (int n) {
+        try {
+            connect ();
+        } catch (IOException e) {
+            return null;
+        }
+        return (n == 0) 
+            ? "HTTP/1.1 " + responseCode + " " + responseMessage
+            : result.getHeaderField (n-1);
+    }
+}
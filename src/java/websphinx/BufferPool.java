@@ -0,0 +1,280 @@
+/*
+ * WebSphinx web-crawling toolkit
+ *
+ * Copyright (c) 1998-2002 Carnegie Mellon University.  All rights
+ * reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in
+ *    the documentation and/or other materials provided with the
+ *    distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY CARNEGIE MELLON UNIVERSITY ``AS IS'' AND
+ * ANY EXPRESSED OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ * THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED.  IN NO EVENT SHALL CARNEGIE MELLON UNIVERSITY
+ * NOR ITS EMPLOYEES BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+
+package websphinx;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.Vector;
+
+/**
+ * Pool of fixed-size byte buffers ("chunks") for reading downloads.
+ * A download of unknown length is read into a list of chunks taken
+ * from the pool, then copied once into an array of exactly the right
+ * length, and the chunks go back in the pool for the next download.
+ * This replaces the grow-by-doubling buffer that used to copy every
+ * page several times.
+ * <P>
+ * The pool keeps at most getMaxChunks() idle chunks; chunks given back
+ * to a full pool are left to the garbage collector.  The pool also 
+ * counts hits (chunks taken from the pool) and misses (chunks that
+ * had to be allocated).
+ */
+public class BufferPool {
+
+    int chunkSize;
+    int maxChunks;
+
+    byte[][] free;         // idle chunks
+    int nFree = 0;
+
+    // Statistics
+    long hits = 0;         // chunks taken from the pool
+    long misses = 0;       // chunks allocated because the pool was empty
+    long discards = 0;     // chunks given back to a full pool
+
+    static BufferPool pool = new BufferPool (16384, 256);
+
+    /**
+     * Make a BufferPool.
+     * @param chunkSize size of each chunk in bytes
+     * @param maxChunks maximum number of idle chunks kept in the pool
+     */
+    public BufferPool (int chunkSize, int maxChunks) {
+        this.chunkSize = chunkSize;
+        this.maxChunks = maxChunks;
+        free = new byte[maxChunks][];
+    }
+
+    /**
+     * Get the pool used by Page to download pages.  The default pool
+     * keeps up to 256 chunks of 16KB.
+     */
+    public static BufferPool getPool () {
+        return pool;
+    }
+
+    /**
+     * Set the pool used by Page to download pages.
+     * @param p new pool
+     */
+    public static void setPool (BufferPool p) {
+        pool = p;
+    }
+
+    /**
+     * Get size of the chunks.
+     * @return chunk size in bytes
+     */
+    public int getChunkSize () {
+        return chunkSize;
+    }
+
+    /**
+     * Get maximum number of idle chunks kept in the pool.
+     */
+    public int getMaxChunks () {
+        return maxChunks;
+    }
+
+    /**
+     * Take a chunk from the pool, allocating a new one if the pool
+     * is empty.
+     * @return chunk of getChunkSize() bytes, with arbitrary contents
+     */
+    public synchronized byte[] take () {
+        if (nFree > 0) {
+            ++hits;
+            byte[] chunk = free[--nFree];
+            free[nFree] = null;
+            return chunk;
+        }
+        ++misses;
+        return new byte[chunkSize];
+    }
+
+    /**
+     * Give a chunk back to the pool.
+     * @param chunk chunk obtained from take()
+     */
+    public synchronized void give (byte[] chunk) {
+        if (nFree < maxChunks)
+            free[nFree++] = chunk;
+        else
+            ++discards;
+    }
+
+    /**
+     * Read a stream to the end.  If the stream's length is known, 
+     * it's read straight into the result; otherwise it's read into
+     * chunks from the pool, which are copied once into the result.
+     * The calling thread can be interrupted to abandon the read.
+     * @param in stream to read (not closed by this method)
+     * @param expectedLength length of the stream, or -1 if unknown
+     * @param maxBytes maximum number of bytes to read
+     * @return bytes read, in an array of exactly the right length
+     * @exception IOException if the stream is longer than maxBytes,
+     * or can't be read
+     * @exception InterruptedIOException if the calling thread is
+     * interrupted
+     */
+    public byte[] read (InputStream in, int expectedLength, int maxBytes) 
+            throws IOException {
+        byte[] head = null;   // unpooled start of the content
+        int headLength = 0;
+        int c = -1;
+
+        if (expectedLength >= 0) {
+            if (expectedLength > maxBytes)
+                throw new IOException ("Page greater than " 
+                                       + maxBytes + " bytes");
+            head = new byte[expectedLength];
+            int n;
+            while (headLength < expectedLength
+                   && (n = in.read (head, headLength, expectedLength - headLength)) != -1) {
+                checkInterrupt ();
+                headLength += n;
+            }
+            if (headLength < expectedLength) {
+                // stream was shorter than promised
+                byte[] newhead = new byte[headLength];
+                System.arraycopy (head, 0, newhead, 0, headLength);
+                return newhead;
+            }
+            if ((c = in.read ()) == -1)
+                return head;  // the usual case: exactly as long as promised
+            // longer than promised; read the rest into chunks
+        }
+
+        Vector chunks = new Vector ();
+        byte[] chunk = take ();
+        int n = 0;      // bytes in chunk
+        int total = headLength;
+        try {
+            if (c != -1) {
+                chunk[n++] = (byte)c;
+                if (++total > maxBytes)
+                    throw new IOException ("Page greater than " 
+                                           + maxBytes + " bytes");
+            }
+            while (true) {
+                if (n == chunk.length) {
+                    chunks.addElement (chunk);
+                    chunk = take ();
+                    n = 0;
+                }
+                int r = in.read (chunk, n, chunk.length - n);
+                if (r == -1)
+                    break;
+                checkInterrupt ();
+                n += r;
+                total += r;
+                if (total > maxBytes)
+                    throw new IOException ("Page greater than " 
+                                           + maxBytes + " bytes");
+            }
+
+            byte[] result = new byte[total];
+            int pos = 0;
+            if (head != null) {
+                System.arraycopy (head, 0, result, 0, headLength);
+                pos = headLength;
+            }
+            for (int i=0, len=chunks.size (); i<len; ++i) {
+                byte[] b = (byte[])chunks.elementAt (i);
+                System.arraycopy (b, 0, result, pos, b.length);
+                pos += b.length;
+            }
+            System.arraycopy (chunk, 0, result, pos, n);
+            return result;
+        } finally {
+            for (int i=0, len=chunks.size (); i<len; ++i)
+                give ((byte[])chunks.elementAt (i));
+            give (chunk);
+        }
+    }
+
+    static void checkInterrupt () throws InterruptedIOException {
+        if (Thread.interrupted ())
+            // download was cancelled (see Crawler.fetchTimedOut)
+            throw new InterruptedIOException ("download interrupted");
+    }
+
+    /**
+     * Get number of chunks taken from the pool.
+     */
+    public synchronized long getHits () {
+        return hits;
+    }
+
+    /**
+     * Get number of chunks that had to be allocated because the pool
+     * was empty.
+     */
+    public synchronized long getMisses () {
+        return misses;
+    }
+
+    /**
+     * Get hit ratio.
+     * @return fraction of chunk requests served from the pool, or 0
+     * if no chunks have been requested
+     */
+    public synchronized double getHitRatio () {
+        long requests = hits + misses;
+        return requests > 0 ? (double)hits / requests : 0;
+    }
+
+    /**
+     * Get number of chunks left to the garbage collector because
+     * the pool was full.
+     */
+    public synchronized long getDiscards () {
+        return discards;
+    }
+
+    /**
+     * Get number of idle chunks in the pool.
+     */
+    public synchronized int getIdleChunks () {
+        return nFree;
+    }
+
+    public synchronized String toString () {
+        return "hits=" + hits
+            + " misses=" + misses
+            + " hit ratio=" + Math.round (getHitRatio () * 100) + "%"
+            + " discards=" + discards
+            + " idle=" + nFree;
+    }
+}
@@ -0,0 +1,144 @@
+/*
+ * WebSphinx web-crawling toolkit
+ *
+ * Copyright (c) 1998-2002 Carnegie Mellon University.  All rights
+ * reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in
+ *    the documentation and/or other materials provided with the
+ *    distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY CARNEGIE MELLON UNIVERSITY ``AS IS'' AND
+ * ANY EXPRESSED OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ * THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED.  IN NO EVENT SHALL CARNEGIE MELLON UNIVERSITY
+ * NOR ITS EMPLOYEES BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+
+package websphinx;
+
+/**
+ * Canonical tags of a page (see Page.substringCanonicalTags()), with 
+ * the position of every tag in the canonical string, so that a 
+ * position can be mapped back to the page's tokens by binary search.
+ * Made once per page and shared by all the Tagexps matched against it.
+ */
+final class CanonicalTagIndex {
+    final Region[] tokens;  // tokens of the page the index was made from
+    final String text;      // canonical tags of the whole page
+    final int[] offsets;    // offset of each canonical tag in text, ascending
+    final int[] tags;       // index of each canonical tag in tokens
+
+    CanonicalTagIndex (Region[] tokens) {
+        this.tokens = tokens;
+
+        StringBuffer buf = new StringBuffer ();
+        int[] offs = new int[tokens.length];
+        int[] toks = new int[tokens.length];
+        int n = 0;
+        for (int j=0; j<tokens.length; ++j) {
+            if (tokens[j] instanceof Tag) {
+                int before = buf.length ();
+                Tagexp.canonicalizeTag (buf, (Tag)tokens[j], j);
+                if (buf.length () > before) {
+                    offs[n] = before;
+                    toks[n] = j;
+                    ++n;
+                }
+            }
+        }
+
+        text = buf.toString ();
+        offsets = new int[n];
+        tags = new int[n];
+        System.arraycopy (offs, 0, offsets, 0, n);
+        System.arraycopy (toks, 0, tags, 0, n);
+    }
+
+    /**
+     * Get the start of the canonical tags of a region: the position
+     * of the first tag starting at or after start.
+     */
+    int startOf (int start) {
+        return offsetOfToken (Region.findStart (tokens, start));
+    }
+
+    /**
+     * Get the end of the canonical tags of a region: the position of
+     * the first tag made from a token that starts at or after start 
+     * but ends after end.
+     */
+    int endOf (int start, int end) {
+        int j = Region.findStart (tokens, start);
+        int hi = tokens.length;
+        while (j != hi) {
+            int mid = (j + hi) / 2;
+            if (tokens[mid].end <= end)
+                j = mid+1;
+            else
+                hi = mid;
+        }
+        return offsetOfToken (j);
+    }
+
+    /*
+     * Position of the first canonical tag made from token j or a 
+     * later token.
+     */
+    int offsetOfToken (int j) {
+        int k = search (tags, j);
+        return (k < tags.length) ? offsets[k] : text.length ();
+    }
+
+    /**
+     * Get the token index of the first tag at or after position p,
+     * considering only tags before limit.
+     * @return token index, or -1 if there is no such tag
+     */
+    int nextTag (int p, int limit) {
+        int k = search (offsets, p);
+        return (k < offsets.length && offsets[k] < limit) ? tags[k] : -1;
+    }
+
+    /**
+     * Get the token index of the last tag before position p,
+     * considering only tags at or after base.
+     * @return token index, or -1 if there is no such tag
+     */
+    int prevTag (int p, int base) {
+        int k = search (offsets, p) - 1;
+        return (k >= 0 && offsets[k] >= base) ? tags[k] : -1;
+    }
+
+    /*
+     * Returns k such that a[j] < x for all j < k, and a[j] >= x for
+     * all j >= k (a is ascending).
+     */
+    static int search (int[] a, int x) {
+        int lo = 0;
+        int hi = a.length;
+        while (lo != hi) {
+            int mid = (lo + hi) / 2;
+            if (a[mid] < x)
+                lo = mid+1;
+            else
+                hi = mid;
+        }
+        return hi;
+    }
+}
@@ -0,0 +1,65 @@
+/*
+ * WebSphinx web-crawling toolkit
+ *
+ * Copyright (c) 1998-2002 Carnegie Mellon University.  All rights
+ * reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in
+ *    the documentation and/or other materials provided with the
+ *    distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY CARNEGIE MELLON UNIVERSITY ``AS IS'' AND
+ * ANY EXPRESSED OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ * THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED.  IN NO EVENT SHALL CARNEGIE MELLON UNIVERSITY
+ * NOR ITS EMPLOYEES BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+package websphinx;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Object whose state is saved with a crawler's checkpoints, so
+ * that Crawler.resume() can restore it.  Register with
+ * Crawler.addCheckpointable().
+ * <P>
+ * checkpoint() is called from the crawler's checkpoint thread 
+ * while worms keep running, so implementations must synchronize
+ * with their own updates.
+ *
+ * @see Crawler#setCheckpointDirectory
+ */
+public interface Checkpointable {
+    /**
+     * Save state to a checkpoint directory.
+     * @param dir checkpoint directory
+     * @param append true to add only the changes since the previous
+     * checkpoint to the state already saved in dir; false to replace 
+     * whatever dir holds with the complete state
+     * @exception IOException if the state can't be written
+     */
+    public abstract void checkpoint (File dir, boolean append) throws IOException;
+
+    /**
+     * Restore state saved by checkpoint().
+     * @param dir checkpoint directory
+     * @exception IOException if the state can't be read
+     */
+    public abstract void restore (File dir) throws IOException;
+}
@@ -0,0 +1,348 @@
+/*
+ * WebSphinx web-crawling toolkit
+ *
+ * Copyright (c) 1998-2002 Carnegie Mellon University.  All rights
+ * reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in
+ *    the documentation and/or other materials provided with the
+ *    distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY CARNEGIE MELLON UNIVERSITY ``AS IS'' AND
+ * ANY EXPRESSED OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ * THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED.  IN NO EVENT SHALL CARNEGIE MELLON UNIVERSITY
+ * NOR ITS EMPLOYEES BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+package websphinx;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.net.URL;
+
+/**
+ * Writes a crawler's checkpoints in the background.  A checkpoint
+ * directory holds:
+ * <UL>
+ * <LI>queued: journal of every link queued (URL, depth, priority)
+ * <LI>done: journal of fingerprints of links finished
+ * <LI>stats: crawl statistics at the last checkpoint
+ * <LI>files written by the crawler's Checkpointables
+ * </UL>
+ * The journals only grow, so each checkpoint writes just the records
+ * added since the previous one.  The visited set is not saved 
+ * separately: every visited page was queued, so it is rebuilt from
+ * the queued journal.  Worms only append records to memory buffers; 
+ * all file I/O happens on the checkpoint thread.
+ */
+class Checkpointer implements Runnable {
+
+    static final String QUEUED = "queued";
+    static final String DONE = "done";
+    static final String STATS = "stats";
+    static final int VERSION = 2;
+        // version 1 had no count of unchanged pages
+
+    Crawler crawler;
+    File dir;
+    boolean append;
+        // false until the first checkpoint has replaced the old contents of dir
+
+    // records added since the last checkpoint, guarded by this
+    ByteArrayOutputStream queuedBuf = new ByteArrayOutputStream ();
+    DataOutputStream queuedRecords = new DataOutputStream (queuedBuf);
+    ByteArrayOutputStream doneBuf = new ByteArrayOutputStream ();
+    DataOutputStream doneRecords = new DataOutputStream (doneBuf);
+
+    Object ioLock = new Object ();
+        // serializes checkpoints
+    Thread thread;
+    boolean running = false;
+    int interval;
+        // milliseconds between checkpoints
+
+    Checkpointer (Crawler crawler, File dir, boolean append) {
+        this.crawler = crawler;
+        this.dir = dir;
+        this.append = append;
+    }
+
+    synchronized void queued (Link link) {
+        try {
+            queuedRecords.writeUTF (link.getURL ().toExternalForm ());
+            queuedRecords.writeInt (link.getDepth ());
+            queuedRecords.writeFloat (link.getPriority ());
+        } catch (IOException e) {} // can't happen writing to memory
+    }
+
+    synchronized void done (Link link) {
+        try {
+            doneRecords.writeLong (FingerprintSet.fingerprint (link.getURL ().toExternalForm ()));
+        } catch (IOException e) {} // can't happen writing to memory
+    }
+
+    // Forget the crawl saved so far; the next checkpoint starts afresh.
+    void reset () {
+        synchronized (ioLock) {
+            synchronized (this) {
+                queuedBuf.reset ();
+                doneBuf.reset ();
+            }
+            append = false;
+        }
+    }
+
+    synchronized void start (int interval) {
+        this.interval = Math.max (interval, 1);
+        if (running)
+            return;
+        running = true;
+        thread = new Thread (this, crawler.getName () + " checkpointer");
+        thread.setDaemon (true);
+        thread.start ();
+    }
+
+    // Stop the checkpoint thread and write a final checkpoint.
+    void stop () {
+        synchronized (this) {
+            running = false;
+            notifyAll ();
+        }
+        try {
+            checkpoint ();
+        } catch (IOException e) {
+            System.err.println ("Checkpointer: can't write checkpoint to " + dir + ": " + e);
+        }
+    }
+
+    public void run () {
+        while (true) {
+            synchronized (this) {
+                if (!running)
+                    return;
+                try {
+                    wait (interval);
+                } catch (InterruptedException e) {}
+                if (!running)
+                    return;
+            }
+            try {
+                checkpoint ();
+            } catch (IOException e) {
+                System.err.println ("Checkpointer: can't write checkpoint to " + dir + ": " + e);
+            }
+        }
+    }
+
+    void checkpoint () throws IOException {
+        synchronized (ioLock) {
+            byte[] queued, done;
+            synchronized (this) {
+                queued = queuedBuf.toByteArray ();
+                queuedBuf.reset ();
+                done = doneBuf.toByteArray ();
+                doneBuf.reset ();
+            }
+
+            try {
+                Access.getAccess ().makeDir (dir);
+                write (new File (dir, QUEUED), queued);
+                write (new File (dir, DONE), done);
+            } catch (IOException e) {
+                // put the records back for the next attempt; any that 
+                // were written twice are ignored by restore()
+                synchronized (this) {
+                    byte[] q = queuedBuf.toByteArray ();
+                    queuedBuf.reset ();
+                    queuedBuf.write (queued);
+                    queuedBuf.write (q);
+                    byte[] d = doneBuf.toByteArray ();
+                    doneBuf.reset ();
+                    doneBuf.write (done);
+                    doneBuf.write (d);
+                }
+                throw e;
+            }
+
+            writeStats ();
+
+            Checkpointable[] c = crawler.getCheckpointables ();
+            for (int i=0; i<c.length; ++i)
+                c[i].checkpoint (dir, append);
+
+            append = true;
+        }
+    }
+
+    void write (File file, byte[] data) throws IOException {
+        FileOutputStream out = new FileOutputStream (file.toString (), append);
+        try {
+            out.write (data);
+            out.getFD ().sync ();
+        } finally {
+            out.close ();
+        }
+    }
+
+    // Statistics are small, so they are rewritten whole, to a temporary
+    // file that replaces the old one only when complete.
+    void writeStats () throws IOException {
+        File tmp = new File (dir, STATS + ".tmp");
+        FileOutputStream fout = new FileOutputStream (tmp.toString ());
+        try {
+            DataOutputStream out = new DataOutputStream (fout);
+            out.writeInt (VERSION);
+            out.writeInt (crawler.getPagesVisited ());
+            out.writeInt (crawler.getLinksTested ());
+            out.writeInt (crawler.getPagesLeft ());
+            out.writeInt (crawler.getPagesUnchanged ());
+            out.writeLong (System.currentTimeMillis ());
+            out.flush ();
+            fout.getFD ().sync ();
+        } finally {
+            fout.close ();
+        }
+        File stats = new File (dir, STATS);
+        stats.delete ();
+        if (!tmp.renameTo (stats))
+            throw new IOException ("can't rename " + tmp + " to " + stats);
+    }
+
+    // Restore the crawler's statistics, visited set and queue from dir.
+    void restore () throws IOException {
+        File stats = new File (dir, STATS);
+        if (!stats.exists ())
+            throw new IOException ("no checkpoint in " + dir);
+
+        DataInputStream in = open (stats);
+        try {
+            int version = in.readInt ();
+            if (version < 1 || version > VERSION)
+                throw new IOException ("unknown checkpoint version in " + stats);
+            int pagesVisited = in.readInt ();
+            int linksTested = in.readInt ();
+            in.readInt ();  // pages left, recounted from the journals
+            int pagesUnchanged = (version >= 2) ? in.readInt () : 0;
+            crawler.restoreStatistics (pagesVisited, linksTested, pagesUnchanged);
+        } finally {
+            in.close ();
+        }
+
+        // A crash can cut the last record of a journal short.  Reading
+        // stops there, and the journal is truncated after the last 
+        // complete record so that new records are appended cleanly.
+        FingerprintSet done = new FingerprintSet ();
+        File doneFile = new File (dir, DONE);
+        if (doneFile.exists ()) {
+            in = open (doneFile);
+            long end = 0;
+            try {
+                while (true) {
+                    done.add (in.readLong ());
+                    end += 8;
+                }
+            } catch (IOException e) {
+                // end of journal
+            } finally {
+                in.close ();
+            }
+            truncate (doneFile, end);
+        }
+
+        File queuedFile = new File (dir, QUEUED);
+        if (queuedFile.exists ()) {
+            CountingInputStream count = new CountingInputStream (Access.getAccess ().readFile (queuedFile));
+            in = new DataInputStream (count);  // unbuffered, so count is exact
+            long end = 0;
+            try {
+                while (true) {
+                    String href = in.readUTF ();
+                    int depth = in.readInt ();
+                    float priority = in.readFloat ();
+                    URL url = new URL (href);
+                    end = count.count;
+                    crawler.restoreLink (url, depth, priority,
+                                         done.contains (FingerprintSet.fingerprint (href)));
+                }
+            } catch (IOException e) {
+                // end of journal
+            } finally {
+                in.close ();
+            }
+            truncate (queuedFile, end);
+        }
+
+        Checkpointable[] c = crawler.getCheckpointables ();
+        for (int i=0; i<c.length; ++i)
+            c[i].restore (dir);
+
+        append = true;
+    }
+
+    DataInputStream open (File file) throws IOException {
+        return new DataInputStream (new BufferedInputStream (Access.getAccess ().readFile (file)));
+    }
+
+    static void truncate (File file, long length) throws IOException {
+        if (file.length () > length) {
+            RandomAccessFile raf = Access.getAccess ().readWriteFile (file);
+            try {
+                raf.setLength (length);
+            } finally {
+                raf.close ();
+            }
+        }
+    }
+
+    /* Input stream that counts the bytes read through it. */
+    static class CountingInputStream extends FilterInputStream {
+        long count = 0;
+
+        CountingInputStream (InputStream in) {
+            super (new BufferedInputStream (in));
+        }
+
+        public int read () throws IOException {
+            int c = in.read ();
+            if (c != -1)
+                ++count;
+            return c;
+        }
+
+        public int read (byte[] b, int off, int len) throws IOException {
+            int n = in.read (b, off, len);
+            if (n > 0)
+                count += n;
+            return n;
+        }
+
+        public long skip (long n) throws IOException {
+            long k = in.skip (n);
+            count += k;
+            return k;
+        }
+    }
+}
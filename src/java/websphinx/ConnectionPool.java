@@ -0,0 +1,360 @@
+/*
+ * WebSphinx web-crawling toolkit
+ *
+ * Copyright (c) 1998-2002 Carnegie Mellon University.  All rights
+ * reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in
+ *    the documentation and/or other materials provided with the
+ *    distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY CARNEGIE MELLON UNIVERSITY ``AS IS'' AND
+ * ANY EXPRESSED OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ * THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED.  IN NO EVENT SHALL CARNEGIE MELLON UNIVERSITY
+ * NOR ITS EMPLOYEES BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+
+package websphinx;
+
+import java.util.Enumeration;
+import java.util.Hashtable;
+import java.util.Vector;
+
+/**
+ * Persistent HTTP connections kept open by an AsyncAccess, grouped 
+ * by server (hostname and port number).  When a request finishes on a
+ * connection that the server is willing to keep open, the connection
+ * goes back in the pool, and the next request to that server reuses 
+ * it instead of opening a new TCP connection.  
+ * <P>
+ * At most getMaxConnectionsPerServer() connections are open to any
+ * one server; further requests wait in line for a connection to come
+ * free.  Idle connections are closed after getIdleTimeout() 
+ * milliseconds, or as soon as the server closes them.
+ * <P>
+ * The pool also keeps statistics: how many requests reused an
+ * existing connection, and how long requests waited for one.
+ */
+public class ConnectionPool {
+
+    int maxPerServer = 6;
+    int idleTimeout = 15000;
+
+    Hashtable servers = new Hashtable ();
+        // maps a server ("host:port") to its ServerConnections record
+
+    // Statistics
+    long requests = 0;     // requests given a connection
+    long reused = 0;       // requests given an idle connection
+    long waits = 0;        // requests that had to wait for a connection
+    long waitTime = 0;     // total time spent waiting (ms)
+    long connects = 0;     // connections opened
+    long evictions = 0;    // idle connections closed by the pool
+    int open = 0;          // connections currently open
+    int idle = 0;          // connections currently idle
+
+    /**
+     * Get maximum number of connections open to one server.
+     * Default value is 6.
+     */
+    public synchronized int getMaxConnectionsPerServer () {
+        return maxPerServer;
+    }
+
+    /**
+     * Set maximum number of connections open to one server.
+     * @param max maximum number of connections (at least 1)
+     */
+    public synchronized void setMaxConnectionsPerServer (int max) {
+        maxPerServer = Math.max (max, 1);
+    }
+
+    /**
+     * Get idle timeout.  Default value is 15000 (15 seconds).
+     * @return time in milliseconds after which an idle connection is closed
+     */
+    public synchronized int getIdleTimeout () {
+        return idleTimeout;
+    }
+
+    /**
+     * Set idle timeout.
+     * @param ms time in milliseconds after which an idle connection 
+     * is closed (0 to close connections as soon as they are idle)
+     */
+    public synchronized void setIdleTimeout (int ms) {
+        idleTimeout = ms;
+    }
+
+    /**
+     * Get number of requests that have been given a connection.
+     */
+    public synchronized long getRequests () {
+        return requests;
+    }
+
+    /**
+     * Get number of requests that reused an idle connection.
+     */
+    public synchronized long getReusedConnections () {
+        return reused;
+    }
+
+    /**
+     * Get reuse ratio.
+     * @return fraction of requests that reused an idle connection,
+     * or 0 if no requests have been made
+     */
+    public synchronized double getReuseRatio () {
+        return requests > 0 ? (double)reused / requests : 0;
+    }
+
+    /**
+     * Get number of requests that had to wait for a connection,
+     * because getMaxConnectionsPerServer() were already busy.
+     */
+    public synchronized long getWaits () {
+        return waits;
+    }
+
+    /**
+     * Get average wait time.
+     * @return average time in milliseconds that a request waited 
+     * for a connection, over all requests
+     */
+    public synchronized double getAverageWaitTime () {
+        return requests > 0 ? (double)waitTime / requests : 0;
+    }
+
+    /**
+     * Get number of connections opened.
+     */
+    public synchronized long getConnects () {
+        return connects;
+    }
+
+    /**
+     * Get number of idle connections closed by the idle timeout.
+     */
+    public synchronized long getEvictions () {
+        return evictions;
+    }
+
+    /**
+     * Get number of connections currently open, busy or idle.
+     */
+    public synchronized int getOpenConnections () {
+        return open;
+    }
+
+    /**
+     * Get number of connections currently idle.
+     */
+    public synchronized int getIdleConnections () {
+        return idle;
+    }
+
+    public synchronized String toString () {
+        return "requests=" + requests 
+            + " reused=" + reused
+            + " reuse ratio=" + Math.round (getReuseRatio () * 100) + "%"
+            + " waits=" + waits
+            + " average wait=" + Math.round (getAverageWaitTime ()) + "ms"
+            + " open=" + open
+            + " idle=" + idle;
+    }
+
+    /*
+     * Pool operations.  Called only on the AsyncAccess network thread.
+     *
+     */
+
+    ServerConnections getServer (String name) {
+        ServerConnections s = (ServerConnections)servers.get (name);
+        if (s == null) {
+            s = new ServerConnections ();
+            servers.put (name, s);
+        }
+        return s;
+    }
+
+    /*
+     * Take an idle connection to a server for a request.  
+     * Returns null if there is none.
+     */
+    synchronized PooledConnection reuse (Exchange ex) {
+        ServerConnections s = getServer (ex.server);
+        if (s.idle.isEmpty ())
+            return null;
+        PooledConnection c = (PooledConnection)s.idle.lastElement ();
+        s.idle.removeElementAt (s.idle.size () - 1);
+        --idle;
+        ++reused;
+        given (ex);
+        return c;
+    }
+
+    /*
+     * Record that a request was handed a connection directly by the
+     * request before it on the same server.
+     */
+    synchronized void handOff (Exchange ex) {
+        ++reused;
+        given (ex);
+    }
+
+    /*
+     * Test whether a new connection can be opened to a server.
+     */
+    synchronized boolean canOpen (String server) {
+        return getServer (server).open < maxPerServer;
+    }
+
+    /*
+     * Record a new connection, opened for a request.
+     */
+    synchronized void opened (PooledConnection c, Exchange ex) {
+        ++getServer (c.server).open;
+        ++open;
+        ++connects;
+        given (ex);
+    }
+
+    void given (Exchange ex) {
+        ++requests;
+        if (ex.waitStart != 0) {
+            waitTime += System.currentTimeMillis () - ex.waitStart;
+            ex.waitStart = 0;
+        }
+    }
+
+    /*
+     * Put a request in line for a connection.
+     */
+    synchronized void enqueue (Exchange ex) {
+        ex.waitStart = System.currentTimeMillis ();
+        ++waits;
+        getServer (ex.server).waiting.addElement (ex);
+    }
+
+    /*
+     * Remove a request from the line, e.g. because it was cancelled.
+     */
+    synchronized void dequeue (Exchange ex) {
+        ServerConnections s = (ServerConnections)servers.get (ex.server);
+        if (s != null)
+            s.waiting.removeElement (ex);
+    }
+
+    /*
+     * Take every request waiting for a connection, when the network
+     * thread is shutting down.
+     */
+    synchronized Vector takeWaiting () {
+        Vector v = new Vector ();
+        for (Enumeration e = servers.keys (); e.hasMoreElements (); ) {
+            String server = (String)e.nextElement ();
+            ServerConnections s = (ServerConnections)servers.get (server);
+            for (int i=0; i<s.waiting.size (); ++i)
+                v.addElement (s.waiting.elementAt (i));
+            s.waiting.removeAllElements ();
+            if (s.open == 0)
+                servers.remove (server);
+        }
+        return v;
+    }
+
+    /*
+     * Take the next request waiting for a connection to a server.
+     * Returns null if none is waiting.
+     */
+    synchronized Exchange nextWaiting (String server) {
+        ServerConnections s = getServer (server);
+        if (s.waiting.isEmpty ())
+            return null;
+        Exchange ex = (Exchange)s.waiting.firstElement ();
+        s.waiting.removeElementAt (0);
+        return ex;
+    }
+
+    /*
+     * Give a connection that finished a request back to the pool.
+     */
+    synchronized void release (PooledConnection c) {
+        c.idleSince = System.currentTimeMillis ();
+        getServer (c.server).idle.addElement (c);
+        ++idle;
+    }
+
+    /*
+     * Record that a busy or idle connection was closed.
+     */
+    synchronized void closed (PooledConnection c) {
+        ServerConnections s = getServer (c.server);
+        if (s.idle.removeElement (c))
+            --idle;
+        --s.open;
+        --open;
+        if (s.open == 0 && s.waiting.isEmpty ())
+            servers.remove (c.server);
+    }
+
+    /*
+     * Get idle connections that have outlived the idle timeout.
+     */
+    synchronized Vector expired (long now) {
+        Vector v = new Vector ();
+        for (Enumeration e = servers.elements (); e.hasMoreElements (); ) {
+            ServerConnections s = (ServerConnections)e.nextElement ();
+            for (int i=0; i<s.idle.size (); ++i) {
+                PooledConnection c = (PooledConnection)s.idle.elementAt (i);
+                if (now - c.idleSince >= idleTimeout)
+                    v.addElement (c);
+            }
+        }
+        evictions += v.size ();
+        return v;
+    }
+
+    /*
+     * Get requests still waiting for a connection when their 
+     * download timeout runs out.
+     */
+    synchronized Vector expiredWaiting (long now) {
+        Vector v = new Vector ();
+        for (Enumeration e = servers.elements (); e.hasMoreElements (); ) {
+            ServerConnections s = (ServerConnections)e.nextElement ();
+            for (int i=0; i<s.waiting.size (); ++i) {
+                Exchange ex = (Exchange)s.waiting.elementAt (i);
+                if (ex.deadline > 0 && now >= ex.deadline)
+                    v.addElement (ex);
+            }
+        }
+        return v;
+    }
+}
+
+/*
+ * Connections to one server.
+ */
+class ServerConnections {
+    int open = 0;                  // connections open, busy or idle
+    Vector idle = new Vector ();   // idle Connections, most recent last
+    Vector waiting = new Vector (); // Exchanges waiting for a connection
+}
@@ -0,0 +1,313 @@
+/*
+ * WebSphinx web-crawling toolkit
+ *
+ * Copyright (c) 1998-2002 Carnegie Mellon University.  All rights
+ * reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in
+ *    the documentation and/or other materials provided with the
+ *    distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY CARNEGIE MELLON UNIVERSITY ``AS IS'' AND
+ * ANY EXPRESSED OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ * THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED.  IN NO EVENT SHALL CARNEGIE MELLON UNIVERSITY
+ * NOR ITS EMPLOYEES BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+
+package websphinx;
+
+import java.util.Vector;
+
+/**
+ * Memory budget for the content of pages held by a crawler.  
+ * When a crawler has a budget (see Crawler.setContentBudget()), each
+ * page it downloads is charged for the bytes of its content, and
+ * credited again when the content is discarded.  While the charges
+ * exceed the budget's limit, the crawler delays new downloads until 
+ * pages in progress are done.  Downloads already under way are 
+ * not stopped, so the budget can be overrun by at most one
+ * maximum-size page (see DownloadParameters.getMaxPageSize()) per
+ * download thread.
+ * <P>
+ * A page is charged for its raw bytes plus its decoded characters,
+ * if any.  Parse trees aren't counted, so the charge is an 
+ * underestimate of the memory a parsed page really takes.
+ * <P>
+ * Pages are discarded when the crawler is done with them unless
+ * some caller has locked their content with Page.keepContent().
+ * Locked pages stay charged to the budget.  If spilling is enabled,
+ * the budget writes the content of locked pages the crawler has 
+ * finished with to temporary files (oldest first) to make room 
+ * for new downloads; a spilled page reads its content back the 
+ * next time it's asked for it.
+ */
+public class ContentBudget
+//#ifdef JDK1.1 
+implements java.io.Serializable 
+//#endif JDK1.1
+{
+    long limit;         // maximum bytes charged before downloads wait
+                        // (0 for no limit)
+    boolean spill;      // true if idle locked content may be spilled
+
+    transient long used;        // bytes charged now
+    transient long highWater;   // most bytes ever charged
+    transient int delays;       // downloads delayed by the budget
+    transient int spills;       // pages spilled to temporary files
+    transient Vector held;      // pages the crawler is working on
+    transient Vector idle;      // locked pages the crawler is done with,
+                                // in the order they were finished
+
+    /**
+     * Make a ContentBudget.
+     * @param limit maximum number of content bytes held by live pages 
+     * before new downloads are delayed, or 0 for no limit.
+     */
+    public ContentBudget (long limit) {
+        this.limit = limit;
+        init ();
+    }
+
+    private void init () {
+        held = new Vector ();
+        idle = new Vector ();
+    }
+
+//#ifdef JDK1.1 
+    private void readObject (java.io.ObjectInputStream in) 
+           throws java.io.IOException, ClassNotFoundException {
+        in.defaultReadObject ();
+        init ();
+    }
+//#endif JDK1.1
+
+    /**
+     * Get the limit.
+     * @return maximum number of content bytes held before new 
+     * downloads are delayed, or 0 for no limit
+     */
+    public synchronized long getLimit () {
+        return limit;
+    }
+
+    /**
+     * Set the limit.  Takes effect immediately, even during a crawl.
+     * @param limit maximum number of content bytes held before new 
+     * downloads are delayed, or 0 for no limit
+     */
+    public synchronized void setLimit (long limit) {
+        this.limit = limit;
+        notifyAll ();
+    }
+
+    /**
+     * Get the spilling flag.
+     * @return true if locked content may be spilled to temporary files
+     */
+    public synchronized boolean getSpill () {
+        return spill;
+    }
+
+    /**
+     * Set the spilling flag.  Content is spilled to temporary files
+     * made by Access.makeTemporaryFile().
+     * @param spill true if locked content of pages the crawler is
+     * done with may be spilled to temporary files when the budget is
+     * exceeded.  Default is false.
+     */
+    public synchronized void setSpill (boolean spill) {
+        this.spill = spill;
+    }
+
+    /**
+     * Get the number of content bytes held by live pages.
+     * @return bytes charged to the budget now
+     */
+    public synchronized long getUsed () {
+        return used;
+    }
+
+    /**
+     * Get the high-water mark.
+     * @return most content bytes ever held by live pages at once
+     * since the budget was made or resetHighWater() was last called
+     */
+    public synchronized long getHighWater () {
+        return highWater;
+    }
+
+    /**
+     * Reset the high-water mark to the bytes held now.
+     */
+    public synchronized void resetHighWater () {
+        highWater = used;
+    }
+
+    /**
+     * Get the number of delayed downloads.
+     * @return number of downloads that had to wait for the budget
+     */
+    public synchronized int getDelayedDownloads () {
+        return delays;
+    }
+
+    /**
+     * Get the number of spilled pages.
+     * @return number of times content was spilled to a temporary file
+     */
+    public synchronized int getSpilledPages () {
+        return spills;
+    }
+
+    /**
+     * Get the number of pages held by the crawler.
+     * @return number of downloaded pages the crawler hasn't finished 
+     * processing
+     */
+    public synchronized int getHeldPages () {
+        return held.size ();
+    }
+
+    public synchronized String toString () {
+        return "ContentBudget[used=" + used + ", highWater=" + highWater
+            + ", limit=" + limit + ", held=" + held.size ()
+            + ", delayed=" + delays + ", spilled=" + spills + "]";
+    }
+
+    /**
+     * Wait until there's room for another download.  Spills idle
+     * content first, if spilling is enabled.  Returns right away if
+     * the crawler holds no pages, since waiting couldn't free anything.
+     * @exception InterruptedException if the thread is interrupted
+     * while waiting
+     */
+    public void waitForRoom () throws InterruptedException {
+        boolean delayed = false;
+        for (;;) {
+            Page page;
+            synchronized (this) {
+                if (limit <= 0 || used < limit)
+                    return;
+                if (spill && idle.size () > 0) {
+                    page = (Page)idle.elementAt (0);
+                    idle.removeElementAt (0);
+                }
+                else if (held.size () == 0)
+                    return;
+                else {
+                    if (!delayed) {
+                        ++delays;
+                        delayed = true;
+                    }
+                    wait ();
+                    continue;
+                }
+            }
+            page.spill ();  // outside the lock, since it writes a file
+        }
+    }
+
+    /*
+     * Charge a page that the crawler has just downloaded.
+     */
+    void add (Page page) {
+        long size = page.getContentSize ();
+        synchronized (this) {
+            page.budget = this;
+            held.addElement (page);
+            charge (page, size);
+        }
+    }
+
+    /*
+     * Drop the crawler's hold on a page (see add()).  The page's 
+     * content is discarded, unless somebody else has locked it.
+     * Does nothing if the crawler isn't holding the page.
+     */
+    void finish (Page page) {
+        synchronized (this) {
+            if (!held.removeElement (page))
+                return;
+            notifyAll ();
+        }
+        page.discardContent ();
+        synchronized (this) {
+            if (page.budget == this)
+                // content still locked
+                idle.addElement (page);
+        }
+    }
+
+    /*
+     * Drop the crawler's hold on every page it still holds,
+     * at the end of a crawl.
+     */
+    void finishAll () {
+        Page[] pages;
+        synchronized (this) {
+            pages = new Page[held.size ()];
+            held.copyInto (pages);
+        }
+        for (int i=0; i<pages.length; ++i)
+            finish (pages[i]);
+    }
+
+    /*
+     * Charge a page for more content bytes (e.g., for content decoded 
+     * on demand, or read back after spilling).
+     */
+    synchronized void charge (Page page, long bytes) {
+        page.charged += bytes;
+        used += bytes;
+        if (used > highWater)
+            highWater = used;
+    }
+
+    /*
+     * Credit a page's charges back to the budget, after its content 
+     * has been discarded.
+     */
+    synchronized void release (Page page) {
+        used -= page.charged;
+        page.charged = 0;
+        page.budget = null;
+        idle.removeElement (page);
+        notifyAll ();
+    }
+
+    /*
+     * Credit a page's charges back to the budget, after its content 
+     * has been spilled.  
+     */
+    synchronized void spilled (Page page) {
+        used -= page.charged;
+        page.charged = 0;
+        ++spills;
+        notifyAll ();
+    }
+
+    /*
+     * Charge a page whose spilled content has been read back.
+     */
+    synchronized void unspilled (Page page, long bytes) {
+        charge (page, bytes);
+        if (page.budget == this && !idle.contains (page))
+            idle.addElement (page);
+    }
+}
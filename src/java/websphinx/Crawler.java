@@ -33,14 +33,16 @@
 
 package websphinx;
 
-import rcm.util.PriorityQueue;
 import rcm.util.Timer;
+import rcm.util.Semaphore;
+import rcm.util.BoundedQueue;
+import rcm.util.Thr;
 import java.util.Vector;
 import java.util.Enumeration;
-import java.util.Hashtable;
 import java.util.StringTokenizer;
 import java.net.URL;
 import java.net.MalformedURLException;
+import java.io.File;
 import java.io.IOException;
 //#ifdef JDK1.1 
 import java.io.Serializable;
@@ -139,6 +141,102 @@ public class Crawler implements Runnable
      * to visit any kind of link
      */
     public static final String[] ALL_LINKS = null;
+
+    /**
+     * Specify HEAP_FRONTIER as the frontier type to queue links in
+     * an indexed heap, which removes and reprioritizes links in
+     * logarithmic time.
+     */
+    public static final int HEAP_FRONTIER = 0;
+
+    /**
+     * Specify LEGACY_FRONTIER as the frontier type to queue links in
+     * the original rcm.util.PriorityQueue.
+     */
+    public static final int LEGACY_FRONTIER = 1;
+
+    /**
+     * Specify SPILLING_FRONTIER as the frontier type to keep a bounded
+     * number of links in memory and spill the rest to disk, for 
+     * crawls whose queue outgrows the heap.  Spilled links return in
+     * roughly the order they were spilled (see SpillingFrontier).  
+     * In synchronous mode, pages are visited in priority order only 
+     * among the links currently being downloaded.
+     */
+    public static final int SPILLING_FRONTIER = 2;
+
+    /**
+     * Specify WORM_THREADS as the thread mode to download pages with
+     * a fixed set of worm threads, one for each of 
+     * DownloadParameters.getMaxThreads().  A worm whose download 
+     * times out is killed and replaced by a new worm.
+     */
+    public static final int WORM_THREADS = 0;
+
+    /**
+     * Specify TASK_THREADS as the thread mode to run each download
+     * in a thread of its own, which lives only as long as the download.
+     * At most DownloadParameters.getMaxThreads() downloads are in flight
+     * at once.  On a JVM with virtual threads, the download threads are
+     * virtual, so thousands of downloads can be in flight cheaply.
+     * A download that times out is interrupted and abandoned.
+     */
+    public static final int TASK_THREADS = 1;
+
+    /**
+     * Specify ASYNC_FETCH as the thread mode to download pages 
+     * through the AsyncAccess installed with Access.setAccess(), 
+     * which uses no thread per download.  A thread is started for 
+     * each page only once it has arrived, to parse and process it.
+     * At most DownloadParameters.getMaxThreads() downloads are in
+     * flight at once.  If Access.getAccess() is not an AsyncAccess,
+     * ASYNC_FETCH behaves like TASK_THREADS.
+     */
+    public static final int ASYNC_FETCH = 2;
+
+    /**
+     * Specify PIPELINE as the thread mode to split the work on each
+     * page among four stages, each with threads of its own:
+     * FETCH_STAGE downloads the page, PARSE_STAGE parses and
+     * classifies it, VISIT_STAGE calls visit() (or unchanged()), and
+     * EXPAND_STAGE calls expand().  Each stage hands pages to the next
+     * through a bounded queue, and waits while that queue is full, so
+     * a slow visit() holds back downloading only once the queues 
+     * ahead of it have filled.  The size of each stage and the 
+     * capacity of its queue can be set with setStageThreads() and 
+     * setStageQueueCapacity().  In synchronous mode, the fetch stage
+     * also parses, and the main thread does the rest.
+     */
+    public static final int PIPELINE = 3;
+
+    /**
+     * Stage of the PIPELINE thread mode that downloads pages.  Its 
+     * threads are worms, one for each of DownloadParameters.getMaxThreads(),
+     * and its queue is the crawler's queue of links waiting to be
+     * downloaded.
+     */
+    public static final int FETCH_STAGE = 0;
+
+    /**
+     * Stage of the PIPELINE thread mode that parses and classifies pages.
+     */
+    public static final int PARSE_STAGE = 1;
+
+    /**
+     * Stage of the PIPELINE thread mode that passes pages to visit()
+     * or unchanged().
+     */
+    public static final int VISIT_STAGE = 2;
+
+    /**
+     * Stage of the PIPELINE thread mode that passes pages to expand().
+     */
+    public static final int EXPAND_STAGE = 3;
+
+    static final int[] DEFAULT_STAGE_THREADS = { 0, 1, 1, 1 };
+    static final int[] DEFAULT_STAGE_CAPACITY = { 0, 16, 16, 16 };
+    static final int STAGE_JOIN_TIMEOUT = 10000;
+        // time to wait for stage worms to die when the crawl stops (ms)
     
     // Crawler parameters
     private String name = getClass().getName();   // crawler's name
@@ -150,25 +248,41 @@ public class Crawler implements Runnable
     private String[] type = HYPERLINKS;
     private boolean ignoreVisitedLinks = true;
     private int maxDepth = 5;
+    private int frontierType = HEAP_FRONTIER;
+    private int threadMode = WORM_THREADS;
+    private int[] stageThreads = (int[])DEFAULT_STAGE_THREADS.clone ();
+    private int[] stageCapacity = (int[])DEFAULT_STAGE_CAPACITY.clone ();
+    private File visitedDirectory = null;
+    private File checkpointDirectory = null;
+    private int checkpointInterval = 60;
     private DownloadParameters dp = new DownloadParameters ()
                                   .changeUserAgent (name);
     private Vector classifiers = new Vector ();
     private LinkPredicate linkPredicate;
     private PagePredicate pagePredicate;
     private Action action;
+    private ContentBudget contentBudget;
     
     // Transient state
 
     private transient Link[] crawledRoots = null;
 
     private transient int state = CrawlEvent.CLEARED;
+
+    private transient LabelSet typeLabels;
+    private transient LabelSet domainLabels;
+        // type and domain, compiled for expand(); null if all links pass
     
     private transient Worm[] worms;
         // background threads
+    private transient Stage[] stages;
+        // stages after FETCH_STAGE, or null if not in PIPELINE mode
+    private transient ContentBudget crawlBudget;
+        // content budget in use by the crawl (see setContentBudget())
 
-    private transient PriorityQueue fetchQueue; 
+    private transient Frontier fetchQueue; 
           // links waiting to be downloaded
-    private transient PriorityQueue crawlQueue;
+    private transient Frontier crawlQueue;
           // all links that have been expanded but not
           // processed (used only if crawler is in synchronous mode)
 
@@ -176,6 +290,8 @@ public class Crawler implements Runnable
         // number of links tested by shouldVisit()
     private transient int numPagesVisited;
         // number of pages passed to visit()
+    private transient int numPagesUnchanged;
+        // number of pages passed to unchanged()
     private transient int numPagesLeft;
           // all links that have been expanded but not processed
           // == crawlQueue.size ()
@@ -186,12 +302,21 @@ public class Crawler implements Runnable
     private transient Vector linkListeners;
         // list of LinkListeners
 
-    private transient Hashtable visitedPages;
+    private transient VisitedSet visitedPages;
         // visited pages (a set of URLs)
 
     private transient RobotExclusion robotExclusion;
         // robot exclusion cache
 
+    private transient Checkpointer checkpointer;
+        // writes checkpoints, or null if checkpointing is off
+    private transient Vector checkpointables;
+        // list of Checkpointables saved with each checkpoint
+
+    private transient ValidatorStore validators;
+        // validators saved by earlier crawls, or null if pages
+        // are always downloaded in full
+
     /**
      * Make a new Crawler.
      */
@@ -208,17 +333,25 @@ public class Crawler implements Runnable
         
         numLinksTested = 0;
         numPagesVisited = 0;
+        numPagesUnchanged = 0;
         numPagesLeft = 0;
         
         worms = null;
-        crawlQueue = new PriorityQueue();
-        fetchQueue = new PriorityQueue();
+        typeLabels = compileLabels (type);
+        domainLabels = compileLabels (domain);
+        robotExclusion = new RobotExclusion (getName ());
+        crawlQueue = makeCrawlQueue ();
+        fetchQueue = makeFetchQueue ();
 
         crawlListeners = new Vector ();
         linkListeners = new Vector ();
 
-        visitedPages = new Hashtable ();
-        robotExclusion = new RobotExclusion (getName ());
+        visitedPages = makeVisitedSet ();
+
+        checkpointables = new Vector ();
+        checkpointer = (checkpointDirectory != null)
+            ? new Checkpointer (this, checkpointDirectory, false)
+            : null;
     }
 
     /*
@@ -264,6 +397,12 @@ public class Crawler implements Runnable
         type = useStandard (HYPERLINKS, type);
         type = useStandard (HYPERLINKS_AND_IMAGES, type);
         type = useStandard (ALL_LINKS, type);
+
+        if (stageThreads == null) {
+            // saved before PIPELINE mode existed
+            stageThreads = (int[])DEFAULT_STAGE_THREADS.clone ();
+            stageCapacity = (int[])DEFAULT_STAGE_CAPACITY.clone ();
+        }
                  
         init ();
 
@@ -310,9 +449,20 @@ public class Crawler implements Runnable
             submit (crawledRoots);
         }
             
+        if (crawlBudget != contentBudget) {
+            if (crawlBudget != null)
+                crawlBudget.finishAll ();
+            crawlBudget = contentBudget;
+        }
+
         state = CrawlEvent.STARTED;
         sendCrawlEvent (state);
+
+        if (checkpointer != null)
+            checkpointer.start (checkpointInterval * 1000);
         
+        boolean ranOut = false;
+        Stage[] stoppedStages = null;
         synchronized (crawlQueue) {            
             Timer timer = new CrawlTimer (this);
             int timeout = dp.getCrawlTimeout();
@@ -320,25 +470,47 @@ public class Crawler implements Runnable
                 timer.set (timeout*1000, false);
 
             int nWorms = Math.max (dp.getMaxThreads (), 1);
-            worms = new Worm[nWorms];
-            for (int i=0; i<nWorms; ++i) {
-                worms[i] = new Worm (this, i);
-                worms[i].start ();
+            if (threadMode == TASK_THREADS || threadMode == ASYNC_FETCH) {
+                Dispatcher d = new Dispatcher (this, nWorms);
+                if (threadMode == ASYNC_FETCH 
+                    && Access.getAccess () instanceof AsyncAccess)
+                    d.access = (AsyncAccess)Access.getAccess ();
+                worms = new Worm[] { d };
+            }
+            else {
+                worms = new Worm[nWorms];
+                for (int i=0; i<nWorms; ++i)
+                    worms[i] = new Worm (this, i);
             }
+            if (threadMode == PIPELINE && !synchronous) {
+                // fill in the stages before publishing them to 
+                // getStageQueueDepth() and friends
+                Stage[] s = new Stage[EXPAND_STAGE + 1];
+                for (int k=PARSE_STAGE; k<=EXPAND_STAGE; ++k)
+                    s[k] = new Stage (this, k, stageThreads[k],
+                                      stageCapacity[k]);
+                stages = s;
+            }
+            for (int i=0; i<worms.length; ++i)
+                worms[i].start ();
+            if (stages != null)
+                for (int k=PARSE_STAGE; k<=EXPAND_STAGE; ++k)
+                    stages[k].start ();
 
             try {
                 while (state == CrawlEvent.STARTED) {
                     if (numPagesLeft == 0) {
-                        // ran out of links to crawl
+                        // ran out of links to crawl; STOPPED is sent
+                        // once the worms are gone
                         state = CrawlEvent.STOPPED;
-                        sendCrawlEvent (state);
+                        ranOut = true;
                     }
                     else if (synchronous) {
                         // Synchronous mode.
                         // Main thread calls process() on each link
                         // in crawlQueue, in priority order.
-                        Link link = (Link)crawlQueue.getMin ();
-                        if (link.getStatus () == LinkEvent.DOWNLOADED)
+                        Link link = crawlQueue.getMin ();
+                        if (link != null && link.getStatus () == LinkEvent.DOWNLOADED)
                             process (link);
                         else
                             crawlQueue.wait ();
@@ -353,17 +525,48 @@ public class Crawler implements Runnable
 
             timer.cancel ();
                 
+            boolean paused = (state == CrawlEvent.PAUSED);
             for (int i=0; i<worms.length; ++i)
-                worms[i].die ();
-            if (state == CrawlEvent.PAUSED) {
-                // put partly-processed links back in fetchQueue
-                synchronized (fetchQueue) {
-                    for (int i=0; i<worms.length; ++i)
-                        if (worms[i].link != null)
-                            fetchQueue.put (worms[i].link);
+                if (worms[i] instanceof Dispatcher)
+                    // dispatcher and its tasks put their own links back
+                    ((Dispatcher)worms[i]).cancel (paused);
+                else {
+                    worms[i].die ();
+                    if (paused && worms[i].link != null)
+                        // put partly-processed link back in fetchQueue
+                        requeue (worms[i].link);
                 }
-            }
             worms = null;
+
+            if (stages != null) {
+                for (int k=PARSE_STAGE; k<=EXPAND_STAGE; ++k)
+                    stopStage (stages[k], paused);
+                stoppedStages = stages;
+                stages = null;
+            }
+
+            if (crawlBudget != null && !paused)
+                // pages left over from the stopped crawl
+                crawlBudget.finishAll ();
+        }
+
+        if (stoppedStages != null)
+            // outside the crawlQueue lock, which the worms need to finish
+            joinStages (stoppedStages);
+        if (ranOut)
+            sendCrawlEvent (CrawlEvent.STOPPED);
+
+        if (checkpointer != null)
+            // final checkpoint, now that the worms are gone
+            checkpointer.stop ();
+
+        if (validators != null) {
+            try {
+                validators.save ();
+            } catch (IOException e) {
+                System.err.println ("Crawler: can't save validators to " 
+                                    + validators.getFile () + ": " + e);
+            }
         }
     }
 
@@ -375,8 +578,11 @@ public class Crawler implements Runnable
     public void clear () {
         stop ();
         numPagesVisited = 0;
+        numPagesUnchanged = 0;
         numLinksTested = 0;
         clearVisited ();
+        if (checkpointer != null)
+            checkpointer.reset ();
         if (crawledRoots != null)
             for (int i=0; i < crawledRoots.length; ++i)
                 crawledRoots[i].disconnect ();
@@ -457,6 +663,19 @@ public class Crawler implements Runnable
     public void visit (Page page) {
     }
 
+    /**
+     * Callback for a page that hasn't changed since an earlier crawl
+     * (see setValidatorStore()), called instead of visit().  The page
+     * may have no content, if the server answered 304 (Not Modified);
+     * its links are the ones found by the earlier crawl.  
+     * The page predicate is not consulted.
+     * Default version does nothing.
+     *
+     * @param page Page retrieved by the crawler
+     */
+    public void unchanged (Page page) {
+    }
+
     /**
      * Callback for testing whether a link should be traversed.
      * Default version returns true for all links. Override this method
@@ -484,7 +703,8 @@ public class Crawler implements Runnable
         if (links != null && links.length > 0) {
             // give each link a default priority based on its page
             // and position on page
-            float priority = (depthFirst ? -numPagesVisited : numPagesVisited);
+            int n = numPagesVisited + numPagesUnchanged;
+            float priority = (depthFirst ? -n : n);
             float increment = 1.0f/links.length;
 
             for (int i=0;  i<links.length; ++i) {
@@ -497,18 +717,20 @@ public class Crawler implements Runnable
 
                 ++numLinksTested;
                 if (ignoreVisitedLinks && visited (l))
-                    // FIX: use atomic test-and-set
                     // FIX: set l.page somehow?
                     sendLinkEvent (l, LinkEvent.ALREADY_VISITED);
-                else if (!((type == null || l.hasAnyLabels (type))
-                           && (domain == null || l.hasAnyLabels (domain))
+                else if (!((typeLabels == null || l.hasAnyLabels (typeLabels))
+                           && (domainLabels == null || l.hasAnyLabels (domainLabels))
                            && (linkPredicate == null || linkPredicate.shouldVisit (l))
                            && shouldVisit (l)))
                     sendLinkEvent (l, LinkEvent.SKIPPED);
                 else if (page.getDepth() >= maxDepth)
                     sendLinkEvent (l, LinkEvent.TOO_DEEP);
+                else if (!markVisited (l) && ignoreVisitedLinks)
+                    // another worm queued the page since the test above
+                    sendLinkEvent (l, LinkEvent.ALREADY_VISITED);
                 else
-                    submit (l);
+                    enqueue (l);
             }
         }
     }
@@ -524,6 +746,13 @@ public class Crawler implements Runnable
     public int getPagesVisited() {
         return numPagesVisited;
     }
+    /**
+     * Get number of pages found unchanged since an earlier crawl.
+     * @return number of pages passed to unchanged() so far in this crawl
+     */
+    public int getPagesUnchanged() {
+        return numPagesUnchanged;
+    }
     /**
      * Get number of links tested.
      * @return number of links passed to shouldVisit() so far in this crawl
@@ -550,8 +779,15 @@ public class Crawler implements Runnable
             
         int n = 0;
         for (int i=0; i<w.length; ++i)
-            if (w[i] != null && w[i].link != null)
+            if (w[i] instanceof Dispatcher)
+                n += ((Dispatcher)w[i]).getActiveTasks ();
+            else if (w[i] != null && w[i].link != null)
                 ++n;                
+
+        Stage[] s = stages;
+        if (s != null)
+            for (int k=PARSE_STAGE; k<=EXPAND_STAGE; ++k)
+                n += s[k].getActiveWorms ();
         return n;
     }
 
@@ -686,6 +922,7 @@ public class Crawler implements Runnable
      */
     public void setDomain (String[] domain) {
         this.domain = domain;
+        domainLabels = compileLabels (domain);
     }
 
     /**
@@ -701,6 +938,11 @@ public class Crawler implements Runnable
      */
     public void setLinkType (String[] type) {
         this.type = type;
+        typeLabels = compileLabels (type);
+    }
+
+    private static LabelSet compileLabels (String[] labels) {
+        return (labels != null) ? new LabelSet (labels) : null;
     }
 
     /**
@@ -765,6 +1007,441 @@ public class Crawler implements Runnable
     public void setMaxDepth(int maxDepth) {
         this.maxDepth = maxDepth;
     }
+    /**
+     * Get frontier type.  Default value is HEAP_FRONTIER.
+     * @return HEAP_FRONTIER, LEGACY_FRONTIER, or SPILLING_FRONTIER.
+     */
+    public int getFrontierType () {
+        return frontierType;
+    }
+    /**
+     * Set frontier type.  Any links already queued are moved to
+     * the new frontier.  The frontier type can't be changed while
+     * the crawler is running, since its threads are waiting on the
+     * old queues.
+     * @param type one of HEAP_FRONTIER, LEGACY_FRONTIER, or SPILLING_FRONTIER.
+     * @exception IllegalStateException if the crawler is running
+     */
+    public void setFrontierType (int type) {
+        if (type == frontierType)
+            return;
+        if (state == CrawlEvent.STARTED)
+            throw new IllegalStateException ("can't change frontier type while crawling");
+        frontierType = type;
+        synchronized (crawlQueue) {
+            crawlQueue = transfer (crawlQueue, makeCrawlQueue ());
+            replaceFetchQueue ();
+        }
+    }
+
+    /**
+     * Get thread mode.  Default value is WORM_THREADS.
+     * @return WORM_THREADS, TASK_THREADS, ASYNC_FETCH, or PIPELINE.
+     */
+    public int getThreadMode () {
+        return threadMode;
+    }
+    /**
+     * Set thread mode.  Takes effect the next time the crawler
+     * is started.
+     * @param mode one of WORM_THREADS, TASK_THREADS, ASYNC_FETCH, 
+     * or PIPELINE.
+     */
+    public void setThreadMode (int mode) {
+        threadMode = mode;
+    }
+
+    /**
+     * Get number of threads in a stage of the PIPELINE thread mode.
+     * Default value is DownloadParameters.getMaxThreads() for 
+     * FETCH_STAGE, and 1 for the other stages.
+     * @param stage FETCH_STAGE, PARSE_STAGE, VISIT_STAGE, or EXPAND_STAGE
+     * @return number of threads
+     */
+    public int getStageThreads (int stage) {
+        checkStage (stage);
+        return (stage == FETCH_STAGE) ? dp.getMaxThreads () : stageThreads[stage];
+    }
+    /**
+     * Set number of threads in a stage of the PIPELINE thread mode.
+     * Takes effect the next time the crawler is started.  Setting the
+     * size of FETCH_STAGE changes the crawler's download parameters
+     * (see DownloadParameters.changeMaxThreads()).  A stage whose 
+     * callbacks aren't thread-safe should have only one thread.
+     * @param stage FETCH_STAGE, PARSE_STAGE, VISIT_STAGE, or EXPAND_STAGE
+     * @param n number of threads (at least 1)
+     */
+    public void setStageThreads (int stage, int n) {
+        checkStage (stage);
+        if (n < 1)
+            throw new IllegalArgumentException ("stage needs at least 1 thread");
+        if (stage == FETCH_STAGE)
+            setDownloadParameters (dp.changeMaxThreads (n));
+        else
+            stageThreads[stage] = n;
+    }
+
+    /**
+     * Get capacity of the queue in front of a stage of the PIPELINE 
+     * thread mode.  Default value is 16.  The queue in front of 
+     * FETCH_STAGE is the crawler's queue of links waiting to be 
+     * downloaded, which has no limit.
+     * @param stage FETCH_STAGE, PARSE_STAGE, VISIT_STAGE, or EXPAND_STAGE
+     * @return maximum number of links waiting for the stage, or
+     * Integer.MAX_VALUE for FETCH_STAGE
+     */
+    public int getStageQueueCapacity (int stage) {
+        checkStage (stage);
+        return (stage == FETCH_STAGE) ? Integer.MAX_VALUE : stageCapacity[stage];
+    }
+    /**
+     * Set capacity of the queue in front of a stage of the PIPELINE
+     * thread mode.  The stage before it waits while the queue is full.
+     * Takes effect immediately if the crawler is running.
+     * @param stage PARSE_STAGE, VISIT_STAGE, or EXPAND_STAGE
+     * @param n maximum number of links waiting for the stage (at least 1)
+     */
+    public void setStageQueueCapacity (int stage, int n) {
+        checkStage (stage);
+        if (stage == FETCH_STAGE)
+            throw new IllegalArgumentException ("fetch queue has no limit");
+        if (n < 1)
+            throw new IllegalArgumentException ("stage queue needs room for at least 1 link");
+        stageCapacity[stage] = n;
+
+        Stage[] s = stages;
+        if (s != null)
+            s[stage].queue.setCapacity (n);
+    }
+
+    /**
+     * Get number of links waiting in the queue in front of a stage 
+     * of the PIPELINE thread mode.
+     * @param stage FETCH_STAGE, PARSE_STAGE, VISIT_STAGE, or EXPAND_STAGE
+     * @return number of links waiting for the stage, or 0 if the stage
+     * isn't running
+     */
+    public int getStageQueueDepth (int stage) {
+        checkStage (stage);
+        if (stage == FETCH_STAGE) {
+            Frontier queue = fetchQueue;
+            synchronized (queue) {
+                return queue.size ();
+            }
+        }
+        Stage[] s = stages;
+        return (s != null) ? s[stage].queue.size () : 0;
+    }
+
+    /**
+     * Get number of threads in a stage of the PIPELINE thread mode 
+     * that are working on a link, or waiting to hand it to the next
+     * stage.
+     * @param stage FETCH_STAGE, PARSE_STAGE, VISIT_STAGE, or EXPAND_STAGE
+     * @return number of busy threads, or 0 if the stage isn't running
+     */
+    public int getStageActiveThreads (int stage) {
+        checkStage (stage);
+        Stage[] s = stages;
+        if (s == null)
+            return 0;
+        if (stage != FETCH_STAGE)
+            return s[stage].getActiveWorms ();
+
+        Worm[] w = worms;
+        int n = 0;
+        for (int i=0; w != null && i<w.length; ++i)
+            if (w[i] != null && w[i].link != null)
+                ++n;
+        return n;
+    }
+
+    private static void checkStage (int stage) {
+        if (stage < FETCH_STAGE || stage > EXPAND_STAGE)
+            throw new IllegalArgumentException ("no such stage: " + stage);
+    }
+
+    private static Frontier transfer (Frontier from, Frontier to) {
+        for (Enumeration e = from.elements (); e.hasMoreElements (); )
+            to.put ((Link)e.nextElement ());
+        return to;
+    }
+
+    /*
+     * Replace the fetch queue with a fresh one made by makeFetchQueue(),
+     * moving any queued links over.  Worms waiting on the old queue
+     * are woken so they move to the new one.
+     */
+    private void replaceFetchQueue () {
+        Frontier old = fetchQueue;
+        synchronized (old) {
+            fetchQueue = transfer (old, makeFetchQueue ());
+            old.notifyAll ();
+        }
+    }
+
+    /*
+     * Make an empty fetch queue.  If the download parameters limit
+     * requests per server, this is a HostScheduler; otherwise it
+     * is a frontier of the current frontier type, wrapped in a
+     * RobotsFrontier.  Either way, links come out of the fetch queue
+     * only once their robots.txt is cached.
+     */
+    private Frontier makeFetchQueue () {
+        if (!dp.isPolite ())
+            return new RobotsFrontier (makeFrontier (), dp, robotExclusion);
+        Frontier queue = new HostScheduler (dp, robotExclusion);
+        if (frontierType == SPILLING_FRONTIER)
+            queue = new SpillingFrontier (queue);
+        return queue;
+    }
+
+    /*
+     * Test whether the fetch queue spills links to disk.
+     */
+    private boolean isSpilling () {
+        Frontier queue = fetchQueue;
+        if (queue instanceof RobotsFrontier)
+            queue = ((RobotsFrontier)queue).queue;
+        return queue instanceof SpillingFrontier;
+    }
+
+    /*
+     * Make an empty crawling queue.  A spilling frontier is never used
+     * for the crawling queue: with a spilling fetch queue, the crawling
+     * queue holds only the links being downloaded or processed.
+     */
+    private Frontier makeCrawlQueue () {
+        Frontier queue = makeFrontier ();
+        if (queue instanceof SpillingFrontier)
+            queue = new HeapFrontier ();
+        return queue;
+    }
+
+    /**
+     * Make an empty frontier of the current frontier type.  
+     * Called for the crawling queue, and for the fetch queue unless
+     * the download parameters call for per-server politeness
+     * (see DownloadParameters.isPolite()).
+     * Override this method to plug in a custom Frontier.
+     * @return new frontier
+     */
+    protected Frontier makeFrontier () {
+        switch (frontierType) {
+          case LEGACY_FRONTIER:
+            return new QueueFrontier ();
+          case SPILLING_FRONTIER:
+            return new SpillingFrontier (new HeapFrontier ());
+          default:
+            return new HeapFrontier ();
+        }
+    }
+    /**
+     * Get directory of the visited set.  Default value is null.
+     * @return directory where the visited set is kept in memory-mapped
+     * files, or null if it is kept in the Java heap.
+     */
+    public File getVisitedDirectory () {
+        return visitedDirectory;
+    }
+    /**
+     * Set directory of the visited set.  Keeping the visited set in
+     * memory-mapped files lets a long crawl remember more pages than 
+     * fit in the Java heap.  Pages already marked as visited are 
+     * moved to the new set.
+     * @param dir scratch directory for the visited set's files, or
+     * null to keep the visited set in the Java heap.
+     */
+    public void setVisitedDirectory (File dir) {
+        visitedDirectory = dir;
+        VisitedSet old = visitedPages;
+        VisitedSet set = makeVisitedSet ();
+        if (old instanceof FingerprintSet && set instanceof FingerprintSet)
+            ((FingerprintSet)set).addAll ((FingerprintSet)old);
+        visitedPages = set;
+        old.clear ();
+    }
+
+    /**
+     * Get validator store.  Default value is null.
+     * @return store of validators saved by earlier crawls, or null if
+     * pages are always downloaded in full.
+     */
+    public ValidatorStore getValidatorStore () {
+        return validators;
+    }
+    /**
+     * Set validator store.  Pages found in the store are downloaded 
+     * with conditional requests, and a page that the server reports 
+     * unchanged (304 Not Modified), or whose content hashes the same 
+     * as before, is passed to unchanged() instead of visit(); its links
+     * are still followed.  The validators of all pages downloaded 
+     * in full are saved in the store, which is written to its file
+     * when run() returns.
+     * @param store validator store, or null to download pages in full.
+     */
+    public void setValidatorStore (ValidatorStore store) {
+        validators = store;
+    }
+
+    /**
+     * Get content budget.  Default value is null.
+     * @return budget for the content of downloaded pages, or null if 
+     * content isn't limited.
+     */
+    public ContentBudget getContentBudget () {
+        return contentBudget;
+    }
+    /**
+     * Set content budget.  With a budget, the crawler charges each 
+     * page it downloads to the budget, delays new downloads while the 
+     * budget is exceeded, and discards each page's content (see 
+     * Page.discardContent()) once it has called visit() and expand() 
+     * on the page, so that only content locked by Page.keepContent() 
+     * outlives the crawler's use of it.  Without a budget, content is
+     * never discarded by the crawler.  Changes take effect on the
+     * next call to run().
+     * @param budget content budget, or null for no limit.
+     */
+    public void setContentBudget (ContentBudget budget) {
+        contentBudget = budget;
+    }
+
+    /**
+     * Make an empty visited set.  The default is a FingerprintSet
+     * kept in the visited directory (see setVisitedDirectory()).
+     * Override this method to plug in a custom VisitedSet.
+     * @return new visited set
+     */
+    protected VisitedSet makeVisitedSet () {
+        return new FingerprintSet (visitedDirectory);
+    }
+
+    /**
+     * Get checkpoint directory.  Default value is null.
+     * @return directory where checkpoints are written, or null if
+     * checkpointing is off.
+     */
+    public File getCheckpointDirectory () {
+        return checkpointDirectory;
+    }
+    /**
+     * Set checkpoint directory.  While the crawler runs, a checkpoint
+     * of its queue, visited pages, statistics and Checkpointables is
+     * written to this directory every getCheckpointInterval() seconds
+     * by a background thread, and once more when run() returns.
+     * A checkpoint already in the directory is replaced by the first
+     * new one; to continue from it instead, call resume().
+     * @param dir checkpoint directory, or null to turn checkpointing off.
+     */
+    public void setCheckpointDirectory (File dir) {
+        checkpointDirectory = dir;
+        checkpointer = (dir != null) ? new Checkpointer (this, dir, false) : null;
+    }
+    /**
+     * Get checkpoint interval.  Default value is 60 seconds.
+     * @return time between checkpoints, in seconds.
+     */
+    public int getCheckpointInterval () {
+        return checkpointInterval;
+    }
+    /**
+     * Set checkpoint interval.  Takes effect the next time the
+     * crawler is started.
+     * @param interval time between checkpoints, in seconds.
+     */
+    public void setCheckpointInterval (int interval) {
+        checkpointInterval = interval;
+    }
+
+    /**
+     * Add an object whose state is saved with each checkpoint,
+     * such as a Mirror being written by visit().
+     * @param c object to checkpoint
+     */
+    public void addCheckpointable (Checkpointable c) {
+        if (!checkpointables.contains (c))
+            checkpointables.addElement (c);
+    }
+
+    /**
+     * Remove an object added by addCheckpointable().
+     * @param c object to remove
+     */
+    public void removeCheckpointable (Checkpointable c) {
+        checkpointables.removeElement (c);
+    }
+
+    Checkpointable[] getCheckpointables () {
+        Checkpointable[] c;
+        synchronized (checkpointables) {
+            c = new Checkpointable[checkpointables.size ()];
+            checkpointables.copyInto (c);
+        }
+        return c;
+    }
+
+    /**
+     * Write a checkpoint now, in the calling thread.  Does nothing
+     * if checkpointing is off.
+     * @exception IOException if the checkpoint can't be written
+     */
+    public void checkpoint () throws IOException {
+        if (checkpointer != null)
+            checkpointer.checkpoint ();
+    }
+
+    /**
+     * Test whether a directory holds a checkpoint.
+     * @param dir directory to test
+     * @return true if dir holds a checkpoint that resume() can read
+     */
+    public static boolean hasCheckpoint (File dir) {
+        return new File (dir, Checkpointer.STATS).exists ();
+    }
+
+    /**
+     * Resume a crawl from a checkpoint, and run it.  The crawler's
+     * statistics, visited pages and queue are restored from the
+     * checkpoint, as are its Checkpointables (which must be added 
+     * before calling this method).  Pages that were being downloaded
+     * or processed when the checkpoint was written are crawled 
+     * again.  Checkpoints continue to be written to the same 
+     * directory.  The crawler must not be running.
+     * @param checkpointDir directory holding the checkpoint
+     * @exception IOException if the checkpoint can't be read
+     */
+    public void resume (File checkpointDir) throws IOException {
+        checkpointer = null;  // so clear() leaves the old checkpoint alone
+        clear ();
+
+        Checkpointer cp = new Checkpointer (this, checkpointDir, true);
+        cp.restore ();
+        checkpointDirectory = checkpointDir;
+        checkpointer = cp;
+
+        // paused, so run() continues the restored crawl instead of 
+        // starting again from the roots
+        state = CrawlEvent.PAUSED;
+        run ();
+    }
+
+    void restoreStatistics (int pagesVisited, int linksTested, int pagesUnchanged) {
+        numPagesVisited = pagesVisited;
+        numLinksTested = linksTested;
+        numPagesUnchanged = pagesUnchanged;
+    }
+
+    void restoreLink (URL url, int depth, float priority, boolean done) {
+        if (!visitedPages.add (Link.getPageURL (url).toString ()) || done)
+            // already restored, or finished before the checkpoint
+            return;
+        Link link = new Link (url, depth);
+        link.setPriority (priority);
+        link.setDownloadParameters (dp);
+        enqueue (link);
+    }
+
     /**
      * Get download parameters (such as number of threads, timeouts, maximum
      * page size, etc.)
@@ -779,6 +1456,11 @@ public class Crawler implements Runnable
      */
     public void setDownloadParameters(DownloadParameters dp) {
         this.dp = dp;
+        if (dp.isPolite () || fetchQueue instanceof HostScheduler)
+            // rebuild the fetch queue for the new politeness settings
+            replaceFetchQueue ();
+        else if (fetchQueue instanceof RobotsFrontier)
+            ((RobotsFrontier)fetchQueue).dp = dp;
     }
 
     /**
@@ -870,11 +1552,25 @@ public class Crawler implements Runnable
      * @param link Link to put in queue
      */
     public void submit (Link link) {
-        markVisited (link); // FIX: need atomic test-and-set of visited flag
+        markVisited (link);
+        enqueue (link);
+    }
+
+    private void enqueue (Link link) {
+        if (checkpointer != null)
+            checkpointer.queued (link);
         sendLinkEvent (link, LinkEvent.QUEUED);
+
+        // start retrieving the link's robots.txt, so that it's
+        // ready by the time a worm downloads the link
+        DownloadParameters ldp = link.getDownloadParameters ();
+        if ((ldp != null ? ldp : dp).getObeyRobotExclusion ())
+            robotExclusion.prefetch (link.getURL ());
+
         synchronized (crawlQueue) {
             synchronized (fetchQueue) {
-                crawlQueue.put (link);
+                if (!isSpilling ())
+                    crawlQueue.put (link);
                 ++numPagesLeft;
                 fetchQueue.put (link);
                 fetchQueue.notifyAll ();  // wake up worms
@@ -891,13 +1587,44 @@ public class Crawler implements Runnable
             submit (links[i]);
     }
 
+    /**
+     * Change the priority of a link.  If the link is waiting in the
+     * crawling queue, it is moved to its new position.
+     * @param link Link to change
+     * @param priority new priority (lower values are crawled first)
+     */
+    public void changePriority (Link link, float priority) {
+        synchronized (crawlQueue) {
+            synchronized (fetchQueue) {
+                link.setPriority (priority);
+                fetchQueue.update (link);
+                if (crawlQueue.update (link))
+                    crawlQueue.notify ();
+            }
+        }
+    }
+
     /**
      * Enumerate crawling queue.
      * @return an enumeration of Link objects which are waiting to be visited.
      */
     // FIX: enumerate in priority order
     public Enumeration enumerateQueue () {
-        return crawlQueue.elements ();
+        if (!isSpilling ())
+            return crawlQueue.elements ();
+
+        // links waiting in memory, followed by links being processed;
+        // links spilled to disk are not included
+        Vector v = new Vector ();
+        synchronized (crawlQueue) {
+            synchronized (fetchQueue) {
+                for (Enumeration e = fetchQueue.elements (); e.hasMoreElements (); )
+                    v.addElement (e.nextElement ());
+                for (Enumeration e = crawlQueue.elements (); e.hasMoreElements (); )
+                    v.addElement (e.nextElement ());
+            }
+        }
+        return v.elements ();
     }
 
     /*
@@ -1079,15 +1806,18 @@ public class Crawler implements Runnable
      * @return true if link has been passed to walk() during this crawl
      */
     public boolean visited (Link link) {
-        return visitedPages.containsKey (link.getPageURL().toString());
+        return visitedPages.contains (link.getPageURL().toString());
     }
 
     /**
-     * Register that a link has been visited.
+     * Register that a link has been visited.  Testing and marking 
+     * is a single atomic step, so when several threads mark the
+     * same page, exactly one of them gets true.
      * @param link  Link that has been visited
+     * @return true if the link had not been visited before
      */
-    protected void markVisited (Link link) {
-        visitedPages.put (link.getPageURL().toString(), this);
+    protected boolean markVisited (Link link) {
+        return visitedPages.add (link.getPageURL().toString());
     }
 
     /**
@@ -1107,35 +1837,92 @@ public class Crawler implements Runnable
 
         while (!w.dead) {
             //System.err.println (w + ": fetching a link");
+            if (!nextLink (w) || !waitForContentRoom (w))
+                return;
+            download (w, timer);
+            // loop around and fetch another link
+        }
+    }
 
-            // pull the highest-priority link from the fetch queue
-            synchronized (fetchQueue) {
-                while (!w.dead
-                       && (w.link = (Link)fetchQueue.deleteMin ()) == null) {
+    /*
+     * Pull the highest-priority link from the fetch queue into w.link,
+     * waiting until one is available.  Returns false if w dies first.
+     */
+    private boolean nextLink (Worm w) {
+        while (!w.dead && w.link == null) {
+            Frontier queue = fetchQueue;
+            synchronized (queue) {
+                if (queue != fetchQueue)
+                    continue; // fetch queue was replaced; use the new one
+                if ((w.link = queue.deleteMin ()) == null) {
                     try {
-                        fetchQueue.wait ();
+                        queue.wait (queue.getWaitTime ());
                     } catch (InterruptedException e) {}
                 }
             }
+        }
 
-            if (w.dead)
-                return;
-                
-            //System.err.println (w + ": processing " + w.link.toDescription());
-            
-            try {
-                // download the link to get a page
-                DownloadParameters dp;
-                Page page;
+        if (w.dead)
+            return false;
 
-                dp = w.link.getDownloadParameters();
-                if (dp == null)
-                    dp = this.dp;
-                int timeout = dp.getDownloadTimeout();
+        if (isSpilling ()) {
+            // a spilling fetch queue leaves links out of the crawling
+            // queue until they are fetched
+            synchronized (crawlQueue) {
+                crawlQueue.put (w.link);
+            }
+        }
+        return true;
+    }
+
+    /*
+     * Wait until the content budget (if any) has room for another
+     * download.  Returns false if w dies first.
+     */
+    private boolean waitForContentRoom (Worm w) {
+        ContentBudget budget = crawlBudget;
+        if (budget != null) {
+            try {
+                budget.waitForRoom ();
+            } catch (InterruptedException e) {}
+        }
+        return !w.dead;
+    }
 
+    /*
+     * Download w.link and process it (or leave it for the main thread 
+     * to process, in synchronous mode).  Clears w.link when done.
+     */
+    private void download (Worm w, Timer timer) {
+        //System.err.println (w + ": processing " + w.link.toDescription());
+        Stage[] stages = this.stages;
+        
+        try {
+            // download the link to get a page
+            DownloadParameters dp;
+            Page page;
+
+            dp = w.link.getDownloadParameters();
+            if (dp == null)
+                dp = this.dp;
+            int timeout = dp.getDownloadTimeout();
+
+            if (!(w instanceof AsyncTask)) {
+                if (!robotsReady (w.link, dp)) {
+                    requeue (w.link);
+                    w.link = null;
+                    return;
+                }
+                setValidator (w.link);
                 sendLinkEvent (w.link, LinkEvent.RETRIEVING);
-                try {
-                    
+            }
+            try {
+                
+                if (w instanceof AsyncTask)
+                    // downloaded already (see startFetch); just parse it
+                    page = new Page (w.link, ((AsyncTask)w).fetch.get (), 
+                                     dp, new HTMLParser (dp));
+                else {
                     if (timeout > 0)
                         timer.set (timeout*1000, false);
 
@@ -1143,98 +1930,415 @@ public class Crawler implements Runnable
                         && robotExclusion.disallowed (w.link.getURL()))
                         throw new IOException ("disallowed by Robot Exclusion Standard (robots.txt)");
 
-                    page = new Page (w.link, dp);
-                    
-                } finally {
-                    timer.cancel ();
-                }
-                    
-                if (w.dead)
-                    return;
-                    
-                sendLinkEvent (w.link, LinkEvent.DOWNLOADED);
-
-                if (synchronous) {
-                    // Synchronous mode.
-                    // Main thread will call process() when
-                    // this link's turn arrives (in priority order).
-                    // Wake up the main thread.
-                    synchronized (crawlQueue) {
-                        crawlQueue.notify ();
-                    }
+                    page = new Page (w.link, dp, (stages != null) 
+                                     ? null  // parse stage parses it
+                                     : new HTMLParser (dp));
                 }
-                else {
-                    // Asynchronous mode.
-                    // Each worm calls process() on its link. 
-                    process (w.link);
+                
+            } finally {
+                timer.cancel ();
+                release (w.link);
+            }
+                
+            if (w.dead)
+                return;
+                
+            if (crawlBudget != null)
+                crawlBudget.add (page);
+            sendLinkEvent (w.link, LinkEvent.DOWNLOADED);
+
+            if (synchronous) {
+                // Synchronous mode.
+                // Main thread will call process() when
+                // this link's turn arrives (in priority order).
+                // Wake up the main thread.
+                synchronized (crawlQueue) {
+                    crawlQueue.notify ();
                 }
+            }
+            else if (stages != null) {
+                // Pipelined mode.
+                // Hand the link to the parse stage, waiting
+                // if that stage has fallen behind.
+                if (!stages[PARSE_STAGE].queue.put (w.link))
+                    return;  // crawler stopped; link stays with worm
+            }
+            else {
+                // Asynchronous mode.
+                // Each worm calls process() on its link. 
+                process (w.link);
+            }
+            
+            w.link = null;
+
+        } catch (ThreadDeath e) {
+            throw e;  // have to continue dying 
+        } catch (Throwable e) {
+            // Some other exception occurred, either during the page fetch
+            // or in some user code.  Mark up the link with the error.
+            if (w.dead)
+                return;
                 
-                w.link = null;
+            abandon (w.link, e);
+            w.link = null;
+        }
+    }
+
+    /*
+     * Stage loop (PIPELINE mode).  Takes links from the stage's queue,
+     * does the stage's share of process() on each one, and hands it
+     * to the next stage, waiting if that stage has fallen behind.
+     */
+    void work (StageWorm w) {
+        try {
+            workStage (w);
+        } finally {
+            synchronized (w) {
+                if (w.requeue && w.link != null)
+                    // crawler was paused while the worm had a link
+                    requeue (w.link);
+            }
+        }
+    }
+
+    private void workStage (StageWorm w) {
+        Stage[] stages = this.stages;
+        Stage stage = w.stage;
+
+        while (!w.dead) {
+            try {
+                w.link = (Link)stage.queue.take ();
+            } catch (InterruptedException e) {
+                continue;
+            }
+            if (w.link == null)
+                return;  // stage was stopped
 
-                // loop around and fetch another link
+            try {
+                Page page = w.link.getPage ();
+                switch (stage.kind) {
+                  case PARSE_STAGE:
+                    if (page.hasContent () 
+                        && MimeTypeUtil.isHTML (page.getMimeType ())) {
+                        DownloadParameters dp = w.link.getDownloadParameters ();
+                        page.parse (new HTMLParser (dp != null ? dp : this.dp));
+                    }
+                    classify (page);
+                    break;
+                  case VISIT_STAGE:
+                    deliver (page);
+                    break;
+                  case EXPAND_STAGE:
+                    finish (w.link);
+                    w.link = null;
+                    break;
+                }
+
+                if (w.dead)
+                    return;
+                if (stage.kind < EXPAND_STAGE
+                    && !stages[stage.kind + 1].queue.put (w.link))
+                    return;  // next stage was stopped
+                w.link = null;
 
             } catch (ThreadDeath e) {
                 throw e;  // have to continue dying 
             } catch (Throwable e) {
-                // Some other exception occurred, either during the page fetch
-                // or in some user code.  Mark up the link with the error.
                 if (w.dead)
                     return;
-                    
-                sendLinkEvent (w.link, LinkEvent.ERROR, e);
-                synchronized (crawlQueue) {
-                    crawlQueue.delete (w.link);
-                    --numPagesLeft;
-                    w.link = null;
-                    crawlQueue.notify ();
+
+                abandon (w.link, e);
+                w.link = null;
+            }
+        }
+    }
+
+    /*
+     * Wait for the worms of stopped stages to finish the callbacks
+     * they're in and put back their links, for at most 
+     * STAGE_JOIN_TIMEOUT milliseconds in all (PIPELINE mode).
+     */
+    private void joinStages (Stage[] stopped) {
+        long deadline = System.currentTimeMillis () + STAGE_JOIN_TIMEOUT;
+        try {
+            for (int k=PARSE_STAGE; k<=EXPAND_STAGE; ++k) {
+                StageWorm[] w = stopped[k].worms;
+                for (int i=0; i<w.length; ++i) {
+                    long wait = deadline - System.currentTimeMillis ();
+                    if (wait <= 0)
+                        return;
+                    if (w[i].thread != Thread.currentThread ())
+                        w[i].thread.join (wait);
+                }
+            }
+        } catch (InterruptedException e) {}
+    }
+
+    /*
+     * Kill a stage's worms and close its queue (PIPELINE mode).  If 
+     * the crawler is being paused, the links waiting in the stage's 
+     * queue go back in the fetch queue, and so do the links the worms 
+     * were working on, unless they finish first.
+     */
+    private void stopStage (Stage stage, boolean paused) {
+        for (int i=0; i<stage.worms.length; ++i)
+            stage.worms[i].cancel (paused);
+
+        Object[] waiting = stage.queue.close ();
+        if (paused)
+            for (int i=0; i<waiting.length; ++i)
+                requeue ((Link)waiting[i]);
+    }
+
+    /*
+     * Dispatch loop (TASK_THREADS mode).  Waits for a free slot and 
+     * a link, then starts a FetchTask to download the link.
+     */
+    void dispatch (Dispatcher d) {
+        while (!d.dead) {
+            try {
+                d.permits.acquire ();
+            } catch (InterruptedException e) {
+                continue;
+            }
+
+            boolean ok = nextLink (d) && waitForContentRoom (d);
+            synchronized (d) {
+                if (!ok || d.dead) {
+                    // crawler stopped or paused while we waited
+                    d.permits.release ();
+                    if (d.requeue && d.link != null)
+                        requeue (d.link);
+                    return;
                 }
+
+                FetchTask t = (d.access != null)
+                    ? new AsyncTask (d, d.link)
+                    : new FetchTask (d, d.link);
+                d.link = null;
+                d.tasks.addElement (t);
+                t.start ();
+            }
+        }
+    }
+
+    /*
+     * Start downloading an AsyncTask's link (ASYNC_FETCH mode).
+     * The task is called back when the download finishes.
+     */
+    void startFetch (AsyncTask t) {
+        DownloadParameters dp = t.link.getDownloadParameters ();
+        if (dp == null)
+            dp = this.dp;
+
+        if (!robotsReady (t.link, dp)) {
+            requeue (t.link);
+            t.link = null;
+            t.dispatcher.finished (t);
+            return;
+        }
+
+        setValidator (t.link);
+        sendLinkEvent (t.link, LinkEvent.RETRIEVING);
+        if (dp.getObeyRobotExclusion() 
+            && robotExclusion.disallowed (t.link.getURL())) {
+            Fetch f = new Fetch (null, t.link, t);
+            t.fetch = f;
+            f.finish (null, new IOException ("disallowed by Robot Exclusion Standard (robots.txt)"));
+        }
+        else
+            t.fetch = t.dispatcher.access.fetch (t.link, dp, t);
+    }
+
+    /*
+     * Test whether a link may be checked against robots.txt without
+     * waiting.  The fetch queue lets a link through only once its
+     * robots.txt is cached, but the cache may have been cleared since;
+     * then the link should go back in the fetch queue, which holds
+     * it until its robots.txt has been retrieved again.
+     */
+    private boolean robotsReady (Link link, DownloadParameters dp) {
+        return !dp.getObeyRobotExclusion () 
+            || robotExclusion.isCached (link.getURL ());
+    }
+
+    void runTask (FetchTask t) {
+        try {
+            download (t, new WormTimer (t));
+        } finally {
+            synchronized (t) {
+                if (t.requeue && t.link != null)
+                    // crawler was paused during the download
+                    requeue (t.link);
             }
+            t.dispatcher.finished (t);
+        }
+    }
+
+    /*
+     * Put a partly-processed link back in the fetch queue.
+     */
+    private void requeue (Link link) {
+        releaseContent (link);  // page will be downloaded again
+        synchronized (fetchQueue) {
+            fetchQueue.release (link);
+            fetchQueue.put (link);
+            fetchQueue.notifyAll ();  // wake up worms, if running
+        }
+    }
+
+    /*
+     * Drop the crawler's hold on a link's page, if it's charged to
+     * the content budget.
+     */
+    private void releaseContent (Link link) {
+        ContentBudget budget = crawlBudget;
+        Page page = link.getPage ();
+        if (budget != null && page != null)
+            budget.finish (page);
+    }
+
+    /*
+     * Tell the fetch queue that a link's download is finished, 
+     * waking up worms if that lets more links through.
+     */
+    private void release (Link link) {
+        Frontier queue = fetchQueue;
+        synchronized (queue) {
+            if (queue.release (link))
+                queue.notifyAll ();
         }
     }
 
     void process (Link link) {
         Page page = link.getPage ();
+        classify (page);
+        deliver (page);
+        finish (link);
+    }
 
-        // classify the page
-        for (int j=0, len=classifiers.size(); j<len; ++j) {
-            Classifier cl = (Classifier)classifiers.elementAt(j);
-            cl.classify (page);
+    /*
+     * Run the classifiers on a downloaded page, and note whether
+     * it's unchanged since an earlier crawl.
+     */
+    private void classify (Page page) {
+        if (page.isNotModified ())
+            // no content to classify; the links saved with the
+            // validator were classified by the earlier crawl
+            page.unchanged = true;
+        else {
+            // classify the page
+            for (int j=0, len=classifiers.size(); j<len; ++j) {
+                Classifier cl = (Classifier)classifiers.elementAt(j);
+                cl.classify (page);
+            }
+            page.unchanged = saveValidator (page.getOrigin (), page);
         }
+    }
 
-        // invoke callbacks on the page
-        ++numPagesVisited;
-        if (pagePredicate == null || pagePredicate.shouldActOn (page)) {
-            if (action != null)
-                action.visit (page);
-            visit (page);
+    /*
+     * Invoke callbacks on a classified page.
+     */
+    private void deliver (Page page) {
+        if (page.unchanged) {
+            ++numPagesUnchanged;
+            unchanged (page);
         }
-        expand (page);
+        else {
+            ++numPagesVisited;
+            if (pagePredicate == null || pagePredicate.shouldActOn (page)) {
+                if (action != null)
+                    action.visit (page);
+                visit (page);
+            }
+        }
+    }
+
+    /*
+     * Expand the crawl from a visited page, and discard its link.
+     */
+    private void finish (Link link) {
+        expand (link.getPage ());
         
         // send out the event
         sendLinkEvent (link, LinkEvent.VISITED);
+        releaseContent (link);
         
         // discard link
         synchronized (crawlQueue) {
             crawlQueue.delete (link);
+            if (checkpointer != null)
+                checkpointer.done (link);
+            --numPagesLeft;
+            crawlQueue.notify ();
+        }
+    }
+
+    /*
+     * Give up on a link after an error, either in downloading its
+     * page or in some user code.
+     */
+    private void abandon (Link link, Throwable e) {
+        sendLinkEvent (link, LinkEvent.ERROR, e);
+        releaseContent (link);
+        synchronized (crawlQueue) {
+            crawlQueue.delete (link);
+            if (checkpointer != null)
+                checkpointer.done (link);
             --numPagesLeft;
             crawlQueue.notify ();
         }
     }
 
+    /*
+     * Look up the validator saved for a link by an earlier crawl,
+     * so that the link is downloaded with a conditional request.
+     */
+    private void setValidator (Link link) {
+        ValidatorStore store = validators;
+        if (store != null) {
+            Validator v = store.get (link.getURL ());
+            link.setValidator (v != null && v.isConditional () ? v : null);
+        }
+    }
+
+    /*
+     * Save the validator of a page downloaded in full, for the next
+     * crawl.  Returns true if the page's content is the same as 
+     * when the earlier crawl saw it, even though the server couldn't 
+     * tell (e.g. because it sends no Last-Modified or ETag).
+     */
+    private boolean saveValidator (Link link, Page page) {
+        ValidatorStore store = validators;
+        if (store == null)
+            return false;
+
+        long hash = FingerprintSet.fingerprint (page.getContentBytes ());
+        Validator old = store.get (link.getURL ());
+        store.put (link.getURL (), new Validator (page, hash));
+        return old != null && old.getContentHash () == hash;
+    }
+
     void fetchTimedOut (Worm w, int interval) {
-        if (w.dead)
-            return;
+        if (!w.die ())
+            return;  // already dead
 
-        w.die ();
         sendLinkEvent (w.link, LinkEvent.ERROR, 
                        new IOException ("Timeout after " + interval + " seconds"));
 
         synchronized (crawlQueue) {
             crawlQueue.delete (w.link);
+            if (checkpointer != null)
+                checkpointer.done (w.link);
             --numPagesLeft;
             
-            worms[w.i] = new Worm (this, w.i);
-            worms[w.i].start ();
+            // a FetchTask keeps its slot until its thread finishes (see
+            // runTask()), since an interrupt may not unblock its socket;
+            // a stopped worm is replaced
+            if (!(w instanceof FetchTask)) {
+                worms[w.i] = new Worm (this, w.i);
+                worms[w.i].start ();
+            }
             
             crawlQueue.notify ();
         }
@@ -1255,29 +2359,238 @@ public class Crawler implements Runnable
 
 }
 
-/* Simple Thread subclass that invokes a crawler's fetch loop. */
-class Worm extends Thread {
+/* Thread body that invokes a crawler's fetch loop. */
+class Worm implements Runnable {
     Crawler crawler; // crawler in charge of this worm
     int i;           // index of this worm in crawler.worms[]
     Link link;       // link this worm is currently working on
     boolean dead = false; // true if this worm has been killed
+    Thread thread;   // thread running this worm
 
     public Worm (Crawler crawler, int i) {
-        super (crawler.getName() + " worm " + i);
-        setDaemon (true);
         this.crawler = crawler;
         this.i = i;
+        thread = makeThread ();
+    }
+
+    Thread makeThread () {
+        Thread t = new Thread (this, crawler.getName() + " worm " + i);
+        t.setDaemon (true);
+        return t;
+    }
+
+    public void start () {
+        thread.start ();
     }
 
     public void run () {
         crawler.fetch (this);
     }
     
-    public void die () {
+    /* Kill this worm.  Returns false if it was already dead. */
+    public synchronized boolean die () {
+        if (dead)
+            return false;
         dead = true;
-        stop ();
+        kill ();
+        return true;
+    }
+
+    void kill () {
+        try {
+            thread.stop ();
+        } catch (UnsupportedOperationException e) {
+            // JDK no longer stops threads; settle for an interrupt
+            thread.interrupt ();
+        }
+    }
+}
+
+/* 
+ * Downloads a single link on a lightweight thread (TASK_THREADS mode).
+ * A FetchTask is never stopped, only interrupted, so it can be
+ * cancelled without replacing any thread.
+ */
+class FetchTask extends Worm {
+    Dispatcher dispatcher;   // dispatcher that started this task
+    boolean requeue = false; // true if link goes back in the fetch queue
+    boolean finished = false; // true once the task has given up its slot
+
+    public FetchTask (Dispatcher dispatcher, Link link) {
+        super (dispatcher.crawler, -1);
+        this.dispatcher = dispatcher;
+        this.link = link;
+    }
+
+    Thread makeThread () {
+        return Thr.makeLightweight (this, crawler.getName() + " task");
+    }
+
+    public void run () {
+        crawler.runTask (this);
+    }
+
+    void kill () {
+        thread.interrupt ();
+    }
+
+    public synchronized void cancel (boolean requeue) {
+        if (die ())
+            this.requeue = requeue;
+    }
+}
+
+/*
+ * Downloads a single link through AsyncAccess (ASYNC_FETCH mode).
+ * No thread is started until the download finishes; then a
+ * lightweight thread parses and processes the page.
+ */
+class AsyncTask extends FetchTask implements FetchListener {
+    Fetch fetch;   // download in progress
+
+    public AsyncTask (Dispatcher dispatcher, Link link) {
+        super (dispatcher, link);
+    }
+
+    Thread makeThread () {
+        return null;  // made by fetched()
+    }
+
+    public void start () {
+        crawler.startFetch (this);
+    }
+
+    public synchronized void fetched (Fetch f) {
+        fetch = f;  // may finish before startFetch() returns
+        thread = super.makeThread ();
+        thread.start ();
+    }
+
+    void kill () {
+        if (thread != null)
+            thread.interrupt ();
+        else if (fetch != null)
+            fetch.cancel ();  // calls fetched() to clean up
+    }
+}
+
+/* 
+ * Thread body that hands links from the fetch queue to FetchTasks,
+ * at most a fixed number at a time (TASK_THREADS mode). 
+ */
+class Dispatcher extends Worm {
+    Semaphore permits;       // free download slots
+    AsyncAccess access;      // used to download, in ASYNC_FETCH mode
+    Vector tasks = new Vector (); // FetchTasks in flight
+    boolean requeue = false; // true if link goes back in the fetch queue
+
+    public Dispatcher (Crawler crawler, int maxTasks) {
+        super (crawler, 0);
+        permits = new Semaphore (maxTasks);
+    }
+
+    Thread makeThread () {
+        Thread t = new Thread (this, crawler.getName() + " dispatcher");
+        t.setDaemon (true);
+        return t;
+    }
+
+    public void run () {
+        crawler.dispatch (this);
+    }
+
+    void kill () {
+        thread.interrupt ();
+    }
+
+    /* Kill this dispatcher and all its tasks. */
+    public synchronized void cancel (boolean requeue) {
+        if (die ())
+            this.requeue = requeue;
+        for (Enumeration e = ((Vector)tasks.clone ()).elements (); 
+             e.hasMoreElements (); )
+            ((FetchTask)e.nextElement ()).cancel (requeue);
+    }
+
+    /* Give up a task's slot.  Only the first call for each task counts. */
+    void finished (FetchTask t) {
+        synchronized (t) {
+            if (t.finished)
+                return;
+            t.finished = true;
+        }
+        tasks.removeElement (t);
+        permits.release ();
+    }
+
+    int getActiveTasks () {
+        return tasks.size ();
+    }
+}
+
+/*
+ * One stage after the fetch stage of the PIPELINE thread mode: the 
+ * queue of links waiting for the stage, and the worms that work on them.
+ */
+class Stage {
+    static final String[] NAMES = { "fetch", "parse", "visit", "expand" };
+
+    Crawler crawler;     // crawler in charge of this stage
+    int kind;            // PARSE_STAGE, VISIT_STAGE, or EXPAND_STAGE
+    BoundedQueue queue;  // links waiting for this stage
+    StageWorm[] worms;   // threads working in this stage
+
+    public Stage (Crawler crawler, int kind, int nWorms, int capacity) {
+        this.crawler = crawler;
+        this.kind = kind;
+        queue = new BoundedQueue (capacity);
+        worms = new StageWorm[Math.max (nWorms, 1)];
+        for (int i=0; i<worms.length; ++i)
+            worms[i] = new StageWorm (this, i);
+    }
+
+    public void start () {
+        for (int i=0; i<worms.length; ++i)
+            worms[i].start ();
+    }
+
+    int getActiveWorms () {
+        int n = 0;
+        for (int i=0; i<worms.length; ++i)
+            if (worms[i].link != null)
+                ++n;
+        return n;
+    }
+}
+
+/* 
+ * Thread body that invokes a crawler's stage loop (PIPELINE mode).
+ * Like a FetchTask, a StageWorm is never stopped, only interrupted,
+ * so it finishes whatever callback it's in before it dies.
+ */
+class StageWorm extends Worm {
+    Stage stage;   // stage this worm works in
+    boolean requeue = false; // true if link goes back in the fetch queue
+
+    public StageWorm (Stage stage, int i) {
+        super (stage.crawler, i);
+        this.stage = stage;
+        thread.setName (crawler.getName() + " " + Stage.NAMES[stage.kind] 
+                        + " worm " + i);
+    }
+
+    public void run () {
+        crawler.work (this);
+    }
+
+    void kill () {
+        thread.interrupt ();
+    }
+
+    public synchronized void cancel (boolean requeue) {
+        if (die ())
+            this.requeue = requeue;
     }
-        
 }
 
 class WormTimer extends Timer {
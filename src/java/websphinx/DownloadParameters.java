@@ -59,11 +59,10 @@ public class DownloadParameters implements Cloneable
     private boolean obeyRobotExclusion = false;
         // obey crawling rules in robots.txt
 
-    // not implemented yet
-//     private int maxRequestsPerServer = 2; 
-//         // maximum number of simultaneous requests to a server (-1 for no maximum)
-//     private int delay = 500;
-//         // delay (in milliseconds) between starts of requests to same server (0 for no delay)
+    private int maxRequestsPerServer = -1; 
+        // maximum number of simultaneous requests to a server (-1 for no maximum)
+    private int delay = 0;
+        // delay (in milliseconds) between starts of requests to same server (0 for no delay)
 
     private boolean interactive = true;
         // user is available to answer dialog boxes, e.g. for authentication
@@ -73,6 +72,10 @@ public class DownloadParameters implements Cloneable
         // accept header for HTTP request, or null to use default
     private String userAgent = null;
         // User-Agent header for HTTP request, or null to use default
+    private boolean parseLinksOnly = false;
+        // parse HTML pages only for links, base, title, and robots META
+    private boolean compactContent = false;
+        // keep only the bytes of text pages, decoding them on demand
 
 
     public static final DownloadParameters DEFAULT = new DownloadParameters ();
@@ -181,7 +184,9 @@ public class DownloadParameters implements Cloneable
      * Get obey-robot-exclusion flag.  
      * @return true iff the
      * crawler checks robots.txt on the remote Web site
-     * before downloading a page.  Default is false.
+     * before downloading a page, and waits at least the
+     * Crawl-delay it asks for between requests to the site
+     * (see isPolite()).  Default is false.
      */
     public boolean getObeyRobotExclusion() {
         return obeyRobotExclusion;
@@ -198,6 +203,56 @@ public class DownloadParameters implements Cloneable
         dp.obeyRobotExclusion = f;
         return dp;
     }
+    /**
+     * Get maximum number of simultaneous requests to a server.
+     * @return maximum number of pages the crawler downloads in parallel
+     * from the same Web server (hostname and port number).
+     * Default is -1 (no maximum).
+     */
+    public int getMaxRequestsPerServer() {
+        return maxRequestsPerServer;
+    }
+    /**
+     * Change maximum number of simultaneous requests to a server.
+     * @param n maximum number of parallel downloads from one server.
+     *     Use a negative value for no maximum.
+     * @return new DownloadParameters object with the specified parameter changed.
+     */
+    public DownloadParameters changeMaxRequestsPerServer(int n) {
+        DownloadParameters dp = (DownloadParameters)clone();
+        dp.maxRequestsPerServer = n;
+        return dp;
+    }
+    /**
+     * Get delay between requests to the same server.
+     * @return minimum time (in milliseconds) between the starts of 
+     * two requests to the same Web server.  If the crawler obeys
+     * robot exclusion, a longer Crawl-delay in robots.txt overrides
+     * this value.  Default is 0 (no delay).
+     */
+    public int getDelay() {
+        return delay;
+    }
+    /**
+     * Change delay between requests to the same server.
+     * @param delay minimum time (in milliseconds) between the starts of
+     *     two requests to the same server.  Use 0 for no delay.
+     * @return new DownloadParameters object with the specified parameter changed.
+     */
+    public DownloadParameters changeDelay(int delay) {
+        DownloadParameters dp = (DownloadParameters)clone();
+        dp.delay = delay;
+        return dp;
+    }
+    /**
+     * Test whether downloads must be scheduled per server.
+     * @return true if a maximum number of requests per server or
+     * a delay between requests is in effect, or if robot exclusion
+     * is obeyed (since robots.txt may ask for a Crawl-delay).
+     */
+    public boolean isPolite() {
+        return maxRequestsPerServer > 0 || delay > 0 || obeyRobotExclusion;
+    }
     /**
      * Get interactive flag.
      * @return true if a user is available to respond to
@@ -280,4 +335,45 @@ public class DownloadParameters implements Cloneable
         dp.userAgent = userAgent;
         return dp;
     }
+    /**
+     * Get links-only parsing flag.
+     * @return true if HTML pages are parsed only for their links,
+     * BASE, TITLE, and robots META tags (see HTMLParser.setLinksOnly()).
+     * Default is false.
+     */
+    public boolean getParseLinksOnly() {
+        return parseLinksOnly;
+    }
+    /**
+     * Change links-only parsing flag.
+     * @param f true if HTML pages should be parsed only for their links,
+     * which is faster but leaves the pages without words or an element tree
+     * @return new DownloadParameters object with the specified parameter changed.
+     */
+    public DownloadParameters changeParseLinksOnly(boolean f) {
+        DownloadParameters dp = (DownloadParameters)clone();
+        dp.parseLinksOnly = f;
+        return dp;
+    }
+    /**
+     * Get compact content flag.
+     * @return true if downloaded text pages keep only their bytes,
+     * and decode them to characters on demand (see Page.getContentChars()).
+     * Default is false.
+     */
+    public boolean getCompactContent() {
+        return compactContent;
+    }
+    /**
+     * Change compact content flag.
+     * @param f true if downloaded text pages should keep only their bytes.
+     * This saves memory when pages are held for a while, but makes 
+     * each call to Page.getContent() build a new String.
+     * @return new DownloadParameters object with the specified parameter changed.
+     */
+    public DownloadParameters changeCompactContent(boolean f) {
+        DownloadParameters dp = (DownloadParameters)clone();
+        dp.compactContent = f;
+        return dp;
+    }
 }
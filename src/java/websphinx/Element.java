@@ -109,6 +109,7 @@ public class Element extends Region {
      * @return element that contains this element, or null if at top-level.
      */
     public Element getParent () {
+        makeTree ();
         return parent;
     }
 
@@ -118,6 +119,7 @@ public class Element extends Region {
      * parent's children.
      */
     public Element getSibling () {
+        makeTree ();
         return sibling;
     }
 
@@ -126,6 +128,7 @@ public class Element extends Region {
      * @return first element contained by this element, or null if no children. 
      */
     public Element getChild () {
+        makeTree ();
         return child;
     }
     
@@ -135,6 +138,7 @@ public class Element extends Region {
      * @return next element
      */
     public Element getNext () {
+        makeTree ();
         if (sibling != null)
             return sibling;
         else if (parent != null)
@@ -143,6 +147,14 @@ public class Element extends Region {
             return null;
     }
 
+    // the parser only makes Links right away; the rest of the tree 
+    // is made from the page's ParseTable when it's first needed
+    private void makeTree () {
+        Page page = source;
+        if (page != null)
+            page.makeElements ();
+    }
+
     /**
      * Test if tag has an HTML attribute.
      * @param name Name of HTML attribute (e.g. "HREF").  Doesn't have to be
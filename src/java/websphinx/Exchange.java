@@ -0,0 +1,334 @@
+/*
+ * WebSphinx web-crawling toolkit
+ *
+ * Copyright (c) 1998-2002 Carnegie Mellon University.  All rights
+ * reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in
+ *    the documentation and/or other materials provided with the
+ *    distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY CARNEGIE MELLON UNIVERSITY ``AS IS'' AND
+ * ANY EXPRESSED OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ * THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED.  IN NO EVENT SHALL CARNEGIE MELLON UNIVERSITY
+ * NOR ITS EMPLOYEES BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+
+package websphinx;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.ByteBuffer;
+
+/**
+ * State of one HTTP request/response made by an AsyncAccess: the
+ * request bytes, the response read so far, and the connection
+ * carrying it.  Used only on AsyncAccess's network thread and by
+ * its ConnectionPool.
+ */
+class Exchange {
+    Fetch fetch;
+    URL url;
+    String query;          // POST body, or null for GET
+    DownloadParameters dp;
+    int redirects;         // number of redirects followed to get here
+
+    String server;         // "host:port", the key for the connection pool
+    InetSocketAddress address;
+    PooledConnection connection; // connection in use, or null
+    boolean reused;        // true if connection was used before
+    boolean retried;       // true if request was already retried
+    long waitStart;        // time exchange started waiting for a connection
+
+    ByteBuffer request;    // request bytes
+    int timeout;           // download timeout in seconds (<= 0 for none)
+    long deadline;         // time when the download times out, or 0
+    int maxBytes;          // maximum size of response body
+
+    byte[] buf = new byte[1024]; // response read so far
+    int len;
+    boolean eof;           // true if server closed the connection
+    int bodyStart;         // offset of response body in buf, once known
+    int contentLength;     // length of body from headers, if known
+    boolean http11;        // true if the response is HTTP/1.1
+    boolean noBody;        // true if the response has no body
+    boolean chunked;       // true if the body has chunked encoding
+    int chunkPos;          // offset of next chunk header in buf
+    boolean lastChunk;     // true if the zero-length chunk has been seen
+    int chunkEnd;          // offset just past end of chunked body, once known
+    FetchResult result;    // response status and headers, once parsed
+
+    Exchange (Fetch fetch, URL url, String query, DownloadParameters dp,
+              int redirects) throws IOException {
+        this.fetch = fetch;
+        this.url = url;
+        this.query = query;
+        this.dp = dp;
+        this.redirects = redirects;
+
+        int maxKB = dp.getMaxPageSize ();
+        maxBytes = (maxKB > 0) ? maxKB * 1024 : Integer.MAX_VALUE;
+        timeout = dp.getDownloadTimeout ();
+        deadline = (timeout > 0) 
+            ? System.currentTimeMillis () + timeout * 1000L
+            : 0;
+
+        String path = url.getFile ();
+        if (path.length () == 0)
+            path = "/";
+        String host = url.getHost ();
+        if (url.getPort () != -1)
+            host += ":" + url.getPort ();
+
+        StringBuffer req = new StringBuffer ();
+        req.append (query != null ? "POST " : "GET ")
+           .append (path).append (" HTTP/1.1\r\n");
+        req.append ("Host: ").append (host).append ("\r\n");
+        if (dp.getUserAgent () != null)
+            req.append ("User-Agent: ").append (dp.getUserAgent ()).append ("\r\n");
+        if (dp.getAcceptedMIMETypes () != null)
+            req.append ("Accept: ").append (dp.getAcceptedMIMETypes ()).append ("\r\n");
+        Validator v = (fetch.link != null && redirects == 0) 
+            ? fetch.link.getValidator () : null;
+        if (v != null && query == null) {
+            if (v.getETag () != null)
+                req.append ("If-None-Match: ").append (v.getETag ()).append ("\r\n");
+            if (v.getLastModified () > 0)
+                req.append ("If-Modified-Since: ")
+                   .append (Validator.formatDate (v.getLastModified ())).append ("\r\n");
+        }
+        if (query != null) {
+            req.append ("Content-type: application/x-www-form-urlencoded\r\n");
+            req.append ("Content-length: ").append (query.length ()).append ("\r\n");
+        }
+        req.append ("\r\n");
+        if (query != null)
+            req.append (query);
+
+        request = ByteBuffer.wrap (req.toString ().getBytes ("ISO-8859-1"));
+        reset ();
+    }
+
+    /*
+     * Forget any response read so far, to send the request again.
+     */
+    void reset () {
+        len = 0;
+        eof = false;
+        bodyStart = -1;
+        contentLength = -1;
+        chunkEnd = -1;
+        lastChunk = false;
+        result = null;
+    }
+
+    /*
+     * Append bytes read from the connection, parsing the headers
+     * as soon as they are complete.
+     */
+    void append (ByteBuffer b) throws IOException {
+        int n = b.remaining ();
+        if (len + n > buf.length) {
+            byte[] newbuf = new byte[Math.max (buf.length * 2, len + n)];
+            System.arraycopy (buf, 0, newbuf, 0, len);
+            buf = newbuf;
+        }
+        b.get (buf, len, n);
+        len += n;
+
+        if (bodyStart == -1)
+            parseHeaders ();
+        if (bodyStart != -1) {
+            if (len - bodyStart > maxBytes)
+                throw new IOException ("Page greater than " + maxBytes + " bytes");
+            if (chunked)
+                scanChunks ();
+        }
+    }
+
+    /*
+     * Test whether the whole response has been read, without waiting
+     * for the server to close the connection.
+     */
+    boolean isComplete () {
+        if (bodyStart == -1)
+            return false;
+        else if (noBody)
+            return true;
+        else if (chunked)
+            return chunkEnd != -1;
+        else
+            return contentLength != -1 && len - bodyStart >= contentLength;
+    }
+
+    /*
+     * Test whether the connection can be used for another request
+     * once this response is complete.
+     */
+    boolean isPersistent () {
+        String conn = result.getHeaderField ("Connection");
+        if (conn != null && conn.equalsIgnoreCase ("close"))
+            return false;
+        if (!http11 && (conn == null || !conn.equalsIgnoreCase ("keep-alive")))
+            return false;
+        return noBody || chunked || contentLength != -1;
+    }
+
+    void parseHeaders () throws IOException {
+        int end = -1;
+        for (int i=3; i<len; ++i)
+            if (buf[i] == '\n' && buf[i-1] == '\r' 
+                && buf[i-2] == '\n' && buf[i-3] == '\r') {
+                end = i - 3;
+                break;
+            }
+        if (end == -1)
+            return;
+
+        String head = new String (buf, 0, end, "ISO-8859-1");
+        String[] lines = head.split ("\r\n");
+
+        // status line: HTTP/1.x code message
+        String status = lines[0];
+        int sp1 = status.indexOf (' ');
+        if (!status.startsWith ("HTTP/") || sp1 == -1)
+            throw new IOException ("bad HTTP response from " + url.getHost ());
+        int sp2 = status.indexOf (' ', sp1+1);
+        int code;
+        try {
+            code = Integer.parseInt ((sp2 == -1)
+                                     ? status.substring (sp1+1)
+                                     : status.substring (sp1+1, sp2));
+        } catch (NumberFormatException e) {
+            throw new IOException ("bad HTTP status: " + status);
+        }
+        String message = (sp2 == -1) ? "" : status.substring (sp2+1);
+
+        result = new FetchResult (url, code, message);
+        for (int i=1; i<lines.length; ++i) {
+            int colon = lines[i].indexOf (':');
+            if (colon > 0)
+                result.addHeaderField (lines[i].substring (0, colon).trim (),
+                                       lines[i].substring (colon+1).trim ());
+        }
+
+        bodyStart = end + 4;
+        http11 = status.startsWith ("HTTP/1.1");
+        noBody = (code / 100 == 1 || code == 204 || code == 304);
+        String te = result.getHeaderField ("Transfer-Encoding");
+        chunked = (te != null && te.equalsIgnoreCase ("chunked"));
+        chunkPos = bodyStart;
+        contentLength = result.getContentLength ();
+        if (contentLength > maxBytes)
+            throw new IOException ("Page greater than " + maxBytes + " bytes");
+    }
+
+    /*
+     * Advance over the chunks read so far, looking for the end 
+     * of a chunked body.
+     */
+    void scanChunks () throws IOException {
+        while (chunkEnd == -1) {
+            int eol = chunkPos;
+            while (eol < len && buf[eol] != '\n')
+                ++eol;
+            if (eol == len)
+                return;  // need more input
+
+            if (lastChunk) {
+                // skipping trailer headers, up to a blank line
+                if (eol - chunkPos <= 1)
+                    chunkEnd = eol + 1;
+                chunkPos = eol + 1;
+                continue;
+            }
+
+            int n = parseChunkSize (buf, chunkPos, eol);
+            if (n == 0) {
+                lastChunk = true;
+                chunkPos = eol + 1;
+            }
+            else if (eol + 1 + n + 2 <= len)
+                chunkPos = eol + 1 + n + 2;  // skip data and CRLF
+            else
+                return;  // need more input
+        }
+    }
+
+    static int parseChunkSize (byte[] buf, int start, int eol) throws IOException {
+        String size = new String (buf, start, eol - start, "ISO-8859-1").trim ();
+        int semi = size.indexOf (';');
+        if (semi != -1)
+            size = size.substring (0, semi).trim ();
+        try {
+            return Integer.parseInt (size, 16);
+        } catch (NumberFormatException e) {
+            throw new IOException ("bad chunk size: " + size);
+        }
+    }
+
+    /*
+     * Get the response, once it is complete or the connection has closed.
+     */
+    FetchResult getResult () throws IOException {
+        if (bodyStart == -1)
+            throw new IOException ("incomplete HTTP response from " 
+                                   + url.getHost ());
+
+        byte[] content;
+        if (noBody)
+            content = new byte[0];
+        else if (chunked) {
+            if (chunkEnd == -1)
+                throw new IOException ("truncated chunked response from "
+                                       + url.getHost ());
+            content = dechunk (buf, bodyStart, chunkEnd);
+        }
+        else {
+            int n = len - bodyStart;
+            if (contentLength != -1) {
+                if (n < contentLength)
+                    throw new IOException ("connection closed after " + n 
+                                           + " of " + contentLength + " bytes");
+                n = contentLength;
+            }
+            content = new byte[n];
+            System.arraycopy (buf, bodyStart, content, 0, n);
+        }
+        result.setContent (content);
+        return result;
+    }
+
+    static byte[] dechunk (byte[] in, int start, int end) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream (end - start);
+        int i = start;
+        for (;;) {
+            int eol = i;
+            while (eol < end && in[eol] != '\n')
+                ++eol;
+            int n = parseChunkSize (in, i, eol);
+            if (n == 0)
+                return out.toByteArray ();
+            out.write (in, eol + 1, n);
+            i = eol + 1 + n + 2;  // skip CRLF after chunk
+        }
+    }
+}
@@ -0,0 +1,137 @@
+/*
+ * WebSphinx web-crawling toolkit
+ *
+ * Copyright (c) 1998-2002 Carnegie Mellon University.  All rights
+ * reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in
+ *    the documentation and/or other materials provided with the
+ *    distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY CARNEGIE MELLON UNIVERSITY ``AS IS'' AND
+ * ANY EXPRESSED OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ * THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED.  IN NO EVENT SHALL CARNEGIE MELLON UNIVERSITY
+ * NOR ITS EMPLOYEES BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+
+package websphinx;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+
+/**
+ * Download in progress.  A Fetch is returned immediately by
+ * AsyncAccess.fetch(), and finishes later: either with a
+ * FetchResult, or with an IOException if the download fails, times
+ * out, or is cancelled.  Callers can wait for it with get(), or 
+ * be called back by a FetchListener when it finishes.
+ */
+public class Fetch {
+    AsyncAccess access;
+    Link link;
+    FetchListener listener;
+    Exchange exchange;      // current HTTP exchange, if any
+
+    boolean done = false;
+    FetchResult result;
+    IOException exception;
+
+    Fetch (AsyncAccess access, Link link, FetchListener listener) {
+        this.access = access;
+        this.link = link;
+        this.listener = listener;
+    }
+
+    /**
+     * Get the link being fetched.
+     */
+    public Link getLink () {
+        return link;
+    }
+
+    /**
+     * Test whether fetch is finished.
+     * @return true if the fetch succeeded, failed, or was cancelled.
+     */
+    public synchronized boolean isDone () {
+        return done;
+    }
+
+    /**
+     * Wait for the fetch to finish and get its result.
+     * @return response to the request
+     * @exception IOException if the fetch failed or was cancelled
+     * @exception InterruptedIOException if the calling thread was
+     * interrupted while waiting
+     */
+    public synchronized FetchResult get () throws IOException {
+        while (!done) {
+            try {
+                wait ();
+            } catch (InterruptedException e) {
+                throw new InterruptedIOException ("interrupted waiting for " 
+                                                  + link.getURL ());
+            }
+        }
+        if (exception != null)
+            throw exception;
+        return result;
+    }
+
+    /**
+     * Get the exception that ended the fetch.
+     * @return exception, or null if the fetch hasn't finished or succeeded
+     */
+    public synchronized IOException getException () {
+        return exception;
+    }
+
+    /**
+     * Cancel the fetch, closing its connection.  Has no effect if 
+     * the fetch is already finished.
+     */
+    public void cancel () {
+        finish (null, new InterruptedIOException ("fetch cancelled"));
+    }
+
+    /*
+     * Finish the fetch and call back the listener.  Only the first
+     * call has any effect.  Returns false if the fetch was already done.
+     */
+    boolean finish (FetchResult result, IOException exception) {
+        synchronized (this) {
+            if (done)
+                return false;
+            this.result = result;
+            this.exception = exception;
+            done = true;
+            notifyAll ();
+        }
+
+        if (access != null)
+            access.finished (this);
+        if (listener != null)
+            listener.fetched (this);
+        return true;
+    }
+
+    public String toString () {
+        return "Fetch[" + link.getURL () + "]";
+    }
+}
@@ -0,0 +1,243 @@
+/*
+ * WebSphinx web-crawling toolkit
+ *
+ * Copyright (c) 1998-2002 Carnegie Mellon University.  All rights
+ * reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in
+ *    the documentation and/or other materials provided with the
+ *    distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY CARNEGIE MELLON UNIVERSITY ``AS IS'' AND
+ * ANY EXPRESSED OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ * THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED.  IN NO EVENT SHALL CARNEGIE MELLON UNIVERSITY
+ * NOR ITS EMPLOYEES BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+
+package websphinx;
+
+import java.net.URL;
+import java.text.ParsePosition;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.TimeZone;
+import java.util.Vector;
+
+/**
+ * Response to an HTTP request: status, headers, and content.
+ * FetchResults are returned by Fetch.get().
+ */
+public class FetchResult {
+    URL url;
+    int responseCode;
+    String responseMessage;
+    Vector keys = new Vector ();
+    Vector values = new Vector ();
+    byte[] content;
+
+    /**
+     * Make a FetchResult.
+     * @param url URL the content came from, after any redirects
+     * @param responseCode HTTP response code, e.g. 200
+     * @param responseMessage HTTP response message, e.g. "OK"
+     */
+    public FetchResult (URL url, int responseCode, String responseMessage) {
+        this.url = url;
+        this.responseCode = responseCode;
+        this.responseMessage = responseMessage;
+    }
+
+    /**
+     * Get URL.
+     * @return URL the content came from, after any redirects
+     */
+    public URL getURL () {
+        return url;
+    }
+
+    /**
+     * Get response code.
+     * @return HTTP response code, e.g. 200
+     */
+    public int getResponseCode () {
+        return responseCode;
+    }
+
+    /**
+     * Get response message.
+     * @return HTTP response message, e.g. "OK"
+     */
+    public String getResponseMessage () {
+        return responseMessage;
+    }
+
+    /**
+     * Get content.
+     * @return response body, or an empty array if there is none
+     */
+    public byte[] getContent () {
+        return content != null ? content : new byte[0];
+    }
+
+    /**
+     * Set content.
+     * @param content response body
+     */
+    public void setContent (byte[] content) {
+        this.content = content;
+    }
+
+    /**
+     * Add a response header.
+     * @param name header name, e.g. "Content-Type"
+     * @param value header value
+     */
+    public void addHeaderField (String name, String value) {
+        keys.addElement (name);
+        values.addElement (value);
+    }
+
+    /**
+     * Get number of response headers.
+     */
+    public int getHeaderFieldCount () {
+        return keys.size ();
+    }
+
+    /**
+     * Get name of the nth response header.
+     * @param n header index, starting from 0
+     * @return header name, or null if n is out of range
+     */
+    public String getHeaderFieldKey (int n) {
+        return (n >= 0 && n < keys.size ()) ? (String)keys.elementAt (n) : null;
+    }
+
+    /**
+     * Get value of the nth response header.
+     * @param n header index, starting from 0
+     * @return header value, or null if n is out of range
+     */
+    public String getHeaderField (int n) {
+        return (n >= 0 && n < values.size ()) ? (String)values.elementAt (n) : null;
+    }
+
+    /**
+     * Get value of a response header.  If the header appears more
+     * than once, the last value is returned.
+     * @param name header name (case-insensitive)
+     * @return header value, or null if the header is absent
+     */
+    public String getHeaderField (String name) {
+        for (int i=keys.size ()-1; i>=0; --i)
+            if (name.equalsIgnoreCase ((String)keys.elementAt (i)))
+                return (String)values.elementAt (i);
+        return null;
+    }
+
+    /**
+     * Get value of a date header.
+     * @param name header name (case-insensitive)
+     * @return date in milliseconds since the epoch, or 0 if the
+     * header is absent or unparseable
+     */
+    public long getHeaderFieldDate (String name) {
+        String value = getHeaderField (name);
+        if (value == null)
+            return 0;
+        return parseDate (value);
+    }
+
+    // Date formats allowed in HTTP headers: RFC 1123, which servers
+    // should send, then the obsolete RFC 850 and asctime() formats
+    static final String[] DATE_FORMATS = {
+        "EEE, dd MMM yyyy HH:mm:ss zzz",
+        "EEEE, dd-MMM-yy HH:mm:ss zzz",
+        "EEE MMM d HH:mm:ss yyyy"
+    };
+    private static SimpleDateFormat[] dateFormats;
+
+    /*
+     * Parse an HTTP date.  Returns 0 if the date is unparseable.
+     */
+    static synchronized long parseDate (String value) {
+        if (dateFormats == null) {
+            dateFormats = new SimpleDateFormat[DATE_FORMATS.length];
+            for (int i=0; i<DATE_FORMATS.length; ++i) {
+                dateFormats[i] = new SimpleDateFormat (DATE_FORMATS[i], Locale.US);
+                dateFormats[i].setTimeZone (TimeZone.getTimeZone ("GMT"));
+                dateFormats[i].setLenient (false);
+            }
+        }
+        value = value.trim ();
+        for (int i=0; i<dateFormats.length; ++i) {
+            ParsePosition pos = new ParsePosition (0);
+            Date date = dateFormats[i].parse (value, pos);
+            if (date != null && pos.getIndex () == value.length ())
+                return date.getTime ();
+        }
+        return 0;
+    }
+
+    /**
+     * Get Content-Type header.
+     */
+    public String getContentType () {
+        return getHeaderField ("Content-Type");
+    }
+
+    /**
+     * Get Content-Encoding header.
+     */
+    public String getContentEncoding () {
+        return getHeaderField ("Content-Encoding");
+    }
+
+    /**
+     * Get Content-Length header.
+     * @return content length, or -1 if unknown
+     */
+    public int getContentLength () {
+        String value = getHeaderField ("Content-Length");
+        if (value == null)
+            return -1;
+        try {
+            return Integer.parseInt (value.trim ());
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Get Last-Modified header.
+     * @return date in milliseconds since the epoch, or 0 if unknown
+     */
+    public long getLastModified () {
+        return getHeaderFieldDate ("Last-Modified");
+    }
+
+    /**
+     * Get Expires header.
+     * @return date in milliseconds since the epoch, or 0 if unknown
+     */
+    public long getExpiration () {
+        return getHeaderFieldDate ("Expires");
+    }
+}
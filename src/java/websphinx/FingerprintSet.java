@@ -0,0 +1,317 @@
+/*
+ * WebSphinx web-crawling toolkit
+ *
+ * Copyright (c) 1998-2002 Carnegie Mellon University.  All rights
+ * reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in
+ *    the documentation and/or other materials provided with the
+ *    distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY CARNEGIE MELLON UNIVERSITY ``AS IS'' AND
+ * ANY EXPRESSED OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ * THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED.  IN NO EVENT SHALL CARNEGIE MELLON UNIVERSITY
+ * NOR ITS EMPLOYEES BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+package websphinx;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Visited set that stores a 64-bit fingerprint of each URL instead
+ * of the URL itself.  Fingerprints are kept in open-addressing hash
+ * tables of primitive longs, about 12 bytes per URL, so the set
+ * holds tens of millions of URLs in a few hundred megabytes.
+ * <P>
+ * The set is split into stripes, each with its own table and its
+ * own lock, so worm threads rarely contend.  The tables can live
+ * in the Java heap or in memory-mapped files in a scratch 
+ * directory, letting the set grow past the heap.
+ * <P>
+ * Two distinct URLs may share a fingerprint, in which case the
+ * second is wrongly reported as visited.  With a 64-bit 
+ * fingerprint the chance is about 1 in 3000 for a crawl of 
+ * 100 million URLs.
+ */
+public class FingerprintSet implements VisitedSet {
+
+    static final int STRIPES = 64;
+        // number of independently-locked tables (power of 2)
+    static final int STRIPE_BITS = 6;
+        // log2 (STRIPES)
+    static final int INITIAL_CAPACITY = 1024;
+        // slots per stripe in an empty set (power of 2)
+
+    File dir;
+        // directory for memory-mapped tables, or null for heap tables
+    Stripe[] stripes = new Stripe[STRIPES];
+
+    /**
+     * Make an empty FingerprintSet in the Java heap.
+     */
+    public FingerprintSet () {
+        this (null);
+    }
+
+    /**
+     * Make an empty FingerprintSet.
+     * @param dir directory where the tables are kept in 
+     * memory-mapped files, or null to keep them in the Java heap.
+     * The files are deleted when the set is cleared and when the
+     * virtual machine exits.
+     */
+    public FingerprintSet (File dir) {
+        this.dir = dir;
+        for (int i=0; i<STRIPES; ++i)
+            stripes[i] = new Stripe (i);
+    }
+
+    /**
+     * Get the directory holding the tables.
+     * @return directory of memory-mapped tables, or null if the
+     * tables are in the Java heap
+     */
+    public File getDirectory () {
+        return dir;
+    }
+
+    public boolean contains (String url) {
+        return contains (fingerprint (url));
+    }
+
+    public boolean add (String url) {
+        return add (fingerprint (url));
+    }
+
+    /**
+     * Test whether a fingerprint is in the set.
+     * @param fp fingerprint, as computed by fingerprint()
+     * @return true if fp has been added to the set
+     */
+    public boolean contains (long fp) {
+        if (fp == 0)
+            fp = 1;  // 0 marks an empty slot
+        Stripe s = stripes[(int)(fp >>> (64 - STRIPE_BITS))];
+        synchronized (s) {
+            return s.find (fp) >= 0;
+        }
+    }
+
+    /**
+     * Add a fingerprint to the set, as one atomic test-and-set.
+     * @param fp fingerprint, as computed by fingerprint()
+     * @return true if fp was not already in the set
+     */
+    public boolean add (long fp) {
+        if (fp == 0)
+            fp = 1;  // 0 marks an empty slot
+        Stripe s = stripes[(int)(fp >>> (64 - STRIPE_BITS))];
+        synchronized (s) {
+            int i = s.find (fp);
+            if (i >= 0)
+                return false;
+            s.table.put (-i - 1, fp);
+            if (++s.count > s.threshold)
+                s.resize (s.table.capacity () * 2);
+            return true;
+        }
+    }
+
+    /**
+     * Add every fingerprint in another set to this set.
+     * @param other set to copy from
+     */
+    public void addAll (FingerprintSet other) {
+        for (int i=0; i<STRIPES; ++i) {
+            Stripe s = other.stripes[i];
+            synchronized (s) {
+                for (int j=0, n=s.table.capacity (); j<n; ++j) {
+                    long fp = s.table.get (j);
+                    if (fp != 0)
+                        add (fp);
+                }
+            }
+        }
+    }
+
+    public void clear () {
+        for (int i=0; i<STRIPES; ++i) {
+            Stripe s = stripes[i];
+            synchronized (s) {
+                s.count = 0;
+                s.resize (INITIAL_CAPACITY);
+            }
+        }
+    }
+
+    public int size () {
+        int n = 0;
+        for (int i=0; i<STRIPES; ++i)
+            n += stripes[i].count;
+        return n;
+    }
+
+    /**
+     * Compute the 64-bit fingerprint of a string: FNV-1a over its
+     * characters, followed by a final mixing step so that both the
+     * high bits (used to pick a stripe) and the low bits (used to
+     * pick a slot) are well distributed.
+     * @param s string to fingerprint
+     * @return fingerprint of s
+     */
+    public static long fingerprint (String s) {
+        long h = 0xcbf29ce484222325L;
+        for (int i=0, n=s.length (); i<n; ++i) {
+            h ^= s.charAt (i);
+            h *= 0x100000001b3L;
+        }
+        return mix (h);
+    }
+
+    /**
+     * Compute the 64-bit fingerprint of a byte array, the same way
+     * as fingerprint(String).  Used to tell whether a page's content
+     * has changed.
+     * @param b bytes to fingerprint
+     * @return fingerprint of b
+     */
+    public static long fingerprint (byte[] b) {
+        long h = 0xcbf29ce484222325L;
+        for (int i=0; i<b.length; ++i) {
+            h ^= b[i] & 0xff;
+            h *= 0x100000001b3L;
+        }
+        return mix (h);
+    }
+
+    static long mix (long h) {
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    /*
+     * Implementation
+     *
+     */
+
+    class Stripe {
+        int index;          // position in stripes[]
+        LongBuffer table;   // open-addressing table, 0 = empty slot
+        int count;          // number of fingerprints in table
+        int threshold;      // count at which table is doubled
+        int generation;     // number of tables made so far (names files)
+        File file;          // file mapped by table, or null
+
+        Stripe (int index) {
+            this.index = index;
+            resize (INITIAL_CAPACITY);
+        }
+
+        // Find fp by linear probing.  Returns its slot if present,
+        // otherwise -(empty slot where it belongs) - 1.
+        int find (long fp) {
+            int mask = table.capacity () - 1;
+            int i = (int)fp & mask;
+            while (true) {
+                long x = table.get (i);
+                if (x == fp)
+                    return i;
+                if (x == 0)
+                    return -i - 1;
+                i = (i + 1) & mask;
+            }
+        }
+
+        // Replace table with a new one of the given capacity,
+        // rehashing the fingerprints of the old one.
+        void resize (int capacity) {
+            LongBuffer old = table;
+            File oldFile = file;
+
+            table = allocate (capacity);
+            threshold = capacity / 3 * 2;
+            if (old != null && count > 0) {
+                int mask = capacity - 1;
+                for (int j=0, n=old.capacity (); j<n; ++j) {
+                    long fp = old.get (j);
+                    if (fp == 0)
+                        continue;
+                    int i = (int)fp & mask;
+                    while (table.get (i) != 0)
+                        i = (i + 1) & mask;
+                    table.put (i, fp);
+                }
+            }
+            if (oldFile != null)
+                oldFile.delete ();
+        }
+
+        LongBuffer allocate (int capacity) {
+            if (dir == null) {
+                file = null;
+                return LongBuffer.allocate (capacity);
+            }
+
+            file = new File (dir, "visited-" + index + "-" + (generation++));
+            try {
+                RandomAccessFile raf = new RandomAccessFile (file, "rw");
+                try {
+                    raf.setLength (0);   // discard any stale contents
+                    raf.setLength ((long)capacity * 8);
+                    ByteBuffer buf = raf.getChannel ().map (FileChannel.MapMode.READ_WRITE, 
+                                                            0, (long)capacity * 8);
+                    file.deleteOnExit ();
+                    return buf.asLongBuffer ();
+                } finally {
+                    raf.close ();  // mapping stays valid after close
+                }
+            } catch (IOException e) {
+                throw new RuntimeException ("can't map visited set file " + file + ": " + e);
+            }
+        }
+    }
+
+    public static void main (String[] args) throws Exception {
+        File dir = args.length > 0 ? new File (args[0]) : null;
+        int n = args.length > 1 ? Integer.parseInt (args[1]) : 1000000;
+        FingerprintSet set = new FingerprintSet (dir);
+
+        long start = System.currentTimeMillis ();
+        for (int i=0; i<n; ++i)
+            if (!set.add ("http://www.example.com/page" + i + ".html"))
+                System.out.println ("collision at " + i);
+        for (int i=0; i<n; ++i)
+            if (set.add ("http://www.example.com/page" + i + ".html")
+                || !set.contains ("http://www.example.com/page" + i + ".html"))
+                System.out.println ("lost " + i);
+        if (set.contains ("http://www.example.com/missing.html"))
+            System.out.println ("false positive");
+        System.out.println (set.size () + " fingerprints in " 
+                            + (System.currentTimeMillis () - start) + " ms");
+    }
+}
@@ -98,7 +98,7 @@ public class FormButton extends Link {
      * @return URL to which the button points
      */
     protected URL urlFromHref (Tag tag, URL base) throws MalformedURLException {
-        if (parent == null || form == null)
+        if (getParent () == null || form == null)
             // can't figure out URL until we're linked into an HTML element tree
             // containing our complete form
             return null;
@@ -0,0 +1,123 @@
+/*
+ * WebSphinx web-crawling toolkit
+ *
+ * Copyright (c) 1998-2002 Carnegie Mellon University.  All rights
+ * reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in
+ *    the documentation and/or other materials provided with the
+ *    distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY CARNEGIE MELLON UNIVERSITY ``AS IS'' AND
+ * ANY EXPRESSED OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ * THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED.  IN NO EVENT SHALL CARNEGIE MELLON UNIVERSITY
+ * NOR ITS EMPLOYEES BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+
+package websphinx;
+
+import java.util.Enumeration;
+
+/**
+ * Queue of Links waiting to be crawled.  A Crawler keeps two 
+ * frontiers: one holding every link that has been submitted but 
+ * not yet processed, and one holding the links still waiting to 
+ * be downloaded.  Links come out of a frontier in increasing order 
+ * of their priority.
+ * <P>
+ * A Crawler uses the frontier object itself as the monitor for
+ * waiting on and notifying about changes to the queue, so
+ * implementations must not call wait() or notify() on themselves.
+ *
+ * @see Crawler#setFrontierType
+ */
+public interface Frontier {
+    /**
+     * Put a link on the frontier.
+     * @param link Link to put
+     */
+    public abstract void put (Link link);
+
+    /**
+     * Get the link with lowest priority, without removing it.
+     * @return link with lowest priority, or null if frontier is empty
+     */
+    public abstract Link getMin ();
+
+    /**
+     * Get and remove the link with lowest priority.
+     * @return link with lowest priority, or null if frontier is empty
+     */
+    public abstract Link deleteMin ();
+
+    /**
+     * Remove a link from the frontier.
+     * @param link Link to remove
+     * @return true if link was found and removed
+     */
+    public abstract boolean delete (Link link);
+
+    /**
+     * Reposition a link whose priority has changed since it was put
+     * on the frontier.
+     * @param link Link whose priority changed
+     * @return true if link was found in the frontier
+     */
+    public abstract boolean update (Link link);
+
+    /**
+     * Release a link returned by deleteMin(), after its page has
+     * been downloaded (or the download has failed).  Frontiers that
+     * limit the downloads in progress use this to admit more links.
+     * @param link Link whose download is finished
+     * @return true if more links may now be available from deleteMin()
+     */
+    public abstract boolean release (Link link);
+
+    /**
+     * Get time until deleteMin() may return a link again, when it
+     * has returned null although the frontier is not empty.
+     * @return milliseconds to wait before retrying, or 0 to wait
+     * until the frontier is changed
+     */
+    public abstract long getWaitTime ();
+
+    /**
+     * Remove all links from the frontier.
+     */
+    public abstract void clear ();
+
+    /**
+     * Enumerate the links in the frontier, in no particular order.
+     * @return enumeration of Link objects
+     */
+    public abstract Enumeration elements ();
+
+    /**
+     * Get number of links in the frontier.
+     * @return number of links
+     */
+    public abstract int size ();
+
+    /**
+     * Test whether the frontier is empty.
+     * @return true iff frontier is empty
+     */
+    public abstract boolean empty ();
+}
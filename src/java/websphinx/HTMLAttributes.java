@@ -0,0 +1,193 @@
+/*
+ * WebSphinx web-crawling toolkit
+ *
+ * Copyright (c) 1998-2002 Carnegie Mellon University.  All rights
+ * reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in
+ *    the documentation and/or other materials provided with the
+ *    distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY CARNEGIE MELLON UNIVERSITY ``AS IS'' AND
+ * ANY EXPRESSED OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ * THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED.  IN NO EVENT SHALL CARNEGIE MELLON UNIVERSITY
+ * NOR ITS EMPLOYEES BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+
+package websphinx;
+
+/**
+ * Attributes of a start tag, as passed to HTMLHandler.startTag().
+ * An HTMLTokenizer reuses one HTMLAttributes object for every tag,
+ * so its contents are valid only until the callback returns.
+ * Attribute values are kept in a shared character buffer and only
+ * made into Strings when asked for.
+ */
+public class HTMLAttributes {
+
+    int n = 0;                          // number of attributes
+    String[] names = new String[8];     // lower-case, intern()'ed
+    int[] offsets = new int[8];         // offset of value in chars, or -1
+    int[] lengths = new int[8];         // length of value in chars
+    String[] values = new String[8];    // values made by getValue()
+
+    char[] chars = new char[256];       // attribute values
+    int nChars = 0;
+    int valueStart;                     // offset of the value being read
+
+    /**
+     * Get number of attributes.
+     */
+    public int getLength () {
+        return n;
+    }
+
+    /**
+     * Get an attribute's name.
+     * @param i index of attribute, from 0 to getLength()-1
+     * @return name of attribute, in the form returned by 
+     * Tag.toHTMLAttributeName()
+     */
+    public String getName (int i) {
+        return names[i];
+    }
+
+    /**
+     * Test whether an attribute has a value.
+     * @param i index of attribute
+     * @return false for an attribute written without a value, 
+     * like &lt;HR NOSHADE&gt;
+     */
+    public boolean hasValue (int i) {
+        return offsets[i] != -1;
+    }
+
+    /**
+     * Get an attribute's value.
+     * @param i index of attribute
+     * @return value of attribute, with entities replaced, or 
+     * Region.TRUE if the attribute has no value
+     */
+    public String getValue (int i) {
+        if (offsets[i] == -1)
+            return Region.TRUE;
+        if (values[i] == null)
+            values[i] = new String (chars, offsets[i], lengths[i]);
+        return values[i];
+    }
+
+    /**
+     * Get the index of an attribute.
+     * @param name name of attribute (e.g. "HREF").  Doesn't have to 
+     * be converted with Tag.toHTMLAttributeName().
+     * @return index of the last attribute with that name, or -1 if the 
+     * tag has no such attribute
+     */
+    public int indexOf (String name) {
+        name = Tag.toHTMLAttributeName (name);
+        for (int i=n-1; i>=0; --i)
+            if (names[i] == name)
+                return i;
+        return -1;
+    }
+
+    /**
+     * Get an attribute's value by name.
+     * @param name name of attribute (e.g. "HREF")
+     * @return value of attribute, Region.TRUE if the attribute has no 
+     * value, or null if the tag lacks the attribute
+     */
+    public String getValue (String name) {
+        int i = indexOf (name);
+        return (i != -1) ? getValue (i) : null;
+    }
+
+    /**
+     * Get the buffer holding the attribute values, to read a value 
+     * without making a String of it.
+     * @return buffer; value i is found at getValueOffset(i)
+     */
+    public char[] getValueChars () {
+        return chars;
+    }
+
+    /**
+     * Get offset of an attribute's value in getValueChars().
+     * @param i index of attribute
+     * @return offset, or -1 if the attribute has no value
+     */
+    public int getValueOffset (int i) {
+        return offsets[i];
+    }
+
+    /**
+     * Get length of an attribute's value.
+     * @param i index of attribute
+     * @return number of characters in the value (0 if it has no value)
+     */
+    public int getValueLength (int i) {
+        return lengths[i];
+    }
+
+    /*
+     * Filling in attributes (called by HTMLTokenizer)
+     *
+     */
+
+    void clear () {
+        for (int i=0; i<n; ++i)
+            values[i] = null;
+        n = 0;
+        nChars = 0;
+    }
+
+    void startValue () {
+        valueStart = nChars;
+    }
+
+    void appendValue (char c) {
+        if (nChars == chars.length) {
+            char[] newchars = new char[chars.length * 2];
+            System.arraycopy (chars, 0, newchars, 0, nChars);
+            chars = newchars;
+        }
+        chars[nChars++] = c;
+    }
+
+    void add (String name, boolean hasValue) {
+        if (n == names.length) {
+            int size = n * 2;
+            String[] newnames = new String[size];
+            System.arraycopy (names, 0, newnames, 0, n);
+            names = newnames;
+            int[] newoffsets = new int[size];
+            System.arraycopy (offsets, 0, newoffsets, 0, n);
+            offsets = newoffsets;
+            int[] newlengths = new int[size];
+            System.arraycopy (lengths, 0, newlengths, 0, n);
+            lengths = newlengths;
+            values = new String[size];
+        }
+        names[n] = name;
+        offsets[n] = hasValue ? valueStart : -1;
+        lengths[n] = hasValue ? nChars - valueStart : 0;
+        values[n] = null;
+        ++n;
+    }
+}
@@ -0,0 +1,83 @@
+/*
+ * WebSphinx web-crawling toolkit
+ *
+ * Copyright (c) 1998-2002 Carnegie Mellon University.  All rights
+ * reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in
+ *    the documentation and/or other materials provided with the
+ *    distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY CARNEGIE MELLON UNIVERSITY ``AS IS'' AND
+ * ANY EXPRESSED OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ * THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED.  IN NO EVENT SHALL CARNEGIE MELLON UNIVERSITY
+ * NOR ITS EMPLOYEES BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+
+package websphinx;
+
+/**
+ * Callbacks from an HTMLTokenizer, one for each token as soon as it 
+ * has been read.  Offsets are character offsets from the start of the
+ * document.  Character arrays and attributes passed to a callback
+ * are reused by the tokenizer, so they are valid only until the 
+ * callback returns.
+ *
+ * @see HTMLTokenizer
+ */
+public interface HTMLHandler {
+    /**
+     * Called for a start tag, like &lt;A HREF="foo.html"&gt;.
+     * @param tagName name of tag, in the form returned by Tag.toTagName()
+     * @param attrs attributes of the tag
+     * @param start offset of the tag's '&lt;'
+     * @param end offset just past the tag's '&gt;'
+     */
+    public abstract void startTag (String tagName, HTMLAttributes attrs,
+                                   int start, int end);
+
+    /**
+     * Called for an end tag, like &lt;/A&gt;.
+     * @param tagName name of tag, in the form returned by Tag.toTagName()
+     * @param start offset of the tag's '&lt;'
+     * @param end offset just past the tag's '&gt;'
+     */
+    public abstract void endTag (String tagName, int start, int end);
+
+    /**
+     * Called for a word of text, i.e. a run of characters delimited
+     * by whitespace or tags.  Entities in the word have been replaced
+     * by the characters they stand for.
+     * @param text buffer holding the word
+     * @param offset offset of the word in text
+     * @param length length of the word
+     * @param start offset of the word in the document
+     * @param end offset just past the word in the document
+     */
+    public abstract void text (char[] text, int offset, int length, 
+                               int start, int end);
+
+    /**
+     * Called for a comment (&lt;!-- ... --&gt;) or a directive,
+     * like &lt;!DOCTYPE ...&gt;.
+     * @param start offset of the comment's '&lt;'
+     * @param end offset just past the comment's '&gt;'
+     */
+    public abstract void comment (int start, int end);
+}
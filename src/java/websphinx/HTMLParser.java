@@ -46,641 +46,134 @@ import java.io.ByteArrayOutputStream;
 import java.util.Hashtable;
 import java.util.Enumeration;
 import java.util.Vector;
-import java.util.Stack;
 import java.net.URL;
 import java.net.MalformedURLException;
 
 /**
  * HTML parser.  Parses an input stream or String and
  * converts it to a sequence of Tags and a tree of Elements.
- * HTMLParser is used by Page to parse pages.
+ * HTMLParser is used by Page to parse pages.  The tokens come from an
+ * HTMLTokenizer, which can also be used on its own to process a page
+ * as it downloads.  The parser records tokens and elements in a compact
+ * table; only Links are made as objects right away, and the Page makes
+ * the other Tags, Text and Elements when they are first asked for.
  */
-// FIX: make HTMLParser into an interface, and
-// split this implementation into Tokenizer and TreeBuilder
+// FIX: make HTMLParser into an interface
 public class HTMLParser {
 
-    // parameter for HTML type detection.  
-    // If the parser doesn't encounter at least one HTML tag
-    // in the first VALID_HTML_PREFIX bytes of the stream, then parser 
-    // concludes that the stream isn't HTML and stops parsing it.
-    static final int VALID_HTML_PREFIX = 10000;
-
     int maxBytes = Integer.MAX_VALUE;
 
+    boolean linksOnly = false;
+
     /**
      * Make an HTMLParser.
      */
     public HTMLParser () {
     }
 
+    /**
+     * Make an HTMLParser for pages downloaded with the given
+     * download parameters.
+     * @param dp download parameters; getParseLinksOnly() chooses
+     * the parser's mode
+     */
+    public HTMLParser (DownloadParameters dp) {
+        linksOnly = dp.getParseLinksOnly ();
+    }
+
+    /**
+     * Test whether the parser is in links-only mode.
+     * @return true if the parser only looks for links.  Default
+     * is false.
+     */
+    public boolean getLinksOnly () {
+        return linksOnly;
+    }
+
+    /**
+     * Set links-only mode.  In this mode, the parser only makes
+     * Tags and Elements for link-bearing tags (like &lt;A HREF&gt; and
+     * &lt;IMG SRC&gt;), BASE, TITLE, and &lt;META NAME=robots&gt;.  It makes no
+     * Text for words, and doesn't build the element tree: the elements
+     * it does make have the same regions as in a full parse, and nest 
+     * as they would in the full tree with the other elements left out.
+     * Page.getLinks(), getTitle() and getBase() work as
+     * usual, and so does writing the page through an HTMLTransformer
+     * (e.g. a Mirror), but Patterns and Classifiers that look at the 
+     * page's words or structure find nothing.  Forms are not found, 
+     * because their queries are made from their contents.
+     * @param linksOnly true for links-only mode, false to parse 
+     * pages completely
+     */
+    public void setLinksOnly (boolean linksOnly) {
+        this.linksOnly = linksOnly;
+    }
+
     /**
      * Parse a page as HTML.
      * @param page Page to parse
      */
     public void parse (Page page) throws IOException {
-        tokenize (page);
-        buildParseTree (page);
+        page.tokens = null;
+        page.tags = null;
+        page.words = null;
+        page.elements = null;
+        page.root = null;
+        page.table = null;
+
+        if (linksOnly)
+            extractLinks (page);
+        else
+            buildParseTree (page, tokenize (page));
     }
 
 
     /*
-     *  HTML tokenizer state machine
+     *  Tokenizer (records the tags and text of a page in a ParseTable
+     *  from HTMLTokenizer callbacks)
      */
 
-    // state takes on one of the following values:
-    private static final int START = 0;
-    private static final int INWORD = 1;
-    private static final int ENTITY = 2;
-    private static final int LT = 4;
-    private static final int BANG = 5;
-    private static final int BANG_DASH = 6;
-    private static final int CMT = 7;
-    private static final int CMT_DASH = 8;
-    private static final int CMT_DASHDASH = 9;
-    private static final int DIRECTIVE = 10;
-    private static final int STAG = 11;
-    private static final int ETAG = 12;
-    private static final int ATTR = 13;
-    private static final int ATTRNAME = 14;
-    private static final int EQ = 15;
-    private static final int AFTEREQ = 16;
-    private static final int ATTRVAL = 17;
-    private static final int ATTRVAL_SQ = 18;
-    private static final int ATTRVAL_DQ = 19;
-    private static final int DONE = 20;
-    private static final int ENTNUM = 21;
-    private static final int ENTREF = 22;
-
-    StringBuffer wordBuf = new StringBuffer ();
-    StringBuffer tagName = new StringBuffer ();
-    StringBuffer attrName = new StringBuffer ();
-    StringBuffer attrVal = new StringBuffer ();
-    Vector attrs = new Vector ();
-    StringBuffer entity = new StringBuffer ();
-
-    // FIX: should entities in attr names or values be expanded?
-    private void tokenize (Page page) throws IOException {
-        int state = START;
-
-        String content = page.getContent ();
-        int buflen = content.length ();
-        int bufptr = 0;
-        int bufbase = 0;
-
-        // token list
-        Vector tokens = new Vector();
-
-        int wordStart = 0;
-        int nWords = 0;
-
-        Tag tag = null;
-        int tagStart = 0;
-
-        int entnum = 0;
-        
-        StringBuffer entityTargetBuf = null;
-        int postEntityState = 0;
-
-        boolean isHTML = "text/html".equals (page.getContentType ());
-
-        while (bufptr < buflen) {
-            if (!isHTML && bufptr >= VALID_HTML_PREFIX)
-                // we didn't see any HTML tags in the first
-                // VALID_HTML_PREFIX bytes,
-                // so assume the document isn't HTML and stop parsing it.
-                return;
-
-            char c = content.charAt (bufptr);
-
-            //System.err.println ("%% state == " + state + ", ptr == " + (bufbase+bufptr) + ", c == " + c);
-
-            switch (state) {
-                case START:
-                    // after whitespace or tag
-                    switch (c) {
-                        case '<':
-                            ++bufptr;
-                            state = LT;
-                            break;
-                        case ' ':
-                        case '\t':
-                        case '\n':
-                        case '\r':
-                            ++bufptr;
-                            break;
-                        default:
-                            wordBuf.setLength (0);
-                            wordStart = bufbase+bufptr;
-                            state = INWORD;
-                            break;
-                    }
-                    break;
-
-                case INWORD:
-                    // Character data
-                    switch (c) {
-                        case '<':
-                            tokens.addElement (new Text (page, wordStart, bufbase+bufptr, wordBuf.toString ()));
-                            ++nWords;
-                            state = START;
-                            break;
-                        case ' ':
-                        case '\t':
-                        case '\n':
-                        case '\r':
-                            tokens.addElement (new Text (page, wordStart, bufbase+bufptr, wordBuf.toString ()));
-                            ++nWords;
-                            state = START;
-                            ++bufptr;
-                            break;
-                        case '&':
-                            ++bufptr;
-                            postEntityState = INWORD;
-                            entityTargetBuf = wordBuf;
-                            state = ENTITY;
-                            break;
-                        default:
-                            wordBuf.append ((char)c);
-                            ++bufptr;
-                            // state == INWORD;
-                            break;
-                    }
-                    break;
-
-                //  Entities
-                case ENTITY:
-                    if (c == '#') {
-                        ++bufptr;
-                        entnum = 0;
-                        state = ENTNUM;
-                    }
-                    else if ((c >= 'A' && c <= 'Z')
-                             || (c >= 'a' && c <= 'z')) {
-                        entity.setLength (0);
-                        state = ENTREF;
-                    }
-                    else {
-                        entityTargetBuf.append ('&');
-                        state = postEntityState;
-                    }
-                    break;
-
-                case ENTREF:
-                    if (!Character.isLetterOrDigit(c)) {
-                        Character ent = lookupEntityRef (entity.toString ());
-                        if (ent != null) {
-                            entityTargetBuf.append (ent.charValue());
-                            if (c == ';')
-                                ++bufptr;
-                        }
-                        else {
-                            // unrecognized entity -- leave
-                            // as-is
-                            entityTargetBuf.append ('&');
-                            entityTargetBuf.append (entity.toString ());
-                        }                            
-                        state = postEntityState;
-                    }
-                    else {
-                        ++bufptr;
-                        entity.append (c);
-                        // state == ENTREF;
-                    }
-                    break;
-
-                case ENTNUM:
-                    if (c==';' || !Character.isDigit(c)) {
-                        entityTargetBuf.append ((char) entnum);
-                        if (c == ';')
-                            ++bufptr;
-                        state = postEntityState;
-                    }
-                    else {
-                        entnum = 10*entnum + (c - '0');
-                        ++bufptr;
-                    }
-                    break;
-
-                case LT:
-                    tagStart = bufbase+bufptr-1;
-                    switch (c) {
-                        case '/':
-                            ++bufptr;
-                            tagName.setLength (0);
-                            state = ETAG;
-                            break;
-                        case '!':
-                            ++bufptr;
-                            state = BANG;
-                            break;
-                        default:
-                            if (Character.isLetter (c)) {
-                                tagName.setLength (0);
-                                state = STAG;
-                            }
-                            else {
-                                wordBuf.append ('<');
-                                state = INWORD;
-                            }
-                            break;
-                    }
-                    break;
-
-                // Comments and directives.
-                // Implements the (broken, but easy) Netscape rule:
-                // <!-- starts a comment, --> closes.
-                // All other directives <!foo> are also returned as comments.
-                case BANG:
-                    if (c == '-') {
-                        ++bufptr;
-                        state = BANG_DASH;
-                    }
-                    else {
-                        state = DIRECTIVE;
-                    }
-                    break;
-
-                case BANG_DASH:
-                    if (c == '-') {
-                        ++bufptr;
-                        state = CMT;
-                    }
-                    else {
-                        state = DIRECTIVE;
-                    }
-                    break;
-
-                case CMT:
-                    if (c == '-') {
-                        ++bufptr;
-                        state = CMT_DASH;
-                    }
-                    else {
-                        ++bufptr;
-                    }
-                    break;
+    HTMLTokenizer tokenizer = new HTMLTokenizer (null);
 
-                case CMT_DASH:
-                    if (c == '-') {
-                        ++bufptr;
-                        state = CMT_DASHDASH;
-                    }
-                    else {
-                        ++bufptr;
-                        state = CMT;
-                    }
-                    break;
-
-                case CMT_DASHDASH:
-                    if (c == '>') {
-                        ++bufptr;
-                        tag = new Tag (page, tagStart, bufbase+bufptr, Tag.COMMENT, true);
-                        tokens.addElement (tag);
-                        state = START;
-                    }
-                    else if (c == '-') {
-                        ++bufptr;
-                        state = CMT_DASHDASH;
-                    }
-                    else {
-                        ++bufptr;
-                        state = CMT;
-                    }
-                    break;
-
-                case DIRECTIVE:
-                    if (c == '>') {
-                        ++bufptr;
-                        tag = new Tag (page, tagStart, bufbase+bufptr, Tag.COMMENT, true);
-                        tokens.addElement (tag);
-                        state = START;
-                    }
-                    else {
-                        ++bufptr;
-                    }
-                    break;
-
-                // Tags
-                case STAG:
-                    if (c == '>' || isWhitespace(c)) {
-                        tag = new Tag (page, tagStart, bufbase+bufptr, // tag doesn't really end here
-                                                                       // -- we'll fix it up when we actually see it
-                                       tagName.toString (), true);
-                        tokens.addElement (tag);
-                        attrs.setSize (0);
-                        state = ATTR;
-                        isHTML = true;
-                    }
-                    else {
-                        tagName.append (c);
-                        ++bufptr;
-                        // state == STAG;
-                    }
-                    break;
-
-                case ETAG:
-                    if (c == '>') {
-                        ++bufptr;
-                        tag = new Tag (page, tagStart, bufbase+bufptr, tagName.toString (), false);
-                        tokens.addElement (tag);
-                        state = START;
-                    }
-                    else {
-                        tagName.append (c);
-                        ++bufptr;
-                        // state == ETAG
-                    }
-                    break;
-
-                // Attributes
-                case ATTR:
-                    if (isWhitespace(c))
-                        ++bufptr;
-                    else if (c == '>') {
-                        ++bufptr;
-                        tag.end = bufbase+bufptr;
-                        if (attrs.size() > 0) {
-                            tag.htmlAttributes = new String[attrs.size()];
-                            attrs.copyInto (tag.htmlAttributes);
-                        }
-                        state = START;
-                    }
-                    else {
-                        attrName.setLength (0);
-                        state = ATTRNAME;
-                    }
-                    break;
-
-                case ATTRNAME:
-                    if (c == '>' || c == '=' || isWhitespace(c)) {
-                        state = EQ;
-                    }
-                    else {
-                        attrName.append (c);
-                        ++bufptr;
-                        // state == ATTRNAME;
-                    }
-                    break;
-
-                case EQ:
-                    if (isWhitespace(c))
-                        ++bufptr;
-                    else if (c == '=') {
-                        ++bufptr;
-                        state = AFTEREQ;
-                    }
-                    else {
-                        String name = Tag.toHTMLAttributeName (attrName.toString());
-                        tag.setLabel (name);
-                        attrs.addElement (name);
-                        state = ATTR;
-                    }
-                    break;
-
-                case AFTEREQ:
-                    if (isWhitespace (c))
-                        ++bufptr;
-                    else
-                        switch (c) {
-                            case '>':
-                            {
-                                String name = Tag.toHTMLAttributeName (attrName.toString());
-                                tag.setLabel (name);
-                                attrs.addElement (name);
-                                state = ATTR;
-                                break;
-                            }
-                            case '\'':
-                                ++bufptr;
-                                attrVal.setLength (0);
-                                state = ATTRVAL_SQ;
-                                break;
-                            case '"':
-                                ++bufptr;
-                                attrVal.setLength (0);
-                                state = ATTRVAL_DQ;
-                                break;
-                            default:
-                                attrVal.setLength (0);
-                                state = ATTRVAL;
-                                break;
-                        }
-                    break;
-
-                case ATTRVAL:
-                    if (c == '>' || isWhitespace(c)) {
-                        String name = Tag.toHTMLAttributeName (attrName.toString());
-                        tag.setLabel (name, attrVal.toString());
-                        attrs.addElement (name);
-                        state = ATTR;
-                    }
-                    else if (c == '&') {
-                        ++bufptr;
-                        postEntityState = ATTRVAL;
-                        entityTargetBuf = attrVal;
-                        state = ENTITY;
-                    }
-                    else {
-                        ++bufptr;
-                        attrVal.append (c);
-                        // state == ATTRVAL;
-                    }
-                    break;
-
-                case ATTRVAL_SQ:
-                    if (c=='\'') {
-                        ++bufptr;
-                        String name = Tag.toHTMLAttributeName (attrName.toString());
-                        tag.setLabel (name, attrVal.toString());
-                        attrs.addElement (name);
-                        state = ATTR;
-                    }
-                    else if (c == '&') {
-                        ++bufptr;
-                        postEntityState = ATTRVAL_SQ;
-                        entityTargetBuf = attrVal;
-                        state = ENTITY;
-                    }
-                    else {
-                        ++bufptr;
-                        attrVal.append (c);
-                        // state == ATTRVAL_SQ;
-                    }
-                    break;
-
-                case ATTRVAL_DQ:
-                    if (c=='"') {
-                        ++bufptr;
-                        String name = Tag.toHTMLAttributeName (attrName.toString());
-                        tag.setLabel (name, attrVal.toString());
-                        attrs.addElement (name);
-                        state = ATTR;
-                    }
-                    else if (c == '&') {
-                        ++bufptr;
-                        postEntityState = ATTRVAL_DQ;
-                        entityTargetBuf = attrVal;
-                        state = ENTITY;
-                    }
-                    else {
-                        ++bufptr;
-                        attrVal.append (c);
-                        // state == ATTRVAL_DQ;
-                    }
-                    break;
-
-                default:
-                    throw new RuntimeException ("HtmlTokenizer entered illegal state " + state);
-            }
-        }
-
-        // EOF
-        switch (state) {
-            case INWORD:
-                // EOF terminated some text -- save the text
-                tokens.addElement (new Text (page, wordStart, bufbase+bufptr, wordBuf.toString ()));
-                ++nWords;
-                break;
-
-            default:
-                // EOF in the middle of tags is illegal
-                // don't try to recover
-                break;
-        }
-
-        int nTotal = tokens.size ();
-
-        page.tokens = new Region[nTotal];
-        tokens.copyInto (page.tokens);
-
-        page.words = new Text[nWords];
-        int textnum = 0;
-        page.tags = new Tag[nTotal - nWords];
-        int tagnum = 0;
-
-        for (int i=0; i < nTotal; ++i) {
-            if (page.tokens[i] instanceof Tag)
-                page.tags[tagnum++] = (Tag)page.tokens[i];
-            else
-                page.words[textnum++] = (Text)page.tokens[i];
-        }
+    private ParseTable tokenize (Page page) throws IOException {
+        ParseTable table = new ParseTable (page);
+        tokenizer.setHandler (table);
+        tokenizer.reset ("text/html".equals (page.getContentType ()));
+        writeContent (page);
+        tokenizer.close ();
+        tokenizer.setHandler (null);
+        return table;
     }
 
-    private static boolean isWhitespace (char c) {
-//#ifdef JDK1.1 
-        return Character.isWhitespace (c);
-//#endif JDK1.1
-/*#ifdef JDK1.0
-        return Character.isSpace (c);
-#endif JDK1.0*/
+    /*
+     * Push a page's content into the tokenizer.  A page that keeps only
+     * its bytes (see DownloadParameters.changeCompactContent()) is 
+     * decoded by the tokenizer as it goes.
+     */
+    private void writeContent (Page page) {
+        String content = page.content;  // read once, since spill() may drop it
+        if (content != null)
+            tokenizer.write (content);
+        else {
+            byte[] b = page.getContentBytes ();
+            String encoding = page.getContentEncoding ();
+            tokenizer.setEncoding (encoding != null 
+                                   ? encoding : Page.DEFAULT_ENCODING);
+            tokenizer.write (b, 0, b.length);
+        }
     }
-        
-
-    private static Hashtable entities = new Hashtable2()
-          .add ("quot", new Character ((char)34))
-          .add ("amp", new Character ((char)38))
-          .add ("lt", new Character ((char)60))
-          .add ("gt", new Character ((char)62))
-          .add ("nbsp", new Character ((char)160))
-          .add ("iexcl", new Character ((char)161))
-          .add ("cent", new Character ((char)162))
-          .add ("pound", new Character ((char)163))
-          .add ("curren", new Character ((char)164))
-          .add ("yen", new Character ((char)165))
-          .add ("brvbar", new Character ((char)167))
-          .add ("sect", new Character ((char)167))
-          .add ("uml", new Character ((char)168))
-          .add ("copy", new Character ((char)169))
-          .add ("ordf", new Character ((char)170))
-          .add ("laquo", new Character ((char)171))
-          .add ("not", new Character ((char)172))
-          .add ("shy", new Character ((char)173))
-          .add ("reg", new Character ((char)174))
-          .add ("macr", new Character ((char)175))
-          .add ("deg", new Character ((char)176))
-          .add ("plusmn", new Character ((char)177))
-          .add ("sup2", new Character ((char)178))
-          .add ("sup3", new Character ((char)179))
-          .add ("acute", new Character ((char)180))
-          .add ("micro", new Character ((char)181))
-          .add ("para", new Character ((char)182))
-          .add ("middot", new Character ((char)183))
-          .add ("cedil", new Character ((char)184))
-          .add ("sup1", new Character ((char)185))
-          .add ("ordm", new Character ((char)186))
-          .add ("raquo", new Character ((char)187))
-          .add ("frac14", new Character ((char)188))
-          .add ("frac12", new Character ((char)189))
-          .add ("frac34", new Character ((char)190))
-          .add ("iquest", new Character ((char)191))
-          .add ("Agrave", new Character ((char)192))
-          .add ("Aacute", new Character ((char)193))
-          .add ("Acirc", new Character ((char)194))
-          .add ("Atilde", new Character ((char)195))
-          .add ("Auml", new Character ((char)196))
-          .add ("Aring", new Character ((char)197))
-          .add ("AElig", new Character ((char)198))
-          .add ("Ccedil", new Character ((char)199))
-          .add ("Egrave", new Character ((char)200))
-          .add ("Eacute", new Character ((char)201))
-          .add ("Ecirc", new Character ((char)202))
-          .add ("Euml", new Character ((char)203))
-          .add ("Igrave", new Character ((char)204))
-          .add ("Iacute", new Character ((char)205))
-          .add ("Icirc", new Character ((char)206))
-          .add ("Iuml", new Character ((char)207))
-          .add ("ETH", new Character ((char)208))
-          .add ("Ntilde", new Character ((char)209))
-          .add ("Ograve", new Character ((char)210))
-          .add ("Oacute", new Character ((char)211))
-          .add ("Ocirc", new Character ((char)212))
-          .add ("Otilde", new Character ((char)213))
-          .add ("Ouml", new Character ((char)214))
-          .add ("times", new Character ((char)215))
-          .add ("Oslash", new Character ((char)216))
-          .add ("Ugrave", new Character ((char)217))
-          .add ("Uacute", new Character ((char)218))
-          .add ("Ucirc", new Character ((char)219))
-          .add ("Uuml", new Character ((char)220))
-          .add ("Yacute", new Character ((char)221))
-          .add ("THORN", new Character ((char)222))
-          .add ("szlig", new Character ((char)223))
-          .add ("agrave", new Character ((char)224))
-          .add ("aacute", new Character ((char)225))
-          .add ("acirc", new Character ((char)226))
-          .add ("atilde", new Character ((char)227))
-          .add ("auml", new Character ((char)228))
-          .add ("aring", new Character ((char)229))
-          .add ("aelig", new Character ((char)230))
-          .add ("ccedil", new Character ((char)231))
-          .add ("egrave", new Character ((char)232))
-          .add ("eacute", new Character ((char)233))
-          .add ("ecirc", new Character ((char)234))
-          .add ("euml", new Character ((char)235))
-          .add ("igrave", new Character ((char)236))
-          .add ("iacute", new Character ((char)237))
-          .add ("icirc", new Character ((char)238))
-          .add ("iuml", new Character ((char)239))
-          .add ("eth", new Character ((char)240))
-          .add ("ntilde", new Character ((char)241))
-          .add ("ograve", new Character ((char)242))
-          .add ("oacute", new Character ((char)243))
-          .add ("ocirc", new Character ((char)244))
-          .add ("otilde", new Character ((char)245))
-          .add ("ouml", new Character ((char)246))
-          .add ("divide", new Character ((char)247))
-          .add ("oslash", new Character ((char)248))
-          .add ("ugrave", new Character ((char)249))
-          .add ("uacute", new Character ((char)250))
-          .add ("ucirc", new Character ((char)251))
-          .add ("uuml", new Character ((char)252))
-          .add ("yacute", new Character ((char)253))
-          .add ("thorn", new Character ((char)254))
-          .add ("yuml", new Character ((char)255))
-          ;
 
-    private static Character lookupEntityRef (String name) {
-        return (Character) entities.get (name);
+    LinkExtractor extractor;
+
+    private void extractLinks (Page page) {
+        if (extractor == null)
+            extractor = new LinkExtractor ();
+        extractor.page = page;
+        tokenizer.setHandler (extractor);
+        tokenizer.reset ("text/html".equals (page.getContentType ()));
+        writeContent (page);
+        tokenizer.close ();
+        extractor.finish ();
     }
 
     /*
@@ -688,7 +181,7 @@ public class HTMLParser {
      *
      */
 
-    Vector vElements = new Vector ();
+    ParseTable table;
     Vector vLinks = new Vector ();
 
     StringBuffer text = new StringBuffer ();
@@ -815,6 +308,49 @@ public class HTMLParser {
           .add (Tag.ISINDEX)
           ;
 
+    // The tables above, indexed by tag id (see ParseTable.getTagId()), so
+    // that buildParseTree() needs no hashing or locking.  They only cover
+    // the names in Tag, which have the lowest ids; other tags are in
+    // no table.
+    static boolean[] isEmpty = toSet (empty);
+    static boolean[] isSavetext = toSet (savetext);
+    static boolean[] forcesClosure = toSet (forcesClosed);
+    static boolean[][] closes = toMatrix (forcesClosed);
+        // closes[x][y]: <x> forces closure of an open <y>
+    static boolean[][] contextOf = toMatrix (context);
+        // contextOf[x][y]: <x> looks upward for <y> (see context)
+    static String[] linkAttr = new String[ParseTable.KNOWN_TAGS];
+    static {
+        Enumeration e = linktag.keys ();
+        while (e.hasMoreElements ()) {
+            String tagname = (String)e.nextElement ();
+            linkAttr[ParseTable.getTagId (tagname)] = (String)linktag.get (tagname);
+        }
+    }
+
+    private static boolean[] toSet (Hashtable tagset) {
+        boolean[] set = new boolean[ParseTable.KNOWN_TAGS];
+        Enumeration e = tagset.keys ();
+        while (e.hasMoreElements ())
+            set[ParseTable.getTagId ((String)e.nextElement ())] = true;
+        return set;
+    }
+
+    private static boolean[][] toMatrix (Hashtable map) {
+        boolean[][] matrix = new boolean[ParseTable.KNOWN_TAGS][];
+        for (int i=0; i<matrix.length; ++i) {
+            Hashtable tagset = (Hashtable)map.get (Tag.ALL[i]);
+            matrix[ParseTable.getTagId (Tag.ALL[i])] = 
+                tagset != null ? toSet (tagset) : new boolean[ParseTable.KNOWN_TAGS];
+        }
+        return matrix;
+    }
+
+    // test whether a tag id is in a set made by toSet()
+    static boolean in (boolean[] set, int id) {
+        return id < set.length && set[id];
+    }
+
     private static void union (Hashtable map, Object tagname, Hashtable tagset) {
         Hashtable2 currset = (Hashtable2)map.get (tagname);
         if (currset == null)
@@ -823,78 +359,78 @@ public class HTMLParser {
             map.put (tagname, currset.union (tagset));
     }
 
-    private void buildParseTree (Page page) {
+    private void buildParseTree (Page page, ParseTable table) {
         boolean keepText = false;
 
-        elems.setSize (0);
+        this.table = table;
+        nElems = 0;
         openPtr = 0;
+        currentForm = null;
 
-        Region[] tokens = page.tokens;
-        for (int t=0; t<tokens.length; ++t) {
-            Region r = tokens[t];
-
-            if (r instanceof Tag) {
-                Tag tag = (Tag)r;
-                String tagName = tag.getTagName();
+        int nTokens = table.nTokens;
+        for (int t=0; t<nTokens; ++t) {
+            int kind = table.tokKind[t];
 
-                if (tag.isStartTag()) {
-                    // start tag <X>
+            if (kind == ParseTable.START_TAG) {
+                // start tag <X>
+                int id = table.tokName[t];
 
-                    // check if <X> forces closure of an open element
-                    if (forcesClosed.containsKey (tagName)) {
-                        Element e = findOpenElement ((Hashtable)context.get (tagName));
-                        if (e != null && ((Hashtable)forcesClosed.get (tagName)).containsKey (e.getTagName()))
-                            close (e, tag.start);
-                    }
+                // check if <X> forces closure of an open element
+                if (in (forcesClosure, id)) {
+                    int e = findOpenElement (contextOf[id]);
+                    if (e != -1 && closes[id][table.getElementTagId (e)])
+                        close (e, table.tokStart[t]);
+                }
 
-                    // create the element and push it on the elems stack
-                    Element e = makeElement (page.base, tag);
-                    open (e);
+                // create the element and push it on the elems stack
+                int e = makeElement (page.base, t);
+                open (e);
 
-                    if (empty.containsKey (tagName)) {
-                        // element has no content
-                        // close it off right now
-                        close (e, tag.end);
-                    }
-                    else if (savetext.containsKey (tagName)) {
-                        text.setLength (0);
-                        keepText = true;
-                    }
+                if (in (isEmpty, id)) {
+                    // element has no content
+                    // close it off right now
+                    close (e, table.tokEnd[t]);
+                }
+                else if (in (isSavetext, id)) {
+                    text.setLength (0);
+                    keepText = true;
+                }
 
-                    if (tagName == Tag.BASE) {
-                        String href = tag.getHTMLAttribute ("href");
-                        if (href != null) {
-                            try {                         
-                                page.base = new URL (page.base, new String (href.toCharArray())); // make copy to avoid reference to page content
-                            } catch (MalformedURLException ex) {} // bad URL
-                              catch (NullPointerException ex) {} // base == null
-                        }
+                if (table.getTagName (t) == Tag.BASE) {
+                    String href = table.getHTMLAttribute (t, "href");
+                    if (href != null) {
+                        try {                         
+                            page.base = new URL (page.base, href);
+                        } catch (MalformedURLException ex) {} // bad URL
+                          catch (NullPointerException ex) {} // base == null
                     }
                 }
-                else {
-                    // end tag </X>
-
-                    // find matching start tag <X>
-                    Element e = findOpenElement (tagName);
-                    if (e != null) {
-                        close (e, tag);
-
-                        if (savetext.containsKey (tagName)) {
-                            if (tagName == Tag.TITLE)
-                                page.title = text.toString();
-                            else if (e instanceof Link)
-                                ((Link)e).setText (text.toString());
-                            keepText = false;
-                        }
+            }
+            else if (kind == ParseTable.END_TAG) {
+                // end tag </X>
+                int id = table.tokName[t];
+
+                // find matching start tag <X>
+                int e = (id != ParseTable.UNKNOWN_TAG) 
+                    ? findOpenElement (id) 
+                    : findOpenElement (table.getTagName (t));
+                if (e != -1) {
+                    closeWithTag (e, t);
+
+                    if (in (isSavetext, id)) {
+                        if (table.getTagName (t) == Tag.TITLE)
+                            page.title = text.toString();
+                        else if (table.elemObj[e] instanceof Link)
+                            ((Link)table.elemObj[e]).setText (text.toString());
+                        keepText = false;
                     }
                 }
-
             }
-            else { // r is a text token
+            else { // text token
                 if (keepText) {
                     if (text.length() > 0)
                         text.append (' ');
-                    text.append (r.toText());
+                    text.append (table.getText (t));
                 }
             }
         }
@@ -903,61 +439,56 @@ public class HTMLParser {
         closeAll (page.end);
 
         // link together the top-level elements
-        if (!elems.empty()) {
-            int nElems = elems.size ();
-            Element c = (Element)elems.elementAt (0);
-            page.root = c;
-            for (int j=1; j<nElems; ++j) {
-                Element d = (Element)elems.elementAt (j);
-                c.sibling = d;
-                c = d;
-            }
+        if (nElems > 0) {
+            table.root = elems[0];
+            for (int j=1; j<nElems; ++j)
+                table.elemSibling[elems[j-1]] = elems[j];
         }
 
-        page.elements = new Element[vElements.size()];
-        vElements.copyInto (page.elements);
-
         page.links = new Link[vLinks.size()];
         vLinks.copyInto (page.links);
+        table.trim ();
+        page.table = table;
+
+        vLinks.setSize (0);
+        currentForm = null;
+        this.table = null;
     }
 
-    private Element makeElement (URL base, Tag tag) {
+    private int makeElement (URL base, int t) {
         Element e = null;
-        String tagName = tag.getTagName ();
-        String hrefAttr = (String)linktag.get (tagName);
+        int id = table.tokName[t];
+        String tagName = table.getTagName (t);
+        String hrefAttr = id < linkAttr.length ? linkAttr[id] : null;
         String type;
 
         try {
             if (tagName == Tag.FORM) {
-                e = new Form (tag, null, base);
+                e = new Form (table.getTag (t), null, base);
                 vLinks.addElement (e);
             }
             else if (tagName == Tag.INPUT 
-                     && (type = tag.getHTMLAttribute ("type")) != null
+                     && (type = table.getHTMLAttribute (t, "type")) != null
                      && (type.equalsIgnoreCase ("submit") || type.equalsIgnoreCase ("image"))) {
-                e = new FormButton (tag, null, currentForm);
+                e = new FormButton (table.getTag (t), null, currentForm);
                 vLinks.addElement (e);
             }
-            else if (hrefAttr != null && tag.hasHTMLAttribute (hrefAttr)) {
-                e = new Link (tag, null, base);
+            else if (hrefAttr != null && table.getHTMLAttribute (t, hrefAttr) != null) {
+                e = new Link (table.getTag (t), null, base);
                 vLinks.addElement (e);
             }
         } catch (MalformedURLException f) {} // bad URL
           catch (NullPointerException ex) {} // base == null
 
-        if (e == null)
-            // just make an ordinary element
-            e = new Element (tag, null);
-            
-        vElements.addElement (e);
-        tag.element = e;
-        return e;
+        // ordinary elements are made later, if anybody asks for them
+        return table.addElement (t, e);
     }
 
     // Stack management
 
-    Stack elems = new Stack();
-        // stack of Elements appearing before than the current element in
+    int[] elems = new int[100];
+    int nElems = 0;
+        // stack of elements appearing before than the current element in
         // a preorder traversal, except that completely-visited subtrees
         // are represented by their root.
     int[] openElems = new int[20];
@@ -966,74 +497,85 @@ public class HTMLParser {
 
     Form currentForm;
 
-    private void open (Element e) {
+    private void open (int e) {
         if (openPtr > 0)
-            e.parent = (Element)elems.elementAt (openElems[openPtr-1]);
-        else
-            e.parent = null;
+            table.elemParent[e] = elems[openElems[openPtr-1]];
 
-        elems.push (e);
-        if (e instanceof Form)
-            currentForm = (Form)e;
+        if (nElems == elems.length) {
+            int[] newarr = new int[elems.length * 2];
+            System.arraycopy (elems, 0, newarr, 0, elems.length);
+            elems = newarr;
+        }
+        elems[nElems++] = e;
+        if (table.elemObj[e] instanceof Form)
+            currentForm = (Form)table.elemObj[e];
 
         if (openPtr == openElems.length) {
             int[] newarr = new int[openElems.length + 10];
             System.arraycopy (openElems, 0, newarr, 0, openElems.length);
             openElems = newarr;
         }
-        openElems[openPtr] = elems.size()-1;
+        openElems[openPtr] = nElems-1;
         ++openPtr;
     }
 
-    private Element findOpenElement (String tagname) {
+    private int findOpenElement (int id) {
         for (int i=openPtr-1; i >= 0; --i) {
-            Element e = (Element)elems.elementAt (openElems[i]);
-            if (tagname == e.getTagName ())
+            int e = elems[openElems[i]];
+            if (table.getElementTagId (e) == id)
                 return e;
         }
-        return null;
+        return -1;
     }
 
-    private Element findOpenElement (Hashtable tags) {
+    private int findOpenElement (boolean[] tags) {
         for (int i=openPtr-1; i >= 0; --i) {
-            Element e = (Element)elems.elementAt (openElems[i]);
-            if (tags.containsKey (e.getTagName ()))
+            int e = elems[openElems[i]];
+            if (in (tags, table.getElementTagId (e)))
                 return e;
         }
-        return null;
+        return -1;
+    }
+
+    // find an open element by name, for tags sharing ParseTable.UNKNOWN_TAG
+    private int findOpenElement (String tagName) {
+        for (int i=openPtr-1; i >= 0; --i) {
+            int e = elems[openElems[i]];
+            if (table.getTagName (table.elemStartTag[e]) == tagName)
+                return e;
+        }
+        return -1;
     }
 
     // NIY: stack up unclosed flow tags (like <B> and <A>) and reopen them
     // when the next element is opened
-    private void close (Element elem, Tag tag) {
-        elem.endTag = tag;
-        tag.element = elem;
-        close (elem, tag.start);
-        elem.end = tag.end;
+    private void closeWithTag (int elem, int t) {
+        table.setElementEndTag (elem, t);
+        close (elem, table.tokStart[t]);
+        table.setElementEnd (elem, table.tokEnd[t]);
     }
 
-    private void close (Element elem, int end) {
+    private void close (int elem, int end) {
         int v;
-        Element e;
+        int e;
         do {
             v = openElems[--openPtr];
-            e = (Element)elems.elementAt (v);
+            e = elems[v];
 
-            e.end = end;
-            if (e instanceof Form)
+            table.setElementEnd (e, end);
+            if (table.elemObj[e] instanceof Form)
                 currentForm = null;
 
             int firstChild = v+1;
-            int nElems = elems.size();
             if (firstChild < nElems) {
-                Element c = (Element)elems.elementAt (firstChild);
-                e.child = c;
+                int c = elems[firstChild];
+                table.elemChild[e] = c;
                 for (int j=firstChild+1; j<nElems; ++j) {
-                    Element d = (Element)elems.elementAt (j);
-                    c.sibling = d;
+                    int d = elems[j];
+                    table.elemSibling[c] = d;
                     c = d;
                 }
-                elems.setSize (firstChild);
+                nElems = firstChild;
             }
             
         } while (e != elem);
@@ -1041,7 +583,7 @@ public class HTMLParser {
 
     private void closeAll (int end) {
         if (openPtr > 0)
-            close ((Element)elems.elementAt (openElems[0]), end);
+            close (elems[openElems[0]], end);
     }
 
     /*
@@ -1070,13 +612,13 @@ public class HTMLParser {
         */
  
         System.out.println ("Tokens: ------------------------------------------");
-        Region[] tokens = page.tokens;
+        Region[] tokens = page.getTokens ();
         for (int i=0; i<tokens.length; ++i) {
             System.out.println ("[" + tokens[i].getStart() + "," + tokens[i].getEnd() + "]" + tokens[i]);
         }
 
        System.out.println ("Tags: ------------------------------------------");
-        Tag[] tags = page.tags;
+        Tag[] tags = page.getTags ();
         for (int i=0; i<tags.length; ++i) {
             Tag t = tags[i];
             System.out.print ((t.isStartTag() ? "start tag" : "end tag") + " " + t.getTagName ());
@@ -1093,13 +635,13 @@ public class HTMLParser {
         }
 
         System.out.println ("Words: ------------------------------------------");
-        Text[] words = page.words;
+        Text[] words = page.getWords ();
         for (int i=0; i<words.length; ++i) {
             System.out.println (words[i]);
         }
 
         System.out.println ("Elements: ------------------------------------------");
-        printout (page.root, 0);
+        printout (page.getRootElement (), 0);
 
         System.out.println ("Links: ------------------------------------------");
         printout (page.getLinks (), 0);
@@ -1132,27 +674,265 @@ public class HTMLParser {
     }
 }
 
-class Hashtable2 extends Hashtable {
-    public Hashtable2 () {
+/*
+ * Finds the links, base, title and robots directives of a page
+ * as HTMLTokenizer passes on its tokens (links-only mode).
+ * Keeps the same stack of open elements as HTMLParser.buildParseTree(),
+ * but only as tag ids, so that the elements it makes end where
+ * the full parse would end them, and nest as they would in the
+ * full tree with the elements in between left out.
+ */
+class LinkExtractor implements HTMLHandler {
+    Page page;
+    Vector tags = new Vector ();
+    Vector elements = new Vector ();
+    Vector links = new Vector ();
+
+    int[] openIds = new int[20];
+        // tag ids of the elements the full parse would have open
+    String[] openNames = new String[20];
+        // tag names of the open elements
+    Element[] openElems = new Element[20];
+        // element made for each open element, or null if none
+    Element[] lastChild = new Element[20];
+        // last element made inside each open element that was made
+    int openPtr = 0;
+    Element lastTop;       // last top-level element
+
+    boolean keepText;
+    StringBuffer text = new StringBuffer ();
+
+    public void startTag (String tagName, HTMLAttributes attrs, int start, int end) {
+        int id = ParseTable.getTagId (tagName);
+
+        // check if <X> forces closure of an open element
+        if (HTMLParser.in (HTMLParser.forcesClosure, id)) {
+            int i = findOpenElement (HTMLParser.contextOf[id]);
+            if (i != -1 && HTMLParser.closes[id][openIds[i]])
+                close (i, start);
+        }
+
+        Element e = makeElement (tagName, id, attrs, start, end);
+        open (id, tagName, e);
+
+        if (HTMLParser.in (HTMLParser.isEmpty, id))
+            close (openPtr-1, end);
+        else if (HTMLParser.in (HTMLParser.isSavetext, id)) {
+            text.setLength (0);
+            keepText = true;
+        }
+
+        if (tagName == Tag.BASE) {
+            String href = attrs.getValue ("href");
+            if (href != null) {
+                try {                         
+                    page.base = new URL (page.base, href);
+                } catch (MalformedURLException ex) {} // bad URL
+                  catch (NullPointerException ex) {} // base == null
+            }
+        }
     }
 
-    public Hashtable2 add (Object key) {
-        put (key, key);
-        return this;
+    public void endTag (String tagName, int start, int end) {
+        int id = ParseTable.getTagId (tagName);
+
+        // find matching start tag <X>
+        int i = (id != ParseTable.UNKNOWN_TAG) 
+            ? findOpenElement (id) 
+            : findOpenElement (tagName);
+        if (i == -1)
+            return;
+        Element e = openElems[i];
+        close (i, start);
+
+        if (e != null) {
+            Tag tag = new Tag (page, start, end, tagName, false);
+            tags.addElement (tag);
+            tag.element = e;
+            e.endTag = tag;
+            e.end = end;
+        }
+
+        if (HTMLParser.in (HTMLParser.isSavetext, id)) {
+            if (tagName == Tag.TITLE)
+                page.title = text.toString ();
+            else if (e instanceof Link)
+                ((Link)e).setText (text.toString ());
+            keepText = false;
+        }
+    }
+
+    public void text (char[] chars, int offset, int length, int start, int end) {
+        if (keepText) {
+            if (text.length () > 0)
+                text.append (' ');
+            text.append (chars, offset, length);
+        }
     }
 
-    public Hashtable2 add (Object key, Object val) {
-        put (key, val);
-        return this;
+    public void comment (int start, int end) {
     }
 
-    public Hashtable2 union (Hashtable map) {
-        Enumeration enum = map.keys ();
-        while (enum.hasMoreElements ()) {
-            Object key = enum.nextElement ();
-            put (key, map.get (key));
+    /*
+     * Make the element for a start tag, if it is one that links-only
+     * mode keeps; otherwise return null.
+     */
+    private Element makeElement (String tagName, int id, HTMLAttributes attrs,
+                                 int start, int end) {
+        String hrefAttr = id < HTMLParser.linkAttr.length ? HTMLParser.linkAttr[id] : null;
+        if (hrefAttr != null && tagName != Tag.FORM 
+                && attrs.indexOf (hrefAttr) != -1) {
+            Tag tag = makeTag (page, tagName, attrs, start, end);
+            Link link;
+            try {
+                link = new Link (tag, null, page.base);
+            } catch (MalformedURLException e) {
+                return null;  // bad URL
+            } catch (NullPointerException e) {
+                return null;  // base == null
+            }
+            add (tag, link);
+            links.addElement (link);
+            return link;
+        }
+        else if (tagName == Tag.BASE || tagName == Tag.TITLE
+                 || (tagName == Tag.META 
+                     && "robots".equalsIgnoreCase (attrs.getValue ("name")))
+                 || lastTop == null) {
+            // the first tag is kept so that the page has a root element
+            // (Page.isHTML() tests for one)
+            Tag tag = makeTag (page, tagName, attrs, start, end);
+            Element e = new Element (tag, null);
+            add (tag, e);
+            return e;
+        }
+        else
+            return null;
+    }
+
+    static Tag makeTag (Page page, String tagName, HTMLAttributes attrs, 
+                        int start, int end) {
+        Tag tag = new Tag (page, start, end, tagName, true);
+        int n = attrs.getLength ();
+        if (n > 0) {
+            tag.htmlAttributes = new String[n];
+            for (int i=0; i<n; ++i) {
+                String name = attrs.getName (i);
+                tag.htmlAttributes[i] = name;
+                tag.setAttributeLabel (name, attrs.hasValue (i) 
+                                       ? attrs.getValue (i) : null);
+            }
+        }
+        return tag;
+    }
+
+    // add a start tag and its element, as a child of the innermost 
+    // open element that was made, or else at the top level
+    private void add (Tag tag, Element e) {
+        tags.addElement (tag);
+        elements.addElement (e);
+        tag.element = e;
+
+        int p = openPtr-1;
+        while (p >= 0 && openElems[p] == null)
+            --p;
+        if (p >= 0) {
+            e.parent = openElems[p];
+            if (lastChild[p] == null)
+                openElems[p].child = e;
+            else
+                lastChild[p].sibling = e;
+            lastChild[p] = e;
         }
+        else {
+            if (lastTop == null)
+                page.root = e;
+            else
+                lastTop.sibling = e;
+            lastTop = e;
+        }
+    }
+
+    // Stack management, as in HTMLParser
+
+    private void open (int id, String tagName, Element e) {
+        if (openPtr == openIds.length) {
+            int n = openIds.length * 2;
+            int[] newIds = new int[n];
+            System.arraycopy (openIds, 0, newIds, 0, openPtr);
+            openIds = newIds;
+            String[] newNames = new String[n];
+            System.arraycopy (openNames, 0, newNames, 0, openPtr);
+            openNames = newNames;
+            Element[] newElems = new Element[n];
+            System.arraycopy (openElems, 0, newElems, 0, openPtr);
+            openElems = newElems;
+            Element[] newLast = new Element[n];
+            System.arraycopy (lastChild, 0, newLast, 0, openPtr);
+            lastChild = newLast;
+        }
+        openIds[openPtr] = id;
+        openNames[openPtr] = tagName;
+        openElems[openPtr] = e;
+        lastChild[openPtr] = null;
+        ++openPtr;
+    }
+
+    private int findOpenElement (int id) {
+        for (int i=openPtr-1; i >= 0; --i)
+            if (openIds[i] == id)
+                return i;
+        return -1;
+    }
+
+    private int findOpenElement (boolean[] ids) {
+        for (int i=openPtr-1; i >= 0; --i)
+            if (HTMLParser.in (ids, openIds[i]))
+                return i;
+        return -1;
+    }
+
+    private int findOpenElement (String tagName) {
+        for (int i=openPtr-1; i >= 0; --i)
+            if (openNames[i] == tagName)
+                return i;
+        return -1;
+    }
+
+    // close the open element at i and all the elements open inside it
+    private void close (int i, int end) {
+        while (openPtr > i) {
+            --openPtr;
+            Element e = openElems[openPtr];
+            if (e != null)
+                e.end = end;
+            openNames[openPtr] = null;
+            openElems[openPtr] = null;
+            lastChild[openPtr] = null;
+        }
+    }
+
+    // store the tags, elements and links in the page
+    void finish () {
+        // close any remaining open elements
+        close (0, page.end);
+
+        page.tags = new Tag[tags.size ()];
+        tags.copyInto (page.tags);
+        page.tokens = page.tags;
+        page.words = new Text[0];
+
+        page.elements = new Element[elements.size ()];
+        elements.copyInto (page.elements);
+
+        page.links = new Link[links.size ()];
+        links.copyInto (page.links);
 
-        return this;
+        tags.setSize (0);
+        elements.setSize (0);
+        links.setSize (0);
+        lastTop = null;
+        keepText = false;
+        page = null;
     }
 }
@@ -0,0 +1,812 @@
+/*
+ * WebSphinx web-crawling toolkit
+ *
+ * Copyright (c) 1998-2002 Carnegie Mellon University.  All rights
+ * reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in
+ *    the documentation and/or other materials provided with the
+ *    distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY CARNEGIE MELLON UNIVERSITY ``AS IS'' AND
+ * ANY EXPRESSED OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ * THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED.  IN NO EVENT SHALL CARNEGIE MELLON UNIVERSITY
+ * NOR ITS EMPLOYEES BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+
+package websphinx;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.util.Hashtable;
+
+/**
+ * Push-based HTML tokenizer.  Characters (or bytes, which are decoded)
+ * are pushed in with write() in pieces of any size, for instance as
+ * they arrive from the network, and each token is passed to an 
+ * HTMLHandler as soon as it is complete.  close() marks the end of 
+ * the document.  The tokenizer never holds more of the document than
+ * the token it is in the middle of.
+ * <P>
+ * HTMLParser builds the Tags and Text of a Page from these callbacks.
+ */
+public class HTMLTokenizer {
+
+    // parameter for HTML type detection.  
+    // If the tokenizer doesn't encounter at least one HTML tag
+    // in the first VALID_HTML_PREFIX chars of the stream, then it 
+    // concludes that the stream isn't HTML and stops tokenizing it.
+    static final int VALID_HTML_PREFIX = 10000;
+
+    // state takes on one of the following values:
+    private static final int START = 0;
+    private static final int INWORD = 1;
+    private static final int ENTITY = 2;
+    private static final int LT = 4;
+    private static final int BANG = 5;
+    private static final int BANG_DASH = 6;
+    private static final int CMT = 7;
+    private static final int CMT_DASH = 8;
+    private static final int CMT_DASHDASH = 9;
+    private static final int DIRECTIVE = 10;
+    private static final int STAG = 11;
+    private static final int ETAG = 12;
+    private static final int ATTR = 13;
+    private static final int ATTRNAME = 14;
+    private static final int EQ = 15;
+    private static final int AFTEREQ = 16;
+    private static final int ATTRVAL = 17;
+    private static final int ATTRVAL_SQ = 18;
+    private static final int ATTRVAL_DQ = 19;
+    private static final int ENTNUM = 21;
+    private static final int ENTREF = 22;
+
+    HTMLHandler handler;
+    boolean isHTML = false;    // true once a tag has been seen
+    boolean stopped = false;   // true if the document isn't HTML
+
+    int state = START;
+    int pos = 0;               // offset of the next character written
+
+    char[] word = new char[64];
+    int wordLength = 0;
+    int wordStart = 0;
+
+    StringBuffer tagName = new StringBuffer ();
+    String tag;                // name of start tag being read
+    int tagStart = 0;
+    int tagNameEnd = 0;        // offset just past the start tag's name
+    StringBuffer attrName = new StringBuffer ();
+    HTMLAttributes attrs = new HTMLAttributes ();
+
+    StringBuffer entity = new StringBuffer ();
+    int entnum = 0;
+    int postEntityState = 0;
+
+    char[] charBuf = new char[4096];
+    CharsetDecoder decoder;
+    byte[] leftover = new byte[16]; // undecoded bytes from the last write()
+    int nLeftover = 0;
+
+    /**
+     * Make an HTMLTokenizer.
+     * @param handler handler to call back with each token
+     */
+    public HTMLTokenizer (HTMLHandler handler) {
+        this.handler = handler;
+    }
+
+    /**
+     * Get the handler.
+     */
+    public HTMLHandler getHandler () {
+        return handler;
+    }
+
+    /**
+     * Set the handler.
+     * @param handler handler to call back with each token
+     */
+    public void setHandler (HTMLHandler handler) {
+        this.handler = handler;
+    }
+
+    /**
+     * Start a new document.  Forgets any partly-read token.
+     * @param isHTML true if the document is known to be HTML.  
+     * If false, the tokenizer gives up on the document unless it 
+     * finds a tag near the start.
+     */
+    public void reset (boolean isHTML) {
+        this.isHTML = isHTML;
+        stopped = false;
+        state = START;
+        pos = 0;
+        attrs.clear ();
+        nLeftover = 0;
+        if (decoder != null)
+            decoder.reset ();
+    }
+
+    /**
+     * Set the character encoding used by write(byte[],int,int).
+     * Default is ISO-8859-1.  Malformed input is replaced, as by 
+     * new String(byte[],String).
+     * @param charset name of character encoding
+     * @exception IllegalArgumentException if the encoding isn't supported
+     */
+    public void setEncoding (String charset) {
+        decoder = Charset.forName (charset).newDecoder ()
+            .onMalformedInput (CodingErrorAction.REPLACE)
+            .onUnmappableCharacter (CodingErrorAction.REPLACE);
+    }
+
+    /**
+     * Get number of characters written since the document started.
+     */
+    public int getOffset () {
+        return pos;
+    }
+
+    /**
+     * Test whether the tokenizer has given up on the document,
+     * because it doesn't look like HTML.  Further input is ignored.
+     */
+    public boolean isStopped () {
+        return stopped;
+    }
+
+    /**
+     * Push bytes of the document, decoding them with the encoding set 
+     * by setEncoding().  A character split between two calls is
+     * decoded when its last byte arrives.
+     * @param b bytes
+     * @param off offset of first byte
+     * @param len number of bytes
+     */
+    public void write (byte[] b, int off, int len) {
+        if (decoder == null)
+            setEncoding (Page.DEFAULT_ENCODING);
+
+        ByteBuffer in;
+        if (nLeftover > 0) {
+            byte[] joined = new byte[nLeftover + len];
+            System.arraycopy (leftover, 0, joined, 0, nLeftover);
+            System.arraycopy (b, off, joined, nLeftover, len);
+            in = ByteBuffer.wrap (joined);
+        }
+        else
+            in = ByteBuffer.wrap (b, off, len);
+
+        decode (in, false);
+
+        nLeftover = in.remaining ();
+        if (nLeftover > leftover.length)
+            leftover = new byte[nLeftover];
+        in.get (leftover, 0, nLeftover);
+    }
+
+    private void decode (ByteBuffer in, boolean endOfInput) {
+        CharBuffer out = CharBuffer.wrap (charBuf);
+        while (true) {
+            out.clear ();
+            boolean overflow = decoder.decode (in, out, endOfInput).isOverflow ();
+            write (charBuf, 0, out.position ());
+            if (!overflow)
+                break;
+        }
+    }
+
+    /**
+     * Push characters of the document.
+     * @param s string holding the characters
+     */
+    public void write (String s) {
+        for (int i=0, len=s.length (); i<len; i += charBuf.length) {
+            int n = Math.min (charBuf.length, len - i);
+            s.getChars (i, i+n, charBuf, 0);
+            write (charBuf, 0, n);
+        }
+    }
+
+    /**
+     * Push all the bytes of a stream, and close() the document.
+     * @param in stream to read (not closed by this method)
+     * @exception IOException if the stream can't be read
+     */
+    public void parse (InputStream in) throws IOException {
+        byte[] b = new byte[4096];
+        int n;
+        while (!stopped && (n = in.read (b)) != -1)
+            write (b, 0, n);
+        close ();
+    }
+
+    /**
+     * End the document.  Passes any token at the very end of the 
+     * document to the handler.
+     */
+    public void close () {
+        if (decoder != null && !stopped) {
+            decode (ByteBuffer.wrap (leftover, 0, nLeftover), true);
+            CharBuffer out = CharBuffer.wrap (charBuf);
+            decoder.flush (out);
+            write (charBuf, 0, out.position ());
+            nLeftover = 0;
+            decoder.reset ();
+        }
+        if (stopped)
+            return;
+
+        switch (state) {
+            case INWORD:
+                // EOF terminated some text -- pass it on
+                handler.text (word, 0, wordLength, wordStart, pos);
+                break;
+
+            case ATTR:
+            case ATTRNAME:
+            case EQ:
+            case AFTEREQ:
+            case ATTRVAL:
+            case ATTRVAL_SQ:
+            case ATTRVAL_DQ:
+                // EOF in the middle of a start tag; 
+                // end the tag after its name
+                handler.startTag (tag, attrs, tagStart, tagNameEnd);
+                break;
+
+            case ENTITY:
+            case ENTREF:
+            case ENTNUM:
+                if (postEntityState != INWORD)
+                    handler.startTag (tag, attrs, tagStart, tagNameEnd);
+                break;
+
+            default:
+                // EOF in the middle of other tags is illegal
+                // don't try to recover
+                break;
+        }
+        state = START;
+    }
+
+    /**
+     * Push characters of the document.
+     * @param buf buffer holding the characters
+     * @param off offset of first character
+     * @param len number of characters
+     */
+    // FIX: should entities in attr names or values be expanded?
+    public void write (char[] buf, int off, int len) {
+        int bufptr = off;
+        int buflen = off + len;
+        int bufbase = pos - off;   // document offset of buf[0]
+
+        while (bufptr < buflen) {
+            if (stopped)
+                return;
+            if (!isHTML && bufbase+bufptr >= VALID_HTML_PREFIX) {
+                // we didn't see any HTML tags in the first
+                // VALID_HTML_PREFIX chars,
+                // so assume the document isn't HTML and stop tokenizing it.
+                stopped = true;
+                return;
+            }
+
+            char c = buf[bufptr];
+
+            switch (state) {
+                case START:
+                    // after whitespace or tag
+                    switch (c) {
+                        case '<':
+                            ++bufptr;
+                            state = LT;
+                            break;
+                        case ' ':
+                        case '\t':
+                        case '\n':
+                        case '\r':
+                            ++bufptr;
+                            break;
+                        default:
+                            wordLength = 0;
+                            wordStart = bufbase+bufptr;
+                            state = INWORD;
+                            break;
+                    }
+                    break;
+
+                case INWORD:
+                    // Character data
+                    switch (c) {
+                        case '<':
+                            handler.text (word, 0, wordLength, wordStart, bufbase+bufptr);
+                            state = START;
+                            break;
+                        case ' ':
+                        case '\t':
+                        case '\n':
+                        case '\r':
+                            handler.text (word, 0, wordLength, wordStart, bufbase+bufptr);
+                            state = START;
+                            ++bufptr;
+                            break;
+                        case '&':
+                            ++bufptr;
+                            postEntityState = INWORD;
+                            state = ENTITY;
+                            break;
+                        default:
+                            appendWord (c);
+                            ++bufptr;
+                            // state == INWORD;
+                            break;
+                    }
+                    break;
+
+                //  Entities
+                case ENTITY:
+                    if (c == '#') {
+                        ++bufptr;
+                        entnum = 0;
+                        state = ENTNUM;
+                    }
+                    else if ((c >= 'A' && c <= 'Z')
+                             || (c >= 'a' && c <= 'z')) {
+                        entity.setLength (0);
+                        state = ENTREF;
+                    }
+                    else {
+                        appendEntityTarget ('&');
+                        state = postEntityState;
+                    }
+                    break;
+
+                case ENTREF:
+                    if (!Character.isLetterOrDigit(c)) {
+                        Character ent = lookupEntityRef (entity.toString ());
+                        if (ent != null) {
+                            appendEntityTarget (ent.charValue());
+                            if (c == ';')
+                                ++bufptr;
+                        }
+                        else {
+                            // unrecognized entity -- leave
+                            // as-is
+                            appendEntityTarget ('&');
+                            for (int i=0, n=entity.length (); i<n; ++i)
+                                appendEntityTarget (entity.charAt (i));
+                        }                            
+                        state = postEntityState;
+                    }
+                    else {
+                        ++bufptr;
+                        entity.append (c);
+                        // state == ENTREF;
+                    }
+                    break;
+
+                case ENTNUM:
+                    if (c==';' || !Character.isDigit(c)) {
+                        appendEntityTarget ((char) entnum);
+                        if (c == ';')
+                            ++bufptr;
+                        state = postEntityState;
+                    }
+                    else {
+                        entnum = 10*entnum + (c - '0');
+                        ++bufptr;
+                    }
+                    break;
+
+                case LT:
+                    tagStart = bufbase+bufptr-1;
+                    switch (c) {
+                        case '/':
+                            ++bufptr;
+                            tagName.setLength (0);
+                            state = ETAG;
+                            break;
+                        case '!':
+                            ++bufptr;
+                            state = BANG;
+                            break;
+                        default:
+                            if (Character.isLetter (c)) {
+                                tagName.setLength (0);
+                                state = STAG;
+                            }
+                            else {
+                                appendWord ('<');
+                                state = INWORD;
+                            }
+                            break;
+                    }
+                    break;
+
+                // Comments and directives.
+                // Implements the (broken, but easy) Netscape rule:
+                // <!-- starts a comment, --> closes.
+                // All other directives <!foo> are also returned as comments.
+                case BANG:
+                    if (c == '-') {
+                        ++bufptr;
+                        state = BANG_DASH;
+                    }
+                    else {
+                        state = DIRECTIVE;
+                    }
+                    break;
+
+                case BANG_DASH:
+                    if (c == '-') {
+                        ++bufptr;
+                        state = CMT;
+                    }
+                    else {
+                        state = DIRECTIVE;
+                    }
+                    break;
+
+                case CMT:
+                    if (c == '-') {
+                        ++bufptr;
+                        state = CMT_DASH;
+                    }
+                    else {
+                        ++bufptr;
+                    }
+                    break;
+
+                case CMT_DASH:
+                    if (c == '-') {
+                        ++bufptr;
+                        state = CMT_DASHDASH;
+                    }
+                    else {
+                        ++bufptr;
+                        state = CMT;
+                    }
+                    break;
+
+                case CMT_DASHDASH:
+                    if (c == '>') {
+                        ++bufptr;
+                        handler.comment (tagStart, bufbase+bufptr);
+                        state = START;
+                    }
+                    else if (c == '-') {
+                        ++bufptr;
+                        state = CMT_DASHDASH;
+                    }
+                    else {
+                        ++bufptr;
+                        state = CMT;
+                    }
+                    break;
+
+                case DIRECTIVE:
+                    if (c == '>') {
+                        ++bufptr;
+                        handler.comment (tagStart, bufbase+bufptr);
+                        state = START;
+                    }
+                    else {
+                        ++bufptr;
+                    }
+                    break;
+
+                // Tags
+                case STAG:
+                    if (c == '>' || isWhitespace(c)) {
+                        // the tag is passed on once its attributes are read
+                        tag = Tag.toTagName (tagName.toString ());
+                        tagNameEnd = bufbase+bufptr;
+                        attrs.clear ();
+                        state = ATTR;
+                        isHTML = true;
+                    }
+                    else {
+                        tagName.append (c);
+                        ++bufptr;
+                        // state == STAG;
+                    }
+                    break;
+
+                case ETAG:
+                    if (c == '>') {
+                        ++bufptr;
+                        handler.endTag (Tag.toTagName (tagName.toString ()), 
+                                        tagStart, bufbase+bufptr);
+                        state = START;
+                    }
+                    else {
+                        tagName.append (c);
+                        ++bufptr;
+                        // state == ETAG
+                    }
+                    break;
+
+                // Attributes
+                case ATTR:
+                    if (isWhitespace(c))
+                        ++bufptr;
+                    else if (c == '>') {
+                        ++bufptr;
+                        state = START;
+                        handler.startTag (tag, attrs, tagStart, bufbase+bufptr);
+                    }
+                    else {
+                        attrName.setLength (0);
+                        state = ATTRNAME;
+                    }
+                    break;
+
+                case ATTRNAME:
+                    if (c == '>' || c == '=' || isWhitespace(c)) {
+                        state = EQ;
+                    }
+                    else {
+                        attrName.append (c);
+                        ++bufptr;
+                        // state == ATTRNAME;
+                    }
+                    break;
+
+                case EQ:
+                    if (isWhitespace(c))
+                        ++bufptr;
+                    else if (c == '=') {
+                        ++bufptr;
+                        state = AFTEREQ;
+                    }
+                    else {
+                        attrs.add (Tag.toHTMLAttributeName (attrName.toString()), false);
+                        state = ATTR;
+                    }
+                    break;
+
+                case AFTEREQ:
+                    if (isWhitespace (c))
+                        ++bufptr;
+                    else
+                        switch (c) {
+                            case '>':
+                                attrs.add (Tag.toHTMLAttributeName (attrName.toString()), false);
+                                state = ATTR;
+                                break;
+                            case '\'':
+                                ++bufptr;
+                                attrs.startValue ();
+                                state = ATTRVAL_SQ;
+                                break;
+                            case '"':
+                                ++bufptr;
+                                attrs.startValue ();
+                                state = ATTRVAL_DQ;
+                                break;
+                            default:
+                                attrs.startValue ();
+                                state = ATTRVAL;
+                                break;
+                        }
+                    break;
+
+                case ATTRVAL:
+                    if (c == '>' || isWhitespace(c)) {
+                        attrs.add (Tag.toHTMLAttributeName (attrName.toString()), true);
+                        state = ATTR;
+                    }
+                    else if (c == '&') {
+                        ++bufptr;
+                        postEntityState = ATTRVAL;
+                        state = ENTITY;
+                    }
+                    else {
+                        ++bufptr;
+                        attrs.appendValue (c);
+                        // state == ATTRVAL;
+                    }
+                    break;
+
+                case ATTRVAL_SQ:
+                    if (c=='\'') {
+                        ++bufptr;
+                        attrs.add (Tag.toHTMLAttributeName (attrName.toString()), true);
+                        state = ATTR;
+                    }
+                    else if (c == '&') {
+                        ++bufptr;
+                        postEntityState = ATTRVAL_SQ;
+                        state = ENTITY;
+                    }
+                    else {
+                        ++bufptr;
+                        attrs.appendValue (c);
+                        // state == ATTRVAL_SQ;
+                    }
+                    break;
+
+                case ATTRVAL_DQ:
+                    if (c=='"') {
+                        ++bufptr;
+                        attrs.add (Tag.toHTMLAttributeName (attrName.toString()), true);
+                        state = ATTR;
+                    }
+                    else if (c == '&') {
+                        ++bufptr;
+                        postEntityState = ATTRVAL_DQ;
+                        state = ENTITY;
+                    }
+                    else {
+                        ++bufptr;
+                        attrs.appendValue (c);
+                        // state == ATTRVAL_DQ;
+                    }
+                    break;
+
+                default:
+                    throw new RuntimeException ("HTMLTokenizer entered illegal state " + state);
+            }
+        }
+
+        pos += len;
+    }
+
+    private void appendWord (char c) {
+        if (wordLength == word.length) {
+            char[] newword = new char[word.length * 2];
+            System.arraycopy (word, 0, newword, 0, wordLength);
+            word = newword;
+        }
+        word[wordLength++] = c;
+    }
+
+    // append an entity's character to the word or attribute value 
+    // it appeared in
+    private void appendEntityTarget (char c) {
+        if (postEntityState == INWORD)
+            appendWord (c);
+        else
+            attrs.appendValue (c);
+    }
+
+    private static boolean isWhitespace (char c) {
+//#ifdef JDK1.1 
+        return Character.isWhitespace (c);
+//#endif JDK1.1
+/*#ifdef JDK1.0
+        return Character.isSpace (c);
+#endif JDK1.0*/
+    }
+
+    private static Hashtable entities = new Hashtable2()
+          .add ("quot", new Character ((char)34))
+          .add ("amp", new Character ((char)38))
+          .add ("lt", new Character ((char)60))
+          .add ("gt", new Character ((char)62))
+          .add ("nbsp", new Character ((char)160))
+          .add ("iexcl", new Character ((char)161))
+          .add ("cent", new Character ((char)162))
+          .add ("pound", new Character ((char)163))
+          .add ("curren", new Character ((char)164))
+          .add ("yen", new Character ((char)165))
+          .add ("brvbar", new Character ((char)167))
+          .add ("sect", new Character ((char)167))
+          .add ("uml", new Character ((char)168))
+          .add ("copy", new Character ((char)169))
+          .add ("ordf", new Character ((char)170))
+          .add ("laquo", new Character ((char)171))
+          .add ("not", new Character ((char)172))
+          .add ("shy", new Character ((char)173))
+          .add ("reg", new Character ((char)174))
+          .add ("macr", new Character ((char)175))
+          .add ("deg", new Character ((char)176))
+          .add ("plusmn", new Character ((char)177))
+          .add ("sup2", new Character ((char)178))
+          .add ("sup3", new Character ((char)179))
+          .add ("acute", new Character ((char)180))
+          .add ("micro", new Character ((char)181))
+          .add ("para", new Character ((char)182))
+          .add ("middot", new Character ((char)183))
+          .add ("cedil", new Character ((char)184))
+          .add ("sup1", new Character ((char)185))
+          .add ("ordm", new Character ((char)186))
+          .add ("raquo", new Character ((char)187))
+          .add ("frac14", new Character ((char)188))
+          .add ("frac12", new Character ((char)189))
+          .add ("frac34", new Character ((char)190))
+          .add ("iquest", new Character ((char)191))
+          .add ("Agrave", new Character ((char)192))
+          .add ("Aacute", new Character ((char)193))
+          .add ("Acirc", new Character ((char)194))
+          .add ("Atilde", new Character ((char)195))
+          .add ("Auml", new Character ((char)196))
+          .add ("Aring", new Character ((char)197))
+          .add ("AElig", new Character ((char)198))
+          .add ("Ccedil", new Character ((char)199))
+          .add ("Egrave", new Character ((char)200))
+          .add ("Eacute", new Character ((char)201))
+          .add ("Ecirc", new Character ((char)202))
+          .add ("Euml", new Character ((char)203))
+          .add ("Igrave", new Character ((char)204))
+          .add ("Iacute", new Character ((char)205))
+          .add ("Icirc", new Character ((char)206))
+          .add ("Iuml", new Character ((char)207))
+          .add ("ETH", new Character ((char)208))
+          .add ("Ntilde", new Character ((char)209))
+          .add ("Ograve", new Character ((char)210))
+          .add ("Oacute", new Character ((char)211))
+          .add ("Ocirc", new Character ((char)212))
+          .add ("Otilde", new Character ((char)213))
+          .add ("Ouml", new Character ((char)214))
+          .add ("times", new Character ((char)215))
+          .add ("Oslash", new Character ((char)216))
+          .add ("Ugrave", new Character ((char)217))
+          .add ("Uacute", new Character ((char)218))
+          .add ("Ucirc", new Character ((char)219))
+          .add ("Uuml", new Character ((char)220))
+          .add ("Yacute", new Character ((char)221))
+          .add ("THORN", new Character ((char)222))
+          .add ("szlig", new Character ((char)223))
+          .add ("agrave", new Character ((char)224))
+          .add ("aacute", new Character ((char)225))
+          .add ("acirc", new Character ((char)226))
+          .add ("atilde", new Character ((char)227))
+          .add ("auml", new Character ((char)228))
+          .add ("aring", new Character ((char)229))
+          .add ("aelig", new Character ((char)230))
+          .add ("ccedil", new Character ((char)231))
+          .add ("egrave", new Character ((char)232))
+          .add ("eacute", new Character ((char)233))
+          .add ("ecirc", new Character ((char)234))
+          .add ("euml", new Character ((char)235))
+          .add ("igrave", new Character ((char)236))
+          .add ("iacute", new Character ((char)237))
+          .add ("icirc", new Character ((char)238))
+          .add ("iuml", new Character ((char)239))
+          .add ("eth", new Character ((char)240))
+          .add ("ntilde", new Character ((char)241))
+          .add ("ograve", new Character ((char)242))
+          .add ("oacute", new Character ((char)243))
+          .add ("ocirc", new Character ((char)244))
+          .add ("otilde", new Character ((char)245))
+          .add ("ouml", new Character ((char)246))
+          .add ("divide", new Character ((char)247))
+          .add ("oslash", new Character ((char)248))
+          .add ("ugrave", new Character ((char)249))
+          .add ("uacute", new Character ((char)250))
+          .add ("ucirc", new Character ((char)251))
+          .add ("uuml", new Character ((char)252))
+          .add ("yacute", new Character ((char)253))
+          .add ("thorn", new Character ((char)254))
+          .add ("yuml", new Character ((char)255))
+          ;
+
+    static Character lookupEntityRef (String name) {
+        return (Character) entities.get (name);
+    }
+}
@@ -65,7 +65,7 @@ public class HTMLTransformer {
 
     // these fields are only valid on the tail element in the filter
     // chain
-    private String content;         // content of page being printed
+    private CharSequence content;   // content of page being printed
     private int emitStart, emitEnd; // start and end of pending region
                                     //   (the last region in the page which
                                     //    has been emit()ed but not actually
@@ -224,12 +224,12 @@ public class HTMLTransformer {
         if (next == null) {
             emitPendingRegion ();
             
-            String oldContent = content;
+            CharSequence oldContent = content;
             int oldEmitStart = emitStart;
             int oldEmitEnd = emitEnd;
             int oldTransformEnd = transformEnd;
             
-            content = region.getSource().getContent ();
+            content = region.getSource().getContentChars ();
             emitStart = emitEnd = region.getStart ();
             transformEnd = region.getEnd ();
 
@@ -382,7 +382,7 @@ public class HTMLTransformer {
      * @param r Region to emit
      */
     protected void emit (Region r) throws IOException {
-        tail.emitInternal (r.getSource().getContent(), r.getStart(), r.getEnd ());
+        tail.emitInternal (r.getSource().getContentChars(), r.getStart(), r.getEnd ());
     }
 
     /**
@@ -399,7 +399,7 @@ public class HTMLTransformer {
             
         int p = start;
         
-        if (elem != null && elem.getSource().getContent() == content)
+        if (elem != null && elem.getSource().getContentChars() == content)
             end = Math.min (end, transformEnd);
 
         while (elem != null && elem.getStartTag().getEnd() <= end) {
@@ -411,7 +411,7 @@ public class HTMLTransformer {
         emitInternal (content, Math.min (p, end), end);
     }
 
-    private void emitInternal (String str, int start, int end) throws IOException {
+    private void emitInternal (CharSequence str, int start, int end) throws IOException {
         if (this != tail)
             throw new RuntimeException ("emitInternal not called on tail");
             
@@ -429,7 +429,7 @@ public class HTMLTransformer {
         }
         else {
             emitPendingRegion ();
-            writeStream (str.substring (start, end));
+            writeStream (str.subSequence (start, end).toString ());
         }
     }
 
@@ -438,7 +438,7 @@ public class HTMLTransformer {
             throw new RuntimeException ("emitPendingRegion not called on tail");
             
         if (emitStart != emitEnd) {
-            writeStream (content.substring (emitStart, emitEnd));
+            writeStream (content.subSequence (emitStart, emitEnd).toString ());
             emitStart = emitEnd;
         }
     }
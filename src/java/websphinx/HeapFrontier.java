@@ -0,0 +1,105 @@
+/*
+ * WebSphinx web-crawling toolkit
+ *
+ * Copyright (c) 1998-2002 Carnegie Mellon University.  All rights
+ * reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in
+ *    the documentation and/or other materials provided with the
+ *    distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY CARNEGIE MELLON UNIVERSITY ``AS IS'' AND
+ * ANY EXPRESSED OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ * THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED.  IN NO EVENT SHALL CARNEGIE MELLON UNIVERSITY
+ * NOR ITS EMPLOYEES BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+
+package websphinx;
+
+import java.util.Enumeration;
+import rcm.util.IndexedPriorityQueue;
+
+/**
+ * Frontier backed by an indexed heap.  Every operation runs in 
+ * O(log n) time, including delete() and update(), so processing a 
+ * page never scans the queue.  This is the default frontier.
+ */
+public class HeapFrontier implements Frontier {
+
+    private IndexedPriorityQueue q;
+
+    /**
+     * Make an empty HeapFrontier.
+     */
+    public HeapFrontier () {
+        q = new IndexedPriorityQueue ();
+    }
+
+    /**
+     * Make an empty HeapFrontier with an initial capacity.
+     * @param initialCapacity number of links initially allocated
+     */
+    public HeapFrontier (int initialCapacity) {
+        q = new IndexedPriorityQueue (initialCapacity);
+    }
+
+    public void put (Link link) {
+        q.put (link);
+    }
+
+    public Link getMin () {
+        return (Link)q.getMin ();
+    }
+
+    public Link deleteMin () {
+        return (Link)q.deleteMin ();
+    }
+
+    public boolean delete (Link link) {
+        return q.delete (link);
+    }
+
+    public boolean update (Link link) {
+        return q.update (link);
+    }
+
+    public boolean release (Link link) {
+        return false;
+    }
+
+    public long getWaitTime () {
+        return 0;
+    }
+
+    public void clear () {
+        q.clear ();
+    }
+
+    public Enumeration elements () {
+        return q.elements ();
+    }
+
+    public int size () {
+        return q.size ();
+    }
+
+    public boolean empty () {
+        return q.empty ();
+    }
+}
@@ -0,0 +1,390 @@
+/*
+ * WebSphinx web-crawling toolkit
+ *
+ * Copyright (c) 1998-2002 Carnegie Mellon University.  All rights
+ * reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in
+ *    the documentation and/or other materials provided with the
+ *    distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY CARNEGIE MELLON UNIVERSITY ``AS IS'' AND
+ * ANY EXPRESSED OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ * THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED.  IN NO EVENT SHALL CARNEGIE MELLON UNIVERSITY
+ * NOR ITS EMPLOYEES BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+package websphinx;
+
+import java.net.URL;
+import java.util.Enumeration;
+import java.util.Hashtable;
+import java.util.Vector;
+import rcm.util.IndexedPriorityQueue;
+import rcm.util.Prioritized;
+
+/**
+ * Fetch queue that spreads requests politely across Web servers.
+ * Links are partitioned by server (hostname and port number) into
+ * one queue per server, and deleteMin() returns the lowest-priority
+ * link among the servers that are currently eligible.  A server
+ * is eligible when fewer than DownloadParameters.getMaxRequestsPerServer()
+ * of its pages are being downloaded, and at least 
+ * DownloadParameters.getDelay() milliseconds have passed since the
+ * last request to it started.  If the crawler obeys robot exclusion,
+ * a longer Crawl-delay in the server's robots.txt takes precedence,
+ * and a server is not eligible until its robots.txt has been retrieved
+ * in the background (see RobotExclusion.prefetch()), so no thread
+ * waits for a robots.txt after deleteMin().
+ * <P>
+ * Eligible servers are kept in a heap ordered by their best link.
+ * Servers waiting out a delay are kept in a hashed timing wheel,
+ * so servers that are not yet due are never scanned; a server
+ * whose download limit is reached sits outside both until one of 
+ * its downloads is released.
+ * <P>
+ * The Crawler uses a HostScheduler as its fetch queue whenever
+ * DownloadParameters.isPolite() is true.
+ */
+public class HostScheduler implements Frontier {
+
+    static final int IDLE = 0;      // no links queued
+    static final int READY = 1;     // in ready heap
+    static final int WAITING = 2;   // in timing wheel
+    static final int BLOCKED = 3;   // at download limit
+
+    static final int TICK = 10;     // resolution of timing wheel (ms)
+    static final int SLOTS = 256;   // number of wheel slots (power of 2)
+    static final int ROBOTS_POLL = 50;
+        // interval between checks for a server's robots.txt (ms)
+
+    DownloadParameters dp;
+        // defaults for links that carry no download parameters
+    RobotExclusion robots;
+        // source of Crawl-delay values (may be null)
+
+    Hashtable servers = new Hashtable ();
+        // maps a website ("host:port") to its ServerQueue
+    Hashtable inFlight = new Hashtable ();
+        // maps a Link returned by deleteMin() to its ServerQueue
+    IndexedPriorityQueue ready = new IndexedPriorityQueue ();
+        // READY servers, ordered by their best link
+
+    ServerQueue[] wheel = new ServerQueue[SLOTS];
+        // WAITING servers, chained by nextInSlot
+    long currentTick;
+        // last tick processed by advance()
+    int nWaiting = 0;
+        // number of servers in wheel
+
+    int size = 0;
+        // number of links queued
+
+    /**
+     * Make an empty HostScheduler.
+     * @param dp download parameters used for links that have none
+     * @param robots robot exclusion cache consulted for Crawl-delay
+     *   and robots.txt retrieval, or null to ignore robots.txt
+     */
+    public HostScheduler (DownloadParameters dp, RobotExclusion robots) {
+        this.dp = dp;
+        this.robots = robots;
+        currentTick = System.currentTimeMillis () / TICK;
+    }
+
+    public synchronized void put (Link link) {
+        ServerQueue s = getServer (link, true);
+        if (!s.links.contains (link))
+            ++size;
+        s.links.put (link);
+        s.maxRequests = getParameters (link).getMaxRequestsPerServer ();
+
+        if (s.state == IDLE)
+            schedule (s, System.currentTimeMillis ());
+        else if (s.state == READY)
+            ready.update (s);
+    }
+
+    /**
+     * Get the link that deleteMin() would return, without removing it.
+     * @return lowest-priority link on an eligible server, or null
+     * if no server is eligible right now
+     */
+    public synchronized Link getMin () {
+        advance (System.currentTimeMillis ());
+        ServerQueue s = (ServerQueue)ready.getMin ();
+        return s != null ? (Link)s.links.getMin () : null;
+    }
+
+    /**
+     * Get and remove the lowest-priority link on an eligible server.
+     * The link counts against its server's download limit until
+     * it is passed to release().
+     * @return lowest-priority link on an eligible server, or null
+     * if no server is eligible right now
+     */
+    public synchronized Link deleteMin () {
+        long now = System.currentTimeMillis ();
+        advance (now);
+        ServerQueue s = (ServerQueue)ready.deleteMin ();
+        if (s == null)
+            return null;
+
+        Link link = (Link)s.links.deleteMin ();
+        --size;
+        inFlight.put (link, s);
+        ++s.active;
+
+        DownloadParameters ldp = getParameters (link);
+        int delay = ldp.getDelay ();
+        if (robots != null && ldp.getObeyRobotExclusion ())
+            delay = Math.max (delay, robots.getCrawlDelay (link.getURL ()));
+        s.nextStart = now + delay;
+
+        s.state = IDLE;
+        schedule (s, now);
+        return link;
+    }
+
+    public synchronized boolean delete (Link link) {
+        ServerQueue s = getServer (link, false);
+        if (s == null || !s.links.delete (link))
+            return false;
+        --size;
+        if (s.state == READY) {
+            if (s.links.empty ()) {
+                ready.delete (s);
+                s.state = IDLE;
+                schedule (s, System.currentTimeMillis ());
+            }
+            else
+                ready.update (s);
+        }
+        // a WAITING server left empty is dropped when its slot comes up
+        return true;
+    }
+
+    public synchronized boolean update (Link link) {
+        ServerQueue s = getServer (link, false);
+        if (s == null || !s.links.update (link))
+            return false;
+        if (s.state == READY)
+            ready.update (s);
+        return true;
+    }
+
+    /**
+     * Release a link returned by deleteMin(), freeing its place
+     * in its server's download limit.
+     * @param link Link whose download is finished
+     * @return true if the server became eligible again (or will
+     * after a delay), so waiting threads should be notified
+     */
+    public synchronized boolean release (Link link) {
+        ServerQueue s = (ServerQueue)inFlight.remove (link);
+        if (s == null)
+            return false;
+        --s.active;
+        if (s.state == BLOCKED || s.state == IDLE) {
+            int oldState = s.state;
+            s.state = IDLE;
+            schedule (s, System.currentTimeMillis ());
+            return oldState == BLOCKED;
+        }
+        return false;
+    }
+
+    /**
+     * Get time until the next waiting server becomes eligible.
+     * @return milliseconds to wait before calling deleteMin() again,
+     * or 0 if no server is waiting out a delay
+     */
+    public synchronized long getWaitTime () {
+        if (nWaiting == 0)
+            return 0;
+        for (long t = currentTick + 1; t <= currentTick + SLOTS; ++t)
+            if (wheel[(int)(t & (SLOTS-1))] != null)
+                return Math.max (t * TICK - System.currentTimeMillis (), 1);
+        return TICK;
+    }
+
+    public synchronized void clear () {
+        servers.clear ();
+        inFlight.clear ();
+        ready.clear ();
+        for (int i=0; i<SLOTS; ++i)
+            wheel[i] = null;
+        nWaiting = 0;
+        currentTick = System.currentTimeMillis () / TICK;
+        size = 0;
+    }
+
+    public synchronized Enumeration elements () {
+        Vector v = new Vector (size);
+        for (Enumeration e = servers.elements (); e.hasMoreElements (); ) {
+            ServerQueue s = (ServerQueue)e.nextElement ();
+            for (Enumeration f = s.links.elements (); f.hasMoreElements (); )
+                v.addElement (f.nextElement ());
+        }
+        return v.elements ();
+    }
+
+    public synchronized int size () {
+        return size;
+    }
+
+    public synchronized boolean empty () {
+        return size == 0;
+    }
+
+    /**
+     * Get number of servers the scheduler knows about.
+     * @return number of servers with queued or downloading links,
+     * or whose delay has not yet expired
+     */
+    public synchronized int getServerCount () {
+        return servers.size ();
+    }
+
+    /*
+     * Implementation
+     *
+     */
+
+    DownloadParameters getParameters (Link link) {
+        DownloadParameters ldp = link.getDownloadParameters ();
+        return ldp != null ? ldp : dp;
+    }
+
+    ServerQueue getServer (Link link, boolean create) {
+        String website = getWebSite (link);
+        ServerQueue s = (ServerQueue)servers.get (website);
+        if (s == null && create) {
+            s = new ServerQueue (website);
+            servers.put (website, s);
+        }
+        return s;
+    }
+
+    static String getWebSite (Link link) {
+        String hostname = link.getHost ();
+        int port = link.getPort ();
+        return port != -1 ? hostname + ":" + port : hostname;
+    }
+
+    // Move an IDLE server to the place its state calls for.
+    void schedule (ServerQueue s, long now) {
+        if (s.links.empty ()) {
+            // an IDLE server with downloads in progress waits for release()
+            if (s.active == 0) {
+                if (s.nextStart > now)
+                    // keep the server around until its delay expires
+                    enterWheel (s);
+                else
+                    servers.remove (s.website);
+            }
+        }
+        else if (s.maxRequests > 0 && s.active >= s.maxRequests)
+            s.state = BLOCKED;
+        else if (s.nextStart > now)
+            enterWheel (s);
+        else if (!hasRobotsTxt (s)) {
+            // check again shortly
+            s.nextStart = now + ROBOTS_POLL;
+            enterWheel (s);
+        }
+        else {
+            s.state = READY;
+            ready.put (s);
+        }
+    }
+
+    // Test whether a server's robots.txt is cached (or not needed),
+    // starting to retrieve it if it's not.
+    boolean hasRobotsTxt (ServerQueue s) {
+        if (robots == null)
+            return true;
+        Link link = (Link)s.links.getMin ();
+        if (!getParameters (link).getObeyRobotExclusion ())
+            return true;
+        URL url = link.getURL ();
+        if (robots.isCached (url))
+            return true;
+        robots.prefetch (url);
+        return false;
+    }
+
+    void enterWheel (ServerQueue s) {
+        long tick = (s.nextStart + TICK - 1) / TICK;
+        if (tick <= currentTick)
+            tick = currentTick + 1;
+        int slot = (int)(tick & (SLOTS-1));
+        s.nextInSlot = wheel[slot];
+        wheel[slot] = s;
+        s.state = WAITING;
+        ++nWaiting;
+    }
+
+    // Process the wheel slots up to the current time, rescheduling
+    // every server found in them.  Servers due in a later turn of
+    // the wheel simply go back into the same slot.
+    void advance (long now) {
+        long nowTick = now / TICK;
+        if (nWaiting == 0) {
+            currentTick = nowTick;
+            return;
+        }
+        if (nowTick - currentTick > SLOTS)
+            currentTick = nowTick - SLOTS;  // one full turn visits every slot
+
+        while (currentTick < nowTick) {
+            ++currentTick;
+            int slot = (int)(currentTick & (SLOTS-1));
+            ServerQueue s = wheel[slot];
+            wheel[slot] = null;
+            while (s != null) {
+                ServerQueue next = s.nextInSlot;
+                s.nextInSlot = null;
+                --nWaiting;
+                s.state = IDLE;
+                schedule (s, now);
+                s = next;
+            }
+        }
+    }
+}
+
+/* Queue of links waiting to be downloaded from one Web server. */
+class ServerQueue implements Prioritized {
+    String website;      // "host:port"
+    IndexedPriorityQueue links = new IndexedPriorityQueue ();
+    int active = 0;      // downloads in progress
+    int maxRequests = -1;// maximum downloads in progress (-1 for no maximum)
+    long nextStart = 0;  // earliest time the next request may start
+    int state = HostScheduler.IDLE;
+    ServerQueue nextInSlot; // next server in the same timing-wheel slot
+
+    public ServerQueue (String website) {
+        this.website = website;
+    }
+
+    public float getPriority () {
+        Link link = (Link)links.getMin ();
+        return link != null ? link.getPriority () : Float.MAX_VALUE;
+    }
+}
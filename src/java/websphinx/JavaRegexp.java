@@ -0,0 +1,314 @@
+/*
+ * WebSphinx web-crawling toolkit
+ *
+ * Copyright (c) 1998-2002 Carnegie Mellon University.  All rights
+ * reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in
+ *    the documentation and/or other materials provided with the
+ *    distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY CARNEGIE MELLON UNIVERSITY ``AS IS'' AND
+ * ANY EXPRESSED OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ * THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED.  IN NO EVENT SHALL CARNEGIE MELLON UNIVERSITY
+ * NOR ITS EMPLOYEES BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+
+package websphinx;
+
+import java.util.Enumeration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Vector;
+import java.io.IOException;
+//#ifdef JDK1.1
+import java.io.ObjectInputStream;
+//#endif JDK1.1
+
+/**
+ * Regular expression pattern matched by java.util.regex.  JavaRegexp
+ * takes the same syntax as Regexp, including named fields written
+ * (?{name}...), but the regular expressions themselves follow 
+ * java.util.regex.Pattern.  Unlike Regexp, it matches the page's 
+ * content in place (see Page.getContentChars()) without copying the
+ * region being searched, and it makes the Regions of a match's 
+ * groups and fields only when they're asked for.  Compiled patterns
+ * are cached and shared by all JavaRegexps with the same source and
+ * flags, so making the same JavaRegexp for every page is cheap.
+ */
+public class JavaRegexp extends Pattern {
+
+    /**
+     * Maximum number of compiled patterns kept in the cache.
+     */
+    public static final int CACHE_SIZE = 256;
+
+    String stringRep;
+    int flags;
+    transient java.util.regex.Pattern pattern;
+    transient String[] fields;
+
+    /**
+     * Make a JavaRegexp.
+     * @param pattern regular expression
+     * @exception RuntimeException if the pattern has a syntax error
+     */
+    public JavaRegexp (String pattern) {
+        this (pattern, 0);
+    }
+
+    /**
+     * Make a JavaRegexp.
+     * @param pattern regular expression
+     * @param flags match flags of java.util.regex.Pattern, e.g. 
+     * Pattern.CASE_INSENSITIVE
+     * @exception RuntimeException if the pattern has a syntax error
+     */
+    public JavaRegexp (String pattern, int flags) {
+        stringRep = pattern;
+        this.flags = flags;
+        init ();
+    }
+
+    public boolean equals (Object object) {
+        if (! (object instanceof JavaRegexp))
+            return false;
+        JavaRegexp p = (JavaRegexp)object;
+        return p.stringRep.equals (stringRep) && p.flags == flags;
+    }        
+
+    public int hashCode () {
+        return stringRep.hashCode () ^ flags;
+    }
+    
+    //#ifdef JDK1.1
+    private void readObject (ObjectInputStream in) 
+           throws IOException, ClassNotFoundException {
+        in.defaultReadObject ();
+        init ();
+    }
+    //#endif JDK1.1
+
+    /*
+     * Compiled patterns, by flags and source.  The least recently 
+     * used pattern is dropped when the cache is full.
+     */
+    static final Map cache = new LinkedHashMap (CACHE_SIZE, 0.75f, true) {
+        protected boolean removeEldestEntry (Map.Entry eldest) {
+            return size () > CACHE_SIZE;
+        }
+    };
+
+    private void init () {
+        String key = flags + ":" + stringRep;
+        JavaRegexp compiled;
+        synchronized (cache) {
+            compiled = (JavaRegexp)cache.get (key);
+        }
+        if (compiled == null) {
+            compiled = this;
+            try {
+                pattern = java.util.regex.Pattern.compile (translateFields (stringRep), 
+                                                           flags);
+            } catch (java.util.regex.PatternSyntaxException e) {
+                throw new RuntimeException ("syntax error in pattern: " 
+                                            + e.getMessage ());
+            }
+            synchronized (cache) {
+                cache.put (key, this);
+            }
+        }
+        pattern = compiled.pattern;
+        fields = compiled.fields;
+    }
+
+    public String[] getFieldNames () {
+        return fields;
+    }
+    
+    public String toString () {
+        return stringRep;
+    }
+
+    public PatternMatcher match (Region region) {
+        return new JavaRegexpMatcher (this, region);
+    }
+
+    /*
+     * Strip field names from (?{name}...) groups, and note the name
+     * of every capturing group, in order (unnamed groups are named
+     * by their number, counting from 0).
+     */
+    String translateFields (String s) {
+        Vector vfields = new Vector ();
+        StringBuffer output = new StringBuffer ();
+        int classDepth = 0;     // nesting of [...] character classes
+
+        int len = s.length ();
+        for (int i=0; i<len; ++i) {
+            char c = s.charAt (i);
+            output.append (c);
+            switch (c) {
+              case '\\':
+                if (i+1 < len)
+                    output.append (s.charAt (++i));
+                break;
+
+              case '[':
+                ++classDepth;
+                break;
+
+              case ']':
+                if (classDepth > 0)
+                    --classDepth;
+                break;
+
+              case '(':
+                if (classDepth > 0)
+                    break;
+                if (s.startsWith ("?{", i+1)) {
+                    int start = i+3;
+                    int end = s.indexOf ('}', start);
+                    if (end < 0)
+                        throw new RuntimeException ("syntax error in pattern: "
+                                                    + "unclosed field name");
+                    vfields.addElement (s.substring (start, end));
+                    i = end;
+                }
+                else if (s.startsWith ("?<", i+1) && !s.startsWith ("?<=", i+1)
+                         && !s.startsWith ("?<!", i+1)) {
+                    // (?<name>...), on JDKs that have named groups
+                    int end = s.indexOf ('>', i+3);
+                    if (end > 0)
+                        vfields.addElement (s.substring (i+3, end));
+                }
+                else if (!s.startsWith ("?", i+1))
+                    vfields.addElement (String.valueOf (vfields.size()));
+                break;
+            }
+        }
+
+        fields = new String[vfields.size()];
+        vfields.copyInto (fields);
+        return output.toString ();
+    }
+    
+    public static void main (String[] args) throws Exception {
+        if (args.length < 2) {
+            System.err.println ("usage: JavaRegexp <pattern> <source URL>*");
+            return;
+        }
+
+        Pattern p = new JavaRegexp (args[0].replace ('_', ' ') );
+        for (int i=1; i<args.length; ++i) {
+            Page page = new Page (new Link (args[i]));
+            System.out.println ("--------------------" + args[i]);
+            PatternMatcher m = p.match (page);
+            for (Region r = m.nextMatch(); r != null; r = m.nextMatch()) {
+                System.out.println ("[" + r.getStart() + "," + r.getEnd() + "]" + r);
+                Enumeration labels = r.enumerateObjectLabels ();
+                while (labels.hasMoreElements ()) {
+                    String lbl = (String)labels.nextElement ();
+                    Object object = r.getObjectLabel (lbl);
+                    if (object instanceof Region) {
+                        Region s = (Region)object;
+                        System.out.println ("    "+lbl+"=[" + s.getStart() + "," + s.getEnd() + "]" + s);
+                    }
+                }
+            }
+        }
+    }
+}
+
+class JavaRegexpMatcher extends PatternMatcher {
+    JavaRegexp regexp;
+    Page page;
+    int base;
+    java.util.regex.Matcher m;
+    boolean done;
+
+    public JavaRegexpMatcher (JavaRegexp regexp, Region source) {
+        this.regexp = regexp;
+        this.page = source.getSource ();
+        this.base = source.getStart ();
+
+        CharSequence text = page.getContentChars ();
+        if (text == null) {
+            // page isn't text, so nothing can match
+            done = true;
+            return;
+        }
+        if (base != 0 || source.getEnd () != text.length ())
+            text = new CharWindow (text, base, source.getEnd ());
+        m = regexp.pattern.matcher (text);
+    }
+
+    protected Region findNext () {
+        // a Matcher starts over if find() is called after it fails
+        if (done || !m.find ()) {
+            done = true;
+            return null;
+        }
+
+        int n = m.groupCount ();
+        int[] bounds = new int[2*n];
+        for (int i=0; i<n; ++i) {
+            int start = m.start (i+1);
+            bounds[2*i] = (start >= 0) ? base + start : -1;
+            bounds[2*i+1] = (start >= 0) ? base + m.end (i+1) : -1;
+        }
+        return new RegexpMatch (page, base + m.start (), base + m.end (), 
+                                regexp.fields, bounds);
+    }
+}
+
+/*
+ * Window onto part of a CharSequence, without copying it.
+ */
+final class CharWindow implements CharSequence {
+    final CharSequence text;
+    final int offset;
+    final int length;
+
+    CharWindow (CharSequence text, int start, int end) {
+        this.text = text;
+        this.offset = start;
+        this.length = end - start;
+    }
+
+    public int length () {
+        return length;
+    }
+
+    public char charAt (int i) {
+        if (i < 0 || i >= length)
+            throw new StringIndexOutOfBoundsException (i);
+        return text.charAt (offset + i);
+    }
+
+    public CharSequence subSequence (int start, int end) {
+        if (start < 0 || end > length || start > end)
+            throw new StringIndexOutOfBoundsException (end - start);
+        return new CharWindow (text, offset + start, offset + end);
+    }
+
+    public String toString () {
+        return text.subSequence (offset, offset + length).toString ();
+    }
+}
@@ -0,0 +1,144 @@
+/*
+ * WebSphinx web-crawling toolkit
+ *
+ * Copyright (c) 1998-2002 Carnegie Mellon University.  All rights
+ * reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in
+ *    the documentation and/or other materials provided with the
+ *    distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY CARNEGIE MELLON UNIVERSITY ``AS IS'' AND
+ * ANY EXPRESSED OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ * THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED.  IN NO EVENT SHALL CARNEGIE MELLON UNIVERSITY
+ * NOR ITS EMPLOYEES BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+
+package websphinx;
+
+import java.util.HashMap;
+
+/**
+ * Set of label names, compiled so that Region.hasAnyLabels() and 
+ * hasAllLabels() can test it with a single mask.
+ * <P>
+ * LabelSet also keeps the registry of boolean label names.  The first 
+ * 64 names set on any region with Region.setLabel(name) are given 
+ * small integer ids, starting with the labels of StandardClassifier,
+ * and a region records which of them it has in the bits of a long.
+ * Other labels, and labels with values other than Region.TRUE,
+ * are kept in a short list on the region.
+ */
+public final class LabelSet {
+
+    static final int MAX_IDS = 64;
+
+    static final String[] STANDARD = {
+        "hyperlink", "image", "local", "sibling", "descendent",
+        "same-page", "ancestor", "remote", "code", "form",
+        "header-link", "root"
+    };
+
+    private static volatile HashMap ids = new HashMap (); 
+        // maps label name to Integer id; replaced, never changed
+    private static final String[] names = new String[MAX_IDS];
+    private static int nIds = 0;
+
+    static {
+        for (int i=0; i<STANDARD.length; ++i)
+            intern (STANDARD[i]);
+    }
+
+    String[] labels;   // label names in the set
+    long mask;         // bits of the labels that have ids
+    String[] others;   // labels without ids, or null if none
+
+    /**
+     * Make a LabelSet.
+     * @param labels label names (case-sensitive, whitespace permitted)
+     */
+    public LabelSet (String[] labels) {
+        this.labels = (String[])labels.clone ();
+
+        int n = 0;
+        String[] rest = new String[labels.length];
+        for (int i=0; i<labels.length; ++i) {
+            int id = intern (labels[i]);
+            if (id >= 0)
+                mask |= 1L << id;
+            else
+                rest[n++] = labels[i];
+        }
+        if (n > 0) {
+            others = new String[n];
+            System.arraycopy (rest, 0, others, 0, n);
+        }
+    }
+
+    /**
+     * Get the label names in the set.
+     * @return label names
+     */
+    public String[] getLabels () {
+        return (String[])labels.clone ();
+    }
+
+    /*
+     * Label registry
+     */
+
+    /*
+     * Get the id of a label name, or -1 if it has none.
+     */
+    static int getId (String name) {
+        Integer id = (Integer)ids.get (name);
+        return (id != null) ? id.intValue () : -1;
+    }
+
+    /*
+     * Get the id of a label name, giving it one if there are ids left.
+     * Returns -1 if the name has no id.
+     */
+    static int intern (String name) {
+        int id = getId (name);
+        if (id >= 0)
+            return id;
+
+        synchronized (names) {
+            id = getId (name);
+            if (id < 0 && nIds < MAX_IDS) {
+                id = nIds++;
+                names[id] = name;
+                HashMap newIds = (HashMap)ids.clone ();
+                newIds.put (name, new Integer (id));
+                ids = newIds;
+            }
+            return id;
+        }
+    }
+
+    /*
+     * Get the label name with an id.
+     */
+    static String getName (int id) {
+        synchronized (names) {
+            return names[id];
+        }
+    }
+}
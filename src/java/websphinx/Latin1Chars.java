@@ -0,0 +1,92 @@
+/*
+ * WebSphinx web-crawling toolkit
+ *
+ * Copyright (c) 1998-2002 Carnegie Mellon University.  All rights
+ * reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in
+ *    the documentation and/or other materials provided with the
+ *    distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY CARNEGIE MELLON UNIVERSITY ``AS IS'' AND
+ * ANY EXPRESSED OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ * THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED.  IN NO EVENT SHALL CARNEGIE MELLON UNIVERSITY
+ * NOR ITS EMPLOYEES BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+
+package websphinx;
+
+import java.io.UnsupportedEncodingException;
+
+/**
+ * Characters of a byte array in a single-byte encoding whose bytes
+ * are the same as their Unicode values (ISO-8859-1, or ASCII).  Lets 
+ * a page keep only its downloaded bytes, yet still be read as text.
+ */
+final class Latin1Chars implements CharSequence {
+    final byte[] bytes;
+    final int offset;
+    final int length;
+
+    Latin1Chars (byte[] bytes, int offset, int length) {
+        this.bytes = bytes;
+        this.offset = offset;
+        this.length = length;
+    }
+
+    public int length () {
+        return length;
+    }
+
+    public char charAt (int i) {
+        if (i < 0 || i >= length)
+            throw new StringIndexOutOfBoundsException (i);
+        return (char)(bytes[offset + i] & 0xff);
+    }
+
+    public CharSequence subSequence (int start, int end) {
+        if (start < 0 || end > length || start > end)
+            throw new StringIndexOutOfBoundsException (end - start);
+        return new Latin1Chars (bytes, offset + start, end - start);
+    }
+
+    public String toString () {
+        try {
+            return new String (bytes, offset, length, "ISO-8859-1");
+        } catch (UnsupportedEncodingException e) {
+            throw new RuntimeException (e.toString ());
+        }
+    }
+
+    /*
+     * Test whether bytes in a character encoding can be read as 
+     * Latin1Chars: the encoding is ISO-8859-1, or it is ASCII or
+     * UTF-8 and the bytes are all ASCII.
+     */
+    static boolean canRead (String charset, byte[] bytes) {
+        if (charset.equals ("ISO-8859-1"))
+            return true;
+        if (!charset.equals ("US-ASCII") && !charset.equals ("UTF-8"))
+            return false;
+        for (int i=0; i<bytes.length; ++i)
+            if (bytes[i] < 0)
+                return false;
+        return true;
+    }
+}
@@ -59,6 +59,8 @@ public class Link extends Element implements Prioritized {
     private float priority;
     private DownloadParameters dp;  
         // timeouts, etc. to use when downloading this link
+    private Validator validator;
+        // validators from an earlier crawl, for a conditional request
 
     /**
      * Make a Link from a start tag and end tag and a base URL (for relative references).  
@@ -82,6 +84,16 @@ public class Link extends Element implements Prioritized {
         depth = 0;
     }
 
+    /**
+     * Make a Link from a URL at a given depth in a crawl.
+     * @param url URL of link
+     * @param depth depth of link from root
+     */
+    public Link (URL url, int depth) {
+        this (url);
+        this.depth = depth;
+    }
+
     /**
      * Make a Link from a File.
      */
@@ -623,6 +635,24 @@ public class Link extends Element implements Prioritized {
         this.dp = dp;
     }
 
+    /**
+     * Get the validator saved for this link by an earlier crawl.  
+     * Default is null.
+     */
+    public Validator getValidator () {
+        return validator;
+    }
+
+    /**
+     * Set the validator saved for this link by an earlier crawl.
+     * When downloading the link, Access sends a conditional request
+     * with the validator's Last-Modified date and ETag.
+     * @param validator validator, or null to make an ordinary request
+     */
+    public void setValidator (Validator validator) {
+        this.validator = validator;
+    }
+
     /*
      * Testing
      *
@@ -38,6 +38,7 @@ import java.net.MalformedURLException;
 import java.util.Enumeration;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.Vector;
 
 /**
@@ -45,10 +46,13 @@ import java.util.Vector;
  * a mirror are stored as files on the local disk in a directory
  * structure mirroring their URLs.
  * <P>
+ * A mirror can be saved with a crawler's checkpoints (see
+ * Crawler.addCheckpointable()), so that a resumed crawl maps URLs
+ * to the same files and doesn't write pages twice.
  */
  
 // FIX: discards ALL anchors (for some reason)
-public class Mirror extends LinkTransformer {
+public class Mirror extends LinkTransformer implements Checkpointable {
     String root;
         // Root directory represented as file:/<dir>/
         
@@ -66,6 +70,13 @@ public class Mirror extends LinkTransformer {
     
     private HashSet writtenFiles;
 
+    static final String CHECKPOINT_FILE = "mirror";
+    private ByteArrayOutputStream journal = new ByteArrayOutputStream ();
+    private DataOutputStream journalOut = new DataOutputStream (journal);
+        // map entries and written files added since the last checkpoint
+    private boolean journaling = false;
+        // true once checkpoint() or restore() has been called
+
     /**
      * Make a new Mirror.
      * @param directory Root directory (on local disk
@@ -153,9 +164,34 @@ public class Mirror extends LinkTransformer {
         needRewrite = !files.isEmpty ();
         files.addElement (out);
         writtenFiles.add(localURL);
+        record ('W', localURL.toExternalForm (), null);
         page.setLocalFile(localFile);
     }
 
+    /**
+     * Keep the copy of a page written to the mirror by an earlier 
+     * crawl, because the page hasn't changed (see Crawler.unchanged()).
+     * The page's URL is mapped to the existing file, so that links to 
+     * it from pages written later point to the local copy, but the 
+     * file itself is not rewritten.
+     * @param page unchanged page
+     * @return true if the earlier copy exists; false if it doesn't, in
+     * which case nothing is done
+     */
+    public synchronized boolean keepPage (Page page) throws IOException {
+        URL url = page.getURL ();
+        String local = toLocalFileURL (url, page.getMimeType());
+        URL localURL = new URL (local);
+        File localFile = Link.URLToFile (localURL);
+
+        if (!localFile.exists ())
+            return false;
+        if (writtenFiles.add (localURL))
+            record ('W', localURL.toExternalForm (), null);
+        page.setLocalFile (localFile);
+        return true;
+    }
+
     /**
      * Close the mirror.  Makes sure that links point to local versions of
      * pages wherever possible.
@@ -164,6 +200,93 @@ public class Mirror extends LinkTransformer {
         rewrite ();
     }
 
+    public synchronized void map (URL url, String href) {
+        super.map (url, href);
+        record ('M', url.toExternalForm (), href);
+    }
+
+    public synchronized void map (URL url, URL newURL) {
+        super.map (url, newURL);
+        record ('U', url.toExternalForm (), newURL.toExternalForm ());
+    }
+
+    /**
+     * Save the URL-to-file map and the list of written files.
+     * @param dir checkpoint directory
+     * @param append true to save only the entries added since 
+     * the previous checkpoint
+     */
+    public synchronized void checkpoint (File dir, boolean append) throws IOException {
+        journaling = true;
+        if (!append) {
+            // start the journal over with every entry
+            journal.reset ();
+            if (map != null)
+                for (Enumeration e = map.keys (); e.hasMoreElements (); ) {
+                    URL url = (URL)e.nextElement ();
+                    Object obj = map.get (url);
+                    if (obj instanceof URL)
+                        record ('U', url.toExternalForm (), ((URL)obj).toExternalForm ());
+                    else
+                        record ('M', url.toExternalForm (), (String)obj);
+                }
+            for (Iterator i = writtenFiles.iterator (); i.hasNext (); )
+                record ('W', ((URL)i.next ()).toExternalForm (), null);
+        }
+
+        FileOutputStream out = new FileOutputStream (new File (dir, CHECKPOINT_FILE).toString (), append);
+        try {
+            journal.writeTo (out);
+            out.getFD ().sync ();
+        } finally {
+            out.close ();
+        }
+        journal.reset ();
+    }
+
+    /**
+     * Restore the URL-to-file map and the list of written files.
+     * Pages written before the checkpoint are not rewritten by 
+     * close(), so links in them to pages downloaded after the 
+     * checkpoint keep pointing to the remote URLs.
+     * @param dir checkpoint directory
+     */
+    public synchronized void restore (File dir) throws IOException {
+        journaling = true;
+        File file = new File (dir, CHECKPOINT_FILE);
+        if (!file.exists ())
+            return;
+        DataInputStream in = new DataInputStream (
+            new BufferedInputStream (Access.getAccess ().readFile (file)));
+        try {
+            while (true) {
+                int type = in.readByte ();
+                URL url = new URL (in.readUTF ());
+                if (type == 'W')
+                    writtenFiles.add (url);
+                else if (type == 'U')
+                    super.map (url, new URL (in.readUTF ()));
+                else
+                    super.map (url, in.readUTF ());
+            }
+        } catch (EOFException e) {
+            // end of journal
+        } finally {
+            in.close ();
+        }
+    }
+
+    private void record (int type, String url, String href) {
+        if (!journaling)
+            return;
+        try {
+            journalOut.writeByte (type);
+            journalOut.writeUTF (url);
+            if (href != null)
+                journalOut.writeUTF (href);
+        } catch (IOException e) {} // can't happen writing to memory
+    }
+
     /**
      * Rewrite the mirror to make local links consistent.
      */
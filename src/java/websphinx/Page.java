@@ -37,10 +37,17 @@ import java.net.URLConnection;
 //#ifdef JDK1.1 
 import java.net.HttpURLConnection;
 //#endif JDK1.1
+import java.io.EOFException;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
 import rcm.util.Str;
 
 /**
@@ -50,19 +57,18 @@ import rcm.util.Str;
  */
 public class Page extends Region {
 
-    // typical page length, to optimize downloads
-    static final int TYPICAL_LENGTH = 20240;
-    
     static final String DEFAULT_ENCODING = "iso-8859-1";
 
     // Permanent content
     Link origin;
     long lastModified = 0;
     long expiration = 0;
+    String etag;
     String contentType;
     String contentEncoding;
     int responseCode = -1;
     String responseMessage = null;
+    boolean unchanged;  // same as in an earlier crawl (set by Crawler)
     URL base;
     String title;
     Link[] links;
@@ -74,16 +80,26 @@ public class Page extends Region {
 
     // Discardable content (thrown away when contentLock falls to 0)
     byte[] contentBytes;
-    String content;
+    String content;         // decoded content, or null until needed if
+                            // only the bytes are kept (compact content)
+    Latin1Chars chars;      // compact content readable in place, or null
+    ParseTable table;       // parsed tokens and elements, made into
+                            // the objects below on demand
     Region[] tokens;
     Text[] words;
     Tag[] tags;
     Element[] elements;
     Element root;
-    String canonicalTags;
+    CanonicalTagIndex canonicalTags;
     String mimeType;
     File localFile;
 
+    // Memory accounting (see ContentBudget)
+    ContentBudget budget;   // budget charged for the content, or null
+    long charged;           // bytes charged to budget
+    File spillFile;         // temporary file holding spilled content, or null
+    boolean spilledChars;   // true if spilled content was read in place
+
     /**
      * Make a Page by downloading and parsing a Link.
      * @param link Link to download
@@ -98,13 +114,14 @@ public class Page extends Region {
      * @param dp Download parameters to use
      */
     public Page (Link link, DownloadParameters dp) throws IOException {
-        this (link, dp, new HTMLParser ());
+        this (link, dp, new HTMLParser (dp));
     }
 
     /**
      * Make a Page by downloading a Link.
      * @param link Link to download
-     * @param parser HTML parser to use
+     * @param parser HTML parser to use, or null to leave the page
+     * unparsed (see parse())
      */
     public Page (Link link, DownloadParameters dp, HTMLParser parser) throws IOException {
         super (null, 0, 0);
@@ -115,6 +132,57 @@ public class Page extends Region {
         link.setPage (this);
     }
 
+    /**
+     * Make a Page from a link that has already been downloaded,
+     * e.g. by AsyncAccess.
+     * @param link Link that was downloaded
+     * @param result Response to the download
+     * @param parser HTML parser to use
+     * @exception IOException if the response is an HTTP failure
+     */
+    public Page (Link link, FetchResult result, HTMLParser parser) throws IOException {
+        this (link, result, link.getDownloadParameters () != null 
+                            ? link.getDownloadParameters () 
+                            : DownloadParameters.DEFAULT,
+              parser);
+    }
+
+    /**
+     * Make a Page from a link that has already been downloaded,
+     * e.g. by AsyncAccess.
+     * @param link Link that was downloaded
+     * @param result Response to the download
+     * @param dp Download parameters the link was downloaded with
+     * @param parser HTML parser to use, or null to leave the page
+     * unparsed
+     * @exception IOException if the response is an HTTP failure
+     */
+    public Page (Link link, FetchResult result, DownloadParameters dp, 
+                 HTMLParser parser) throws IOException {
+        super (null, 0, 0);
+        source = this;
+        origin = link;
+        base = result.getURL ();
+        lastModified = result.getLastModified ();
+        expiration = result.getExpiration ();
+        etag = result.getHeaderField ("ETag");
+        contentType = result.getContentType ();
+        contentEncoding = result.getContentEncoding ();
+
+        responseCode = result.getResponseCode ();
+        responseMessage = result.getResponseMessage ();
+        if (responseCode == HttpURLConnection.HTTP_NOT_MODIFIED
+                && link.getValidator () != null)
+            setNotModified ();
+        else if (responseCode >= 300)
+            // HTTP failure
+            throw new IOException (responseCode + " " + responseMessage); 
+        else
+            setContentBytes (result.getContent (), dp.getCompactContent (), 
+                             parser);
+        link.setPage (this);
+    }
+
     /**
      * Make a Page from a URL and a string of HTML.
      * The created page has no originating link, so calls to getURL(), getProtocol(), etc. will fail.
@@ -199,6 +267,7 @@ public class Page extends Region {
         base = conn.getURL ();
         lastModified = conn.getLastModified ();
         expiration = conn.getExpiration ();
+        etag = conn.getHeaderField ("ETag");
         contentType = conn.getContentType ();
         contentEncoding = conn.getContentEncoding ();
 
@@ -212,6 +281,13 @@ public class Page extends Region {
             if (responseMessage == null)
                 responseMessage = "unknown error";
             
+            if (responseCode == HttpURLConnection.HTTP_NOT_MODIFIED
+                    && origin.getValidator () != null) {
+                // copy from an earlier crawl is still current
+                in.close ();
+                setNotModified ();
+                return;
+            }
             if (responseCode >= 300)
                 // HTTP failure
                 throw new IOException (responseCode + " " + responseMessage); 
@@ -224,45 +300,26 @@ public class Page extends Region {
         // download content
         int maxKB = dp.getMaxPageSize ();
         int maxBytes = (maxKB > 0) ? maxKB * 1024 : Integer.MAX_VALUE;
-        int expectedLength = conn.getContentLength ();
-        if (expectedLength > maxBytes)
-            throw new IOException ("Page greater than " 
-                                   + maxBytes + " bytes");
-        if (expectedLength == -1)
-            expectedLength = TYPICAL_LENGTH;
-        byte[] buf = new byte[expectedLength];
-        int n;
-        int total = 0;
-
-        while ((n = in.read (buf, total, buf.length - total)) != -1) {
-            total += n;
-            if (total > maxBytes)
-                throw new IOException ("Page greater than " 
-                                       + maxBytes + " bytes");
-            if (total == buf.length) {
-                // try to read one more character
-                int c = in.read ();
-                if (c == -1)
-                    break; // EOF, we're done
-                else {
-                    // need more space in array.  Double the array, but don't make
-                    // it bigger than maxBytes.
-                    byte[] newbuf = new byte[Math.min (buf.length * 2, maxBytes)];
-                    System.arraycopy (buf, 0, newbuf, 0, buf.length);
-                    buf = newbuf;
-                    buf[total++] = (byte) c;
-                }
-            }                    
+        byte[] buf;
+        try {
+            buf = BufferPool.getPool ().read (in, conn.getContentLength (), 
+                                              maxBytes);
+        } finally {
+            // also when the download is cancelled, so its connection
+            // doesn't outlive it
+            in.close ();
         }
-        in.close ();
         
-        if (total != buf.length) {
-            // resize the array to be precisely total bytes long
-            byte[] newbuf = new byte[total];
-            System.arraycopy (buf, 0, newbuf, 0, total);
-            buf = newbuf;
-        }
- 
+        setContentBytes (buf, dp.getCompactContent (), parser);
+    }
+
+    /*
+     * Store downloaded content, decoding it if it's text and parsing
+     * it if it's HTML.  Compact text content is not decoded; it's 
+     * read in place if its encoding allows, or decoded by 
+     * getContentChars() when first needed.
+     */
+    private void setContentBytes (byte[] buf, boolean compact, HTMLParser parser) throws IOException {
         contentBytes = buf;
         
         start = 0;
@@ -272,26 +329,79 @@ public class Page extends Region {
         
         if (MimeTypeUtil.isTextual(mimeType)) {
             contentEncoding = getCharset(contentType);
+            if (contentEncoding == null && MimeTypeUtil.isHTML(mimeType)) {
+                contentEncoding = sniffCharset(buf);
+            }
             if (contentEncoding == null) {
                 contentEncoding = DEFAULT_ENCODING;
             }
             try {
-                content = new String (buf, contentEncoding);
+                if (!compact) {
+                    content = new String (buf, contentEncoding);
+                    end = content.length();
+                } else if (Latin1Chars.canRead (canonicalCharset (contentEncoding), buf)) {
+                    chars = new Latin1Chars (buf, 0, buf.length);
+                    end = buf.length;
+                } else {
+                    end = decodedLength (buf, contentEncoding);
+                }
             } catch (UnsupportedEncodingException e) {
                 e.printStackTrace();
                 throw new IOException(e.getMessage());
             }
-            end = content.length();
         } else {
-            end = total;
+            end = buf.length;
         }
 
         //  parse the response
-        if (MimeTypeUtil.isHTML(mimeType)) {
+        if (parser != null && MimeTypeUtil.isHTML(mimeType)) {
             parse (parser);
         }
     }
     
+    /*
+     * Set up a page whose copy from an earlier crawl is still current
+     * (the server answered 304 Not Modified to a conditional request).
+     * The page has no content.  Its type and links are taken from 
+     * the validator of its origin link.
+     */
+    private void setNotModified () {
+        Validator v = origin.getValidator ();
+        if (contentType == null)
+            contentType = v.getContentType ();
+        if (lastModified == 0)
+            lastModified = v.getLastModified ();
+        if (etag == null)
+            etag = v.getETag ();
+
+        contentBytes = new byte[0];
+        content = "";
+        start = end = 0;
+        contentLock = 1;
+
+        if (contentType != null) {
+            mimeType = getMimeType (contentType);
+            if (MimeTypeUtil.isTextual (mimeType)) {
+                contentEncoding = getCharset (contentType);
+                if (contentEncoding == null)
+                    contentEncoding = DEFAULT_ENCODING;
+            }
+        }
+        links = v.makeLinks (this);
+    }
+
+    /**
+     * Test whether the page is unchanged since an earlier crawl, 
+     * according to the server.  Such a page has no content; its
+     * links are the ones found by the earlier crawl.
+     * @return true if the server answered a conditional request
+     * with 304 (Not Modified)
+     */
+    public boolean isNotModified () {
+        // other failures throw an exception instead of making a Page
+        return responseCode == HttpURLConnection.HTTP_NOT_MODIFIED;
+    }
+
     /**
      * Extracts the mime-type of the content-type.
      * @param contentType e.g. text/html; charset=utf-8
@@ -313,6 +423,114 @@ public class Page extends Region {
         return this.mimeType;
     }
     
+    /*
+     * Get the canonical name of a charset; unsupported ones throw UnsupportedEncodingException.
+     */
+    private static String canonicalCharset (String charset) throws UnsupportedEncodingException {
+        try {
+            return Charset.forName (charset).name ();
+        } catch (IllegalArgumentException e) {
+            // illegal or unsupported charset name
+            throw new UnsupportedEncodingException (charset);
+        }
+    }
+
+    /*
+     * Count the characters that bytes decode to, without keeping them.
+     */
+    private static int decodedLength (byte[] buf, String charset) throws UnsupportedEncodingException {
+        CharsetDecoder decoder = Charset.forName (canonicalCharset (charset)).newDecoder ()
+            .onMalformedInput (CodingErrorAction.REPLACE)
+            .onUnmappableCharacter (CodingErrorAction.REPLACE);
+        ByteBuffer in = ByteBuffer.wrap (buf);
+        CharBuffer out = CharBuffer.allocate (4096);
+        int n = 0;
+        while (decoder.decode (in, out, true).isOverflow ()) {
+            n += out.position ();
+            out.clear ();
+        }
+        while (decoder.flush (out).isOverflow ()) {
+            n += out.position ();
+            out.clear ();
+        }
+        return n + out.position ();
+    }
+
+    /**
+     * Find the character encoding declared at the start of an HTML
+     * page, by a byte order mark or a META tag (either 
+     * &lt;meta charset=...&gt; or &lt;meta http-equiv=Content-Type 
+     * content="...; charset=..."&gt;).  Only the first 1024 bytes 
+     * are examined, and the bytes aren't decoded.
+     * @param buf content of the page
+     * @return name of a supported encoding, or null if none is declared
+     */
+    public static String sniffCharset (byte[] buf) {
+        int n = Math.min (buf.length, 1024);
+        if (n >= 3 && (buf[0] & 0xff) == 0xEF && (buf[1] & 0xff) == 0xBB 
+            && (buf[2] & 0xff) == 0xBF)
+            return "UTF-8";
+        if (n >= 2 && (buf[0] & 0xff) == 0xFE && (buf[1] & 0xff) == 0xFF)
+            return "UTF-16BE";
+        if (n >= 2 && (buf[0] & 0xff) == 0xFF && (buf[1] & 0xff) == 0xFE)
+            return "UTF-16LE";
+
+        for (int i=0; i+5 < n; ++i) {
+            if (buf[i] != '<' || !regionMatches (buf, i+1, n, "meta"))
+                continue;
+            // look for charset= anywhere in the tag
+            for (int j=i+5; j < n && buf[j] != '>'; ++j) {
+                if (!regionMatches (buf, j, n, "charset"))
+                    continue;
+                int k = j + 7;
+                while (k < n && buf[k] <= ' ')
+                    ++k;
+                if (k >= n || buf[k] != '=')
+                    continue;
+                ++k;
+                while (k < n && (buf[k] <= ' ' || buf[k] == '"' || buf[k] == '\''))
+                    ++k;
+                int e = k;
+                while (e < n && buf[e] > 0
+                       && (Character.isLetterOrDigit ((char)buf[e])
+                           || buf[e] == '-' || buf[e] == '_' 
+                           || buf[e] == '.' || buf[e] == ':'))
+                    ++e;
+                if (e == k)
+                    continue;
+
+                char[] c = new char[e-k];
+                for (int m=0; m<c.length; ++m)
+                    c[m] = (char)buf[k+m];
+                String name = new String (c);
+                if (name.toLowerCase ().startsWith ("utf-16"))
+                    // bytes that can be read this far aren't UTF-16
+                    return "UTF-8";
+                try {
+                    if (Charset.isSupported (name))
+                        return name;
+                } catch (IllegalArgumentException ex) {
+                    // illegal charset name
+                }
+                return null;
+            }
+        }
+        return null;
+    }
+
+    /*
+     * Test whether bytes at an offset match a lower-case ASCII word, 
+     * ignoring case.
+     */
+    private static boolean regionMatches (byte[] buf, int offset, int n, String word) {
+        if (offset + word.length () > n)
+            return false;
+        for (int i=0; i<word.length (); ++i)
+            if (Character.toLowerCase ((char)buf[offset+i]) != word.charAt (i))
+                return false;
+        return true;
+    }
+
     /**
      * Extracts the charset of the content-type.
      * @param contentType e.g. text/html; charset=utf-8
@@ -358,16 +576,16 @@ public class Page extends Region {
      * download only if its MIME type is HTML or unspecified.
      * @return true if page was parsed, false if not
      */
-    public boolean isParsed () {
-        return tokens != null;
+    public synchronized boolean isParsed () {
+        return tokens != null || table != null;
     }
 
     /**
      * Test whether page is HTML.
      * @return true if page is HTML.
      */
-    public boolean isHTML () {
-        return root != null;
+    public synchronized boolean isHTML () {
+        return root != null || (table != null && table.root != -1);
     }
 
     /**
@@ -438,8 +656,16 @@ public class Page extends Region {
             return;     // without an origin, we'd have no way to recover this page
             
         //System.err.println ("discarding content of " + toDescription());
+        if (budget != null)
+            budget.release (this);
+        if (spillFile != null) {
+            spillFile.delete ();
+            spillFile = null;
+        }
         contentBytes = null;
         content = null;
+        chars = null;
+        table = null;
         tokens = null;
         tags = null;
         words = null;
@@ -470,6 +696,84 @@ public class Page extends Region {
         return contentLock != 0;
     }
 
+    /*
+     * Get the number of bytes taken by the page's content: its raw
+     * bytes, plus its decoded characters if it keeps them.
+     */
+    long getContentSize () {
+        long size = (contentBytes != null) ? contentBytes.length : 0;
+        if (content != null)
+            size += 2L * content.length ();
+        return size;
+    }
+
+    /*
+     * Write the page's content to a temporary file and drop it from
+     * memory, leaving it locked.  The content is read back by 
+     * getContentBytes() or getContentChars().  Returns false if the 
+     * page has no content to spill or the file can't be written.
+     */
+    synchronized boolean spill () {
+        if (contentLock <= 0 || spillFile != null || contentBytes == null)
+            return false;
+
+        File file = Access.getAccess ().makeTemporaryFile ("page", ".tmp");
+        try {
+            OutputStream out = Access.getAccess ().writeFile (file, false);
+            try {
+                out.write (contentBytes);
+            } finally {
+                out.close ();
+            }
+        } catch (IOException e) {
+            file.delete ();
+            return false;
+        }
+
+        spillFile = file;
+        spilledChars = (chars != null);
+        contentBytes = null;
+        content = null;
+        chars = null;
+        if (table != null)
+            table.content = null;
+        if (budget != null)
+            budget.spilled (this);
+        return true;
+    }
+
+    /*
+     * Read back content written by spill().
+     */
+    private synchronized void unspill () {
+        File file = spillFile;
+        if (file == null)
+            return;
+
+        byte[] buf = new byte[(int)file.length ()];
+        try {
+            InputStream in = Access.getAccess ().readFile (file);
+            try {
+                for (int n = 0, got; n < buf.length; n += got)
+                    if ((got = in.read (buf, n, buf.length - n)) < 0)
+                        throw new EOFException (file.toString ());
+            } finally {
+                in.close ();
+            }
+        } catch (IOException e) {
+            throw new RuntimeException ("can't read back content of " 
+                                        + getURL () + ": " + e);
+        }
+
+        contentBytes = buf;
+        if (spilledChars)
+            chars = new Latin1Chars (buf, 0, buf.length);
+        spillFile = null;
+        file.delete ();
+        if (budget != null)
+            budget.unspilled (this, buf.length);
+    }
+
     //
     // Page accessors
     //
@@ -525,9 +829,44 @@ public class Page extends Region {
      * @return the String content of the page.
      */
     public String getContent () {
+        CharSequence text = getContentChars ();
+        return (text instanceof String || text == null) 
+            ? (String)text 
+            : text.toString ();
+    }
+
+    /**
+     * Get the content of the page as characters.  Unlike getContent(),
+     * this doesn't copy compact content (see 
+     * DownloadParameters.changeCompactContent()) if its encoding is
+     * ISO-8859-1, or ASCII; compact content in other encodings is 
+     * decoded on the first call.  
+     * @return the characters of the page, or null if the page isn't text
+     */
+    public CharSequence getContentChars () {
         if (!hasContent())
             downloadSafely ();
-        return content;
+        // under the page lock, so that spill() can't drop the content
+        // between the test and the read
+        synchronized (this) {
+            if (spillFile != null)
+                unspill ();
+            if (chars != null)
+                return chars;
+            if (content == null && contentBytes != null && contentEncoding != null
+                    && mimeType != null && MimeTypeUtil.isTextual (mimeType)) {
+                // compact content, decoded on demand
+                try {
+                    content = new String (contentBytes, contentEncoding);
+                } catch (UnsupportedEncodingException e) {
+                    throw new RuntimeException (e.toString ());
+                }
+                ContentBudget b = budget;
+                if (b != null)
+                    b.charge (this, 2L * content.length ());
+            }
+            return content;
+        }
     }
 
     /**
@@ -537,7 +876,32 @@ public class Page extends Region {
     public byte[] getContentBytes () {
         if (!hasContent())
             downloadSafely ();
-        return contentBytes;
+        synchronized (this) {
+            if (spillFile != null)
+                unspill ();
+            return contentBytes;
+        }
+    }
+
+    /*
+     * Make the page's tokens, tags, words and elements from its parse
+     * table, if that hasn't been done yet.  Done under the page's lock, 
+     * since ParseTable.makeTokens() drops the page's table when done.
+     */
+    synchronized void makeTokens () {
+        ParseTable t = table;
+        if (tokens == null && t != null)
+            t.makeTokens ();
+    }
+
+    /*
+     * Make the page's elements and root from its parse table, if that
+     * hasn't been done yet.
+     */
+    synchronized void makeElements () {
+        ParseTable t = table;
+        if (elements == null && t != null)
+            t.makeElements ();
     }
 
     /**
@@ -547,6 +911,7 @@ public class Page extends Region {
     public Region[] getTokens() {
         if (!hasContent ())
             downloadSafely ();
+        makeTokens ();
         return tokens;
     }
 
@@ -557,6 +922,7 @@ public class Page extends Region {
     public Tag[] getTags () {
         if (!hasContent ())
             downloadSafely ();
+        makeTokens ();
         return tags;
     }
 
@@ -567,6 +933,7 @@ public class Page extends Region {
     public Text[] getWords () {
         if (!hasContent ())
             downloadSafely ();
+        makeTokens ();
         return words;
     }
 
@@ -580,6 +947,7 @@ public class Page extends Region {
     public Element[] getElements () {
         if (!hasContent ())
             downloadSafely ();
+        makeElements ();
         return elements;
     }
     
@@ -591,6 +959,7 @@ public class Page extends Region {
     public Element getRootElement () {
         if (!hasContent ())
             downloadSafely ();
+        makeElements ();
         return root;
     }
 
@@ -661,6 +1030,14 @@ public class Page extends Region {
         expiration = expire;
     }
 
+    /**
+     * Get entity tag of page.
+     * @return the ETag header sent with the page, or null if not known.
+     */
+    public String getETag () {
+        return etag;
+    }
+
     /**
      * Get MIME type of page.
      * @return the MIME type of page, such as "text/html", or null if not known. 
@@ -717,7 +1094,7 @@ public class Page extends Region {
      * @return raw HTML contained in the region
      */
     public String substringContent (int start, int end) {
-        return getContent ().substring (start, end);
+        return getContentChars ().subSequence (start, end).toString ();
     }
 
     /**
@@ -727,7 +1104,7 @@ public class Page extends Region {
      * @return representation of region as HTML
      */
     public String substringHTML (int start, int end) {
-        String s = getContent ().substring (start, end);
+        String s = getContentChars ().subSequence (start, end).toString ();
         if (!isHTML ()) {
             s = Str.replace (s, "&", "&amp;");
             s = Str.replace (s, "<", "&lt;");
@@ -745,8 +1122,16 @@ public class Page extends Region {
      * @return tagless text contained in the region
      */
     public String substringText (int start, int end) {
+        Text[] words;
+        ParseTable t;
+        synchronized (this) {
+            words = this.words;
+            t = table;
+        }
         if (words == null)
-            return ""; // page is not parsed
+            return t != null 
+                ? t.substringText (start, end)
+                : ""; // page is not parsed
 
         // FIX: find some other mapping
         StringBuffer buf = new StringBuffer();
@@ -770,8 +1155,16 @@ public class Page extends Region {
      * @return tags contained in the region
      */
     public String substringTags (int start, int end) {
+        Tag[] tags;
+        ParseTable t;
+        synchronized (this) {
+            tags = this.tags;
+            t = table;
+        }
         if (tags == null)
-            return ""; // page is not parsed
+            return t != null 
+                ? t.substringTags (start, end)
+                : ""; // page is not parsed
 
         // FIX: find some other mapping
         StringBuffer buf = new StringBuffer();
@@ -781,7 +1174,7 @@ public class Page extends Region {
             else {
                 if (buf.length() > 0)
                     buf.append (' ');
-                buf.append (getContent ().substring (tags[j].start, tags[j].end));
+                buf.append (getContentChars ().subSequence (tags[j].start, tags[j].end).toString ());
             }
         }
         return buf.toString();             
@@ -819,27 +1212,29 @@ public class Page extends Region {
      * @return canonicalized tags contained in the region
      */
     public String substringCanonicalTags (int start, int end) {
-        if (tokens == null)
+        CanonicalTagIndex index = getCanonicalTagIndex ();
+        if (index == null)
             return ""; // page is not parsed
 
-        boolean all = (start == this.start && end == this.end);
-
-        if (all && canonicalTags != null)
-            return canonicalTags;
-
-        // FIX: find some other mapping
-        StringBuffer buf = new StringBuffer();
-        for (int j = findStart (tokens, start); j<tokens.length; ++j) {
-            if (tokens[j].end > end)
-                break;
-            else if (tokens[j] instanceof Tag)
-                Tagexp.canonicalizeTag (buf, (Tag)tokens[j], j);
-        }
+        if (start == this.start && end == this.end)
+            return index.text;
+        return index.text.substring (index.startOf (start), 
+                                     index.endOf (start, end));
+    }
 
-        String result = buf.toString ();
-        if (all)
-            canonicalTags = result;
-        return result;
+    /**
+     * Get the canonical tags of the page, with their mapping back to 
+     * the page's tokens.  Made on the first call and kept until the
+     * page is parsed again or its content discarded.
+     * @return canonical tag index, or null if the page is not parsed
+     */
+    synchronized CanonicalTagIndex getCanonicalTagIndex () {
+        makeTokens ();
+        if (tokens == null)
+            return null;
+        if (canonicalTags == null || canonicalTags.tokens != tokens)
+            canonicalTags = new CanonicalTagIndex (tokens);
+        return canonicalTags;
     }
 
     public static void main (String[] args) throws Exception {
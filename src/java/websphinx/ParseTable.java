@@ -0,0 +1,629 @@
+/*
+ * WebSphinx web-crawling toolkit
+ *
+ * Copyright (c) 1998-2002 Carnegie Mellon University.  All rights
+ * reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in
+ *    the documentation and/or other materials provided with the
+ *    distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY CARNEGIE MELLON UNIVERSITY ``AS IS'' AND
+ * ANY EXPRESSED OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ * THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED.  IN NO EVENT SHALL CARNEGIE MELLON UNIVERSITY
+ * NOR ITS EMPLOYEES BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+
+package websphinx;
+
+import java.util.Hashtable;
+import java.util.HashMap;
+
+/**
+ * Parsed structure of a page, kept in parallel arrays of ints.
+ * Instead of making a Tag or Text for every token and an Element for 
+ * every element, HTMLParser records their offsets, tag names, and
+ * tree links here.  Page makes the objects from the table the first
+ * time somebody asks for them (with getTokens(), getElements(), and so on).
+ * Links are the exception: the parser makes them right away, since
+ * a crawler always wants them.
+ */
+class ParseTable implements HTMLHandler {
+
+    // token kinds
+    static final int START_TAG = 0;
+    static final int END_TAG = 1;
+    static final int TEXT = 2;
+
+    Page page;
+    CharSequence content;   // page content, or null until needed if 
+                            // it has to be decoded (see getContent())
+
+    // tokens, in page order
+    int nTokens = 0;
+    int nWords = 0;
+    int[] tokKind;
+    int[] tokStart;
+    int[] tokEnd;
+    int[] tokName;      // tag id (see getTagId()), or -1 for text
+    String[] tokOtherName;  // name of each tag with id UNKNOWN_TAG, 
+                        // or null if the page has none
+    int[] tokData;      // start tag: index of its first attribute;
+                        // text: offset of its text in chars, or -1 if 
+                        // the text is just the page content from start to end
+    int[] tokLength;    // start tag: number of attributes; text: length
+
+    // attributes of start tags
+    int nAttrs = 0;
+    String[] attrName;  // lower-case, intern()'ed
+    int[] attrValue;    // offset of value in chars, or -1 if no value
+    int[] attrLength;
+
+    // attribute values and entity-decoded text
+    char[] chars;
+    int nChars = 0;
+
+    // elements, in page order
+    int nElements = 0;
+    int[] elemStartTag; // token index of start tag
+    int[] elemEndTag;   // token index of end tag, or -1
+    int[] elemEnd;
+    int[] elemParent;   // element index, or -1
+    int[] elemChild;
+    int[] elemSibling;
+    Element[] elemObj;  // objects made so far (at first, just Links)
+    int root = -1;      // first top-level element
+
+    Region[] tokObj;    // objects made so far for tokens, or null
+
+    /**
+     * Make an empty table for a page.
+     * @param page Page whose content will be parsed into the table
+     */
+    ParseTable (Page page) {
+        this.page = page;
+        String s = page.content;  // read once, since spill() may drop it
+        content = (s != null) ? (CharSequence)s : page.chars;
+
+        int n = Math.max (16, page.getLength () / 8);
+        tokKind = new int[n];
+        tokStart = new int[n];
+        tokEnd = new int[n];
+        tokName = new int[n];
+        tokData = new int[n];
+        tokLength = new int[n];
+
+        n = Math.max (16, n/2);
+        attrName = new String[n];
+        attrValue = new int[n];
+        attrLength = new int[n];
+
+        elemStartTag = new int[n];
+        elemEndTag = new int[n];
+        elemEnd = new int[n];
+        elemParent = new int[n];
+        elemChild = new int[n];
+        elemSibling = new int[n];
+        elemObj = new Element[n];
+
+        chars = new char[Math.max (64, page.getLength () / 16)];
+    }
+
+    /*
+     * Get the page content, decoding it if the page keeps only its
+     * bytes in an encoding that can't be read in place.
+     */
+    private CharSequence getContent () {
+        CharSequence c = content;  // read once, since spill() may drop it
+        if (c == null)
+            content = c = page.getContentChars ();
+        return c;
+    }
+
+    /*
+     * Tag ids
+     *
+     */
+
+    /**
+     * Number of tag names defined in Tag.  These names have
+     * ids 0 through KNOWN_TAGS-1.
+     */
+    static final int KNOWN_TAGS = Tag.ALL.length;
+
+    /**
+     * Id shared by all the tag names seen after MAX_TAG_IDS ids have
+     * been given out.  Tokens with this id keep their own name.
+     */
+    static final int UNKNOWN_TAG = KNOWN_TAGS;
+
+    /**
+     * Most tag ids ever given out, so that the registry doesn't grow
+     * with every made-up tag name on every page crawled.
+     */
+    static final int MAX_TAG_IDS = 1024;
+
+    private static Hashtable tagIds = new Hashtable ();
+    private static final String[] tagNames = new String[MAX_TAG_IDS];
+        // tagNames[UNKNOWN_TAG] is null
+    private static int nTagNames = 0;
+
+    // ids of the names in Tag.ALL.  Never changed after the class
+    // is loaded, so it's read without locking.
+    private static final HashMap knownIds = new HashMap ();
+    static {
+        for (int i=0; i<KNOWN_TAGS; ++i) {
+            Integer id = new Integer (addTagId (Tag.ALL[i]));
+            knownIds.put (Tag.ALL[i], id);
+        }
+        nTagNames = UNKNOWN_TAG + 1;
+    }
+
+    /**
+     * Get the id of a tag name.  Ids are small integers, shared
+     * by all pages: the names in Tag come first, and other names get
+     * the next id when they're first seen, until MAX_TAG_IDS ids are
+     * used up; after that, new names get UNKNOWN_TAG.
+     * @param tagName tag name, in lower-case, intern()'ed form
+     * @return id of tag name
+     */
+    static int getTagId (String tagName) {
+        Integer id = (Integer)knownIds.get (tagName);
+        if (id == null)
+            id = (Integer)tagIds.get (tagName);
+        return id != null ? id.intValue () : addTagId (tagName);
+    }
+
+    private static synchronized int addTagId (String tagName) {
+        Integer id = (Integer)tagIds.get (tagName);
+        if (id != null)
+            return id.intValue ();
+
+        if (nTagNames == MAX_TAG_IDS)
+            return UNKNOWN_TAG;
+        tagNames[nTagNames] = tagName;
+        tagIds.put (tagName, new Integer (nTagNames));
+        return nTagNames++;
+    }
+
+    /**
+     * Get the tag name with an id.
+     * @param id tag id returned by getTagId()
+     * @return tag name, or null for UNKNOWN_TAG
+     */
+    static String getTagNameForId (int id) {
+        return tagNames[id];
+    }
+
+    /*
+     * Filling in tokens (called by HTMLTokenizer)
+     *
+     */
+
+    public void startTag (String tagName, HTMLAttributes attrs, int start, int end) {
+        int t = addTag (START_TAG, start, end, tagName);
+        int n = attrs.getLength ();
+        tokData[t] = nAttrs;
+        tokLength[t] = n;
+
+        if (nAttrs + n > attrName.length) {
+            int size = Math.max (attrName.length * 2, nAttrs + n);
+            attrName = grow (attrName, size);
+            attrValue = grow (attrValue, size);
+            attrLength = grow (attrLength, size);
+        }
+        for (int i=0; i<n; ++i) {
+            attrName[nAttrs] = attrs.getName (i);
+            if (attrs.hasValue (i)) {
+                int len = attrs.getValueLength (i);
+                attrValue[nAttrs] = addChars (attrs.getValueChars (), 
+                                              attrs.getValueOffset (i), len);
+                attrLength[nAttrs] = len;
+            }
+            else {
+                attrValue[nAttrs] = -1;
+                attrLength[nAttrs] = 0;
+            }
+            ++nAttrs;
+        }
+    }
+
+    public void endTag (String tagName, int start, int end) {
+        addTag (END_TAG, start, end, tagName);
+    }
+
+    public void text (char[] text, int offset, int length, int start, int end) {
+        int t = addToken (TEXT, start, end, -1);
+        tokLength[t] = length;
+        ++nWords;
+
+        if (content != null && length == end - start) {
+            int i = 0;
+            while (i < length && content.charAt (start+i) == text[offset+i])
+                ++i;
+            if (i == length) {
+                tokData[t] = -1;
+                return;
+            }
+        }
+        tokData[t] = addChars (text, offset, length);
+    }
+
+    public void comment (int start, int end) {
+        int t = addToken (START_TAG, start, end, getTagId (Tag.COMMENT));
+        tokData[t] = nAttrs;
+        tokLength[t] = 0;
+    }
+
+    private int addTag (int kind, int start, int end, String tagName) {
+        int id = getTagId (tagName);
+        int t = addToken (kind, start, end, id);
+        if (id == UNKNOWN_TAG) {
+            if (tokOtherName == null)
+                tokOtherName = new String[tokName.length];
+            tokOtherName[t] = tagName;
+        }
+        return t;
+    }
+
+    private int addToken (int kind, int start, int end, int name) {
+        if (nTokens == tokKind.length) {
+            int size = nTokens * 2;
+            tokKind = grow (tokKind, size);
+            tokStart = grow (tokStart, size);
+            tokEnd = grow (tokEnd, size);
+            tokName = grow (tokName, size);
+            tokData = grow (tokData, size);
+            tokLength = grow (tokLength, size);
+            if (tokOtherName != null)
+                tokOtherName = grow (tokOtherName, size);
+        }
+        tokKind[nTokens] = kind;
+        tokStart[nTokens] = start;
+        tokEnd[nTokens] = end;
+        tokName[nTokens] = name;
+        return nTokens++;
+    }
+
+    private int addChars (char[] buf, int offset, int length) {
+        if (nChars + length > chars.length) {
+            char[] newChars = new char[Math.max (chars.length * 2, nChars + length)];
+            System.arraycopy (chars, 0, newChars, 0, nChars);
+            chars = newChars;
+        }
+        System.arraycopy (buf, offset, chars, nChars, length);
+        int p = nChars;
+        nChars += length;
+        return p;
+    }
+
+    /*
+     * Reading tokens
+     *
+     */
+
+    /**
+     * Get a tag token's name.
+     * @param t token index of tag
+     * @return tag name, in lower-case, intern()'ed form
+     */
+    String getTagName (int t) {
+        int id = tokName[t];
+        return (id == UNKNOWN_TAG) ? tokOtherName[t] : tagNames[id];
+    }
+
+    /**
+     * Get an HTML attribute of a start tag token.
+     * @param t token index of start tag
+     * @param name attribute name, in lower-case, intern()'ed form
+     * @return value of attribute, Region.TRUE if it has no value, 
+     * or null if the tag lacks the attribute
+     */
+    String getHTMLAttribute (int t, String name) {
+        int end = tokData[t] + tokLength[t];
+        for (int a=tokData[t]; a<end; ++a)
+            if (attrName[a] == name)
+                return attrValue[a] != -1
+                    ? new String (chars, attrValue[a], attrLength[a])
+                    : Region.TRUE;
+        return null;
+    }
+
+    /**
+     * Get a text token's text.
+     * @param t token index of text
+     * @return text, with entities decoded
+     */
+    String getText (int t) {
+        return tokData[t] == -1
+            ? getContent ().subSequence (tokStart[t], tokEnd[t]).toString ()
+            : new String (chars, tokData[t], tokLength[t]);
+    }
+
+    /**
+     * Find the first token that starts at or after a position.
+     * @param p offset in page
+     * @return token index (nTokens if there is none)
+     */
+    int findStart (int p) {
+        int lo = 0;
+        int hi = nTokens;
+        while (lo != hi) {
+            int mid = (hi + lo) / 2;
+            if (tokStart[mid] < p)
+                lo = mid+1;
+            else
+                hi = mid;
+        }
+        return hi;
+    }
+
+    /**
+     * Get the tagless text of a region (see Page.substringText()).
+     */
+    String substringText (int start, int end) {
+        StringBuffer buf = new StringBuffer ();
+        for (int t = findStart (start); t<nTokens; ++t) {
+            if (tokEnd[t] > end)
+                break;
+            else if (tokKind[t] == TEXT) {
+                if (buf.length () > 0)
+                    buf.append (' ');
+                if (tokData[t] == -1)
+                    buf.append (getContent ().subSequence (tokStart[t], tokEnd[t]).toString ());
+                else
+                    buf.append (chars, tokData[t], tokLength[t]);
+            }
+        }
+        return buf.toString ();
+    }
+
+    /**
+     * Get the tags of a region (see Page.substringTags()).
+     */
+    String substringTags (int start, int end) {
+        StringBuffer buf = new StringBuffer ();
+        for (int t = findStart (start); t<nTokens; ++t) {
+            if (tokEnd[t] > end)
+                break;
+            else if (tokKind[t] != TEXT) {
+                if (buf.length () > 0)
+                    buf.append (' ');
+                buf.append (getContent ().subSequence (tokStart[t], tokEnd[t]).toString ());
+            }
+        }
+        return buf.toString ();
+    }
+
+    /*
+     * Building elements (called by HTMLParser)
+     *
+     */
+
+    /**
+     * Add an element.
+     * @param t token index of element's start tag
+     * @param e object for the element, made with getTag(t), or null
+     * to make the object later
+     * @return element index
+     */
+    int addElement (int t, Element e) {
+        if (nElements == elemStartTag.length) {
+            int size = nElements * 2;
+            elemStartTag = grow (elemStartTag, size);
+            elemEndTag = grow (elemEndTag, size);
+            elemEnd = grow (elemEnd, size);
+            elemParent = grow (elemParent, size);
+            elemChild = grow (elemChild, size);
+            elemSibling = grow (elemSibling, size);
+            Element[] newObj = new Element[size];
+            System.arraycopy (elemObj, 0, newObj, 0, nElements);
+            elemObj = newObj;
+        }
+        elemStartTag[nElements] = t;
+        elemEndTag[nElements] = -1;
+        elemEnd[nElements] = tokEnd[t];
+        elemParent[nElements] = -1;
+        elemChild[nElements] = -1;
+        elemSibling[nElements] = -1;
+        elemObj[nElements] = e;
+        if (e != null)
+            e.startTag.element = e;
+        return nElements++;
+    }
+
+    /**
+     * Get an element's tag id.
+     * @param e element index
+     * @return tag id
+     */
+    int getElementTagId (int e) {
+        return tokName[elemStartTag[e]];
+    }
+
+    void setElementEnd (int e, int end) {
+        elemEnd[e] = end;
+        if (elemObj[e] != null)
+            elemObj[e].end = end;
+    }
+
+    void setElementEndTag (int e, int t) {
+        elemEndTag[e] = t;
+        Element obj = elemObj[e];
+        if (obj != null) {
+            Tag tag = getTag (t);
+            obj.endTag = tag;
+            tag.element = obj;
+        }
+    }
+
+    /*
+     * Making objects
+     *
+     */
+
+    /**
+     * Get the Tag for a tag token, making it if necessary.
+     * @param t token index of tag
+     * @return Tag
+     */
+    synchronized Tag getTag (int t) {
+        if (tokObj == null)
+            tokObj = new Region[nTokens];
+        else if (tokObj[t] != null)
+            return (Tag)tokObj[t];
+
+        Tag tag = new Tag (page, tokStart[t], tokEnd[t], getTagName (t),
+                           tokKind[t] == START_TAG);
+        if (tokKind[t] == START_TAG && tokLength[t] > 0) {
+            int n = tokLength[t];
+            tag.htmlAttributes = new String[n];
+            for (int i=0, a=tokData[t]; i<n; ++i, ++a) {
+                String name = attrName[a];
+                tag.htmlAttributes[i] = name;
+                tag.setAttributeLabel (name, (attrValue[a] != -1) 
+                                       ? new String (chars, attrValue[a], attrLength[a])
+                                       : null);
+            }
+        }
+        tokObj[t] = tag;
+        return tag;
+    }
+
+    /**
+     * Make the page's elements and root.  
+     */
+    synchronized void makeElements () {
+        if (page.elements != null)
+            return;
+
+        Element[] elements = new Element[nElements];
+        for (int e=0; e<nElements; ++e) {
+            Element obj = elemObj[e];
+            if (obj == null) {
+                Tag startTag = getTag (elemStartTag[e]);
+                obj = new Element (startTag, elemEnd[e]);
+                startTag.element = obj;
+                if (elemEndTag[e] != -1) {
+                    obj.endTag = getTag (elemEndTag[e]);
+                    obj.endTag.element = obj;
+                }
+                elemObj[e] = obj;
+            }
+            elements[e] = obj;
+        }
+
+        for (int e=0; e<nElements; ++e) {
+            Element obj = elements[e];
+            obj.parent = elemParent[e] != -1 ? elements[elemParent[e]] : null;
+            obj.child = elemChild[e] != -1 ? elements[elemChild[e]] : null;
+            obj.sibling = elemSibling[e] != -1 ? elements[elemSibling[e]] : null;
+        }
+
+        page.root = root != -1 ? elements[root] : null;
+        page.elements = elements;
+    }
+
+    /**
+     * Make the page's tokens, tags and words (and its elements, 
+     * which the tags point to).
+     */
+    synchronized void makeTokens () {
+        if (page.tokens != null)
+            return;
+
+        makeElements ();
+
+        Region[] tokens = new Region[nTokens];
+        Tag[] tags = new Tag[nTokens - nWords];
+        Text[] words = new Text[nWords];
+        int nTags = 0;
+        int nTexts = 0;
+        for (int t=0; t<nTokens; ++t) {
+            if (tokKind[t] == TEXT) {
+                Text text = new Text (page, tokStart[t], tokEnd[t], getText (t));
+                tokens[t] = text;
+                words[nTexts++] = text;
+            }
+            else {
+                Tag tag = getTag (t);
+                tokens[t] = tag;
+                tags[nTags++] = tag;
+            }
+        }
+
+        tokObj = tokens;
+        page.words = words;
+        page.tags = tags;
+        page.tokens = tokens;
+
+        // the page has all its objects now, so it doesn't need the table
+        page.table = null;
+    }
+
+    /**
+     * Shrink the arrays to fit, once the page has been parsed.
+     */
+    void trim () {
+        if (tokKind.length > nTokens) {
+            tokKind = grow (tokKind, nTokens);
+            tokStart = grow (tokStart, nTokens);
+            tokEnd = grow (tokEnd, nTokens);
+            tokName = grow (tokName, nTokens);
+            tokData = grow (tokData, nTokens);
+            tokLength = grow (tokLength, nTokens);
+            if (tokOtherName != null)
+                tokOtherName = grow (tokOtherName, nTokens);
+        }
+        if (attrName.length > nAttrs) {
+            attrName = grow (attrName, nAttrs);
+            attrValue = grow (attrValue, nAttrs);
+            attrLength = grow (attrLength, nAttrs);
+        }
+        if (elemStartTag.length > nElements) {
+            elemStartTag = grow (elemStartTag, nElements);
+            elemEndTag = grow (elemEndTag, nElements);
+            elemEnd = grow (elemEnd, nElements);
+            elemParent = grow (elemParent, nElements);
+            elemChild = grow (elemChild, nElements);
+            elemSibling = grow (elemSibling, nElements);
+            Element[] newObj = new Element[nElements];
+            System.arraycopy (elemObj, 0, newObj, 0, nElements);
+            elemObj = newObj;
+        }
+        if (chars.length > nChars) {
+            char[] newChars = new char[nChars];
+            System.arraycopy (chars, 0, newChars, 0, nChars);
+            chars = newChars;
+        }
+    }
+
+    // copy an array into a new one of a different size
+    private static int[] grow (int[] a, int size) {
+        int[] b = new int[size];
+        System.arraycopy (a, 0, b, 0, Math.min (a.length, size));
+        return b;
+    }
+
+    private static String[] grow (String[] a, int size) {
+        String[] b = new String[size];
+        System.arraycopy (a, 0, b, 0, Math.min (a.length, size));
+        return b;
+    }
+}
@@ -0,0 +1,969 @@
+/*
+ * WebSphinx web-crawling toolkit
+ *
+ * Copyright (c) 1998-2002 Carnegie Mellon University.  All rights
+ * reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in
+ *    the documentation and/or other materials provided with the
+ *    distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY CARNEGIE MELLON UNIVERSITY ``AS IS'' AND
+ * ANY EXPRESSED OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ * THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED.  IN NO EVENT SHALL CARNEGIE MELLON UNIVERSITY
+ * NOR ITS EMPLOYEES BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+
+package websphinx;
+
+import java.util.Arrays;
+import java.util.Hashtable;
+import java.util.Vector;
+
+/**
+ * Set of patterns matched against a region together.  Testing a page
+ * against many patterns one by one scans the page once per pattern.
+ * A PatternSet scans it once, with a single automaton (Aho-Corasick)
+ * made from literal strings taken from its patterns, and runs a 
+ * pattern's own matcher only if the region contains the literals 
+ * that every match of that pattern must contain.  Patterns that are 
+ * nothing but a literal string are matched by the automaton alone.
+ * So a set of patterns that mostly don't match costs about one scan
+ * of the region, however many patterns it has.
+ * <P>
+ * Literals are taken from Regexp, Wildcard and JavaRegexp patterns.
+ * Other patterns, and expressions without any literal that every 
+ * match must contain (like "\w+@\w+"), are always run.
+ */
+public class PatternSet 
+//#ifdef JDK1.1 
+implements java.io.Serializable 
+//#endif JDK1.1
+{
+    Vector patterns = new Vector ();
+    transient CompiledPatternSet compiled;
+
+    /**
+     * Make an empty PatternSet.
+     */
+    public PatternSet () {
+    }
+
+    /**
+     * Make a PatternSet.
+     * @param patterns patterns in the set
+     */
+    public PatternSet (Pattern[] patterns) {
+        for (int i=0; i<patterns.length; ++i)
+            add (patterns[i]);
+    }
+
+    /**
+     * Add a pattern to the set.  The pattern's index in the set 
+     * (and in the arrays returned by found() and allMatches()) is 
+     * the size of the set before it was added.
+     * @param pattern pattern to add
+     */
+    public synchronized void add (Pattern pattern) {
+        patterns.addElement (pattern);
+        compiled = null;
+    }
+
+    /**
+     * Get the number of patterns in the set.
+     * @return number of patterns
+     */
+    public int size () {
+        return patterns.size ();
+    }
+
+    /**
+     * Get a pattern in the set.
+     * @param i index of the pattern
+     * @return ith pattern added to the set
+     */
+    public Pattern getPattern (int i) {
+        return (Pattern)patterns.elementAt (i);
+    }
+
+    /**
+     * Get the patterns in the set.
+     * @return patterns, in the order they were added
+     */
+    public synchronized Pattern[] getPatterns () {
+        Pattern[] result = new Pattern[patterns.size ()];
+        patterns.copyInto (result);
+        return result;
+    }
+
+    synchronized CompiledPatternSet getCompiled () {
+        if (compiled == null)
+            compiled = new CompiledPatternSet (getPatterns ());
+        return compiled;
+    }
+
+    /**
+     * Test which patterns of the set are found in a region.
+     * @param region region to search
+     * @return array with an element for each pattern, in order: 
+     * true if the pattern is found in the region
+     */
+    public boolean[] found (Region region) {
+        return getCompiled ().found (region);
+    }
+
+    /**
+     * Test whether any pattern of the set is found in a region.
+     * @param region region to search
+     * @return true if some pattern is found in the region
+     */
+    public boolean foundAny (Region region) {
+        return getCompiled ().foundAny (region);
+    }
+
+    /**
+     * Find all the matches of every pattern in a region.
+     * @param region region to search
+     * @return array with an element for each pattern, in order: 
+     * the pattern's matches, as returned by Pattern.allMatches()
+     */
+    public Region[][] allMatches (Region region) {
+        return getCompiled ().allMatches (region);
+    }
+
+    public boolean[] found (String string) {
+        return found (new Page (string));
+    }
+
+    public boolean foundAny (String string) {
+        return foundAny (new Page (string));
+    }
+
+    public Region[][] allMatches (String string) {
+        return allMatches (new Page (string));
+    }
+
+    public String toString () {
+        return patterns.toString ();
+    }
+
+    public static void main (String[] args) throws Exception {
+        if (args.length < 2) {
+            System.err.println ("usage: PatternSet <source URL> <pattern>*");
+            return;
+        }
+
+        PatternSet set = new PatternSet ();
+        for (int i=1; i<args.length; ++i)
+            set.add (new Regexp (args[i].replace ('_', ' ')));
+
+        Page page = new Page (new Link (args[0]));
+        Region[][] matches = set.allMatches (page);
+        for (int i=0; i<matches.length; ++i) {
+            System.out.println ("--------------------" + set.getPattern (i));
+            for (int j=0; j<matches[i].length; ++j) {
+                Region r = matches[i][j];
+                System.out.println ("[" + r.getStart() + "," + r.getEnd() + "]" + r);
+            }
+        }
+    }
+}
+
+/*
+ * Automaton and literals of a PatternSet, made when the set is first 
+ * matched after a change.
+ */
+class CompiledPatternSet {
+    Pattern[] patterns;
+    LiteralAutomaton automaton;  // null if no pattern has literals
+    int nLiterals;
+
+    int[][][] required;         // for each pattern, the literals every
+                                // match of each of its alternatives 
+                                // must contain, or null if the pattern
+                                // must always be run
+    String[] exact;             // for each pattern, the literal it 
+                                // consists of, or null
+    boolean[] caseless;         // for each pattern, whether it ignores
+                                // case
+    int[][] exactPatterns;      // for each literal, the patterns 
+                                // consisting of it, or null
+
+    CompiledPatternSet (Pattern[] patterns) {
+        this.patterns = patterns;
+        int n = patterns.length;
+        required = new int[n][][];
+        exact = new String[n];
+        caseless = new boolean[n];
+
+        Hashtable ids = new Hashtable ();
+        Vector literals = new Vector ();
+        Vector users = new Vector ();
+        for (int p=0; p<n; ++p) {
+            RequiredLiterals r = RequiredLiterals.of (patterns[p]);
+            if (r == null || r.alternatives == null)
+                continue;
+
+            String[][] alts = r.alternatives;
+            required[p] = new int[alts.length][];
+            for (int a=0; a<alts.length; ++a) {
+                required[p][a] = new int[alts[a].length];
+                for (int k=0; k<alts[a].length; ++k) {
+                    String key = LiteralAutomaton.fold (alts[a][k]);
+                    Integer id = (Integer)ids.get (key);
+                    if (id == null) {
+                        id = new Integer (literals.size ());
+                        ids.put (key, id);
+                        literals.addElement (key);
+                        users.addElement (null);
+                    }
+                    required[p][a][k] = id.intValue ();
+                }
+            }
+
+            if (r.exact != null) {
+                exact[p] = r.exact;
+                caseless[p] = r.caseless;
+                int id = required[p][0][0];
+                Vector v = (Vector)users.elementAt (id);
+                if (v == null)
+                    users.setElementAt (v = new Vector (), id);
+                v.addElement (new Integer (p));
+            }
+        }
+
+        nLiterals = literals.size ();
+        if (nLiterals == 0)
+            return;
+
+        String[] lits = new String[nLiterals];
+        literals.copyInto (lits);
+        automaton = new LiteralAutomaton (lits);
+
+        exactPatterns = new int[nLiterals][];
+        for (int id=0; id<nLiterals; ++id) {
+            Vector v = (Vector)users.elementAt (id);
+            if (v != null) {
+                exactPatterns[id] = new int[v.size ()];
+                for (int k=0; k<v.size (); ++k)
+                    exactPatterns[id][k] = ((Integer)v.elementAt (k)).intValue ();
+            }
+        }
+    }
+
+    boolean[] found (Region region) {
+        boolean[] seen = new boolean[nLiterals];
+        boolean[] matched = new boolean[patterns.length];
+        scan (region, seen, matched, null, null, false);
+        for (int p=0; p<patterns.length; ++p)
+            if (exact[p] == null && mayMatch (p, seen))
+                matched[p] = patterns[p].found (region);
+        return matched;
+    }
+
+    boolean foundAny (Region region) {
+        boolean[] seen = new boolean[nLiterals];
+        boolean[] matched = new boolean[patterns.length];
+        if (scan (region, seen, matched, null, null, true))
+            return true;
+        for (int p=0; p<patterns.length; ++p)
+            if (exact[p] == null && mayMatch (p, seen)
+                    && patterns[p].found (region))
+                return true;
+        return false;
+    }
+
+    Region[][] allMatches (Region region) {
+        int n = patterns.length;
+        boolean[] seen = new boolean[nLiterals];
+        boolean[] matched = new boolean[n];
+        int[][] starts = new int[n][];
+        int[] counts = new int[n];
+        scan (region, seen, matched, starts, counts, false);
+
+        Region[][] result = new Region[n][];
+        for (int p=0; p<n; ++p) {
+            if (exact[p] != null)
+                result[p] = literalMatches (region, p, starts[p], counts[p]);
+            else if (mayMatch (p, seen))
+                result[p] = patterns[p].allMatches (region);
+            else
+                result[p] = new Region[0];
+        }
+        return result;
+    }
+
+    /*
+     * Run the automaton over a region, noting the literals that occur
+     * in seen[] and the literal patterns that match in matched[].  If
+     * starts is not null, also collect the start of each match of a 
+     * literal pattern (leftmost first, not overlapping, like its own
+     * matcher would).  Returns true if stopEarly and a literal pattern 
+     * matched.
+     */
+    boolean scan (Region region, boolean[] seen, boolean[] matched, 
+                  int[][] starts, int[] counts, boolean stopEarly) {
+        if (automaton == null)
+            return false;
+        CharSequence text = region.getSource ().getContentChars ();
+        if (text == null)
+            return false;
+
+        LiteralAutomaton a = automaton;
+        int[] lastEnd = (starts != null) ? new int[patterns.length] : null;
+        int state = 0;
+        for (int i=region.getStart (), end=region.getEnd (); i<end; ++i) {
+            state = a.step (state, text.charAt (i));
+            int[] out = a.out[state];
+            if (out == null)
+                continue;
+
+            for (int k=0; k<out.length; ++k) {
+                int id = out[k];
+                seen[id] = true;
+                int[] users = exactPatterns[id];
+                if (users == null)
+                    continue;
+
+                int start = i + 1 - a.lengths[id];
+                for (int u=0; u<users.length; ++u) {
+                    int p = users[u];
+                    if (!caseless[p] && !sameChars (text, start, exact[p]))
+                        continue;
+                    matched[p] = true;
+                    if (stopEarly)
+                        return true;
+                    if (starts != null && start >= lastEnd[p]) {
+                        int[] s = starts[p];
+                        if (s == null)
+                            starts[p] = s = new int[8];
+                        else if (counts[p] == s.length) {
+                            int[] news = new int[2*s.length];
+                            System.arraycopy (s, 0, news, 0, s.length);
+                            starts[p] = s = news;
+                        }
+                        s[counts[p]++] = start;
+                        lastEnd[p] = i + 1;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    static boolean sameChars (CharSequence text, int start, String s) {
+        for (int j=0, n=s.length (); j<n; ++j)
+            if (text.charAt (start + j) != s.charAt (j))
+                return false;
+        return true;
+    }
+
+    boolean mayMatch (int p, boolean[] seen) {
+        int[][] alts = required[p];
+        if (alts == null)
+            return true;
+        for (int a=0; a<alts.length; ++a) {
+            int k = 0;
+            while (k < alts[a].length && seen[alts[a][k]])
+                ++k;
+            if (k == alts[a].length)
+                return true;
+        }
+        return false;
+    }
+
+    Region[] literalMatches (Region region, int p, int[] starts, int count) {
+        Page page = region.getSource ();
+        int len = exact[p].length ();
+        Region[] result = new Region[count];
+        for (int i=0; i<count; ++i) {
+            int start = starts[i];
+            if (patterns[p] instanceof JavaRegexp)
+                result[i] = new RegexpMatch (page, start, start + len, 
+                                             ((JavaRegexp)patterns[p]).fields,
+                                             new int[0]);
+            else {
+                result[i] = new Region (page, start, start + len);
+                result[i].setFields (Pattern.groups, new Region[0]);
+            }
+        }
+        return result;
+    }
+}
+
+/*
+ * Aho-Corasick automaton, recognizing all the occurrences of a set of
+ * literal strings in one pass.  ASCII letters match regardless of 
+ * case.  ASCII characters are looked up in a transition table; other
+ * characters follow the trie and its failure links.
+ */
+class LiteralAutomaton {
+    // largest automaton with a transition table (128 ints per state)
+    static final int MAX_TABLE_STATES = 1 << 14;
+
+    int[] lengths;          // length of each literal
+    char[][] keys;          // characters of each state's trie edges, sorted
+    int[][] targets;        // and the states they lead to
+    int[] fail;             // failure link of each state
+    int[][] out;            // literals ending at each state, or null
+    int[] table;            // next state, by state*128 + ASCII character,
+                            // or null
+
+    LiteralAutomaton (String[] literals) {
+        // trie
+        Vector edges = new Vector ();
+        Vector ends = new Vector ();
+        edges.addElement (new Hashtable ());
+        ends.addElement (null);
+        lengths = new int[literals.length];
+        for (int l=0; l<literals.length; ++l) {
+            String lit = literals[l];
+            lengths[l] = lit.length ();
+            int state = 0;
+            for (int k=0; k<lit.length (); ++k) {
+                Hashtable e = (Hashtable)edges.elementAt (state);
+                Character c = new Character (fold (lit.charAt (k)));
+                Integer next = (Integer)e.get (c);
+                if (next == null) {
+                    next = new Integer (edges.size ());
+                    e.put (c, next);
+                    edges.addElement (new Hashtable ());
+                    ends.addElement (null);
+                }
+                state = next.intValue ();
+            }
+            Vector v = (Vector)ends.elementAt (state);
+            if (v == null)
+                ends.setElementAt (v = new Vector (), state);
+            v.addElement (new Integer (l));
+        }
+
+        int n = edges.size ();
+        keys = new char[n][];
+        targets = new int[n][];
+        for (int s=0; s<n; ++s) {
+            Hashtable e = (Hashtable)edges.elementAt (s);
+            char[] k = new char[e.size ()];
+            int j = 0;
+            for (java.util.Enumeration en = e.keys (); en.hasMoreElements (); )
+                k[j++] = ((Character)en.nextElement ()).charValue ();
+            Arrays.sort (k);
+            int[] t = new int[k.length];
+            for (j=0; j<k.length; ++j)
+                t[j] = ((Integer)e.get (new Character (k[j]))).intValue ();
+            keys[s] = k;
+            targets[s] = t;
+        }
+
+        // failure links, outputs and transition table, breadth first
+        fail = new int[n];
+        out = new int[n][];
+        table = (n <= MAX_TABLE_STATES) ? new int[n << 7] : null;
+        int[] queue = new int[n];
+        int head = 0, tail = 0;
+        queue[tail++] = 0;
+        while (head < tail) {
+            int r = queue[head++];
+            out[r] = merge ((Vector)ends.elementAt (r), 
+                            (r == 0) ? null : out[fail[r]]);
+
+            for (int j=0; j<keys[r].length; ++j) {
+                char c = keys[r][j];
+                int s = targets[r][j];
+                if (r == 0)
+                    fail[s] = 0;
+                else {
+                    int f = fail[r];
+                    int t;
+                    while ((t = edge (f, c)) < 0 && f != 0)
+                        f = fail[f];
+                    fail[s] = (t >= 0) ? t : 0;
+                }
+                queue[tail++] = s;
+            }
+
+            if (table != null)
+                for (int c=0; c<128; ++c) {
+                    int t = edge (r, (char)c);
+                    if (t < 0)
+                        t = (r == 0) ? 0 : table[(fail[r] << 7) | c];
+                    table[(r << 7) | c] = t;
+                }
+        }
+    }
+
+    static int[] merge (Vector own, int[] inherited) {
+        int n = (own != null) ? own.size () : 0;
+        if (n == 0)
+            return inherited;
+        int m = (inherited != null) ? inherited.length : 0;
+        int[] result = new int[n + m];
+        for (int i=0; i<n; ++i)
+            result[i] = ((Integer)own.elementAt (i)).intValue ();
+        if (m > 0)
+            System.arraycopy (inherited, 0, result, n, m);
+        return result;
+    }
+
+    static char fold (char c) {
+        return (c >= 'A' && c <= 'Z') ? (char)(c + ('a' - 'A')) : c;
+    }
+
+    static String fold (String s) {
+        StringBuffer buf = new StringBuffer (s.length ());
+        for (int i=0; i<s.length (); ++i)
+            buf.append (fold (s.charAt (i)));
+        return buf.toString ();
+    }
+
+    int edge (int state, char c) {
+        char[] k = keys[state];
+        int lo = 0, hi = k.length - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            if (k[mid] < c)
+                lo = mid + 1;
+            else if (k[mid] > c)
+                hi = mid - 1;
+            else
+                return targets[state][mid];
+        }
+        return -1;
+    }
+
+    int step (int state, char c) {
+        c = fold (c);
+        if (c < 128 && table != null)
+            return table[(state << 7) | c];
+        while (true) {
+            int t = edge (state, c);
+            if (t >= 0 || state == 0)
+                return (t >= 0) ? t : 0;
+            state = fail[state];
+        }
+    }
+}
+
+/*
+ * Literal strings that every match of a regular expression must 
+ * contain, as far as a simple reading of the expression can tell.
+ * Only literal characters outside of groups with alternatives and 
+ * not made optional by a quantifier count; anything the reading
+ * doesn't understand leaves the expression without literals, so
+ * it's always run.
+ */
+class RequiredLiterals {
+    static final int ALLOWED_FLAGS = java.util.regex.Pattern.CASE_INSENSITIVE
+                                     | java.util.regex.Pattern.MULTILINE
+                                     | java.util.regex.Pattern.DOTALL
+                                     | java.util.regex.Pattern.UNIX_LINES;
+
+    // kinds of quantifier
+    static final int ONCE = 0;
+    static final int OPTIONAL = 1;
+    static final int REPEATED = 2;
+
+    String s;
+    boolean javaSyntax;     // java.util.regex syntax, or jakarta regexp
+    boolean failed;
+    boolean plain = true;   // nothing but literal characters seen
+    int escaped;            // character denoted by the last escape, or -1
+    int quantifierEnd;      // end of the last quantifier
+
+    /**
+     * Literals required by each top-level alternative, or null if 
+     * some alternative has none.
+     */
+    String[][] alternatives;
+
+    /**
+     * The literal string the expression consists of, or null.
+     */
+    String exact;
+    boolean caseless;
+
+    static RequiredLiterals of (Pattern pattern) {
+        Class c = pattern.getClass ();
+        if (c == Regexp.class || c == Wildcard.class)
+            return new RequiredLiterals (((Regexp)pattern).stringRep, false, 0);
+        if (c == JavaRegexp.class) {
+            JavaRegexp j = (JavaRegexp)pattern;
+            return new RequiredLiterals (j.stringRep, true, j.flags);
+        }
+        return null;
+    }
+
+    RequiredLiterals (String re, boolean javaSyntax, int flags) {
+        this.s = re;
+        this.javaSyntax = javaSyntax;
+        if ((flags & ~ALLOWED_FLAGS) != 0)
+            return;
+        caseless = (flags & java.util.regex.Pattern.CASE_INSENSITIVE) != 0;
+
+        Vector alts = split (0, s.length ());
+        if (alts == null)
+            return;
+        String[][] result = new String[alts.size ()][];
+        for (int a=0; a<result.length; ++a) {
+            int[] range = (int[])alts.elementAt (a);
+            Vector runs = new Vector ();
+            sequence (range[0], range[1], runs);
+            if (failed)
+                return;
+            result[a] = select (runs);
+            if (result[a] == null)
+                return;
+        }
+        alternatives = result;
+        if (plain && result.length == 1)
+            exact = result[0][0];
+    }
+
+    /*
+     * Pick the runs to look for: those at least two characters long 
+     * if there are any (single characters hardly filter anything), 
+     * without duplicates.
+     */
+    static String[] select (Vector runs) {
+        int min = 1;
+        for (int i=0; i<runs.size (); ++i)
+            if (((String)runs.elementAt (i)).length () >= 2)
+                min = 2;
+        Vector v = new Vector ();
+        for (int i=0; i<runs.size (); ++i) {
+            String run = (String)runs.elementAt (i);
+            if (run.length () >= min && !v.contains (run))
+                v.addElement (run);
+        }
+        if (v.size () == 0)
+            return null;
+        String[] result = new String[v.size ()];
+        v.copyInto (result);
+        return result;
+    }
+
+    /*
+     * Split s[from,to) at its top-level |'s.  Returns the [start,end)
+     * of each alternative, or null if the expression is malformed.
+     */
+    Vector split (int from, int to) {
+        Vector v = new Vector ();
+        int start = from;
+        int i = from;
+        while (i < to) {
+            char c = s.charAt (i);
+            if (c == '|') {
+                v.addElement (new int[] { start, i });
+                start = ++i;
+            }
+            else {
+                if (c == '\\')
+                    i = skipEscape (i);
+                else if (c == '[')
+                    i = skipClass (i);
+                else if (c == '(')
+                    i = skipGroup (i);
+                else
+                    ++i;
+                if (i < 0 || i > to)
+                    return null;
+            }
+        }
+        v.addElement (new int[] { start, to });
+        return v;
+    }
+
+    /*
+     * Collect the runs of literal characters that a match of the
+     * sequence s[from,to) must contain.
+     */
+    void sequence (int from, int to, Vector runs) {
+        StringBuffer run = new StringBuffer ();
+        int i = from;
+        while (i < to && !failed) {
+            char c = s.charAt (i);
+            int next;
+            int literal = -1;
+            switch (c) {
+              case '\\':
+                next = skipEscape (i);
+                literal = escaped;
+                break;
+              case '[':
+                next = skipClass (i);
+                break;
+              case '(':
+                next = skipGroup (i);
+                break;
+              case '.':
+              case '^':
+              case '$':
+                next = i+1;
+                break;
+              case '*':
+              case '+':
+              case '?':
+              case '{':
+              case '|':
+              case ')':
+                next = -1;
+                break;
+              default:
+                literal = c;
+                next = i+1;
+                break;
+            }
+            if (next < 0 || next > to) {
+                failed = true;
+                return;
+            }
+
+            int q = quantifier (next);
+            int end = quantifierEnd;
+            if (failed || end > to) {
+                failed = true;
+                return;
+            }
+            if (literal >= 0 && q != OPTIONAL)
+                run.append ((char)literal);
+            if (literal < 0 || q != ONCE) {
+                plain = false;
+                endRun (run, runs);
+            }
+            if (c == '(' && q != OPTIONAL)
+                group (i, next, runs);
+            i = end;
+        }
+        endRun (run, runs);
+    }
+
+    static void endRun (StringBuffer run, Vector runs) {
+        if (run.length () > 0) {
+            runs.addElement (run.toString ());
+            run.setLength (0);
+        }
+    }
+
+    /*
+     * Collect the runs of a group s[start,end) that isn't optional.
+     * Only groups without alternatives are read; lookarounds and 
+     * other special groups are skipped.
+     */
+    void group (int start, int end, Vector runs) {
+        int from = start+1;
+        int to = end-1;
+        if (s.startsWith ("?", from)) {
+            if (s.startsWith ("?{", from)) {
+                // named field
+                from = s.indexOf ('}', from) + 1;
+                if (from <= 0 || from > to) {
+                    failed = true;
+                    return;
+                }
+            }
+            else if (s.startsWith ("?<", from) && !s.startsWith ("?<=", from)
+                     && !s.startsWith ("?<!", from)) {
+                // named group
+                from = s.indexOf ('>', from) + 1;
+                if (from <= 0 || from > to) {
+                    failed = true;
+                    return;
+                }
+            }
+            else {
+                // flags, possibly for a non-capturing group
+                int j = from+1;
+                while (j < to && (Character.isLetter (s.charAt (j)) 
+                                  || s.charAt (j) == '-')) {
+                    if ("imsd-".indexOf (s.charAt (j)) < 0) {
+                        failed = true;
+                        return;
+                    }
+                    ++j;
+                }
+                if (j == to || s.charAt (j) != ':')
+                    return;
+                from = j+1;
+            }
+        }
+
+        Vector alts = split (from, to);
+        if (alts == null)
+            failed = true;
+        else if (alts.size () == 1)
+            sequence (from, to, runs);
+    }
+
+    /*
+     * Read the quantifier (if any) at s[i], leaving its end in 
+     * quantifierEnd.  A counted repetition counts as optional.
+     */
+    int quantifier (int i) {
+        quantifierEnd = i;
+        if (i >= s.length ())
+            return ONCE;
+        int kind;
+        switch (s.charAt (i)) {
+          case '*':
+          case '?':
+            kind = OPTIONAL;
+            quantifierEnd = i+1;
+            break;
+          case '+':
+            kind = REPEATED;
+            quantifierEnd = i+1;
+            break;
+          case '{':
+            kind = OPTIONAL;
+            quantifierEnd = s.indexOf ('}', i) + 1;
+            if (quantifierEnd <= 0) {
+                failed = true;
+                return ONCE;
+            }
+            break;
+          default:
+            return ONCE;
+        }
+        // reluctant or possessive
+        if (quantifierEnd < s.length () 
+                && (s.charAt (quantifierEnd) == '?' || s.charAt (quantifierEnd) == '+'))
+            ++quantifierEnd;
+        return kind;
+    }
+
+    /*
+     * Skip the escape at s[i], leaving the character it stands for in 
+     * escaped (-1 for character classes, anchors, back references and 
+     * so on).  Returns the end of the escape, or -1.
+     */
+    int skipEscape (int i) {
+        escaped = -1;
+        if (i+1 >= s.length ())
+            return -1;
+        char c = s.charAt (i+1);
+        i += 2;
+        if (c >= 128)
+            return i;
+        if (!Character.isLetterOrDigit (c)) {
+            escaped = c;
+            return i;
+        }
+        switch (c) {
+          case 'Q':
+            // quoting isn't read
+            return -1;
+          case '0':
+            return skipDigits (i, 3, 8);
+          case 'x':
+            return s.startsWith ("{", i) ? skipPast (i, '}') : skipDigits (i, 2, 16);
+          case 'u':
+            return skipDigits (i, 4, 16);
+          case 'c':
+            return (i < s.length ()) ? i+1 : -1;
+          case 'k':
+            return skipPast (i, '>');
+          case 'p':
+          case 'P':
+          case 'N':
+            return s.startsWith ("{", i) ? skipPast (i, '}') : i+1;
+          default:
+            if (c >= '1' && c <= '9')
+                return skipDigits (i, Integer.MAX_VALUE, 10);
+            return i;
+        }
+    }
+
+    int skipDigits (int i, int max, int radix) {
+        for (int n=0; n<max && i<s.length () 
+                 && Character.digit (s.charAt (i), radix) >= 0; ++n)
+            ++i;
+        return i;
+    }
+
+    int skipPast (int i, char c) {
+        int j = s.indexOf (c, i);
+        return (j < 0) ? -1 : j+1;
+    }
+
+    /*
+     * Skip the character class at s[i].  Returns its end, or -1.
+     */
+    int skipClass (int i) {
+        int len = s.length ();
+        int depth = 1;
+        ++i;
+        if (i < len && s.charAt (i) == '^')
+            ++i;
+        if (i < len && s.charAt (i) == ']')
+            ++i;
+        while (i < len) {
+            char c = s.charAt (i);
+            if (c == '\\') {
+                i = skipEscape (i);
+                if (i < 0)
+                    return -1;
+            }
+            else if (c == '[' && javaSyntax) {
+                // nested class
+                ++depth;
+                ++i;
+            }
+            else if (c == '[' && s.startsWith ("[:", i)) {
+                // POSIX class
+                i = s.indexOf (":]", i+2);
+                if (i < 0)
+                    return -1;
+                i += 2;
+            }
+            else if (c == ']') {
+                ++i;
+                if (--depth == 0)
+                    return i;
+            }
+            else
+                ++i;
+        }
+        return -1;
+    }
+
+    /*
+     * Skip the group at s[i].  Returns its end, or -1.
+     */
+    int skipGroup (int i) {
+        int len = s.length ();
+        int depth = 0;
+        while (i < len) {
+            char c = s.charAt (i);
+            if (c == '\\')
+                i = skipEscape (i);
+            else if (c == '[')
+                i = skipClass (i);
+            else {
+                ++i;
+                if (c == '(')
+                    ++depth;
+                else if (c == ')' && --depth == 0)
+                    return i;
+            }
+            if (i < 0)
+                return -1;
+        }
+        return -1;
+    }
+}
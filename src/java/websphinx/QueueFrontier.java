@@ -0,0 +1,101 @@
+/*
+ * WebSphinx web-crawling toolkit
+ *
+ * Copyright (c) 1998-2002 Carnegie Mellon University.  All rights
+ * reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in
+ *    the documentation and/or other materials provided with the
+ *    distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY CARNEGIE MELLON UNIVERSITY ``AS IS'' AND
+ * ANY EXPRESSED OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ * THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED.  IN NO EVENT SHALL CARNEGIE MELLON UNIVERSITY
+ * NOR ITS EMPLOYEES BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+
+package websphinx;
+
+import java.util.Enumeration;
+import rcm.util.PriorityQueue;
+
+/**
+ * Frontier backed by the original rcm.util.PriorityQueue.  delete() 
+ * and update() take linear time.  Kept for crawlers that depend on 
+ * the legacy queue's behavior, such as allowing the same link to be 
+ * queued more than once.
+ */
+public class QueueFrontier implements Frontier {
+
+    private PriorityQueue q;
+
+    /**
+     * Make an empty QueueFrontier.
+     */
+    public QueueFrontier () {
+        q = new PriorityQueue ();
+    }
+
+    public void put (Link link) {
+        q.put (link);
+    }
+
+    public Link getMin () {
+        return (Link)q.getMin ();
+    }
+
+    public Link deleteMin () {
+        return (Link)q.deleteMin ();
+    }
+
+    public boolean delete (Link link) {
+        return q.delete (link);
+    }
+
+    public boolean update (Link link) {
+        if (!q.delete (link))
+            return false;
+        q.put (link);
+        return true;
+    }
+
+    public boolean release (Link link) {
+        return false;
+    }
+
+    public long getWaitTime () {
+        return 0;
+    }
+
+    public void clear () {
+        q.clear ();
+    }
+
+    public Enumeration elements () {
+        return q.elements ();
+    }
+
+    public int size () {
+        return q.size ();
+    }
+
+    public boolean empty () {
+        return q.empty ();
+    }
+}
@@ -49,6 +49,13 @@ public class Regexp extends Pattern {
         stringRep = pattern;
         init ();
     }
+
+    /*
+     * For subclasses that set up stringRep, pattern and fields 
+     * themselves.
+     */
+    Regexp () {
+    }
     
     public boolean equals (Object object) {
         if (! (object instanceof Regexp))
@@ -66,7 +73,7 @@ public class Regexp extends Pattern {
     //#endif JDK1.1
 
     
-    private void init () {
+    void init () {
         try {
             this.pattern = new org.apache.regexp.RECompiler ().compile (translateFields (stringRep));
         } catch (org.apache.regexp.RESyntaxException e) {
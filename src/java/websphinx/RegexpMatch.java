@@ -0,0 +1,103 @@
+/*
+ * WebSphinx web-crawling toolkit
+ *
+ * Copyright (c) 1998-2002 Carnegie Mellon University.  All rights
+ * reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in
+ *    the documentation and/or other materials provided with the
+ *    distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY CARNEGIE MELLON UNIVERSITY ``AS IS'' AND
+ * ANY EXPRESSED OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ * THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED.  IN NO EVENT SHALL CARNEGIE MELLON UNIVERSITY
+ * NOR ITS EMPLOYEES BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+
+package websphinx;
+
+import java.util.Enumeration;
+
+/**
+ * Match of a JavaRegexp, or of a regular expression in a PatternSet.
+ * Its groups are kept as offsets, and made into Regions (labelled 
+ * with the pattern's field names and with Pattern.groups) the first
+ * time the match's labels are used.
+ */
+class RegexpMatch extends Region {
+    String[] fields;
+    int[] bounds;   // start and end of each group (-1 if it didn't 
+                    // match), or null once the groups are labels
+
+    RegexpMatch (Page page, int start, int end, String[] fields, int[] bounds) {
+        super (page, start, end);
+        this.fields = fields;
+        this.bounds = bounds;
+    }
+
+    void makeLabels () {
+        int[] b = bounds;
+        if (b == null)
+            return;
+        bounds = null;
+
+        Region[] groups = new Region[b.length/2];
+        for (int i=0; i<groups.length; ++i)
+            if (b[2*i] >= 0) {
+                groups[i] = new Region (source, b[2*i], b[2*i+1]);
+                super.setObjectLabel (fields[i], groups[i]);
+            }
+        super.setObjectLabel (Pattern.groups, groups);
+    }
+
+    public void setObjectLabel (String name, Object value) {
+        makeLabels ();
+        super.setObjectLabel (name, value);
+    }
+
+    public Object getObjectLabel (String name) {
+        makeLabels ();
+        return super.getObjectLabel (name);
+    }
+
+    public Enumeration enumerateObjectLabels () {
+        makeLabels ();
+        return super.enumerateObjectLabels ();
+    }
+
+    public boolean hasLabel (String name) {
+        makeLabels ();
+        return super.hasLabel (name);
+    }
+
+    public boolean hasAnyLabels (LabelSet labels) {
+        makeLabels ();
+        return super.hasAnyLabels (labels);
+    }
+
+    public boolean hasAllLabels (LabelSet labels) {
+        makeLabels ();
+        return super.hasAllLabels (labels);
+    }
+
+    public void removeLabel (String name) {
+        makeLabels ();
+        super.removeLabel (name);
+    }
+}
@@ -32,7 +32,6 @@
 
 package websphinx;
 
-import java.util.Hashtable;
 import java.util.StringTokenizer;
 import java.util.Enumeration;
 import rcm.enum.ArrayEnumeration;
@@ -68,8 +67,7 @@ public class Region {
         this.source = region.source;
         this.start = region.start;
         this.end = region.end;
-        if (region.names != null)
-            this.names = (Hashtable)region.names.clone ();
+        copyLabels (region);
     }
 
     /**
@@ -223,10 +221,18 @@ public class Region {
         return new Region (source, start, r.end);
     }
 
-    protected Hashtable names = null;
+    /*
+     * Labels are kept in two parts.  Bit i of labelBits is set if the
+     * region has the label whose id is i (see LabelSet); the value of
+     * such a label is TRUE, unless the label is also in labelList.
+     * labelList holds every other label, as name/value pairs packed at
+     * the front of the array, or is null if there are none.
+     */
+    long labelBits = 0;
+    Object[] labelList = null;
 
     static final int INITIAL_SIZE = 4; 
-            // typically only a handful of names are set
+            // typically only a handful of valued labels are set
 
     /**
      * Default value for labels set with setLabel (name).  Value of TRUE is
@@ -240,12 +246,37 @@ public class Region {
      * @param value value set for label.  If null, the label is removed.
      */
     public void setObjectLabel (String name, Object value) {
+        putLabel (name, value, value == TRUE);
+    }
+
+    /*
+     * Set a label on a tag for one of its HTML attributes.  The 
+     * attribute name is not given an id, so that names like "nowrap"
+     * or "checked" don't use up the ids meant for the labels set by
+     * classifiers and users.
+     */
+    void setAttributeLabel (String name, String value) {
+        putLabel (name, (value != null) ? value : TRUE, false);
+    }
+
+    /*
+     * Set a label, giving its name an id first if intern is true.
+     */
+    private void putLabel (String name, Object value, boolean intern) {
         if (value == null)
             removeLabel (name);
         else {
-            if (names == null)
-                names = new Hashtable (INITIAL_SIZE);
-            names.put (name, value);
+            int id = intern 
+                ? LabelSet.intern (name) 
+                : LabelSet.getId (name);
+            if (id >= 0) {
+                labelBits |= 1L << id;
+                if (value == TRUE) {
+                    removeListedLabel (name);
+                    return;
+                }
+            }
+            putListedLabel (name, value);
         }
     }
 
@@ -255,7 +286,10 @@ public class Region {
      * @return Object value set for label, or null if label not set
      */
     public Object getObjectLabel (String name) {
-        return names != null ? names.get (name) : null;
+        int i = findListedLabel (name);
+        if (i >= 0)
+            return labelList[i+1];
+        return hasLabelBit (name) ? TRUE : null;
     }
 
     /**
@@ -263,7 +297,31 @@ public class Region {
      * @return enumeration producing label names
      */
     public Enumeration enumerateObjectLabels () {
-        return names != null ? names.keys () : new ArrayEnumeration (null);
+        String[] bitNames = new String[LabelSet.MAX_IDS];
+        int n = 0;
+        for (int id=0; id<LabelSet.MAX_IDS; ++id)
+            if ((labelBits & (1L << id)) != 0)
+                bitNames[n++] = LabelSet.getName (id);
+
+        Object[] list = labelList;
+        int len = 0;
+        if (list != null)
+            while (len < list.length && list[len] != null)
+                len += 2;
+
+        String[] result = new String[n + len/2];
+        System.arraycopy (bitNames, 0, result, 0, n);
+        int j = n;
+        for (int i=0; i<len; i+=2)
+            if (!hasLabelBit ((String)list[i]))
+                result[j++] = (String)list[i];
+
+        if (j < result.length) {
+            String[] trimmed = new String[j];
+            System.arraycopy (result, 0, trimmed, 0, j);
+            result = trimmed;
+        }
+        return new ArrayEnumeration (result);
     }
 
     /**
@@ -352,7 +410,7 @@ public class Region {
      * @return true if label is set, otherwise false
      */
     public boolean hasLabel (String name) {
-        return names != null && names.containsKey (name);
+        return hasLabelBit (name) || findListedLabel (name) >= 0;
     }
 
     /** 
@@ -379,6 +437,26 @@ public class Region {
                 return true;
         return false;
     }
+
+    /** 
+     * Test if one or more of a set of labels are set.  Faster than
+     * hasAnyLabels(String[]) when the same labels are tested on many 
+     * regions.
+     * @param labels a compiled set of label names
+     * @return true if region has at least one of the labels
+     */
+    public boolean hasAnyLabels (LabelSet labels) {
+        if ((labelBits & labels.mask) != 0)
+            return true;
+        if (labelList == null)
+            return false;
+
+        String[] names = labels.labels;
+        for (int i=0; i<names.length; ++i)
+            if (findListedLabel (names[i]) >= 0)
+                return true;
+        return false;
+    }
                 
     /** 
      * Test if all of several labels are set.
@@ -404,6 +482,25 @@ public class Region {
                 return false;
         return true;
     }
+
+    /** 
+     * Test if all of a set of labels are set.  Faster than
+     * hasAllLabels(String[]) when the same labels are tested on many 
+     * regions.
+     * @param labels a compiled set of label names
+     * @return true if region has all of the labels
+     */
+    public boolean hasAllLabels (LabelSet labels) {
+        if ((labelBits & labels.mask) != labels.mask)
+            // a label set before its name got an id is only listed
+            return labelList != null && hasAllLabels (labels.labels);
+
+        String[] names = labels.others;
+        for (int i=0; names != null && i<names.length; ++i)
+            if (findListedLabel (names[i]) < 0)
+                return false;
+        return true;
+    }
                 
 
     /**
@@ -411,8 +508,80 @@ public class Region {
      * @param name name of label (case-sensitive, whitespace permitted)
      */
     public void removeLabel (String name) {
-        if (names != null)
-            names.remove (name);
+        int id = LabelSet.getId (name);
+        if (id >= 0)
+            labelBits &= ~(1L << id);
+        removeListedLabel (name);
+    }
+
+    /*
+     * Copy the labels of another region, replacing any labels
+     * this region has.
+     */
+    void copyLabels (Region region) {
+        region.makeLabels ();
+        labelBits = region.labelBits;
+        labelList = (region.labelList != null) 
+            ? (Object[])region.labelList.clone () 
+            : null;
+    }
+
+    /*
+     * Set any labels whose making has been put off until they're 
+     * used (see RegexpMatch).
+     */
+    void makeLabels () {
+    }
+
+    private boolean hasLabelBit (String name) {
+        int id = LabelSet.getId (name);
+        return id >= 0 && (labelBits & (1L << id)) != 0;
+    }
+
+    /*
+     * Find a label in labelList.  Returns the index of its name, 
+     * or -1 if it's not there.
+     */
+    private int findListedLabel (String name) {
+        Object[] list = labelList;
+        if (list == null)
+            return -1;
+        for (int i=0; i<list.length && list[i] != null; i+=2)
+            if (list[i] == name || name.equals (list[i]))
+                return i;
+        return -1;
+    }
+
+    private void putListedLabel (String name, Object value) {
+        int i = findListedLabel (name);
+        if (i < 0) {
+            if (labelList == null)
+                labelList = new Object[INITIAL_SIZE];
+            for (i=0; i<labelList.length && labelList[i] != null; i+=2)
+                ;
+            if (i == labelList.length) {
+                Object[] newList = new Object[labelList.length * 2];
+                System.arraycopy (labelList, 0, newList, 0, labelList.length);
+                labelList = newList;
+            }
+            labelList[i] = name;
+        }
+        labelList[i+1] = value;
+    }
+
+    private void removeListedLabel (String name) {
+        int i = findListedLabel (name);
+        if (i < 0)
+            return;
+
+        int len = i + 2;
+        while (len < labelList.length && labelList[len] != null)
+            len += 2;
+        System.arraycopy (labelList, i+2, labelList, i, len - (i+2));
+        labelList[len-2] = null;
+        labelList[len-1] = null;
+        if (len == 2)
+            labelList = null;
     }
 
     /**
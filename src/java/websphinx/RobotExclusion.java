@@ -32,19 +32,69 @@
 
 package websphinx;
 
+import java.net.HttpURLConnection;
 import java.net.URL;
 import java.net.URLConnection;
+import java.util.Enumeration;
 import java.util.Hashtable;
-import java.io.PushbackInputStream;
 import java.io.BufferedInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.PushbackInputStream;
 import java.util.Vector;
+import rcm.util.Thr;
 
+/**
+ * Cache of robots.txt files, for obeying the Robot Exclusion Standard.
+ * A RobotExclusion may be shared by any number of threads.  Each Web 
+ * site's robots.txt is retrieved only once at a time, always by one
+ * of a few background loader threads; threads that need it while 
+ * it's being retrieved wait for that retrieval.
+ * <P>
+ * Entries expire after getTimeToLive() milliseconds.  An expired 
+ * entry goes on being used while a fresh copy is retrieved in the 
+ * background.  A site without a robots.txt allows everything; a site
+ * whose robots.txt can't be retrieved (because of a network error or
+ * a server error) also allows everything, but only for 
+ * getFailureTimeToLive() milliseconds, after which it's tried again.
+ * <P>
+ * prefetch() starts retrieving a site's robots.txt in the background,
+ * so that it's usually cached by the time the site's first page is
+ * downloaded.  The Crawler prefetches the robots.txt of every link 
+ * it queues, and its fetch queue (a HostScheduler or RobotsFrontier)
+ * holds back a site's links until the site's robots.txt has arrived,
+ * so crawler threads never wait in disallowed().
+ */
 public class RobotExclusion {
 
+    /**
+     * Default time to live of a robots.txt entry: one day.
+     */
+    public static final long DEFAULT_TIME_TO_LIVE = 24 * 60 * 60 * 1000L;
+
+    /**
+     * Default time to live of an entry whose robots.txt couldn't be 
+     * retrieved: 30 minutes.
+     */
+    public static final long DEFAULT_FAILURE_TIME_TO_LIVE = 30 * 60 * 1000L;
+
+    /**
+     * Maximum number of robots.txt files retrieved in the background
+     * at the same time.
+     */
+    public static final int MAX_LOADERS = 8;
+
     String myUserAgent;
         // user agent (name) of this crawler, all lower-case
     Hashtable entries = new Hashtable ();
-        // maps from a website ("host:port") to String[]
+        // maps from a website ("host:port") to RobotsTxt
+    long timeToLive = DEFAULT_TIME_TO_LIVE;
+    long failureTimeToLive = DEFAULT_FAILURE_TIME_TO_LIVE;
+
+    Vector loadQueue = new Vector ();
+        // RobotsTxt entries waiting for a loader thread
+    int loaders = 0;
+        // number of loader threads running
 
     /**
      * Make a RobotExclusion object.
@@ -57,7 +107,10 @@ public class RobotExclusion {
     }
 
     /**
-     * Check whether a URL is disallowed by robots.txt.
+     * Check whether a URL is disallowed by robots.txt.  If the robots.txt
+     * of the URL's Web site isn't cached yet, waits until a loader thread
+     * has retrieved it.  Callers that mustn't block should test 
+     * isCached() first.
      * @param url URL to test
      * @return true if url's Web site denies robot access to the url
      */
@@ -66,13 +119,7 @@ public class RobotExclusion {
             // only HTTP URLs are protected by robots.txt
             return false;
 
-        String website = getWebSite (url);
-        String[] rules = (String[])entries.get (website);
-
-        if (rules == null) {
-            rules = getRobotsTxt (website, myUserAgent);
-            entries.put (website, rules);
-        }
+        String[] rules = lookup (getWebSite (url)).waitForRules ();
 
         String path = url.getFile ();
         for (int i=0; i<rules.length; ++i) {
@@ -86,10 +133,102 @@ public class RobotExclusion {
     }
 
     /**
-     * Clear the cache of robots.txt entries.
+     * Start retrieving the robots.txt of a URL's Web site in the 
+     * background, unless it's already cached (and fresh) or being
+     * retrieved.  Never blocks.
+     * @param url URL whose Web site's robots.txt is wanted
+     */
+    public void prefetch (URL url) {
+        if (url.getProtocol().startsWith ("http"))
+            lookup (getWebSite (url));
+    }
+
+    /**
+     * Test whether the robots.txt of a URL's Web site is cached, so that
+     * disallowed() won't block.  Never blocks.
+     * @param url URL to test
+     * @return true if the robots.txt of url's Web site has been 
+     * retrieved (even if it has since expired), or if url is not
+     * protected by robots.txt at all
+     */
+    public boolean isCached (URL url) {
+        if (!url.getProtocol().startsWith ("http"))
+            return true;
+        RobotsTxt r = (RobotsTxt)entries.get (getWebSite (url));
+        return r != null && r.getRules () != null;
+    }
+
+    /**
+     * Get the Crawl-delay requested by a URL's Web site.
+     * Only robots.txt files already retrieved are consulted; 
+     * this method never blocks on the network.
+     * @param url URL to test
+     * @return minimum delay (in milliseconds) between requests
+     * that the url's Web site asks for, or 0 if its robots.txt
+     * sets no Crawl-delay or has not been retrieved yet.
+     */
+    public int getCrawlDelay (URL url) {
+        RobotsTxt r = (RobotsTxt)entries.get (getWebSite (url));
+        return r != null ? r.getCrawlDelay () : 0;
+    }
+
+    /**
+     * Clear the cache of robots.txt entries.  Threads waiting in 
+     * disallowed() for a robots.txt that hasn't arrived yet are
+     * released as if it couldn't be retrieved.
      */
     public void clear () {
-        entries.clear ();
+        synchronized (loadQueue) {
+            loadQueue.removeAllElements ();
+        }
+        synchronized (entries) {
+            for (Enumeration e = entries.elements (); e.hasMoreElements (); ) {
+                RobotsTxt r = (RobotsTxt)e.nextElement ();
+                if (r.getRules () == null)
+                    // nobody may ever finish this entry now
+                    r.fail (0);
+            }
+            entries.clear ();
+        }
+    }
+
+    /**
+     * Get the time to live of robots.txt entries.
+     * @return time (in milliseconds) after retrieving a robots.txt 
+     * when it's retrieved again
+     */
+    public long getTimeToLive () {
+        return timeToLive;
+    }
+
+    /**
+     * Set the time to live of robots.txt entries.  Entries already
+     * cached keep the time to live they were retrieved with.
+     * @param ms time (in milliseconds) after retrieving a robots.txt 
+     * when it's retrieved again
+     */
+    public void setTimeToLive (long ms) {
+        timeToLive = ms;
+    }
+
+    /**
+     * Get the time to live of entries whose robots.txt couldn't be 
+     * retrieved.
+     * @return time (in milliseconds) after a failed retrieval when 
+     * the robots.txt is tried again
+     */
+    public long getFailureTimeToLive () {
+        return failureTimeToLive;
+    }
+
+    /**
+     * Set the time to live of entries whose robots.txt couldn't be 
+     * retrieved.
+     * @param ms time (in milliseconds) after a failed retrieval when 
+     * the robots.txt is tried again
+     */
+    public void setFailureTimeToLive (long ms) {
+        failureTimeToLive = ms;
     }
 
     /*
@@ -103,71 +242,260 @@ public class RobotExclusion {
         return port != -1 ? hostname + ":" + port : hostname;
     }
 
-    Vector rulebuf = new Vector ();
-    String[] getRobotsTxt (String website, String userAgent) {
+    /*
+     * Get a website's entry, starting to retrieve its robots.txt in
+     * the background if it's missing or expired and nobody else is 
+     * retrieving it.
+     */
+    RobotsTxt lookup (String website) {
+        RobotsTxt r;
+        synchronized (entries) {
+            r = (RobotsTxt)entries.get (website);
+            if (r == null) {
+                r = new RobotsTxt (website);
+                entries.put (website, r);
+            }
+        }
+
+        if (r.startLoading (System.currentTimeMillis ()))
+            enqueue (r);
+        return r;
+    }
+
+    void enqueue (RobotsTxt r) {
+        synchronized (loadQueue) {
+            loadQueue.addElement (r);
+            if (loaders < MAX_LOADERS) {
+                ++loaders;
+                Thr.makeLightweight (new Runnable () {
+                        public void run () {
+                            runLoader ();
+                        }
+                    }, "robots.txt loader").start ();
+            }
+        }
+    }
+
+    /*
+     * Loader thread body: retrieve queued robots.txt files until 
+     * the queue is empty.
+     */
+    void runLoader () {
+        while (true) {
+            RobotsTxt r;
+            synchronized (loadQueue) {
+                if (loadQueue.isEmpty ()) {
+                    --loaders;
+                    return;
+                }
+                r = (RobotsTxt)loadQueue.elementAt (0);
+                loadQueue.removeElementAt (0);
+            }
+            load (r);
+        }
+    }
+
+    /*
+     * Retrieve and parse a website's robots.txt into its entry.
+     */
+    void load (RobotsTxt r) {
+        long now = System.currentTimeMillis ();
         try {
-            URL robotstxtURL = new URL ("http://" + website + "/robots.txt");
-            URLConnection uc = Access.getAccess ().openConnection (robotstxtURL);
+            Link link = new Link (new URL ("http://" + r.website + "/robots.txt"));
+            link.setDownloadParameters (DownloadParameters.DEFAULT);
+            URLConnection uc = Access.getAccess ().openConnection (link);
+
+            int code = (uc instanceof HttpURLConnection)
+                ? ((HttpURLConnection)uc).getResponseCode () : 200;
+            if (code >= 500)
+                throw new IOException ("HTTP " + code);
+            if (code >= 400) {
+                // no robots.txt, so everything is allowed
+                r.finish (new String[0], 0, now + timeToLive);
+                return;
+            }
+
             PushbackInputStream in = new PushbackInputStream (new BufferedInputStream (uc.getInputStream ()));
+            try {
+                parse (new RobotsTxtReader (in), myUserAgent, r, now + timeToLive);
+            } finally {
+                in.close ();
+            }
+        } catch (FileNotFoundException e) {
+            r.finish (new String[0], 0, now + timeToLive);
+        } catch (ThreadDeath e) {
+            r.fail (now + failureTimeToLive);
+            throw e;
+        } catch (Throwable e) {
+            // debugging only
+            // System.err.println ("RobotExclusion: error while retrieving " + r.website + "/robots.txt:");
+            // e.printStackTrace ();
+            r.fail (now + failureTimeToLive);
+        }
+    }
 
-            rulebuf.setSize (0);
+    void parse (RobotsTxtReader in, String userAgent, RobotsTxt r, long expires) 
+            throws IOException {
+        Vector rulebuf = new Vector ();
 
-            boolean relevant = false, specific = false;
-            String lastFieldName = null;
-            while (readField (in)) {
-                //System.err.println (fieldName + ":" + fieldValue);
+        boolean relevant = false, specific = false;
+        int crawlDelay = 0;
+        String lastFieldName = null;
+        while (in.readField ()) {
+            String fieldName = in.fieldName;
+            String fieldValue = in.fieldValue;
+            //System.err.println (fieldName + ":" + fieldValue);
 
-                if (fieldName == null) { // end of record
+            if (fieldName == null) { // end of record
+                if (specific)
+                    break; // while loop
+                relevant = false;
+            }
+            else if (fieldName.equals ("user-agent")) {
+                if (lastFieldName != null
+                    && (lastFieldName.equals ("disallow")
+                        || lastFieldName.equals ("crawl-delay"))) {
+                    // end of record
                     if (specific)
                         break; // while loop
                     relevant = false;
                 }
-                else if (fieldName.equals ("user-agent")) {
-                    if (lastFieldName != null && lastFieldName.equals ("disallow")) {
-                        // end of record
-                        if (specific)
-                            break; // while loop
-                        relevant = false;
-                    }
-
-                    if (userAgent != null && userAgent.indexOf (fieldValue.toLowerCase()) != -1) {
-                        relevant = true;
-                        specific = true;
-                        rulebuf.setSize (0);
-                    }
-                    else if (fieldValue.equals ("*")) {
-                        relevant = true;
-                        rulebuf.setSize (0);
-                    }
+
+                if (userAgent != null && userAgent.indexOf (fieldValue.toLowerCase()) != -1) {
+                    relevant = true;
+                    specific = true;
+                    rulebuf.setSize (0);
+                    crawlDelay = 0;
                 }
-                else if (relevant && fieldName.equals ("disallow")) {
-                    rulebuf.addElement (fieldValue);
+                else if (fieldValue.equals ("*")) {
+                    relevant = true;
+                    rulebuf.setSize (0);
+                    crawlDelay = 0;
                 }
-                else { // end of record
-                    if (specific)
-                        break; // while loop
-                    relevant = false;
+            }
+            else if (relevant && fieldName.equals ("disallow")) {
+                rulebuf.addElement (fieldValue);
+            }
+            else if (fieldName.equals ("crawl-delay")) {
+                // Crawl-delay is given in seconds, possibly fractional
+                if (relevant) {
+                    try {
+                        double seconds = Double.parseDouble (fieldValue);
+                        if (seconds >= 0) // false for NaN
+                            crawlDelay = (int)Math.min (seconds * 1000, 
+                                                        Integer.MAX_VALUE);
+                    } catch (NumberFormatException e) {}
                 }
-                lastFieldName = fieldName;
             }
+            else { // end of record
+                if (specific)
+                    break; // while loop
+                relevant = false;
+            }
+            lastFieldName = fieldName;
+        }
 
-            in.close ();
+        String[] rules = new String[rulebuf.size ()];
+        rulebuf.copyInto (rules);
+        r.finish (rules, crawlDelay, expires);
+    }
 
-            String[] rules = new String[rulebuf.size ()];
-            rulebuf.copyInto (rules);
-            return rules;
-        } catch (Exception e) {
-            // debugging only
-            // System.err.println ("RobotExclusion: error while retrieving " + website + "/robots.txt:");
-            // e.printStackTrace ();
-            return new String[0];
+    public static void main (String argv[]) throws Exception {
+        RobotExclusion robot = new RobotExclusion (argv[0]);
+
+        for (int i=1; i<argv.length; ++i) {
+            System.out.println (argv[i] + ": "
+                    + (!robot.disallowed (new URL (argv[i])) ? "OK" : "disallowed"));
         }
+        System.in.read ();
+    }
+}
+
+/*
+ * Robots.txt entry of one Web site.  rules is null until the first
+ * retrieval finishes; threads that need it wait on the entry.
+ */
+class RobotsTxt {
+    String website;         // "host:port"
+    String[] rules;         // disallowed path prefixes
+    int crawlDelay;         // in milliseconds
+    long expires;           // time when the entry must be refreshed
+    boolean loading;        // being retrieved
+
+    RobotsTxt (String website) {
+        this.website = website;
     }
 
-    String fieldName, fieldValue;
+    synchronized String[] getRules () {
+        return rules;
+    }
+
+    synchronized int getCrawlDelay () {
+        return crawlDelay;
+    }
+
+    /*
+     * Claim the retrieval of the entry, if it's missing or expired
+     * and nobody else has claimed it.
+     */
+    synchronized boolean startLoading (long now) {
+        if (loading || (rules != null && expires > now))
+            return false;
+        loading = true;
+        return true;
+    }
+
+    synchronized String[] waitForRules () {
+        boolean interrupted = false;
+        while (rules == null) {
+            try {
+                wait ();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted)
+            Thread.currentThread ().interrupt ();
+        return rules;
+    }
+
+    synchronized void finish (String[] rules, int crawlDelay, long expires) {
+        this.rules = rules;
+        this.crawlDelay = crawlDelay;
+        this.expires = expires;
+        loading = false;
+        notifyAll ();
+    }
+
+    /*
+     * The robots.txt couldn't be retrieved.  Go on using the old rules,
+     * if any; otherwise allow everything.
+     */
+    synchronized void fail (long expires) {
+        if (rules == null) {
+            rules = new String[0];
+            crawlDelay = 0;
+        }
+        this.expires = expires;
+        loading = false;
+        notifyAll ();
+    }
+}
+
+/*
+ * Reads robots.txt lines one field at a time.
+ */
+class RobotsTxtReader {
     static final int MAX_LINE_LENGTH = 1024;
+
+    PushbackInputStream in;
+    String fieldName, fieldValue;
     StringBuffer linebuf = new StringBuffer ();
 
+    RobotsTxtReader (PushbackInputStream in) {
+        this.in = in;
+    }
+
     // Reads one line from the input stream, parsing it into
     // fieldName and fieldValue.  Field name is lower case;
     // whitespace is stripped at both ends of name and value.
@@ -175,7 +503,7 @@ public class RobotExclusion {
     // is parsed into fieldName="user-agent" and fieldValue="Webcrawler".
     // Field-less lines are parsed as fieldName=null and fieldValue=null.
     // Returns true if a line was read, false on end-of-file.
-    boolean readField (PushbackInputStream in) throws Exception {
+    boolean readField () throws IOException {
         fieldName = null;
         fieldValue = null;
         linebuf.setLength (0);
@@ -220,14 +548,4 @@ public class RobotExclusion {
         }
         return true;
     }
-
-    public static void main (String argv[]) throws Exception {
-        RobotExclusion robot = new RobotExclusion (argv[0]);
-
-        for (int i=1; i<argv.length; ++i) {
-            System.out.println (argv[i] + ": "
-                    + (!robot.disallowed (new URL (argv[i])) ? "OK" : "disallowed"));
-        }
-        System.in.read ();
-    }
 }
@@ -0,0 +1,220 @@
+/*
+ * WebSphinx web-crawling toolkit
+ *
+ * Copyright (c) 1998-2002 Carnegie Mellon University.  All rights
+ * reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in
+ *    the documentation and/or other materials provided with the
+ *    distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY CARNEGIE MELLON UNIVERSITY ``AS IS'' AND
+ * ANY EXPRESSED OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ * THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED.  IN NO EVENT SHALL CARNEGIE MELLON UNIVERSITY
+ * NOR ITS EMPLOYEES BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+package websphinx;
+
+import java.net.URL;
+import java.util.Enumeration;
+import java.util.Hashtable;
+import java.util.Vector;
+
+/**
+ * Fetch queue that holds back links whose robots.txt hasn't been 
+ * retrieved yet, so that no thread waits for a robots.txt after 
+ * deleteMin().  The first time such a link reaches the head of the
+ * queue, its robots.txt is prefetched and the link is set aside with 
+ * the other held links from its Web site; once the robots.txt is 
+ * cached, the site's links go back in the queue.  HostScheduler does
+ * the same for polite crawls, which include every crawl whose download
+ * parameters obey robots.txt; the Crawler wraps its other fetch queues
+ * in a RobotsFrontier for the links that carry download parameters
+ * of their own.
+ */
+class RobotsFrontier implements Frontier {
+
+    static final int MAX_HELD = 1000;
+        // most links held back at once; deleteMin() returns null 
+        // rather than pull more links out of the queue
+    static final int ROBOTS_POLL = HostScheduler.ROBOTS_POLL;
+        // interval between checks for held sites' robots.txt (ms)
+
+    Frontier queue;
+        // links that may be fetched now, or whose robots.txt 
+        // hasn't been checked yet
+    DownloadParameters dp;
+        // defaults for links that carry no download parameters
+    RobotExclusion robots;
+        // robots.txt cache
+
+    Hashtable held = new Hashtable ();
+        // maps a website ("host:port") to a Vector of held links
+    int nHeld = 0;
+        // number of links held back
+
+    /**
+     * Make a RobotsFrontier.
+     * @param queue frontier holding the links that aren't held back
+     * @param dp download parameters used for links that have none
+     * @param robots robot exclusion cache
+     */
+    RobotsFrontier (Frontier queue, DownloadParameters dp, RobotExclusion robots) {
+        this.queue = queue;
+        this.dp = dp;
+        this.robots = robots;
+    }
+
+    public synchronized void put (Link link) {
+        Vector links = (Vector)held.get (HostScheduler.getWebSite (link));
+        if (links == null)
+            queue.put (link);
+        else if (!links.contains (link)) {
+            links.addElement (link);
+            ++nHeld;
+        }
+    }
+
+    public synchronized Link getMin () {
+        return nextReady ();
+    }
+
+    public synchronized Link deleteMin () {
+        return (nextReady () != null) ? queue.deleteMin () : null;
+    }
+
+    public synchronized boolean delete (Link link) {
+        if (queue.delete (link))
+            return true;
+        Vector links = (Vector)held.get (HostScheduler.getWebSite (link));
+        if (links == null || !links.removeElement (link))
+            return false;
+        --nHeld;
+        if (links.isEmpty ())
+            held.remove (HostScheduler.getWebSite (link));
+        return true;
+    }
+
+    public synchronized boolean update (Link link) {
+        if (queue.update (link))
+            return true;
+        // held links are reordered when they go back in the queue
+        Vector links = (Vector)held.get (HostScheduler.getWebSite (link));
+        return links != null && links.contains (link);
+    }
+
+    public synchronized boolean release (Link link) {
+        return queue.release (link);
+    }
+
+    public synchronized long getWaitTime () {
+        long wait = queue.getWaitTime ();
+        if (nHeld > 0)
+            return (wait > 0) ? Math.min (wait, ROBOTS_POLL) : ROBOTS_POLL;
+        return wait;
+    }
+
+    public synchronized void clear () {
+        queue.clear ();
+        held.clear ();
+        nHeld = 0;
+    }
+
+    public synchronized Enumeration elements () {
+        Vector v = new Vector (queue.size () + nHeld);
+        for (Enumeration e = queue.elements (); e.hasMoreElements (); )
+            v.addElement (e.nextElement ());
+        for (Enumeration e = held.elements (); e.hasMoreElements (); ) {
+            Vector links = (Vector)e.nextElement ();
+            for (int i=0; i<links.size (); ++i)
+                v.addElement (links.elementAt (i));
+        }
+        return v.elements ();
+    }
+
+    public synchronized int size () {
+        return queue.size () + nHeld;
+    }
+
+    public synchronized boolean empty () {
+        return size () == 0;
+    }
+
+    /*
+     * Implementation
+     *
+     */
+
+    // Return the head of the queue once it's a link that may be
+    // fetched now, holding back the links in front of it.  Returns
+    // null if the queue runs out (or too many links are held).
+    Link nextReady () {
+        unhold ();
+        while (nHeld < MAX_HELD) {
+            Link link = queue.getMin ();
+            if (link == null || isReady (link))
+                return link;
+            queue.deleteMin ();
+            queue.release (link);
+            hold (link);
+        }
+        return null;
+    }
+
+    // Test whether a link's robots.txt is cached (or not needed).
+    boolean isReady (Link link) {
+        DownloadParameters ldp = link.getDownloadParameters ();
+        if (!(ldp != null ? ldp : dp).getObeyRobotExclusion ())
+            return true;
+        return robots.isCached (link.getURL ());
+    }
+
+    void hold (Link link) {
+        String website = HostScheduler.getWebSite (link);
+        Vector links = (Vector)held.get (website);
+        if (links == null) {
+            links = new Vector ();
+            held.put (website, links);
+            robots.prefetch (link.getURL ());
+        }
+        links.addElement (link);
+        ++nHeld;
+    }
+
+    // Put back the links of held sites whose robots.txt has arrived.
+    void unhold () {
+        if (nHeld == 0)
+            return;
+        for (Enumeration e = ((Hashtable)held.clone ()).keys (); 
+             e.hasMoreElements (); ) {
+            String website = (String)e.nextElement ();
+            Vector links = (Vector)held.get (website);
+            URL url = ((Link)links.elementAt (0)).getURL ();
+            if (robots.isCached (url)) {
+                held.remove (website);
+                nHeld -= links.size ();
+                for (int i=0; i<links.size (); ++i)
+                    queue.put ((Link)links.elementAt (i));
+            }
+            else
+                // starts it again if the cache was cleared meanwhile
+                robots.prefetch (url);
+        }
+    }
+}
@@ -0,0 +1,431 @@
+/*
+ * WebSphinx web-crawling toolkit
+ *
+ * Copyright (c) 1998-2002 Carnegie Mellon University.  All rights
+ * reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in
+ *    the documentation and/or other materials provided with the
+ *    distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY CARNEGIE MELLON UNIVERSITY ``AS IS'' AND
+ * ANY EXPRESSED OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ * THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED.  IN NO EVENT SHALL CARNEGIE MELLON UNIVERSITY
+ * NOR ITS EMPLOYEES BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+package websphinx;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URL;
+import java.util.Enumeration;
+import java.util.Vector;
+
+/**
+ * Frontier that keeps a bounded number of links in memory and
+ * spills the rest to disk.  Links are held in an in-memory head 
+ * frontier (a HeapFrontier, or a HostScheduler when the crawler is 
+ * polite) until it reaches its capacity; after that, new links are
+ * appended to segments as compact records of URL, depth, 
+ * priority and download parameters.  A background thread writes
+ * full segments to disk and, as the head drains, reads the oldest 
+ * segment back, so memory use stays flat however large the crawl 
+ * grows.  Callers never wait for the disk: when the head has run 
+ * dry before the next segment is read back, deleteMin() returns 
+ * null and getWaitTime() asks the caller to try again shortly.
+ * <P>
+ * Links come out of the head in priority order, but spilled links
+ * return in the order they were spilled, so the overall order is
+ * only approximately by priority.  For a breadth-first crawl, where
+ * priorities grow as the crawl proceeds, the two orders agree.
+ * <P>
+ * A spilled link comes back as a new Link object with the same URL,
+ * depth, priority and download parameters; its labels, anchor text 
+ * and source page are not kept.  Forms and other Link subclasses
+ * are never spilled.  delete(), update() and elements() see only the
+ * links in memory.
+ */
+public class SpillingFrontier implements Frontier {
+
+    /**
+     * Default number of links kept in memory.
+     */
+    public static final int DEFAULT_CAPACITY = 100000;
+
+    /**
+     * Default number of links in each segment file.
+     */
+    public static final int DEFAULT_SEGMENT_SIZE = 10000;
+
+    static final int REFILL_POLL = 10;
+        // wait (ms) while the head is empty and a segment is read back
+
+    Frontier head;          // links in memory
+    int capacity;           // maximum size of head before spilling
+    int segmentSize;        // records per segment file
+    File dir;               // directory for segment files, or null for
+                            // Access temporary files
+
+    // Spill state.  Guarded by spillLock, which is always acquired 
+    // after (never before) the frontier's own monitor.  Only the 
+    // disk thread touches the disk, and never while holding spillLock.
+    Object spillLock = new Object ();
+    Vector segments = new Vector ();   // full segments, oldest first
+    Segment writing;        // segment being appended to, or null
+    Link[] prefetched;      // oldest segment, already read back
+    int spilled;            // links in segments and prefetched
+    int epoch;              // incremented by clear()
+    int nextSegment;        // number for next segment file name
+    Vector dps = new Vector ();  // DownloadParameters, indexed by record id
+    Thread diskThread;      // background writer and reader, or null when idle
+
+    /**
+     * Make an empty SpillingFrontier with default capacity, 
+     * keeping its segments in Access temporary files.
+     * @param head frontier holding the links kept in memory
+     */
+    public SpillingFrontier (Frontier head) {
+        this (head, DEFAULT_CAPACITY, DEFAULT_SEGMENT_SIZE, null);
+    }
+
+    /**
+     * Make an empty SpillingFrontier.
+     * @param head frontier holding the links kept in memory
+     * @param capacity number of links kept in memory before spilling
+     * @param segmentSize number of links in each segment file
+     * @param dir directory for segment files, or null to use
+     * Access temporary files
+     */
+    public SpillingFrontier (Frontier head, int capacity, int segmentSize, File dir) {
+        this.head = head;
+        this.capacity = Math.max (capacity, 2);
+        this.segmentSize = Math.max (segmentSize, 1);
+        this.dir = dir;
+    }
+
+    public synchronized void put (Link link) {
+        if ((getSpilled () == 0 && head.size () < capacity)
+            || link.getClass () != Link.class
+            || !spill (link))
+            head.put (link);
+    }
+
+    public synchronized Link getMin () {
+        refill ();
+        return head.getMin ();
+    }
+
+    public synchronized Link deleteMin () {
+        refill ();
+        return head.deleteMin ();
+    }
+
+    public synchronized boolean delete (Link link) {
+        return head.delete (link);
+    }
+
+    public synchronized boolean update (Link link) {
+        return head.update (link);
+    }
+
+    public synchronized boolean release (Link link) {
+        return head.release (link);
+    }
+
+    public synchronized long getWaitTime () {
+        long wait = head.getWaitTime ();
+        if (head.empty () && getSpilled () > 0)
+            // the disk thread is reading links back
+            return (wait > 0) ? Math.min (wait, REFILL_POLL) : REFILL_POLL;
+        return wait;
+    }
+
+    public synchronized void clear () {
+        head.clear ();
+        synchronized (spillLock) {
+            ++epoch;
+            writing = null;
+            for (int i=0; i<segments.size (); ++i) {
+                Segment seg = (Segment)segments.elementAt (i);
+                if (seg.file != null)
+                    seg.file.delete ();
+            }
+            segments.removeAllElements ();
+            prefetched = null;
+            spilled = 0;
+        }
+    }
+
+    /**
+     * Enumerate the links in memory, in no particular order.
+     * Spilled links are not included.
+     * @return enumeration of Link objects
+     */
+    public synchronized Enumeration elements () {
+        return head.elements ();
+    }
+
+    public synchronized int size () {
+        return head.size () + getSpilled ();
+    }
+
+    public synchronized boolean empty () {
+        return size () == 0;
+    }
+
+    /**
+     * Get number of links spilled to disk.
+     * @return number of links not in memory
+     */
+    public int getSpilled () {
+        synchronized (spillLock) {
+            return spilled;
+        }
+    }
+
+    /*
+     * Implementation
+     *
+     */
+
+    // Append a link to the segment being filled, in memory.  
+    // Returns false if the link can't be recorded (its URL is too
+    // long), leaving it to be kept in memory instead.
+    boolean spill (Link link) {
+        synchronized (spillLock) {
+            if (writing == null)
+                writing = new Segment ();
+            DataOutputStream out = writing.out;
+            try {
+                out.writeUTF (link.getURL ().toExternalForm ());
+                out.writeInt (link.getDepth ());
+                out.writeFloat (link.getPriority ());
+                out.writeInt (getId (link.getDownloadParameters ()));
+            } catch (IOException e) {
+                // only writeUTF() can fail writing to memory, and 
+                // then it has written nothing
+                return false;
+            }
+            ++writing.count;
+            ++spilled;
+            if (writing.count >= segmentSize) {
+                writing.close ();
+                segments.addElement (writing);
+                writing = null;
+                startDiskThread ();  // write it out
+            }
+            return true;
+        }
+    }
+
+    // Move spilled links back into the head once it is half empty.
+    // Takes the segment prefetched by the disk thread, if it's ready,
+    // and has the disk thread read the next one ahead.
+    void refill () {
+        if (head.size () > capacity / 2)
+            return;
+        synchronized (spillLock) {
+            if (spilled == 0)
+                return;
+            if (prefetched != null) {
+                Link[] batch = prefetched;
+                prefetched = null;
+                spilled -= batch.length;
+                for (int i=0; i<batch.length; ++i)
+                    head.put (batch[i]);
+            }
+            startDiskThread ();
+        }
+    }
+
+    // Called with spillLock held.
+    void startDiskThread () {
+        if (diskThread == null) {
+            diskThread = new Thread (new Runnable () {
+                public void run () {
+                    runDiskThread ();
+                }
+            }, "SpillingFrontier disk");
+            diskThread.setDaemon (true);
+            diskThread.start ();
+        }
+    }
+
+    // Background loop.  When no segment is prefetched, reads the 
+    // oldest one back (from disk, or from memory if it was never
+    // written); otherwise writes full segments still in memory to 
+    // disk, except the oldest, which will be read next.  Exits when
+    // there's nothing to do.
+    void runDiskThread () {
+        while (true) {
+            Segment seg = null;
+            boolean read = false;
+            int myEpoch;
+            synchronized (spillLock) {
+                if (prefetched == null) {
+                    if (!segments.isEmpty ()) {
+                        seg = (Segment)segments.elementAt (0);
+                        segments.removeElementAt (0);
+                    }
+                    else if (writing != null && writing.count > 0) {
+                        // read back the partial segment too
+                        writing.close ();
+                        seg = writing;
+                        writing = null;
+                    }
+                    read = (seg != null);
+                }
+                if (seg == null)
+                    for (int i=(prefetched != null) ? 1 : 0; i<segments.size (); ++i) {
+                        Segment s = (Segment)segments.elementAt (i);
+                        if (s.file == null && !s.unwritable) {
+                            seg = s;
+                            break;
+                        }
+                    }
+                if (seg == null) {
+                    diskThread = null;
+                    return;
+                }
+                myEpoch = epoch;
+            }
+
+            if (read) {
+                Vector links = readSegment (seg);
+                synchronized (spillLock) {
+                    if (myEpoch == epoch) {
+                        spilled -= seg.count - links.size ();  // lost records
+                        prefetched = new Link[links.size ()];
+                        links.copyInto (prefetched);
+                    }
+                }
+            }
+            else {
+                File file = writeSegment (seg);
+                synchronized (spillLock) {
+                    if (file == null)
+                        seg.unwritable = true;  // keep it in memory
+                    else if (myEpoch != epoch)
+                        file.delete ();
+                    else {
+                        seg.file = file;
+                        seg.data = null;
+                    }
+                }
+            }
+        }
+    }
+
+    // Write a segment's records to a new file.  Returns the file,
+    // or null if it can't be written.
+    File writeSegment (Segment seg) {
+        File file = makeSegmentFile ();
+        try {
+            OutputStream out = new BufferedOutputStream (
+                Access.getAccess ().writeFile (file, false));
+            try {
+                out.write (seg.data);
+            } finally {
+                out.close ();
+            }
+            return file;
+        } catch (IOException e) {
+            file.delete ();
+            return null;
+        }
+    }
+
+    // Read a segment's records back as Links, deleting its file.
+    Vector readSegment (Segment seg) {
+        Vector links = new Vector (seg.count);
+        try {
+            DataInputStream in = new DataInputStream ((seg.file != null)
+                ? (InputStream)new BufferedInputStream (Access.getAccess ().readFile (seg.file))
+                : (InputStream)new ByteArrayInputStream (seg.data));
+            try {
+                for (int i=0; i<seg.count; ++i) {
+                    URL url = new URL (in.readUTF ());
+                    Link link = new Link (url, in.readInt ());
+                    link.setPriority (in.readFloat ());
+                    link.setDownloadParameters (getDownloadParameters (in.readInt ()));
+                    links.addElement (link);
+                }
+            } finally {
+                in.close ();
+            }
+        } catch (EOFException e) {
+            // truncated segment: keep the links read so far
+        } catch (IOException e) {
+            // unreadable segment: keep the links read so far
+        }
+        if (seg.file != null)
+            seg.file.delete ();
+        return links;
+    }
+
+    File makeSegmentFile () {
+        if (dir == null)
+            return Access.getAccess ().makeTemporaryFile ("frontier", ".seg");
+        return new File (dir, "frontier-" + (nextSegment++) + ".seg");
+    }
+
+    int getId (DownloadParameters dp) {
+        if (dp == null)
+            return -1;
+        for (int i=0; i<dps.size (); ++i)
+            if (dps.elementAt (i) == dp)
+                return i;
+        dps.addElement (dp);
+        return dps.size () - 1;
+    }
+
+    DownloadParameters getDownloadParameters (int id) {
+        synchronized (spillLock) {
+            return id >= 0 ? (DownloadParameters)dps.elementAt (id) : null;
+        }
+    }
+
+    /* Segment of spilled links. */
+    static class Segment {
+        ByteArrayOutputStream buf = new ByteArrayOutputStream ();
+        DataOutputStream out = new DataOutputStream (buf);
+                                // null once closed
+        byte[] data;            // records, once closed, until written
+        File file;              // file holding the records, or null
+        boolean unwritable;     // couldn't be written; stays in memory
+        int count;              // records written
+
+        void close () {
+            if (out != null) {
+                data = buf.toByteArray ();
+                buf = null;
+                out = null;
+            }
+        }
+    }
+}
@@ -335,7 +335,7 @@ public class Tag extends Region {
 
         Tag newTag = new Tag (new Page (newstr.toString()), 0, 
                               newstr.length(), tagName, startTag);
-        newTag.names = names;
+        newTag.copyLabels (this);
         newTag.htmlAttributes = newattrs;
         newTag.setLabel (name, value);
         
@@ -438,6 +438,19 @@ public class Tag extends Region {
     public static final String VAR = "var".intern();
     public static final String WBR = "wbr".intern();
     public static final String XMP = "xmp".intern();
+
+    // all of the tag names above (see ParseTable.getTagId())
+    static final String[] ALL = {
+        A, ABBREV, ACRONYM, ADDRESS, APPLET, AREA, B, BASE, BASEFONT,
+        BDO, BGSOUND, BIG, BLINK, BLOCKQUOTE, BODY, BR, CAPTION, CENTER,
+        CITE, CODE, COL, COLGROUP, COMMENT, DD, DEL, DFN, DIR, DIV, DL,
+        DT, EM, EMBED, FONT, FRAME, FRAMESET, FORM, H1, H2, H3, H4, H5,
+        H6, HEAD, HR, HTML, I, IMG, INPUT, ISINDEX, KBD, LI, LINK,
+        LISTING, MAP, MARQUEE, MENU, META, NEXTID, NOBR, NOEMBED,
+        NOFRAMES, OBJECT, OL, OPTION, P, PARAM, PLAINTEXT, PRE, SAMP,
+        SCRIPT, SELECT, SMALL, SPACER, STRIKE, STRONG, STYLE, SUB, SUP,
+        TABLE, TD, TEXTAREA, TH, TITLE, TR, TT, U, UL, VAR, WBR, XMP
+    };
     
     /**
      * Length of longest tag name.
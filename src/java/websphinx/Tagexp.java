@@ -34,17 +34,36 @@ package websphinx;
 
 import rcm.util.Str;
 import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.Map;
 
 /**
  * Tag pattern.  Tag patterns are regular expressions over
  * the alphabet of HTML tags.
  */
 public class Tagexp extends Regexp {
+
+    /**
+     * Maximum number of compiled tagexps kept in the cache.
+     */
+    public static final int CACHE_SIZE = 256;
+
     String stringRep;
     
     public Tagexp (String pattern) {
-        super (toRegexp (pattern));
         stringRep = pattern;
+
+        Tagexp compiled = (Tagexp)cache.get (pattern);
+        if (compiled == null) {
+            super.stringRep = toRegexp (pattern);
+            init ();
+            remember (this);
+        }
+        else {
+            super.stringRep = ((Regexp)compiled).stringRep;
+            this.pattern = compiled.pattern;
+            this.fields = compiled.fields;
+        }
     }
     
     public boolean equals (Object object) {
@@ -62,7 +81,27 @@ public class Tagexp extends Regexp {
         return new TagexpMatcher (this, region);
     }
 
-    static HTMLParser parser = new HTMLParser ();
+    /*
+     * Compiled tagexps, by source.  Looking up a tagexp takes no lock:
+     * a published map is never changed, only replaced by a copy with 
+     * one more tagexp (or by a new map, when the cache is full).
+     */
+    static volatile Map cache = new HashMap ();
+
+    static synchronized void remember (Tagexp tagexp) {
+        Map map = (cache.size () < CACHE_SIZE)
+            ? new HashMap (cache)
+            : new HashMap ();
+        map.put (tagexp.stringRep, tagexp);
+        cache = map;
+    }
+
+    // each thread parses tagexps with its own parser
+    static ThreadLocal parsers = new ThreadLocal () {
+        protected Object initialValue () {
+            return new HTMLParser ();
+        }
+    };
 
     public static String toRegexp (String tagexp) {
         StringBuffer output = new StringBuffer ();
@@ -70,9 +109,7 @@ public class Tagexp extends Regexp {
         // parse the tagexp as HTML
         Page page;
         //System.err.println ("Parsing: " + tagexp);
-        synchronized (parser) {
-            page = new Page (null, tagexp, parser);
-        }
+        page = new Page (null, tagexp, (HTMLParser)parsers.get ());
 
         // canonicalize the tags
         Region[] tokens = page.getTokens ();
@@ -263,34 +300,51 @@ class TagexpMatcher extends PatternMatcher {
     Tagexp tagexp;
     Region source;
     org.apache.regexp.RE re;
-    String canon;
+    CanonicalTagIndex index;
+    int base;               // start of the region's canonical tags
+    int limit;              // and their end
+    org.apache.regexp.CharacterIterator window; // canonical tags of the
+                                                // region, or null if it
+                                                // is the whole page
     int pos;
 
     public TagexpMatcher (Tagexp tagexp, Region source) {
         this.tagexp = tagexp;
         this.source = source;
         this.re = new org.apache.regexp.RE (tagexp.pattern, 0);
-        this.canon = 
-            source.getSource().substringCanonicalTags (source.getStart(), 
-                                                       source.getLength ());
+
+        Page page = source.getSource ();
+        index = page.getCanonicalTagIndex ();
+        if (index == null)
+            index = new CanonicalTagIndex (new Region[0]); // page is not parsed
+        if (source.getStart () == page.getStart () 
+                && source.getEnd () == page.getEnd ()) {
+            base = 0;
+            limit = index.text.length ();
+        }
+        else {
+            base = index.startOf (source.getStart ());
+            limit = index.endOf (source.getStart (), source.getEnd ());
+            window = new CanonicalWindow (index.text, base, limit);
+        }
         this.pos = 0;
     }
 
     protected Region findNext () {
-        if (pos < canon.length () && re.match (canon, pos)) {
+        if (pos < limit - base 
+                && (window != null ? re.match (window, pos) 
+                                   : re.match (index.text, pos))) {
             pos = Math.max (pos+1, re.getParenEnd (0));
 
             Page page = source.getSource ();
             
-            Region match = mapCanonical2Region (page, canon, 
-                                                re.getParenStart (0), 
+            Region match = mapCanonical2Region (page, re.getParenStart (0), 
                                                 re.getParenEnd (0));
             
             int n = re.getParenCount () - 1;
             Region[] groups = new Region[n];
             for (int i=0; i<n; ++i) {
-                Region r = mapCanonical2Region (page, canon, 
-                                                re.getParenStart (i+1), 
+                Region r = mapCanonical2Region (page, re.getParenStart (i+1), 
                                                 re.getParenEnd (i+1));
                 groups[i] = r;
                 match.setField (tagexp.fields[i] != null 
@@ -304,14 +358,20 @@ class TagexpMatcher extends PatternMatcher {
             return null;
     }
 
-    final static Region mapCanonical2Region (Page page, String canon, int start, int end) {
+    /*
+     * Map a match [start,end) in the region's canonical tags back to 
+     * the page.
+     */
+    final Region mapCanonical2Region (Page page, int start, int end) {
         // NIY: (@ and @)
-        Region[] tokens = page.getTokens ();
+        Region[] tokens = index.tokens;
         int ft, lt;
+        start += base;
+        end += base;
 
         if (start == end) {
-            ft = prevTag (canon, start);
-            lt = nextTag (canon, end);
+            ft = index.prevTag (start, base);
+            lt = index.nextTag (end, limit);
 
             if (ft != -1)
                 if (lt != -1)
@@ -325,8 +385,8 @@ class TagexpMatcher extends PatternMatcher {
                     return page;
         }
         else {
-            ft = nextTag (canon, start);
-            lt = prevTag (canon, end);
+            ft = index.nextTag (start, limit);
+            lt = index.prevTag (end, base);
 
             Tag f = (Tag)tokens[ft];
             Tag l = (Tag)tokens[lt];
@@ -339,26 +399,35 @@ class TagexpMatcher extends PatternMatcher {
                 return tokens[ft].span (tokens[lt]);
         }
     }
+}
+
+/*
+ * Part of a page's canonical tags, matched in place by a jakarta RE.
+ */
+final class CanonicalWindow implements org.apache.regexp.CharacterIterator {
+    String text;
+    int base;
+    int limit;
+
+    CanonicalWindow (String text, int base, int limit) {
+        this.text = text;
+        this.base = base;
+        this.limit = limit;
+    }
+
+    public String substring (int beginIndex, int endIndex) {
+        return text.substring (base + beginIndex, base + endIndex);
+    }
+
+    public String substring (int beginIndex) {
+        return text.substring (base + beginIndex, limit);
+    }
+
+    public char charAt (int pos) {
+        return text.charAt (base + pos);
+    }
 
-    final static int nextTag (String canon, int p) {
-        return indexOfTag (canon, canon.indexOf ('<', p));
-    } 
-
-    final static int prevTag (String canon, int p) {
-        if (p == 0)
-            return -1;
-        return indexOfTag (canon, canon.lastIndexOf ('<', p-1));
-    } 
-
-    final static int indexOfTag (String canon, int p) {
-        if (p == -1)
-            return -1;
-        int s = canon.indexOf ('#', p);
-        if (s == -1)
-            return -1;
-        int e = canon.indexOf ('#', s+1);
-        if (e == -1)
-            return -1;
-        return Integer.parseInt (canon.substring (s+1, e));
+    public boolean isEnd (int pos) {
+        return base + pos >= limit;
     }
 }
@@ -0,0 +1,650 @@
+/*
+ * WebSphinx web-crawling toolkit
+ *
+ * Copyright (c) 1998-2002 Carnegie Mellon University.  All rights
+ * reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in
+ *    the documentation and/or other materials provided with the
+ *    distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY CARNEGIE MELLON UNIVERSITY ``AS IS'' AND
+ * ANY EXPRESSED OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ * THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED.  IN NO EVENT SHALL CARNEGIE MELLON UNIVERSITY
+ * NOR ITS EMPLOYEES BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+
+package websphinx;
+
+import java.net.URL;
+import java.util.Arrays;
+import java.util.Enumeration;
+import java.util.Hashtable;
+import java.util.Vector;
+
+/**
+ * Link predicate that accepts links by URL, following a list of
+ * include and exclude rules.  A rule is a URL prefix, a host name
+ * (which also covers the host's subdomains), or a Wildcard matched
+ * against the whole URL.  A link is accepted if it matches some
+ * include rule, or if there are no include rules, and it matches no
+ * exclude rule.
+ * <P>
+ * The rules are compiled into tries when the filter is first used, so
+ * testing a URL walks its characters once (and its host name once), 
+ * however many rules there are, without making any Strings.  Wildcards 
+ * are filed in the trie under their literal prefix, and only those 
+ * whose prefix the URL starts with are run.  Wildcards that amount to a 
+ * prefix ("http://www.foo.com/docs/*"), a suffix ("*.pdf") or a whole 
+ * URL are not run at all.
+ */
+public class URLFilter implements LinkPredicate {
+
+    static final int PREFIX = 0;
+    static final int HOST = 1;
+    static final int WILDCARD = 2;
+
+    Vector rules = new Vector ();   // of Rule
+    transient CompiledURLFilter compiled;
+
+    /**
+     * Make an empty URLFilter, which accepts all URLs.
+     */
+    public URLFilter () {
+    }
+
+    /**
+     * Accept URLs that start with a prefix.  Like String.startsWith(),
+     * the comparison is case-sensitive.
+     * @param prefix URL prefix, e.g. "http://www.foo.com/docs/"
+     */
+    public void includePrefix (String prefix) {
+        add (PREFIX, prefix, false);
+    }
+
+    /**
+     * Reject URLs that start with a prefix.
+     * @param prefix URL prefix
+     */
+    public void excludePrefix (String prefix) {
+        add (PREFIX, prefix, true);
+    }
+
+    /**
+     * Accept URLs on a host or on any of its subdomains.  Host names
+     * are compared regardless of case.
+     * @param host host name, e.g. "foo.com" (which also covers 
+     * "www.foo.com")
+     */
+    public void includeHost (String host) {
+        add (HOST, host, false);
+    }
+
+    /**
+     * Reject URLs on a host or on any of its subdomains.
+     * @param host host name
+     */
+    public void excludeHost (String host) {
+        add (HOST, host, true);
+    }
+
+    /**
+     * Accept URLs that match a wildcard.
+     * @param wildcard Wildcard pattern, matched against the whole URL
+     * @exception RuntimeException if the wildcard has a syntax error
+     */
+    public void includeWildcard (String wildcard) {
+        add (WILDCARD, wildcard, false);
+    }
+
+    /**
+     * Reject URLs that match a wildcard.
+     * @param wildcard Wildcard pattern, matched against the whole URL
+     * @exception RuntimeException if the wildcard has a syntax error
+     */
+    public void excludeWildcard (String wildcard) {
+        add (WILDCARD, wildcard, true);
+    }
+
+    synchronized void add (int kind, String text, boolean exclude) {
+        if (kind == WILDCARD)
+            CompiledURLFilter.compileWildcard (text); // check the syntax now
+        rules.addElement (new Rule (kind, text, exclude));
+        compiled = null;
+    }
+
+    /**
+     * Get the number of rules.
+     * @return number of include and exclude rules
+     */
+    public int size () {
+        return rules.size ();
+    }
+
+    synchronized CompiledURLFilter getCompiled () {
+        if (compiled == null) {
+            Rule[] r = new Rule[rules.size ()];
+            rules.copyInto (r);
+            compiled = new CompiledURLFilter (r);
+        }
+        return compiled;
+    }
+
+    /**
+     * Test a URL against the rules.
+     * @param url URL to test
+     * @return true if the URL is accepted
+     */
+    public boolean matches (URL url) {
+        return getCompiled ().matches (new URLChars (url), url.getHost ());
+    }
+
+    /**
+     * Test a URL against the rules.
+     * @param url URL to test, in external form
+     * @return true if the URL is accepted
+     */
+    public boolean matches (String url) {
+        return getCompiled ().matches (url, null);
+    }
+
+    public boolean shouldVisit (Link link) {
+        return matches (link.getURL ());
+    }
+
+    public void connected (Crawler crawler) {
+    }
+
+    public void disconnected (Crawler crawler) {
+    }
+
+    public synchronized String toString () {
+        StringBuffer buf = new StringBuffer ();
+        for (Enumeration e = rules.elements (); e.hasMoreElements (); ) {
+            if (buf.length () > 0)
+                buf.append (' ');
+            buf.append (e.nextElement ());
+        }
+        return buf.toString ();
+    }
+
+    static class Rule 
+    //#ifdef JDK1.1 
+    implements java.io.Serializable 
+    //#endif JDK1.1
+    {
+        int kind;
+        String text;
+        boolean exclude;
+
+        Rule (int kind, String text, boolean exclude) {
+            this.kind = kind;
+            this.text = text;
+            this.exclude = exclude;
+        }
+
+        public String toString () {
+            return (exclude ? "-" : "+") 
+                + (kind == PREFIX ? "prefix:" : kind == HOST ? "host:" : "wildcard:")
+                + text;
+        }
+    }
+
+    public static void main (String[] args) throws Exception {
+        if (args.length < 2) {
+            System.err.println ("usage: URLFilter (+|-)(prefix|host|wildcard):<rule> ... <URL>*");
+            return;
+        }
+
+        URLFilter filter = new URLFilter ();
+        int i = 0;
+        for (; i<args.length && (args[i].startsWith ("+") || args[i].startsWith ("-")); ++i) {
+            boolean exclude = args[i].startsWith ("-");
+            int colon = args[i].indexOf (':');
+            String kind = args[i].substring (1, colon);
+            String text = args[i].substring (colon+1);
+            if (kind.equals ("prefix"))
+                filter.add (PREFIX, text, exclude);
+            else if (kind.equals ("host"))
+                filter.add (HOST, text, exclude);
+            else
+                filter.add (WILDCARD, text, exclude);
+        }
+        for (; i<args.length; ++i)
+            System.out.println (args[i] + ": " + filter.matches (new URL (args[i])));
+    }
+}
+
+/*
+ * Rules of a URLFilter, compiled into tries.
+ */
+class CompiledURLFilter {
+    // marks of trie nodes
+    static final int INCLUDE = 1;           // key is a prefix of the URL
+    static final int EXCLUDE = 2;
+    static final int INCLUDE_EXACT = 4;     // key is the whole URL
+    static final int EXCLUDE_EXACT = 8;
+
+    CharTrie prefixes;          // URL prefixes, with general wildcards 
+                                // attached under their literal prefix
+    CharTrie suffixes;          // reversed URL suffixes, or null
+    CharTrie hosts;             // reversed lowercase host names, or null
+    int[] always;               // wildcards without a literal prefix
+
+    java.util.regex.Pattern[] wildcards;
+    boolean[] excludeWildcard;
+    boolean hasIncludes;
+
+    CompiledURLFilter (URLFilter.Rule[] rules) {
+        prefixes = new CharTrie ();
+        CharTrie suffixes = new CharTrie ();
+        CharTrie hosts = new CharTrie ();
+        Vector always = new Vector ();
+        Vector wildcards = new Vector ();
+        Vector excludes = new Vector ();
+
+        for (int i=0; i<rules.length; ++i) {
+            URLFilter.Rule r = rules[i];
+            int include = r.exclude ? EXCLUDE : INCLUDE;
+            if (!r.exclude)
+                hasIncludes = true;
+
+            switch (r.kind) {
+              case URLFilter.PREFIX:
+                prefixes.mark (prefixes.add (r.text), include);
+                break;
+
+              case URLFilter.HOST:
+                String host = r.text.toLowerCase ();
+                if (host.startsWith ("*."))
+                    host = host.substring (2);
+                else if (host.startsWith ("."))
+                    host = host.substring (1);
+                hosts.mark (hosts.add (reverse (host)), include);
+                break;
+
+              case URLFilter.WILDCARD:
+                String w = r.text;
+                int meta = firstMeta (w, 0);
+                if (meta < 0)
+                    // the whole URL
+                    prefixes.mark (prefixes.add (w), include << 2);
+                else if (meta == w.length ()-1 && w.charAt (meta) == '*')
+                    // a prefix
+                    prefixes.mark (prefixes.add (w.substring (0, meta)), include);
+                else if (meta == 0 && w.charAt (0) == '*' && firstMeta (w, 1) < 0)
+                    // a suffix
+                    suffixes.mark (suffixes.add (reverse (w.substring (1))), include);
+                else {
+                    int id = wildcards.size ();
+                    wildcards.addElement (compileWildcard (w));
+                    excludes.addElement (new Boolean (r.exclude));
+                    if (meta == 0)
+                        always.addElement (new Integer (id));
+                    else
+                        prefixes.attach (prefixes.add (w.substring (0, meta)), id);
+                }
+                break;
+            }
+        }
+
+        prefixes.freeze ();
+        if (suffixes.size () > 1) {
+            suffixes.freeze ();
+            this.suffixes = suffixes;
+        }
+        if (hosts.size () > 1) {
+            hosts.freeze ();
+            this.hosts = hosts;
+        }
+        if (always.size () > 0) {
+            this.always = new int[always.size ()];
+            for (int i=0; i<this.always.length; ++i)
+                this.always[i] = ((Integer)always.elementAt (i)).intValue ();
+        }
+        this.wildcards = new java.util.regex.Pattern[wildcards.size ()];
+        wildcards.copyInto (this.wildcards);
+        excludeWildcard = new boolean[excludes.size ()];
+        for (int i=0; i<excludeWildcard.length; ++i)
+            excludeWildcard[i] = ((Boolean)excludes.elementAt (i)).booleanValue ();
+    }
+
+    static java.util.regex.Pattern compileWildcard (String wildcard) {
+        try {
+            return java.util.regex.Pattern.compile (Wildcard.toRegexp (wildcard));
+        } catch (java.util.regex.PatternSyntaxException e) {
+            throw new RuntimeException ("syntax error in pattern: " 
+                                        + e.getMessage ());
+        }
+    }
+
+    /*
+     * Index of the first Wildcard operator in w at or after i, or -1.
+     */
+    static int firstMeta (String w, int i) {
+        for (int n=w.length (); i<n; ++i)
+            if ("?*[]{}()\\".indexOf (w.charAt (i)) >= 0)
+                return i;
+        return -1;
+    }
+
+    static String reverse (String s) {
+        return new StringBuffer (s).reverse ().toString ();
+    }
+
+    /*
+     * Test a URL.  If host is null, it's found in the URL.
+     */
+    boolean matches (CharSequence url, CharSequence host) {
+        boolean included = false;
+        int len = url.length ();
+
+        // prefixes, and the wildcards filed under them
+        int node = 0;
+        for (int i=0; ; ++i) {
+            int m = prefixes.marks[node];
+            if (m != 0) {
+                if ((m & EXCLUDE) != 0 || (i == len && (m & EXCLUDE_EXACT) != 0))
+                    return false;
+                if ((m & INCLUDE) != 0 || (i == len && (m & INCLUDE_EXACT) != 0))
+                    included = true;
+            }
+            int[] w = prefixes.attached[node];
+            if (w != null)
+                for (int k=0; k<w.length; ++k)
+                    if ((excludeWildcard[w[k]] || !included)
+                            && wildcards[w[k]].matcher (url).matches ()) {
+                        if (excludeWildcard[w[k]])
+                            return false;
+                        included = true;
+                    }
+            if (i == len || (node = prefixes.next (node, url.charAt (i))) < 0)
+                break;
+        }
+
+        // suffixes
+        if (suffixes != null) {
+            node = 0;
+            for (int i=len-1; i>=0; --i) {
+                if ((node = suffixes.next (node, url.charAt (i))) < 0)
+                    break;
+                int m = suffixes.marks[node];
+                if ((m & EXCLUDE) != 0)
+                    return false;
+                if ((m & INCLUDE) != 0)
+                    included = true;
+            }
+        }
+
+        // hosts
+        if (hosts != null) {
+            int start = 0;
+            int end;
+            if (host != null)
+                end = host.length ();
+            else {
+                host = url;
+                start = hostStart (url);
+                end = (start >= 0) ? hostEnd (url, start) : -1;
+            }
+            node = 0;
+            for (int i=end-1; i>=start; --i) {
+                char c = host.charAt (i);
+                if (c >= 'A' && c <= 'Z')
+                    c += 'a' - 'A';
+                if ((node = hosts.next (node, c)) < 0)
+                    break;
+                int m = hosts.marks[node];
+                if (m != 0 && (i == start || host.charAt (i-1) == '.')) {
+                    if ((m & EXCLUDE) != 0)
+                        return false;
+                    if ((m & INCLUDE) != 0)
+                        included = true;
+                }
+            }
+        }
+
+        // wildcards that must always be run
+        if (always != null)
+            for (int k=0; k<always.length; ++k)
+                if ((excludeWildcard[always[k]] || !included)
+                        && wildcards[always[k]].matcher (url).matches ()) {
+                    if (excludeWildcard[always[k]])
+                        return false;
+                    included = true;
+                }
+
+        return included || !hasIncludes;
+    }
+
+    /*
+     * Start of the host name in a URL, after the scheme and user info,
+     * or -1 if the URL has no host.
+     */
+    static int hostStart (CharSequence url) {
+        int len = url.length ();
+        int i = 0;
+        while (i < len && url.charAt (i) != ':' && url.charAt (i) != '/')
+            ++i;
+        if (i+2 >= len || url.charAt (i) != ':' 
+                || url.charAt (i+1) != '/' || url.charAt (i+2) != '/')
+            return -1;
+        int start = i+3;
+        for (i=start; i<len; ++i) {
+            char c = url.charAt (i);
+            if (c == '@')
+                start = i+1;
+            else if (c == '/' || c == '?' || c == '#')
+                break;
+        }
+        return start;
+    }
+
+    /*
+     * End of the host name that starts at start, before the port.
+     */
+    static int hostEnd (CharSequence url, int start) {
+        int len = url.length ();
+        int i = start;
+        if (i < len && url.charAt (i) == '[') {
+            // IPv6 address
+            while (i < len && url.charAt (i) != ']')
+                ++i;
+            return Math.min (i+1, len);
+        }
+        while (i < len) {
+            char c = url.charAt (i);
+            if (c == ':' || c == '/' || c == '?' || c == '#')
+                break;
+            ++i;
+        }
+        return i;
+    }
+}
+
+/*
+ * Trie of strings, each node with a set of mark bits and a list of 
+ * attached numbers.  Built with add(), mark() and attach(), then 
+ * frozen into arrays for lookups.
+ */
+final class CharTrie {
+    // while building
+    Vector edges = new Vector ();       // Hashtable of each node
+    Vector marked = new Vector ();      // Integer marks of each node
+    Vector attachments = new Vector (); // Vector of each node, or null
+
+    // once frozen
+    char[][] keys;          // characters of each node's edges, sorted
+    int[][] targets;        // and the nodes they lead to
+    int[] marks;
+    int[][] attached;
+
+    CharTrie () {
+        newNode ();
+    }
+
+    int newNode () {
+        edges.addElement (new Hashtable ());
+        marked.addElement (new Integer (0));
+        attachments.addElement (null);
+        return edges.size () - 1;
+    }
+
+    int size () {
+        return (keys != null) ? keys.length : edges.size ();
+    }
+
+    /*
+     * Add a string, returning its node.
+     */
+    int add (String s) {
+        int node = 0;
+        for (int i=0; i<s.length (); ++i) {
+            Hashtable e = (Hashtable)edges.elementAt (node);
+            Character c = new Character (s.charAt (i));
+            Integer next = (Integer)e.get (c);
+            if (next == null) {
+                next = new Integer (newNode ());
+                e.put (c, next);
+            }
+            node = next.intValue ();
+        }
+        return node;
+    }
+
+    void mark (int node, int bits) {
+        int m = ((Integer)marked.elementAt (node)).intValue ();
+        marked.setElementAt (new Integer (m | bits), node);
+    }
+
+    void attach (int node, int n) {
+        Vector v = (Vector)attachments.elementAt (node);
+        if (v == null)
+            attachments.setElementAt (v = new Vector (), node);
+        v.addElement (new Integer (n));
+    }
+
+    void freeze () {
+        int n = edges.size ();
+        keys = new char[n][];
+        targets = new int[n][];
+        marks = new int[n];
+        attached = new int[n][];
+        for (int s=0; s<n; ++s) {
+            Hashtable e = (Hashtable)edges.elementAt (s);
+            char[] k = new char[e.size ()];
+            int j = 0;
+            for (Enumeration en = e.keys (); en.hasMoreElements (); )
+                k[j++] = ((Character)en.nextElement ()).charValue ();
+            Arrays.sort (k);
+            int[] t = new int[k.length];
+            for (j=0; j<k.length; ++j)
+                t[j] = ((Integer)e.get (new Character (k[j]))).intValue ();
+            keys[s] = k;
+            targets[s] = t;
+
+            marks[s] = ((Integer)marked.elementAt (s)).intValue ();
+            Vector v = (Vector)attachments.elementAt (s);
+            if (v != null) {
+                attached[s] = new int[v.size ()];
+                for (j=0; j<v.size (); ++j)
+                    attached[s][j] = ((Integer)v.elementAt (j)).intValue ();
+            }
+        }
+        edges = marked = attachments = null;
+    }
+
+    /*
+     * Follow the edge for c from a node, returning -1 if there's none.
+     */
+    int next (int node, char c) {
+        char[] k = keys[node];
+        int lo = 0, hi = k.length - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            if (k[mid] < c)
+                lo = mid + 1;
+            else if (k[mid] > c)
+                hi = mid - 1;
+            else
+                return targets[node][mid];
+        }
+        return -1;
+    }
+}
+
+/*
+ * The external form of a URL (see URL.toExternalForm()), read in place
+ * from the URL's parts.
+ */
+final class URLChars implements CharSequence {
+    String[] parts = new String[7];
+    int nParts;
+    int length;
+    int part;               // part holding the last character read
+    int partStart;          // and its offset
+
+    URLChars (URL url) {
+        add (url.getProtocol ());
+        add (":");
+        String authority = url.getAuthority ();
+        if (authority != null && authority.length () > 0) {
+            add ("//");
+            add (authority);
+        }
+        if (url.getFile () != null)
+            add (url.getFile ());
+        if (url.getRef () != null) {
+            add ("#");
+            add (url.getRef ());
+        }
+    }
+
+    void add (String s) {
+        if (s.length () > 0) {
+            parts[nParts++] = s;
+            length += s.length ();
+        }
+    }
+
+    public int length () {
+        return length;
+    }
+
+    public char charAt (int i) {
+        if (i < 0 || i >= length)
+            throw new IndexOutOfBoundsException (String.valueOf (i));
+        while (i < partStart)
+            partStart -= parts[--part].length ();
+        while (i >= partStart + parts[part].length ())
+            partStart += parts[part++].length ();
+        return parts[part].charAt (i - partStart);
+    }
+
+    public CharSequence subSequence (int start, int end) {
+        return toString ().substring (start, end);
+    }
+
+    public String toString () {
+        StringBuffer buf = new StringBuffer (length);
+        for (int i=0; i<nParts; ++i)
+            buf.append (parts[i]);
+        return buf.toString ();
+    }
+}
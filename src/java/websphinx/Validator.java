@@ -0,0 +1,195 @@
+/*
+ * WebSphinx web-crawling toolkit
+ *
+ * Copyright (c) 1998-2002 Carnegie Mellon University.  All rights
+ * reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in
+ *    the documentation and/or other materials provided with the
+ *    distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY CARNEGIE MELLON UNIVERSITY ``AS IS'' AND
+ * ANY EXPRESSED OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ * THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED.  IN NO EVENT SHALL CARNEGIE MELLON UNIVERSITY
+ * NOR ITS EMPLOYEES BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+
+package websphinx;
+
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.StringTokenizer;
+import java.util.TimeZone;
+
+/**
+ * What a crawler remembers about a page between crawls: the
+ * validators the server sent with it (Last-Modified and ETag), 
+ * a hash of its content, and its outgoing links.  When a Link carries
+ * a Validator, Access makes a conditional request for it, and 
+ * a server that answers 304 (Not Modified) lets the crawler skip the
+ * page's content and take its links from the Validator instead.
+ * Validators are immutable.
+ *
+ * @see ValidatorStore
+ */
+public class Validator {
+    long lastModified;
+    String etag;
+    long contentHash;
+    String contentType;
+    String[] hrefs;     // URLs of outgoing links
+    String[] labels;    // labels of each outgoing link, separated by spaces
+
+    /**
+     * Make a Validator.
+     * @param lastModified Last-Modified date in milliseconds since 
+     * the epoch, or 0 if unknown
+     * @param etag ETag header, or null if unknown
+     * @param contentHash hash of the page's content 
+     * (see FingerprintSet.fingerprint(byte[]))
+     * @param contentType Content-Type header, or null if unknown
+     * @param hrefs URLs of the page's outgoing links
+     * @param labels labels of each outgoing link, separated by spaces
+     */
+    public Validator (long lastModified, String etag, long contentHash,
+                      String contentType, String[] hrefs, String[] labels) {
+        this.lastModified = lastModified;
+        this.etag = etag;
+        this.contentHash = contentHash;
+        this.contentType = contentType;
+        this.hrefs = hrefs;
+        this.labels = labels;
+    }
+
+    /**
+     * Make a Validator for a page that has just been downloaded,
+     * classified, and hashed.
+     * @param page downloaded page
+     * @param contentHash hash of the page's content
+     */
+    public Validator (Page page, long contentHash) {
+        this (page.getLastModified (), page.getETag (), contentHash,
+              page.getContentType (), null, null);
+
+        Link[] links = page.getLinks ();
+        int n = (links != null) ? links.length : 0;
+        hrefs = new String[n];
+        labels = new String[n];
+        for (int i=0; i<n; ++i) {
+            hrefs[i] = links[i].getURL ().toExternalForm ();
+            labels[i] = links[i].getObjectLabels ();
+        }
+    }
+
+    /**
+     * Get Last-Modified date.
+     * @return date in milliseconds since the epoch, or 0 if unknown
+     */
+    public long getLastModified () {
+        return lastModified;
+    }
+
+    /**
+     * Get entity tag.
+     * @return ETag header, or null if unknown
+     */
+    public String getETag () {
+        return etag;
+    }
+
+    /**
+     * Get content hash.
+     * @return hash of the page's content
+     */
+    public long getContentHash () {
+        return contentHash;
+    }
+
+    /**
+     * Get content type.
+     * @return Content-Type header, or null if unknown
+     */
+    public String getContentType () {
+        return contentType;
+    }
+
+    /**
+     * Get number of outgoing links.
+     */
+    public int getLinkCount () {
+        return hrefs.length;
+    }
+
+    /**
+     * Test whether a conditional request can be made with this
+     * Validator.
+     * @return true if the Validator has a Last-Modified date or an ETag
+     */
+    public boolean isConditional () {
+        return lastModified > 0 || etag != null;
+    }
+
+    /**
+     * Make the outgoing links of a page from the ones remembered here.
+     * The links have the same URLs and labels as the originals, but 
+     * no text or tags.
+     * @param page Page the links are on
+     * @return links, one level deeper than page
+     */
+    public Link[] makeLinks (Page page) {
+        Link[] links = new Link[hrefs.length];
+        int n = 0;
+        for (int i=0; i<hrefs.length; ++i) {
+            try {
+                Link link = new Link (new URL (hrefs[i]), page.getDepth () + 1);
+                StringTokenizer tok = new StringTokenizer (labels[i]);
+                while (tok.hasMoreTokens ())
+                    link.setLabel (tok.nextToken ());
+                links[n++] = link;
+            } catch (MalformedURLException e) {
+                // stored by an older JVM that knew the protocol; skip it
+            }
+        }
+        if (n < links.length) {
+            Link[] newlinks = new Link[n];
+            System.arraycopy (links, 0, newlinks, 0, n);
+            links = newlinks;
+        }
+        return links;
+    }
+
+    private static SimpleDateFormat httpDate;
+
+    /**
+     * Format a date as an HTTP header value (RFC 1123).
+     * @param date date in milliseconds since the epoch
+     * @return date such as "Sun, 06 Nov 1994 08:49:37 GMT"
+     */
+    public static synchronized String formatDate (long date) {
+        if (httpDate == null) {
+            httpDate = new SimpleDateFormat ("EEE, dd MMM yyyy HH:mm:ss 'GMT'", 
+                                             Locale.US);
+            httpDate.setTimeZone (TimeZone.getTimeZone ("GMT"));
+        }
+        return httpDate.format (new Date (date));
+    }
+}
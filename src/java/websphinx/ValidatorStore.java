@@ -0,0 +1,222 @@
+/*
+ * WebSphinx web-crawling toolkit
+ *
+ * Copyright (c) 1998-2002 Carnegie Mellon University.  All rights
+ * reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in
+ *    the documentation and/or other materials provided with the
+ *    distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY CARNEGIE MELLON UNIVERSITY ``AS IS'' AND
+ * ANY EXPRESSED OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ * THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED.  IN NO EVENT SHALL CARNEGIE MELLON UNIVERSITY
+ * NOR ITS EMPLOYEES BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+
+package websphinx;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.net.URL;
+import java.util.Enumeration;
+import java.util.Hashtable;
+
+/**
+ * Validators of the pages seen by earlier crawls, kept in a file
+ * between crawls so that a re-crawl need only download the pages
+ * that changed.  Pages are keyed by the fingerprint of their URL.
+ * <P>
+ * The store is read when it is made and written by save(),
+ * which Crawler calls at the end of each run (see
+ * Crawler.setValidatorStore()).
+ */
+public class ValidatorStore {
+    static final int VERSION = 1;
+
+    File file;
+    Hashtable validators = new Hashtable ();  // Long fingerprint -> Validator
+    boolean modified = false;
+
+    /**
+     * Make an empty ValidatorStore that is kept only in memory.
+     */
+    public ValidatorStore () {
+    }
+
+    /**
+     * Make a ValidatorStore kept in a file.  Validators already saved 
+     * in the file are read.
+     * @param file file where the store is saved
+     * @exception IOException if the file exists but can't be read
+     */
+    public ValidatorStore (File file) throws IOException {
+        this.file = file;
+        if (file.exists ())
+            read ();
+    }
+
+    /**
+     * Get the file where the store is saved.
+     * @return file, or null if the store is kept only in memory
+     */
+    public File getFile () {
+        return file;
+    }
+
+    /**
+     * Look up the validator of a page.
+     * @param url URL of page
+     * @return validator saved for url, or null if none
+     */
+    public synchronized Validator get (URL url) {
+        return (Validator)validators.get (key (url));
+    }
+
+    /**
+     * Save the validator of a page, replacing any older one.
+     * @param url URL of page
+     * @param v validator
+     */
+    public synchronized void put (URL url, Validator v) {
+        validators.put (key (url), v);
+        modified = true;
+    }
+
+    /**
+     * Forget the validator of a page, e.g. because the page is gone.
+     * @param url URL of page
+     */
+    public synchronized void remove (URL url) {
+        if (validators.remove (key (url)) != null)
+            modified = true;
+    }
+
+    /**
+     * Forget all validators.
+     */
+    public synchronized void clear () {
+        validators.clear ();
+        modified = true;
+    }
+
+    /**
+     * Get number of pages in the store.
+     */
+    public synchronized int size () {
+        return validators.size ();
+    }
+
+    /**
+     * Write the store to its file, if it has changed since it was
+     * read or last saved.  The file is replaced only once the new
+     * one is complete.  Does nothing if the store is kept only in memory.
+     * @exception IOException if the file can't be written
+     */
+    public synchronized void save () throws IOException {
+        if (file == null || !modified)
+            return;
+
+        File tmp = new File (file.getPath () + ".tmp");
+        FileOutputStream fout = new FileOutputStream (tmp.toString ());
+        try {
+            DataOutputStream out = new DataOutputStream (new BufferedOutputStream (fout));
+            out.writeInt (VERSION);
+            out.writeInt (validators.size ());
+            for (Enumeration e = validators.keys (); e.hasMoreElements (); ) {
+                Long key = (Long)e.nextElement ();
+                Validator v = (Validator)validators.get (key);
+                out.writeLong (key.longValue ());
+                out.writeLong (v.lastModified);
+                writeString (out, v.etag);
+                out.writeLong (v.contentHash);
+                writeString (out, v.contentType);
+                out.writeInt (v.hrefs.length);
+                for (int i=0; i<v.hrefs.length; ++i) {
+                    out.writeUTF (v.hrefs[i]);
+                    out.writeUTF (v.labels[i]);
+                }
+            }
+            out.flush ();
+            fout.getFD ().sync ();
+        } finally {
+            fout.close ();
+        }
+        file.delete ();
+        if (!tmp.renameTo (file))
+            throw new IOException ("can't rename " + tmp + " to " + file);
+        modified = false;
+    }
+
+    void read () throws IOException {
+        DataInputStream in = new DataInputStream (
+            new BufferedInputStream (new FileInputStream (file.toString ())));
+        try {
+            int version = in.readInt ();
+            if (version != VERSION)
+                throw new IOException (file + ": unknown validator store version " 
+                                       + version);
+            Hashtable labelStrings = new Hashtable ();
+            for (int n = in.readInt (); n > 0; --n) {
+                long key = in.readLong ();
+                long lastModified = in.readLong ();
+                String etag = readString (in);
+                long contentHash = in.readLong ();
+                String contentType = readString (in);
+                int nLinks = in.readInt ();
+                String[] hrefs = new String[nLinks];
+                String[] labels = new String[nLinks];
+                for (int i=0; i<nLinks; ++i) {
+                    hrefs[i] = in.readUTF ();
+                    // many links share the same labels; keep one copy
+                    String l = in.readUTF ();
+                    String shared = (String)labelStrings.get (l);
+                    if (shared == null)
+                        labelStrings.put (l, shared = l);
+                    labels[i] = shared;
+                }
+                validators.put (new Long (key), 
+                                new Validator (lastModified, etag, contentHash,
+                                               contentType, hrefs, labels));
+            }
+        } finally {
+            in.close ();
+        }
+    }
+
+    static Long key (URL url) {
+        return new Long (FingerprintSet.fingerprint (url.toExternalForm ()));
+    }
+
+    static void writeString (DataOutputStream out, String s) throws IOException {
+        out.writeBoolean (s != null);
+        if (s != null)
+            out.writeUTF (s);
+    }
+
+    static String readString (DataInputStream in) throws IOException {
+        return in.readBoolean () ? in.readUTF () : null;
+    }
+}
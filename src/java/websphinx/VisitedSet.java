@@ -0,0 +1,67 @@
+/*
+ * WebSphinx web-crawling toolkit
+ *
+ * Copyright (c) 1998-2002 Carnegie Mellon University.  All rights
+ * reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in
+ *    the documentation and/or other materials provided with the
+ *    distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY CARNEGIE MELLON UNIVERSITY ``AS IS'' AND
+ * ANY EXPRESSED OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ * THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED.  IN NO EVENT SHALL CARNEGIE MELLON UNIVERSITY
+ * NOR ITS EMPLOYEES BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+package websphinx;
+
+/**
+ * Set of page URLs that a Crawler has visited (or queued for 
+ * visiting).  Implementations must be safe for use by several
+ * threads at once, because every worm thread tests and marks 
+ * links as it expands pages.
+ *
+ * @see Crawler#makeVisitedSet
+ */
+public interface VisitedSet {
+    /**
+     * Test whether a URL is in the set.
+     * @param url URL to test
+     * @return true if url has been added to the set
+     */
+    public abstract boolean contains (String url);
+
+    /**
+     * Add a URL to the set, as one atomic test-and-set.
+     * @param url URL to add
+     * @return true if url was not already in the set
+     */
+    public abstract boolean add (String url);
+
+    /**
+     * Remove all URLs from the set.
+     */
+    public abstract void clear ();
+
+    /**
+     * Get number of URLs in the set.
+     * @return number of URLs added since the set was last cleared
+     */
+    public abstract int size ();
+}